@@ -0,0 +1,59 @@
+package io.jenkins.plugins.dfcli;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// WHAT EVERY df STEP PAYS BEFORE SPAWNING: SPLITTING THE COMMAND, BUILDING THE KEY ARGS AND THE ArgumentListBuilder
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBuildBenchmark {
+    private static final String COMMAND = "artifact upload ci-cache-pub build/output/testFile.txt";
+    private static final String VERSION = "v1.0.1-Alpha";
+
+    @Param({"0", "4", "16"})
+    public int propertyCount;
+
+    private Map<String, String> properties;
+
+    @Setup
+    public void setup() {
+        properties = new LinkedHashMap<>();
+        for (int i = 0; i < propertyCount; i++) {
+            properties.put("KEY_" + i, "value-" + i);
+        }
+    }
+
+    @Benchmark
+    public List<String> tokenize() {
+        return DfCommandRunner.tokenize(COMMAND);
+    }
+
+    @Benchmark
+    public String generateCacheKey() {
+        return DfCommandRunner.generateCacheKey(VERSION, properties);
+    }
+
+    @Benchmark
+    public List<String> buildCommand() {
+        return DfCommandRunner.buildCommand(
+                        "/opt/jenkins/tools/dfcli", DfCommandRunner.tokenize(COMMAND), VERSION, properties, null)
+                .toList();
+    }
+}
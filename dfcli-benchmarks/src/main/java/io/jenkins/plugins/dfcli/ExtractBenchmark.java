@@ -0,0 +1,90 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// AGENT SIDE INSTALL: LOCK, EXTRACT THE BINARY FROM A RELEASE tar.gz INTO STAGING, RENAME INTO PLACE, WRITE MARKER
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractBenchmark {
+    @Param({"1", "16"})
+    public int binaryMb;
+
+    private Path root;
+    private File archive;
+    private Path toolDir;
+    private String sha256;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("dfcli-extract-bench");
+        toolDir = Files.createDirectories(root.resolve("tools"));
+        archive = root.resolve("dfcli-linux-amd64.tar.gz").toFile();
+
+        // RANDOM BYTES COMPRESS ABOUT AS BADLY AS A REAL GO BINARY'S TEXT SECTION
+        byte[] binary = new byte[binaryMb * 1024 * 1024];
+        new Random(42).nextBytes(binary);
+        try (OutputStream out = Files.newOutputStream(archive.toPath());
+                GzipCompressorOutputStream gz = new GzipCompressorOutputStream(out);
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(gz)) {
+            TarArchiveEntry readme = new TarArchiveEntry("dfcli-linux-amd64/README.md");
+            byte[] text = "dfcli\n".getBytes();
+            readme.setSize(text.length);
+            tar.putArchiveEntry(readme);
+            tar.write(text);
+            tar.closeArchiveEntry();
+
+            TarArchiveEntry entry = new TarArchiveEntry("dfcli-linux-amd64/dfcli");
+            entry.setSize(binary.length);
+            tar.putArchiveEntry(entry);
+            tar.write(binary);
+            tar.closeArchiveEntry();
+        }
+        sha256 = Digests.sha256(archive.toPath());
+    }
+
+    // WITHOUT THE MARKER EVERY INVOCATION DOES THE FULL EXTRACT + SWAP
+    @Setup(Level.Invocation)
+    public void forgetInstall() throws IOException {
+        Files.deleteIfExists(toolDir.resolve(GithubInstaller.MARKER_FILE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Boolean installArchive() throws IOException {
+        return new GithubInstaller.InstallArchive(toolDir.toString(), false, "bench", sha256).invoke(archive, null);
+    }
+}
@@ -0,0 +1,80 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// STDOUT HANDLING IN df: LINE SPLITTING + BOUNDED CAPTURE (format: 'text') AND STREAMING PARSE (format: 'json').
+// INPUT IS FED IN 8 KiB WRITES, LIKE THE LAUNCHER'S PUMP DOES
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputHandlingBenchmark {
+    private static final int WRITE_SIZE = 8 * 1024;
+    private static final PrintStream NULL_LOG = new PrintStream(OutputStream.nullOutputStream());
+
+    @Param({"64", "4096"})
+    public int totalKb;
+
+    @Param({"40", "400"})
+    public int lineLength;
+
+    private byte[] text;
+    private byte[] json;
+
+    @Setup
+    public void setup() {
+        StringBuilder lines = new StringBuilder();
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; lines.length() < totalKb * 1024; i++) {
+            String line = ("artifact-" + i + " ").repeat(Math.max(1, lineLength / 12));
+            lines.append(line, 0, Math.min(line.length(), lineLength)).append('\n');
+            records.append("{\"name\":\"artifact-")
+                    .append(i)
+                    .append("\",\"size\":")
+                    .append(i * 31L)
+                    .append(",\"tags\":[\"a\",\"b\"],\"path\":\"")
+                    .append("x".repeat(Math.max(0, lineLength - 60)))
+                    .append("\"}\n");
+        }
+        text = lines.toString().getBytes(StandardCharsets.UTF_8);
+        json = records.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int captureText() throws Exception {
+        OutputCapture capture = new OutputCapture(NULL_LOG, DfStep.DEFAULT_MAX_OUTPUT_BYTES);
+        feed(capture, text);
+        capture.close();
+        return capture.getText().trim().length();
+    }
+
+    @Benchmark
+    public Object parseJson() throws Exception {
+        JsonResultParser parser = new JsonResultParser(DfStep.DEFAULT_MAX_OUTPUT_BYTES * 4L);
+        feed(parser, json);
+        parser.close();
+        return parser.getResult();
+    }
+
+    private static void feed(OutputStream out, byte[] data) throws Exception {
+        for (int off = 0; off < data.length; off += WRITE_SIZE) {
+            out.write(data, off, Math.min(WRITE_SIZE, data.length - off));
+        }
+    }
+}
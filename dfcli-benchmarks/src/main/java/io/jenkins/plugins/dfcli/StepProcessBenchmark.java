@@ -0,0 +1,101 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.StreamTaskListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// END TO END COST OF ONE df INVOCATION'S PROCESS PATH AGAINST A FAKE dfcli SCRIPT: BUILD THE COMMAND, SPAWN
+// THROUGH A Launcher, PUMP STDOUT/STDERR THROUGH THE CAPTURES, JOIN. SampleTime GIVES p50/p99 LATENCY, Throughput
+// GIVES STEPS/s; RUN WITH -t N TO MEASURE N CONCURRENT STEPS. UNIX ONLY (THE STAND-IN IS A SHELL SCRIPT)
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class StepProcessBenchmark {
+    private static final String SCRIPT = "fake-dfcli.sh";
+    private static final PrintStream NULL_LOG = new PrintStream(OutputStream.nullOutputStream());
+
+    // LINES OF OUTPUT THE FAKE dfcli PRINTS
+    @Param({"10", "10000"})
+    public int outputLines;
+
+    private Path dir;
+    private String exePath;
+    private Launcher launcher;
+    private EnvVars env;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("dfcli-step-bench");
+        Path script = dir.resolve("dfcli");
+        try (InputStream in = StepProcessBenchmark.class.getResourceAsStream(SCRIPT)) {
+            Files.copy(in, script, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!script.toFile().setExecutable(true)) {
+            throw new IOException("Could not make " + script + " executable");
+        }
+        exePath = script.toString();
+        launcher = new Launcher.LocalLauncher(new StreamTaskListener(NULL_LOG, StandardCharsets.UTF_8));
+        env = new EnvVars("DFCLI_FAKE_LINES", Integer.toString(outputLines));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        new FilePath(dir.toFile()).deleteRecursive();
+    }
+
+    @Benchmark
+    public int dfStep() throws IOException, InterruptedException {
+        ArgumentListBuilder cmd = DfCommandRunner.buildCommand(
+                exePath,
+                DfCommandRunner.tokenize("artifact search -r ci-cache-pub"),
+                "v1.0.1-Alpha",
+                Map.of("BRANCH_NAME", "main"),
+                null);
+        OutputCapture stdout = new OutputCapture(NULL_LOG, DfStep.DEFAULT_MAX_OUTPUT_BYTES);
+        OutputCapture stderr = new OutputCapture(NULL_LOG, 64 * 1024);
+        try {
+            int exit = launcher.launch()
+                    .cmds(cmd)
+                    .envs(env)
+                    .pwd(dir.toFile())
+                    .stdout(stdout)
+                    .stderr(stderr)
+                    .join();
+            if (exit != 0) {
+                throw new IOException("fake dfcli exited with " + exit + ": " + stderr.getText());
+            }
+        } finally {
+            stdout.close();
+            stderr.close();
+        }
+        return stdout.getText().trim().length();
+    }
+}
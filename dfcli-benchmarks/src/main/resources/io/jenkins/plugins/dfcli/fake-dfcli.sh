@@ -0,0 +1,7 @@
+#!/bin/sh
+# STAND-IN FOR dfcli IN BENCHMARKS: IGNORES ITS ARGS, PRINTS $DFCLI_FAKE_LINES LINES SHAPED LIKE
+# `artifact search` OUTPUT AND EXITS WITH $DFCLI_FAKE_EXIT
+awk -v n="${DFCLI_FAKE_LINES:-100}" 'BEGIN {
+  for (i = 0; i < n; i++) printf "ci-cache-pub/artifact-%d.tar.gz v1.0.1-Alpha BRANCH_NAME=main size=%d\n", i, i * 31
+}'
+exit "${DFCLI_FAKE_EXIT:-0}"
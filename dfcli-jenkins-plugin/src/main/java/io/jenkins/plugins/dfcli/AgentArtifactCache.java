@@ -0,0 +1,568 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DirScanner;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.MasterToSlaveFileCallable;
+
+// SIZE BOUNDED LRU CACHE OF dfCacheSave/dfCacheRestore ARCHIVES IN A DIR ON THE AGENT. ENTRIES ARE
+// <sha256(key)>.tar.gz PLUS A <sha256(key)>.key FILE HOLDING THE KEY TEXT AND A <sha256(key)>.sha256 FILE HOLDING
+// THE ARCHIVE'S DIGEST, WHICH PEERS CHECK THEIR COPIES AGAINST; AN ARCHIVE'S MTIME IS ITS LAST USE.
+// CHANGES HAPPEN UNDER A FILE LOCK (AND AN IN-JVM LOCK, SINCE BUILDS ON ONE AGENT SHARE A JVM), ENTRIES ARE
+// RENAMED INTO AND OUT OF PLACE, AND HITS ARE HANDED OUT AS HARD LINKS, SO EVICTION NEVER PULLS AN ARCHIVE
+// OUT FROM UNDER A RESTORE THAT IS STILL EXTRACTING IT. THE STEPS KEY ENTRIES BY entryKey(), SO CACHES OF
+// DIFFERENT REPOS OR ARTIFACT NAMES NEVER SHARE AN ENTRY EVEN WHEN THEIR VERSIONS MATCH
+public class AgentArtifactCache {
+    // UNDER THE NODE'S ROOT DIR. NOT "dfcli-cache", WHICH ON THE BUILT-IN NODE IS THE CONTROLLER'S BinaryCache
+    public static final String DIR_NAME = "dfcli-artifact-cache";
+
+    static final String ARCHIVE_SUFFIX = ".tar.gz";
+    static final String KEY_SUFFIX = ".key";
+    static final String DIGEST_SUFFIX = ".sha256";
+    static final String LOCK_FILE = ".lock";
+    static final String STATS_FILE = "stats.properties";
+    // HITS, MISSES ETC. ARE COUNTED IN MEMORY AND WRITTEN TO STATS_FILE WITH THE NEXT STORE OR ONCE THIS LONG HAS
+    // PASSED, NOT ON EVERY LOOKUP. A CRASHED AGENT LOSES AT MOST THAT MUCH OF ITS COUNTS
+    static final long STATS_FLUSH_MILLIS = 60_000;
+    // UNWRITTEN COUNTS PER CACHE DIR, ONLY TOUCHED UNDER THAT DIR'S LOCK
+    private static final Map<Path, PendingStats> PENDING = new ConcurrentHashMap<>();
+
+    private final Path dir;
+
+    public AgentArtifactCache(Path dir) {
+        this.dir = dir;
+    }
+
+    // LINKS THE ARCHIVE FOR key, OR ELSE THE NEWEST ONE WHOSE KEY STARTS WITH ONE OF restorePrefixes (IN ORDER),
+    // TO target. RETURNS THE MATCHED KEY OR NULL ON A MISS
+    public String lookup(String key, List<String> restorePrefixes, Path target) throws IOException {
+        return locked(() -> {
+            String matched = null;
+            if (Files.isRegularFile(archive(key))) {
+                matched = key;
+            } else if (restorePrefixes != null) {
+                for (String prefix : restorePrefixes) {
+                    matched = newestWithPrefix(prefix);
+                    if (matched != null) {
+                        break;
+                    }
+                }
+            }
+
+            if (matched == null) {
+                count("misses");
+                return null;
+            }
+            Path archive = archive(matched);
+            Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+            linkOrCopy(archive, target);
+            count("hits");
+            return matched;
+        });
+    }
+
+    // LINKS THE ARCHIVE FOR EXACTLY key TO target FOR A PEER TO COPY, RETURNS ITS SHA-256 OR NULL ON A MISS.
+    // ENTRIES STORED BEFORE DIGESTS WERE RECORDED GET ONE NOW
+    public String export(String key, Path target) throws IOException {
+        return locked(() -> {
+            Path archive = archive(key);
+            if (!Files.isRegularFile(archive)) {
+                count("misses");
+                return null;
+            }
+            Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+            linkOrCopy(archive, target);
+            count("hits");
+            Path digest = digestFile(key);
+            if (Files.isRegularFile(digest)) {
+                return new String(Files.readAllBytes(digest), StandardCharsets.UTF_8).trim();
+            }
+            String sha256 = Digests.sha256(archive);
+            writeAtomically(digest, sha256);
+            return sha256;
+        });
+    }
+
+    public boolean contains(String key) {
+        return Files.isRegularFile(archive(key));
+    }
+
+    // MOVES archive INTO THE CACHE UNDER key, THEN EVICTS LEAST RECENTLY USED ENTRIES DOWN TO maxBytes
+    public void store(String key, Path archive, long maxBytes) throws IOException {
+        locked(() -> {
+            if (Files.size(archive) > maxBytes) {
+                // WOULD EVICT EVERYTHING AND THEN ITSELF
+                Files.deleteIfExists(archive);
+                return null;
+            }
+            Path entry = archive(key);
+            moveIn(archive, entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            writeAtomically(keyFile(key), key);
+            writeAtomically(digestFile(key), Digests.sha256(entry));
+            count("stores");
+            evict(maxBytes);
+            flushStats();
+            return null;
+        });
+    }
+
+    // hits, misses, stores, evictions, entries, bytes
+    public Properties stats() throws IOException {
+        return locked(() -> {
+            Properties stats = readStats();
+            PendingStats pending = PENDING.get(statsKey());
+            if (pending != null) {
+                pending.addTo(stats);
+            }
+            long bytes = 0;
+            int entries = 0;
+            for (Path archive : archives()) {
+                bytes += sizeOrZero(archive);
+                entries++;
+            }
+            stats.setProperty("entries", Integer.toString(entries));
+            stats.setProperty("bytes", Long.toString(bytes));
+            return stats;
+        });
+    }
+
+    private void evict(long maxBytes) throws IOException {
+        List<Path> archives = archives();
+        long total = 0;
+        for (Path archive : archives) {
+            total += sizeOrZero(archive);
+        }
+        archives.sort(Comparator.comparing(AgentArtifactCache::mtimeOrZero));
+        for (Path archive : archives) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long size = sizeOrZero(archive);
+            String name = archive.getFileName().toString();
+            String base = name.substring(0, name.length() - ARCHIVE_SUFFIX.length());
+            // RENAME FIRST SO A CONCURRENT lookup() SEES EITHER THE WHOLE ENTRY OR NOTHING
+            Path doomed = dir.resolve(base + ".evicted-" + UUID.randomUUID());
+            try {
+                Files.move(archive, doomed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            Files.deleteIfExists(dir.resolve(base + KEY_SUFFIX));
+            Files.deleteIfExists(dir.resolve(base + DIGEST_SUFFIX));
+            Files.deleteIfExists(doomed);
+            total -= size;
+            count("evictions");
+        }
+    }
+
+    private String newestWithPrefix(String prefix) throws IOException {
+        String best = null;
+        long bestTime = Long.MIN_VALUE;
+        try (DirectoryStream<Path> keys = Files.newDirectoryStream(dir, "*" + KEY_SUFFIX)) {
+            for (Path keyFile : keys) {
+                String key = new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8);
+                Path archive = archive(key);
+                if (!key.startsWith(prefix) || !Files.isRegularFile(archive)) {
+                    continue;
+                }
+                long time = mtimeOrZero(archive);
+                if (time > bestTime) {
+                    best = key;
+                    bestTime = time;
+                }
+            }
+        }
+        return best;
+    }
+
+    private List<Path> archives() throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + ARCHIVE_SUFFIX)) {
+            for (Path file : files) {
+                out.add(file);
+            }
+        }
+        return out;
+    }
+
+    private Path archive(String key) {
+        return dir.resolve(entryName(key) + ARCHIVE_SUFFIX);
+    }
+
+    private Path keyFile(String key) {
+        return dir.resolve(entryName(key) + KEY_SUFFIX);
+    }
+
+    private Path digestFile(String key) {
+        return dir.resolve(entryName(key) + DIGEST_SUFFIX);
+    }
+
+    private static void writeAtomically(Path file, String text) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String entryName(String key) {
+        return Digests.toHex(Digests.sha256().digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // THE ARCHIVE MAY LIVE ON ANOTHER FILESYSTEM (WORKSPACE VS AGENT ROOT), THEN COPY NEXT TO THE ENTRY FIRST
+    private void moveIn(Path source, Path entry) throws IOException {
+        try {
+            Files.move(source, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path incoming = dir.resolve(entry.getFileName() + ".incoming-" + UUID.randomUUID());
+            try {
+                Files.copy(source, incoming);
+                Files.move(incoming, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(incoming);
+            }
+            Files.deleteIfExists(source);
+        }
+    }
+
+    // A HARD LINK IS INSTANT AND KEEPS THE DATA ALIVE IF THE ENTRY IS EVICTED MID RESTORE; COPY WHERE LINKS DON'T WORK
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void count(String stat) throws IOException {
+        PendingStats pending = PENDING.computeIfAbsent(statsKey(), k -> new PendingStats());
+        pending.counts.merge(stat, 1L, Long::sum);
+        if (System.currentTimeMillis() - pending.since >= STATS_FLUSH_MILLIS) {
+            flushStats();
+        }
+    }
+
+    private void flushStats() throws IOException {
+        PendingStats pending = PENDING.remove(statsKey());
+        if (pending == null) {
+            return;
+        }
+        Properties stats = readStats();
+        pending.addTo(stats);
+        Path tmp = dir.resolve(STATS_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            stats.store(out, null);
+        }
+        Files.move(tmp, dir.resolve(STATS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path statsKey() {
+        return dir.toAbsolutePath().normalize();
+    }
+
+    private static class PendingStats {
+        final long since = System.currentTimeMillis();
+        final Map<String, Long> counts = new HashMap<>();
+
+        void addTo(Properties stats) {
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                long value = Long.parseLong(stats.getProperty(count.getKey(), "0"));
+                stats.setProperty(count.getKey(), Long.toString(value + count.getValue()));
+            }
+        }
+    }
+
+    private Properties readStats() throws IOException {
+        Properties stats = new Properties();
+        Path file = dir.resolve(STATS_FILE);
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                stats.load(in);
+            }
+        }
+        return stats;
+    }
+
+    private static long sizeOrZero(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long mtimeOrZero(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class)
+                    .lastModifiedTime()
+                    .toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private <T> T locked(AgentFileLock.IOAction<T> action) throws IOException {
+        return AgentFileLock.withLock(dir.resolve(LOCK_FILE), action);
+    }
+
+    // TARS includes/excludes UNDER THE WORKSPACE INTO archive (BOTH ON THE AGENT), COMPRESSED WITH codec
+    // (SEE CacheCompression) ON ALL OF THE AGENT'S CORES
+    public static class Pack extends MasterToSlaveFileCallable<Packed> {
+        private static final long serialVersionUID = 1L;
+
+        private final String includes;
+        private final String excludes;
+        private final String archive;
+        private final String codec;
+        private final int level;
+
+        public Pack(String includes, String excludes, String archive, String codec, int level) {
+            this.includes = includes;
+            this.excludes = excludes;
+            this.archive = archive;
+            this.codec = codec;
+            this.level = level;
+        }
+
+        @Override
+        public Packed invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            Path out = Paths.get(archive);
+            Files.createDirectories(out.getParent());
+            OutputStream file = new BufferedOutputStream(Files.newOutputStream(out), 64 * 1024);
+            OutputStream compressed = CacheCompression.compress(file, codec, level);
+            try (OutputStream closing = compressed) {
+                new FilePath(workspace).tar(closing, new DirScanner.Glob(includes, excludes));
+            }
+            long bytes = Files.size(out);
+            if (compressed instanceof ParallelGzipOutputStream) {
+                ParallelGzipOutputStream gz = (ParallelGzipOutputStream) compressed;
+                return new Packed(bytes, gz.getBytesIn(), gz.getStoredBlocks());
+            }
+            return new Packed(bytes, bytes, 0);
+        }
+    }
+
+    public static class Packed implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long bytes;
+        private final long tarBytes;
+        private final int storedBlocks;
+
+        Packed(long bytes, long tarBytes, int storedBlocks) {
+            this.bytes = bytes;
+            this.tarBytes = tarBytes;
+            this.storedBlocks = storedBlocks;
+        }
+
+        // ARCHIVE SIZE
+        public long getBytes() {
+            return bytes;
+        }
+
+        // SIZE OF THE TAR STREAM BEFORE COMPRESSION
+        public long getTarBytes() {
+            return tarBytes;
+        }
+
+        // BLOCKS THAT DIDN'T COMPRESS AND WERE STORED AS-IS
+        public int getStoredBlocks() {
+            return storedBlocks;
+        }
+    }
+
+    // EXTRACTS archive INTO THE WORKSPACE, THEN MOVES IT INTO THE AGENT CACHE (IF ONE IS GIVEN) OR DELETES IT
+    public static class Unpack extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final String archive;
+        private final String cacheDir;
+        private final String key;
+        private final long maxBytes;
+
+        public Unpack(String archive, String cacheDir, String key, long maxBytes) {
+            this.archive = archive;
+            this.cacheDir = cacheDir;
+            this.key = key;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public Void invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            Path file = Paths.get(archive);
+            try (InputStream tar = CacheCompression.decompress(Files.newInputStream(file))) {
+                new FilePath(workspace).untarFrom(tar, FilePath.TarCompression.NONE);
+            }
+            if (cacheDir != null && key != null) {
+                new AgentArtifactCache(Paths.get(cacheDir)).store(key, file, maxBytes);
+            }
+            Files.deleteIfExists(file);
+            return null;
+        }
+    }
+
+    // LOCAL HIT: LINKS THE MATCHING ARCHIVE TO target AND RETURNS ITS KEY, OR NULL
+    public static class Lookup extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final ArrayList<String> restorePrefixes;
+        private final String target;
+
+        public Lookup(String key, List<String> restorePrefixes, String target) {
+            this.key = key;
+            this.restorePrefixes = restorePrefixes != null ? new ArrayList<>(restorePrefixes) : null;
+            this.target = target;
+        }
+
+        @Override
+        public String invoke(File cacheDir, VirtualChannel channel) throws IOException {
+            Path out = Paths.get(target);
+            Files.createDirectories(out.getParent());
+            return new AgentArtifactCache(cacheDir.toPath()).lookup(key, restorePrefixes, out);
+        }
+    }
+
+    // PEER SIDE OF A COPY: LINKS THE ARCHIVE FOR key TO target AND RETURNS ITS DIGEST, OR NULL
+    public static class Export extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final String target;
+
+        public Export(String key, String target) {
+            this.key = key;
+            this.target = target;
+        }
+
+        @Override
+        public String invoke(File cacheDir, VirtualChannel channel) throws IOException {
+            return new AgentArtifactCache(cacheDir.toPath()).export(key, Paths.get(target));
+        }
+    }
+
+    // SHA-256 OF A FILE, COMPUTED WHERE IT LIVES
+    public static class Sha256 extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String invoke(File file, VirtualChannel channel) throws IOException {
+            return Digests.sha256(file.toPath());
+        }
+    }
+
+    public static class Contains extends MasterToSlaveFileCallable<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+
+        public Contains(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public Boolean invoke(File cacheDir, VirtualChannel channel) {
+            return new AgentArtifactCache(cacheDir.toPath()).contains(key);
+        }
+    }
+
+    // MOVES AN ARCHIVE (ALREADY ON THE AGENT) INTO THE CACHE
+    public static class Store extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheDir;
+        private final String key;
+        private final long maxBytes;
+
+        public Store(String cacheDir, String key, long maxBytes) {
+            this.cacheDir = cacheDir;
+            this.key = key;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public Void invoke(File archive, VirtualChannel channel) throws IOException {
+            new AgentArtifactCache(Paths.get(cacheDir)).store(key, archive.toPath(), maxBytes);
+            return null;
+        }
+    }
+
+    public static class Stats extends MasterToSlaveFileCallable<Properties> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Properties invoke(File cacheDir, VirtualChannel channel) throws IOException {
+            return new AgentArtifactCache(cacheDir.toPath()).stats();
+        }
+    }
+
+    // THE CACHE DIR ON A NODE, OR NULL IF THE NODE IS OFFLINE OR THE CACHE IS DISABLED
+    static FilePath dirFor(Node node, long maxBytes) {
+        if (node == null || maxBytes <= 0) {
+            return null;
+        }
+        FilePath root = node.getRootPath();
+        return root != null ? root.child(DIR_NAME) : null;
+    }
+
+    // THE ENTRY FOR A CACHE KEY (resolveCacheKey) OF THE ARCHIVE name IN repo
+    static String entryKey(String repo, String name, String key) {
+        return scope(repo, name) + key;
+    }
+
+    // THE CACHE KEY BACK FROM AN entryKey() OF THE SAME repo AND name
+    static String cacheKey(String repo, String name, String entryKey) {
+        return entryKey.substring(scope(repo, name).length());
+    }
+
+    private static String scope(String repo, String name) {
+        return repo.trim() + "/" + name + " ";
+    }
+
+    // restoreKeys ARE VERSION PREFIXES, UNLESS ALREADY WRITTEN AS KEY ARGS ("--version ..."), AND ONLY MATCH ENTRIES
+    // OF THE SAME repo AND name
+    static List<String> keyPrefixes(String repo, String name, List<String> restoreKeys) {
+        List<String> out = new ArrayList<>();
+        if (restoreKeys != null) {
+            for (String restoreKey : restoreKeys) {
+                if (restoreKey != null && !restoreKey.trim().isEmpty()) {
+                    String trimmed = restoreKey.trim();
+                    out.add(entryKey(repo, name, trimmed.startsWith("--") ? trimmed : "--version " + trimmed));
+                }
+            }
+        }
+        return out;
+    }
+
+    // FOR THE STEPS' LOG LINE
+    static String describe(Properties stats) {
+        return "hits=" + stats.getProperty("hits", "0") + " misses=" + stats.getProperty("misses", "0")
+                + " evictions=" + stats.getProperty("evictions", "0") + " entries=" + stats.getProperty("entries", "0")
+                + " bytes=" + stats.getProperty("bytes", "0");
+    }
+}
@@ -0,0 +1,56 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// CROSS PROCESS LOCK ON A FILE, FOR STATE ON AN AGENT THAT SEVERAL BUILDS (OR AGENT PROCESSES SHARING A DISK)
+// TOUCH AT ONCE. A FileLock IS HELD PER JVM, NOT PER THREAD, SO AN IN-JVM LOCK PER PATH IS TAKEN FIRST. THAT LOCK
+// ONLY STAYS IN JVM_LOCKS WHILE SOME THREAD HOLDS OR WAITS FOR IT, SO AGENTS DON'T KEEP ONE FOR EVERY PATH EVER LOCKED
+public final class AgentFileLock {
+    private static final Map<Path, JvmLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    // users IS ONLY CHANGED INSIDE JVM_LOCKS.compute*, WHICH RUN ONE AT A TIME PER KEY
+    private static final class JvmLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int users;
+    }
+
+    private AgentFileLock() {}
+
+    public interface IOAction<T> {
+        T run() throws IOException;
+    }
+
+    public static <T> T withLock(Path lockFile, IOAction<T> action) throws IOException {
+        Path key = lockFile.toAbsolutePath().normalize();
+        Files.createDirectories(key.getParent());
+        JvmLock jvmLock = JVM_LOCKS.compute(key, (k, existing) -> {
+            JvmLock held = existing != null ? existing : new JvmLock();
+            held.users++;
+            return held;
+        });
+        try {
+            jvmLock.lock.lock();
+            try (FileChannel channel = FileChannel.open(key, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = channel.lock()) {
+                return action.run();
+            } finally {
+                jvmLock.lock.unlock();
+            }
+        } finally {
+            JVM_LOCKS.computeIfPresent(key, (k, held) -> --held.users == 0 ? null : held);
+        }
+    }
+
+    // PATHS WITH A THREAD HOLDING OR WAITING FOR THEIR LOCK, FOR TESTS
+    static int lockedPaths() {
+        return JVM_LOCKS.size();
+    }
+}
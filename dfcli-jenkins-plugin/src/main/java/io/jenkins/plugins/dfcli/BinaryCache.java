@@ -0,0 +1,193 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.model.TaskListener;
+import hudson.util.AtomicFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+
+// CONTROLLER SIDE STORE OF dfcli RELEASE ARCHIVES, INDEXED BY VERSION+ARCHIVE AND STORED BY SHA-256
+// LAYOUT: <root>/index.properties, <root>/blobs/<sha256>, <root>/tmp/
+public class BinaryCache {
+    // "latest" (AND THE TAG IT POINTS AT) IS RE-RESOLVED AGAINST THE RELEASE SOURCE ONCE THIS OLD
+    private static final long LATEST_REFRESH_MILLIS = TimeUnit.HOURS.toMillis(24);
+    // EXTRA ATTEMPTS FOR A FAILED RELEASE DOWNLOAD, WITH BACKOFF
+    static final int DOWNLOAD_RETRIES = 3;
+
+    private static BinaryCache instance;
+
+    private final File root;
+    private final Map<String, Object> keyLocks = new ConcurrentHashMap<>();
+
+    public BinaryCache(File root) {
+        this.root = root;
+    }
+
+    public static synchronized BinaryCache get() {
+        if (instance == null) {
+            instance = new BinaryCache(new File(Jenkins.get().getRootDir(), "dfcli-cache"));
+        }
+        return instance;
+    }
+
+    public File blob(String sha256) {
+        return new File(new File(root, "blobs"), sha256);
+    }
+
+    // "latest" AS THE RELEASE TAG IT POINTS AT, ASKING THE SOURCE AT MOST ONCE PER LATEST_REFRESH_MILLIS. ANY OTHER
+    // VERSION IS RETURNED AS IS. NULL IF THE SOURCE CAN'T NAME THE TAG AND NONE WAS RESOLVED BEFORE
+    public String resolveTag(ReleaseSource source, String version, TaskListener log)
+            throws IOException, InterruptedException {
+        if (!"latest".equals(version)) {
+            return version;
+        }
+        String key = "tag/latest";
+        synchronized (keyLocks.computeIfAbsent(key, k -> new Object())) {
+            String[] entry = lookup(key);
+            if (entry != null && !isStale(version, entry)) {
+                return entry[0];
+            }
+            String tag;
+            try {
+                tag = DistrofaceClient.retry(DOWNLOAD_RETRIES, source::latestTag);
+            } catch (IOException e) {
+                if (entry == null) {
+                    throw e;
+                }
+                log.getLogger().println("[dfcli] Could not resolve the latest release (" + e.getMessage()
+                        + "), keeping " + entry[0]);
+                return entry[0];
+            }
+            if (tag == null) {
+                return entry != null ? entry[0] : null;
+            }
+            record(key, tag);
+            return tag;
+        }
+    }
+
+    // RETURNS THE SHA-256 OF THE ARCHIVE, DOWNLOADING IT ONLY IF THE CACHE DOESN'T HAVE IT
+    public String resolve(ReleaseSource source, String version, String archiveName, TaskListener log)
+            throws IOException, InterruptedException {
+        return resolve(source, version, archiveName, false, log);
+    }
+
+    // SAME; WITH requireChecksum A RELEASE THAT PUBLISHES NO checksums.txt IS REFUSED INSTEAD OF TRUSTED ON FIRST USE
+    public String resolve(
+            ReleaseSource source, String version, String archiveName, boolean requireChecksum, TaskListener log)
+            throws IOException, InterruptedException {
+        String key = version + "/" + archiveName;
+        synchronized (keyLocks.computeIfAbsent(key, k -> new Object())) {
+            String[] entry = lookup(key);
+            if (entry != null && blob(entry[0]).isFile() && !isStale(version, entry)) {
+                return entry[0];
+            }
+
+            String sha256 = download(source, version, archiveName, requireChecksum, log);
+            record(key, sha256);
+            return sha256;
+        }
+    }
+
+    private boolean isStale(String version, String[] entry) {
+        if (!"latest".equals(version)) {
+            return false;
+        }
+        long fetchedAt = entry.length > 1 ? Long.parseLong(entry[1]) : 0L;
+        return System.currentTimeMillis() - fetchedAt > LATEST_REFRESH_MILLIS;
+    }
+
+    private String download(
+            ReleaseSource source, String version, String archiveName, boolean requireChecksum, TaskListener log)
+            throws IOException, InterruptedException {
+        Path tmpDir = new File(root, "tmp").toPath();
+        Files.createDirectories(tmpDir);
+        Files.createDirectories(new File(root, "blobs").toPath());
+
+        log.getLogger().println("[dfcli] Downloading from: " + source.describe(version, archiveName));
+        Path tmp = Files.createTempFile(tmpDir, "download-", ".part");
+        try {
+            // A RETRY STARTS THE FILE AND DIGEST OVER
+            String sha256 = DistrofaceClient.retry(DOWNLOAD_RETRIES, () -> {
+                MessageDigest md = Digests.sha256();
+                try (InputStream in = new DigestInputStream(source.open(version, archiveName), md)) {
+                    Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return Digests.toHex(md.digest());
+            });
+
+            String published =
+                    DistrofaceClient.retry(DOWNLOAD_RETRIES, () -> source.publishedSha256(version, archiveName));
+            if (published != null && !published.equals(sha256)) {
+                throw new IOException("Checksum mismatch for " + archiveName + ": expected " + published + " but got "
+                        + sha256);
+            }
+            if (published == null && requireChecksum) {
+                throw new IOException("No published checksum for " + archiveName + " at "
+                        + source.describe(version, ReleaseSource.CHECKSUMS_FILE)
+                        + ", refusing an unverified archive (Require Release Checksums is on)");
+            }
+            if (published == null) {
+                // NOTHING TO CHECK AGAINST: WHATEVER THIS FIRST DOWNLOAD RETURNED IS WHAT EVERY AGENT GETS
+                log.error("[dfcli] No published checksum for " + archiveName + " at "
+                        + source.describe(version, ReleaseSource.CHECKSUMS_FILE) + ". The download is UNVERIFIED and "
+                        + "trusted as sha256 " + sha256 + " from now on. "
+                        + "Enable Require Release Checksums to refuse it");
+            }
+
+            Path target = blob(sha256).toPath();
+            if (!Files.exists(target)) {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return sha256;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private synchronized String[] lookup(String key) throws IOException {
+        String value = loadIndex().getProperty(key);
+        return value != null ? value.split(" ") : null;
+    }
+
+    private synchronized void record(String key, String sha256) throws IOException {
+        Properties index = loadIndex();
+        index.setProperty(key, sha256 + " " + System.currentTimeMillis());
+
+        AtomicFileWriter writer = new AtomicFileWriter(indexFile().toPath(), StandardCharsets.UTF_8);
+        try {
+            index.store(writer, "dfcli binary cache index: <version>/<archive> = <sha256> <fetched-at>");
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    private Properties loadIndex() throws IOException {
+        Properties index = new Properties();
+        File file = indexFile();
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                index.load(reader);
+            }
+        }
+        return index;
+    }
+
+    private File indexFile() {
+        root.mkdirs();
+        return new File(root, "index.properties");
+    }
+}
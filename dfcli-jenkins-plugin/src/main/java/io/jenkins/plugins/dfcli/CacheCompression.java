@@ -0,0 +1,138 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+// CODECS FOR dfCacheSave ARCHIVES. RESTORE DETECTS THE CODEC FROM THE ARCHIVE'S FIRST BYTES, SO ARCHIVES SAVED
+// WITH ANY SETTING (OR BEFORE THERE WERE SETTINGS) RESTORE THE SAME WAY
+final class CacheCompression {
+    static final String GZIP = "gzip";
+    // PLAIN TAR, FOR CONTENT THAT IS ALREADY COMPRESSED THROUGHOUT
+    static final String NONE = "none";
+    static final int DEFAULT_LEVEL = 6;
+
+    private static final int READ_AHEAD_CHUNK = 256 * 1024;
+    private static final int READ_AHEAD_CHUNKS = 8;
+
+    private CacheCompression() {}
+
+    // NORMALIZED CODEC NAME, NULL IF UNKNOWN
+    static String codec(String name) {
+        String codec = name == null || name.trim().isEmpty() ? GZIP : name.trim().toLowerCase(Locale.ROOT);
+        return GZIP.equals(codec) || NONE.equals(codec) ? codec : null;
+    }
+
+    static OutputStream compress(OutputStream out, String codec, int level) {
+        if (NONE.equals(codec)) {
+            return out;
+        }
+        return new ParallelGzipOutputStream(out, level, Runtime.getRuntime().availableProcessors());
+    }
+
+    // TAR BYTES OF AN ARCHIVE IN ANY SUPPORTED CODEC. GZIP IS INFLATED ON ITS OWN THREAD AHEAD OF THE READER, SO
+    // INFLATING AND EXTRACTING TO DISK OVERLAP
+    static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            return new ReadAhead(new GZIPInputStream(buffered, 64 * 1024));
+        }
+        return buffered;
+    }
+
+    // READS source ON A BACKGROUND THREAD INTO A FEW BOUNDED CHUNKS
+    private static final class ReadAhead extends InputStream {
+        private static final byte[] EOF = new byte[0];
+
+        private final InputStream source;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(READ_AHEAD_CHUNKS);
+        private final Thread reader;
+        private volatile IOException failure;
+        private byte[] current;
+        private int pos;
+
+        ReadAhead(InputStream source) {
+            this.source = source;
+            this.reader = new Thread(this::fill, "dfcli-inflate");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void fill() {
+            try {
+                byte[] buf = new byte[READ_AHEAD_CHUNK];
+                int n;
+                while ((n = source.readNBytes(buf, 0, buf.length)) > 0) {
+                    chunks.put(Arrays.copyOf(buf, n));
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                chunks.put(EOF);
+            } catch (InterruptedException e) {
+                // CLOSED BY THE CONSUMER
+            }
+        }
+
+        private boolean next() throws IOException {
+            if (current == EOF) {
+                return false;
+            }
+            if (current == null || pos == current.length) {
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while inflating");
+                }
+                pos = 0;
+                if (current == EOF) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return next() ? current[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.interrupt();
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.remoting.VirtualChannel;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jenkins.MasterToSlaveFileCallable;
+
+// SPLITS A FILE INTO CHUNKS AND MOVES THEM OVER `streams` PARALLEL HTTP CONNECTIONS, RUNNING ON THE AGENT.
+// DOWNLOADS USE RANGE GETS, UPLOADS USE PUT WITH Content-Range. COMPLETED CHUNKS ARE APPENDED TO A JOURNAL
+// NEXT TO THE FILE (<file>.dfjournal) SO AN INTERRUPTED TRANSFER RESUMES WITH THE MISSING CHUNKS ONLY. A DOWNLOAD'S
+// JOURNAL RECORDS THE SERVER'S ETag (OR Last-Modified) AND EVERY RANGE GET SENDS IT AS If-Range, SO A FILE THAT
+// CHANGED ON THE SERVER IS DOWNLOADED AGAIN FROM SCRATCH INSTEAD OF SPLICED FROM TWO VERSIONS
+public class ChunkedTransfer extends MasterToSlaveFileCallable<ChunkedTransfer.Result> {
+    private static final long serialVersionUID = 1L;
+
+    public static final String JOURNAL_SUFFIX = ".dfjournal";
+    public static final String PART_SUFFIX = ".dfpart";
+
+    public enum Direction {
+        UPLOAD,
+        DOWNLOAD
+    }
+
+    private final DistrofaceClient client;
+    private final String url;
+    private final Direction direction;
+    private final long chunkSize;
+    private final int streams;
+    private final boolean resume;
+
+    public ChunkedTransfer(
+            DistrofaceClient client, String url, Direction direction, long chunkSize, int streams, boolean resume) {
+        this.client = client;
+        this.url = url;
+        this.direction = direction;
+        this.chunkSize = Math.max(64 * 1024, chunkSize);
+        this.streams = Math.max(1, streams);
+        this.resume = resume;
+    }
+
+    @Override
+    public Result invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Path file = f.toPath();
+        Path journal = file.resolveSibling(file.getFileName() + JOURNAL_SUFFIX);
+
+        if (direction == Direction.UPLOAD) {
+            if (!Files.isRegularFile(file)) {
+                throw new IOException("No such file to upload: " + file);
+            }
+            long size = Files.size(file);
+            String identity = "upload " + client.resolve(url) + " " + size + " "
+                    + Files.getLastModifiedTime(file).toMillis() + " " + chunkSize;
+            BitSet done = startJournal(journal, identity, resume);
+            int resumed = done.cardinality();
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                run(chunks(size), size, null, done, journal, in);
+            }
+            Files.deleteIfExists(journal);
+            return new Result(size, chunks(size), resumed, System.currentTimeMillis() - start);
+        }
+
+        try {
+            return download(file, journal, start, resume);
+        } catch (ChangedException e) {
+            // WHAT LANDED SO FAR IS FROM AN OLDER VERSION OF THE FILE, START OVER ONCE
+            return download(file, journal, start, false);
+        }
+    }
+
+    private Result download(Path file, Path journal, long start, boolean resume)
+            throws IOException, InterruptedException {
+        Remote remote = remote();
+        long size = remote.size;
+        Path target = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        String identity = "download " + client.resolve(url) + " " + size + " " + chunkSize + " " + remote.validator;
+        // WITHOUT A VALIDATOR THERE IS NO TELLING WHETHER THE FILE CHANGED SINCE THE JOURNAL WAS WRITTEN
+        BitSet done = startJournal(journal, identity, resume && remote.validator != null);
+        int resumed = done.cardinality();
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (out.size() > size) {
+                out.truncate(size);
+            }
+            run(chunks(size), size, remote.validator, done, journal, out);
+        }
+        Files.move(target, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(journal);
+        return new Result(size, chunks(size), resumed, System.currentTimeMillis() - start);
+    }
+
+    private int chunks(long size) {
+        return size <= 0 ? 1 : (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    // CHUNKS ALREADY DONE BY A MATCHING JOURNAL, OR NONE WITH A FRESH JOURNAL STARTED FOR identity
+    private static BitSet startJournal(Path journal, String identity, boolean resume) throws IOException {
+        BitSet done = resume ? readJournal(journal, identity) : new BitSet();
+        if (done.isEmpty()) {
+            Files.write(journal, (identity + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return done;
+    }
+
+    private void run(int chunks, long size, String validator, BitSet done, Path journal, FileChannel data)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(streams, chunks), new NamingThreadFactory(Executors.defaultThreadFactory(), "dfTransfer"));
+        try (BufferedWriter journalOut = Files.newBufferedWriter(
+                journal, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                if (done.get(i)) {
+                    continue;
+                }
+                int index = i;
+                long from = i * chunkSize;
+                long to = Math.min(size, from + chunkSize) - 1;
+                futures.add(pool.submit(() -> {
+                    client.withRetry(() -> {
+                        transferChunk(data, from, to, size, validator);
+                        return null;
+                    });
+                    // ONE LINE PER FINISHED CHUNK, FLUSHED SO A KILLED AGENT STILL KEEPS ITS PROGRESS
+                    synchronized (journalOut) {
+                        journalOut.write(Integer.toString(index));
+                        journalOut.newLine();
+                        journalOut.flush();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Chunk transfer failed", cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void transferChunk(FileChannel data, long from, long to, long size, String validator)
+            throws IOException {
+        if (direction == Direction.DOWNLOAD) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            if (size > 0) {
+                headers.put("Range", "bytes=" + from + "-" + to);
+                if (validator != null) {
+                    headers.put("If-Range", validator);
+                }
+            }
+            HttpURLConnection conn = client.get("GET", url, headers);
+            DistrofaceClient.checkStatus(conn);
+            if (size > 0 && conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                // If-Range ANSWERS WITH THE WHOLE FILE ONCE IT NO LONGER MATCHES
+                if (validator != null) {
+                    conn.disconnect();
+                    throw new ChangedException(conn.getURL() + " changed on the server during the download");
+                }
+                if (from > 0) {
+                    throw new IOException("Server ignored Range request for " + conn.getURL());
+                }
+            }
+            try (InputStream in = conn.getInputStream()) {
+                byte[] buf = new byte[64 * 1024];
+                long pos = from;
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    data.write(ByteBuffer.wrap(buf, 0, n), pos);
+                    pos += n;
+                }
+                if (size > 0 && pos != to + 1) {
+                    throw new IOException("Short read for bytes " + from + "-" + to + " of " + conn.getURL());
+                }
+            }
+            return;
+        }
+
+        HttpURLConnection conn = client.open("PUT", url);
+        conn.setDoOutput(true);
+        long length = Math.max(0, to - from + 1);
+        conn.setFixedLengthStreamingMode(length);
+        conn.setRequestProperty("Content-Type", "application/octet-stream");
+        if (size > 0) {
+            conn.setRequestProperty("Content-Range", "bytes " + from + "-" + to + "/" + size);
+        }
+        try (OutputStream out = conn.getOutputStream()) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            long pos = from;
+            while (pos <= to) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), to - pos + 1));
+                int n = data.read(buf, pos);
+                if (n < 0) {
+                    throw new IOException("File shrank while uploading");
+                }
+                out.write(buf.array(), 0, n);
+                pos += n;
+            }
+        }
+        DistrofaceClient.checkStatus(conn);
+    }
+
+    // SIZE AND VALIDATOR FROM A HEAD: A STRONG ETag, ELSE Last-Modified, ELSE NULL
+    private Remote remote() throws IOException, InterruptedException {
+        return client.withRetry(() -> {
+            HttpURLConnection conn = client.get("HEAD", url, Collections.emptyMap());
+            DistrofaceClient.checkStatus(conn);
+            long length = conn.getContentLengthLong();
+            // WITHOUT A LENGTH OR RANGE SUPPORT FALL BACK TO ONE STREAM FOR THE WHOLE FILE
+            if (length < 0 || !"bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"))) {
+                return new Remote(0L, null);
+            }
+            // If-Range ONLY TAKES STRONG ETags
+            String etag = conn.getHeaderField("ETag");
+            if (etag != null && !etag.startsWith("W/")) {
+                return new Remote(length, etag);
+            }
+            return new Remote(length, conn.getHeaderField("Last-Modified"));
+        });
+    }
+
+    private static class Remote {
+        final long size;
+        final String validator;
+
+        Remote(long size, String validator) {
+            this.size = size;
+            this.validator = validator;
+        }
+    }
+
+    // A 412 SO withRetry DOESN'T RETRY IT: THE SAME REQUEST WOULD ONLY GET THE WHOLE NEW FILE AGAIN
+    private static class ChangedException extends DistrofaceClient.HttpStatusException {
+        private static final long serialVersionUID = 1L;
+
+        ChangedException(String message) {
+            super(HttpURLConnection.HTTP_PRECON_FAILED, message);
+        }
+    }
+
+    // COMPLETED CHUNK INDICES FROM A JOURNAL WRITTEN FOR THE SAME TRANSFER, EMPTY IF IT DOESN'T MATCH
+    private static BitSet readJournal(Path journal, String identity) throws IOException {
+        BitSet done = new BitSet();
+        if (!Files.isRegularFile(journal)) {
+            return done;
+        }
+        List<String> lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(identity)) {
+            return done;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            try {
+                done.set(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException e) {
+                // TORN LAST LINE FROM A KILLED TRANSFER, THAT CHUNK IS JUST REDONE
+            }
+        }
+        return done;
+    }
+
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long bytes;
+        private final int chunks;
+        private final int resumedChunks;
+        private final long millis;
+
+        Result(long bytes, int chunks, int resumedChunks, long millis) {
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.resumedChunks = resumedChunks;
+            this.millis = millis;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getResumedChunks() {
+            return resumedChunks;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.security.ACL;
+import hudson.slaves.WorkspaceList;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.NamingThreadFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+// RUNS A df COMMAND WITHOUT HOLDING A CONTROLLER THREAD: A DETACHED SHELL WRAPPER ON THE AGENT WRITES OUTPUT, EXIT
+// CODE AND A HEARTBEAT INTO A CONTROL DIR, AND THE CONTROLLER POLLS IT FROM THE SHARED TIMER. STATE IS SERIALIZABLE
+// SO A RESTARTED CONTROLLER PICKS UP POLLING WHERE IT LEFT OFF. A WRAPPER THAT DIES WITHOUT AN EXIT CODE (KILLED,
+// AGENT REBOOTED, OR NEVER LAUNCHED BECAUSE THE CONTROLLER RESTARTED FIRST) STOPS BEATING AND FAILS THE STEP
+public class DfAsyncExecution extends StepExecution {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(DfAsyncExecution.class.getName());
+
+    // ENV VAR SET ON THE WRAPPER SO stop() CAN FIND AND KILL THE PROCESS TREE
+    static final String COOKIE_VAR = "DFCLI_STEP_COOKIE";
+    static final String CONTROL_VAR = "DFCLI_CONTROL_DIR";
+
+    private static final long MIN_POLL_MILLIS = 200;
+    private static final long MAX_POLL_MILLIS = 5000;
+    private static final int STDERR_CAPTURE_BYTES = 64 * 1024;
+    // AT MOST THIS MUCH LOG IS COPIED PER POLL SO ONE CHATTY COMMAND CAN'T HOG THE TIMER
+    private static final int MAX_LOG_CHUNK = 1024 * 1024;
+    private static final Pattern LINES = Pattern.compile("\r?\n");
+    // THE WRAPPER TOUCHES heartbeat THIS OFTEN WHILE IT RUNS
+    static final int HEARTBEAT_SECONDS = 3;
+    // NO exit FILE AND NO HEARTBEAT FOR THIS LONG FAILS THE STEP. NOT FINAL SO TESTS CAN SHORTEN IT
+    static long heartbeatStaleMillis = Long.getLong(
+            DfAsyncExecution.class.getName() + ".heartbeatStaleMillis", TimeUnit.MINUTES.toMillis(5));
+    // POLLS THAT KEEP FAILING THIS LONG (OTHER THAN WHILE THE AGENT IS OFFLINE) FAIL THE STEP
+    static long pollFailureLimitMillis = TimeUnit.MINUTES.toMillis(5);
+    // launch() MAY INSTALL dfcli, WAIT ON THE PER-NODE INSTALL AND LOGIN LOCKS, LOG IN AND WAIT FOR THE REMOTE
+    // LAUNCH, SO IT RUNS ON ITS OWN BOUNDED POOL (AS SYSTEM, LIKE Timer) AND THE TIMER ONLY RUNS THE SHORT poll().
+    // LAUNCHES PAST THE BOUND QUEUE
+    static final int MAX_CONCURRENT_LAUNCHES =
+            Integer.getInteger(DfAsyncExecution.class.getName() + ".maxConcurrentLaunches", 16);
+    private static final ExecutorService LAUNCHES = new ImpersonatingExecutorService(launchPool(), ACL.SYSTEM2);
+
+    private final ArrayList<String> args;
+    private final String version;
+    private final HashMap<String, String> properties;
+    private final String cacheKey;
+    private final boolean returnStdout;
+    private final int maxOutputBytes;
+    private final boolean json;
+    private final String server;
+    private final String cookie = UUID.randomUUID().toString();
+
+    private volatile String nodeName;
+    // THE SERVER prepare() PICKED, FOR THE FAILURE MESSAGE AND METRICS
+    private volatile String serverName;
+    private volatile String serverUrl;
+    private volatile String controlDir;
+    private volatile long outOffset;
+    private volatile long errOffset;
+    private volatile boolean retried;
+    private volatile boolean done;
+    // TIMINGS FOR DfCliInvocationListener; startedAt IS WALL CLOCK SO IT SURVIVES A CONTROLLER RESTART
+    private volatile long setupInstallNanos;
+    private volatile long setupLoginNanos;
+    private volatile long spawnNanos;
+    private volatile long startedAtMillis;
+    private transient volatile long pollDelay = MIN_POLL_MILLIS;
+    // WHEN THE CURRENT RUN OF FAILED POLLS STARTED, 0 IF THE LAST POLL WORKED
+    private transient volatile long failingSinceMillis;
+
+    DfAsyncExecution(DfStep step, StepContext context) {
+        super(context);
+        this.args = new ArrayList<>(step.commandArgs());
+        this.version = step.getVersion();
+        this.properties = step.getProperties() != null ? new HashMap<>(step.getProperties()) : null;
+        this.cacheKey = step.getCacheKey();
+        this.returnStdout = step.isReturnStdout();
+        this.maxOutputBytes = step.getMaxOutputBytes();
+        this.json = step.isJson();
+        this.server = step.getServer();
+    }
+
+    private static ExecutorService launchPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                MAX_CONCURRENT_LAUNCHES,
+                MAX_CONCURRENT_LAUNCHES,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(r -> {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    return t;
+                }, "dfcli-async-launch"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        // INSTALL/LOGIN AND THE LAUNCH CAN TAKE A WHILE, SO OFF THE CPS VM THREAD AND OFF THE SHARED TIMER
+        LAUNCHES.submit(this::launch);
+        return false;
+    }
+
+    private void launch() {
+        try {
+            DfCommandRunner runner = DfCommandRunner.prepare(getContext(), server);
+            if (retried) {
+                runner.reloginAfterAuthFailure();
+            }
+            ArgumentListBuilder cmd = runner.buildCommand(args, version, properties, cacheKey);
+            Launcher launcher = runner.getLauncher();
+            FilePath workspace = runner.getWorkspace();
+            Node node = getContext().get(Node.class);
+
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            if (tmp == null) {
+                throw new IOException("Cannot determine a temp dir for workspace " + workspace);
+            }
+            FilePath control = tmp.child("dfcli-" + cookie);
+            control.deleteRecursive();
+            control.mkdirs();
+
+            nodeName = node.getNodeName();
+            serverName = runner.getServer().getName();
+            serverUrl = runner.getServer().getServerUrl();
+            controlDir = control.getRemote();
+            outOffset = 0;
+            errOffset = 0;
+
+            EnvVars env = new EnvVars(runner.getEnv());
+            env.put(COOKIE_VAR, cookie);
+            env.put(CONTROL_VAR, control.getRemote());
+
+            DfCliInvocation setup = runner.takeSetupTiming();
+            if (setup != null) {
+                setupInstallNanos += setup.getNanos(DfCliInvocation.Phase.INSTALL_CHECK);
+                setupLoginNanos += setup.getNanos(DfCliInvocation.Phase.LOGIN);
+            }
+
+            runner.getListener().getLogger().println("DFCli running: " + cmd.toString());
+            long spawnStart = System.nanoTime();
+            // THE WRAPPER DETACHES THE JOB AND RETURNS AT ONCE, SO THIS ONLY WAITS FOR THE JOB TO BE STARTED
+            int started = launcher.launch()
+                    .cmds(wrap(cmd, control, launcher.isUnix()))
+                    .envs(env)
+                    .pwd(workspace)
+                    .quiet(true)
+                    .start()
+                    .join();
+            spawnNanos += System.nanoTime() - spawnStart;
+            if (started != 0) {
+                throw new IOException("Could not start dfcli on " + node.getDisplayName() + ", wrapper exited with "
+                        + started);
+            }
+            startedAtMillis = System.currentTimeMillis();
+            schedulePoll();
+        } catch (Exception e) {
+            finish(e, null);
+        }
+    }
+
+    // THE JOB: A LOOP TOUCHING heartbeat FOR AS LONG AS THE JOB'S SHELL ($$) LIVES, THEN
+    // "$@" >out 2>err; echo $? >exit
+    private static final String UNIX_JOB = "c=\"$" + CONTROL_VAR + "\"; "
+            + "(while kill -0 $$ 2>/dev/null; do touch \"$c/heartbeat\"; sleep " + HEARTBEAT_SECONDS + "; done) & "
+            + "\"$@\" >\"$c/out\" 2>\"$c/err\"; echo $? >\"$c/exit.tmp\"; mv \"$c/exit.tmp\" \"$c/exit\"";
+    // STARTS THE JOB ($0) IN ITS OWN SESSION WHERE setsid EXISTS, IGNORING HANGUPS AND IN THE BACKGROUND, SO IT
+    // OUTLIVES THE LAUNCH AND ISN'T KILLED WITH THE LAUNCHER'S PROCESS TREE. stop() STILL FINDS IT BY ITS COOKIE
+    private static final String UNIX_DETACH =
+            "s=$(command -v setsid); $s nohup sh -c \"$0\" dfcli-wrapper \"$@\" </dev/null >/dev/null 2>&1 &";
+
+    // sh -c UNIX_DETACH UNIX_JOB <cmd> OR EQUIVALENT BATCH FILES ON WINDOWS
+    private static ArgumentListBuilder wrap(ArgumentListBuilder cmd, FilePath control, boolean unix)
+            throws IOException, InterruptedException {
+        ArgumentListBuilder wrapper = new ArgumentListBuilder();
+        if (unix) {
+            wrapper.add("sh", "-c", UNIX_DETACH, UNIX_JOB);
+            wrapper.add(cmd.toList());
+            return wrapper;
+        }
+
+        StringBuilder line = new StringBuilder();
+        for (String arg : cmd.toList()) {
+            line.append('"').append(arg.replace("\"", "\"\"")).append("\" ");
+        }
+        // THE HEARTBEAT LOOP ENDS WITH THE exit FILE OR THE CONTROL DIR, NOT WITH THE JOB: A JOB KILLED ON ITS OWN
+        // IS ONLY NOTICED ONCE ITS AGENT RESTARTS
+        FilePath heartbeat = control.child("heartbeat.bat");
+        heartbeat.write(
+                "@echo off\r\n"
+                        + ":beat\r\n"
+                        + "if exist \"%" + CONTROL_VAR + "%\\exit\" exit /b 0\r\n"
+                        + "if not exist \"%" + CONTROL_VAR + "%\" exit /b 0\r\n"
+                        + "echo.> \"%" + CONTROL_VAR + "%\\heartbeat\"\r\n"
+                        + "ping -n " + (HEARTBEAT_SECONDS + 1) + " 127.0.0.1 > nul\r\n"
+                        + "goto beat\r\n",
+                "UTF-8");
+        FilePath script = control.child("wrapper.bat");
+        script.write(
+                "@echo off\r\n"
+                        + "start \"\" /b cmd.exe /c \"" + heartbeat.getRemote() + "\"\r\n"
+                        + line + "> \"%" + CONTROL_VAR + "%\\out\" 2> \"%" + CONTROL_VAR + "%\\err\"\r\n"
+                        + "echo %ERRORLEVEL% > \"%" + CONTROL_VAR + "%\\exit.tmp\"\r\n"
+                        + "move /y \"%" + CONTROL_VAR + "%\\exit.tmp\" \"%" + CONTROL_VAR + "%\\exit\" > nul\r\n",
+                "UTF-8");
+        wrapper.add("cmd.exe", "/c", "start", "/b", "cmd.exe", "/c");
+        wrapper.add(script.getRemote());
+        return wrapper;
+    }
+
+    private void schedulePoll() {
+        if (done) {
+            return;
+        }
+        Timer.get().schedule(this::poll, pollDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        if (done) {
+            return;
+        }
+        try {
+            FilePath control = controlPath();
+            if (control == null) {
+                if (nodeName != null && !nodeName.isEmpty() && Jenkins.get().getNode(nodeName) == null) {
+                    pollFailed(new IOException("Agent " + nodeName + " no longer exists"));
+                    return;
+                }
+                // AGENT IS OFFLINE OR RECONNECTING, THE WRAPPER KEEPS RUNNING THERE (OR ITS HEARTBEAT GOES STALE)
+                failingSinceMillis = 0;
+                backOff();
+                return;
+            }
+
+            TaskListener listener = getContext().get(TaskListener.class);
+            // JSON STDOUT IS THE RESULT, NOT LOG TEXT, SO ONLY STDERR IS ECHOED
+            boolean progressed = !json && copyLog(control.child("out"), true, listener, false);
+            progressed |= copyLog(control.child("err"), false, listener, false);
+            failingSinceMillis = 0;
+
+            FilePath exitFile = control.child("exit");
+            if (!exitFile.exists()) {
+                if (progressed) {
+                    pollDelay = MIN_POLL_MILLIS;
+                    schedulePoll();
+                    return;
+                }
+                // NEW OUTPUT ALREADY SHOWS IT'S ALIVE, SO THE HEARTBEAT IS ONLY READ WHEN THERE IS NONE
+                long age = control.act(new HeartbeatAge());
+                if (age >= heartbeatStaleMillis && !exitFile.exists()) {
+                    control.deleteRecursive();
+                    finish(new AbortException("dfcli on " + nodeName + " stopped without an exit code (no heartbeat"
+                            + " for over " + TimeUnit.MILLISECONDS.toSeconds(heartbeatStaleMillis)
+                            + " s): its wrapper was killed, the agent restarted, or it never started"), null);
+                    return;
+                }
+                backOff();
+                return;
+            }
+
+            // DRAIN WHATEVER WAS WRITTEN BETWEEN THE LAST COPY AND EXIT
+            while (!json && copyLog(control.child("out"), true, listener, true)) {}
+            while (copyLog(control.child("err"), false, listener, true)) {}
+            complete(control, Integer.parseInt(exitFile.readToString().trim()), listener);
+        } catch (IOException | InterruptedException e) {
+            pollFailed(e);
+        } catch (RuntimeException e) {
+            finish(e, null);
+        }
+    }
+
+    // A FAILED POLL IS RETRIED, BUT ONE THAT KEEPS FAILING FOR pollFailureLimitMillis FAILS THE STEP
+    private void pollFailed(Exception e) {
+        long now = System.currentTimeMillis();
+        if (failingSinceMillis == 0) {
+            failingSinceMillis = now;
+            LOGGER.log(Level.WARNING, "dfcli poll of " + nodeName + ":" + controlDir + " failed, retrying", e);
+        } else if (now - failingSinceMillis >= pollFailureLimitMillis) {
+            finish(new IOException("Lost track of dfcli on " + nodeName + ", polling failed for "
+                    + TimeUnit.MILLISECONDS.toSeconds(now - failingSinceMillis) + " s: " + e.getMessage(), e), null);
+            return;
+        }
+        backOff();
+    }
+
+    // AGE OF THE WRAPPER'S LAST HEARTBEAT BY THE AGENT'S OWN CLOCK, OR OF THE CONTROL DIR IF THERE WAS NONE YET.
+    // Long.MAX_VALUE IF THE CONTROL DIR IS GONE TOO (E.G. THE AGENT'S TEMP DIR WAS WIPED)
+    static class HeartbeatAge extends MasterToSlaveFileCallable<Long> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long invoke(File control, VirtualChannel channel) {
+            File beat = new File(control, "heartbeat");
+            long modified = beat.isFile() ? beat.lastModified() : control.lastModified();
+            return modified > 0 ? Math.max(0, System.currentTimeMillis() - modified) : Long.MAX_VALUE;
+        }
+    }
+
+    private void complete(FilePath control, int exitCode, TaskListener listener)
+            throws IOException, InterruptedException {
+        long execMillis = System.currentTimeMillis() - startedAtMillis;
+        String stderr = read(control.child("err"), STDERR_CAPTURE_BYTES).getText();
+        if (exitCode != 0 && !retried && LoginSessionCache.isAuthFailure(stderr)) {
+            // SESSION WAS REJECTED (EXPIRED OR REVOKED SERVER SIDE), LOGIN AGAIN AND RETRY ONCE
+            listener.getLogger().println("[dfcli] Login session rejected by server, logging in again");
+            retried = true;
+            control.deleteRecursive();
+            pollDelay = MIN_POLL_MILLIS;
+            LAUNCHES.submit(this::launch);
+            return;
+        }
+
+        long outputStart = System.nanoTime();
+        long stdoutBytes = control.child("out").exists() ? control.child("out").length() : 0;
+        if (json && exitCode == 0) {
+            // PARSED ON THE AGENT, ONLY THE RESULTING MAPS/LISTS COME BACK OVER THE CHANNEL
+            Object result = returnStdout
+                    ? control.child("out").act(new JsonResultParser.ParseFile(maxOutputBytes))
+                    : null;
+            control.deleteRecursive();
+            record(exitCode, execMillis, System.nanoTime() - outputStart, stdoutBytes);
+            finish(null, result);
+            return;
+        }
+
+        OutputCapture stdout = returnStdout && !json ? read(control.child("out"), maxOutputBytes) : null;
+        if (stdout != null && stdout.isTruncated()) {
+            listener.getLogger().println("[dfcli] Output was " + stdout.getBytesSeen()
+                    + " bytes, returned value truncated to " + maxOutputBytes + " bytes (see maxOutputBytes)");
+        }
+        control.deleteRecursive();
+        record(exitCode, execMillis, System.nanoTime() - outputStart, stdoutBytes);
+
+        if (exitCode != 0) {
+            DfCliConfig config = DfCliConfig.get();
+            DfServer used = config != null ? config.getServer(serverName) : null;
+            finish(
+                    used != null
+                            ? DfCommandRunner.failure(used, exitCode)
+                            : new IOException("DFCli cmd failed with exit code " + exitCode),
+                    null);
+        } else {
+            finish(null, stdout != null ? stdout.getText().trim() : null);
+        }
+    }
+
+    private void record(int exitCode, long execMillis, long outputNanos, long stdoutBytes) {
+        Run<?, ?> run;
+        try {
+            run = getContext().get(Run.class);
+        } catch (IOException | InterruptedException e) {
+            run = null;
+        }
+        DfCliInvocation invocation = new DfCliInvocation(run, nodeName, serverUrl);
+        invocation.setCommand(args);
+        invocation.add(DfCliInvocation.Phase.INSTALL_CHECK, setupInstallNanos);
+        invocation.add(DfCliInvocation.Phase.LOGIN, setupLoginNanos);
+        invocation.add(DfCliInvocation.Phase.SPAWN, spawnNanos);
+        // POLLING GRANULARITY, SO UP TO ONE POLL INTERVAL LATE
+        invocation.add(DfCliInvocation.Phase.EXEC, TimeUnit.MILLISECONDS.toNanos(execMillis));
+        invocation.add(DfCliInvocation.Phase.OUTPUT, outputNanos);
+        invocation.addStdoutBytes(stdoutBytes);
+        invocation.setExitCode(exitCode);
+        DfCliInvocationListener.fireCompleted(invocation);
+    }
+
+    // APPEND NEW BYTES OF out/err TO THE BUILD LOG, RETURNS TRUE IF ANYTHING WAS COPIED. err GOES TO THE ERROR
+    // CHANNEL A WHOLE LINE AT A TIME, SO UNLESS THE COMMAND ended A LINE STILL BEING WRITTEN WAITS FOR THE NEXT POLL
+    private boolean copyLog(FilePath file, boolean isOut, TaskListener listener, boolean ended)
+            throws IOException, InterruptedException {
+        if (!file.exists()) {
+            return false;
+        }
+        long offset = isOut ? outOffset : errOffset;
+        long length = file.length();
+        if (length <= offset) {
+            return false;
+        }
+        PrintStream log = listener.getLogger();
+        ByteArrayOutputStream err = isOut ? null : new ByteArrayOutputStream();
+        long copied = 0;
+        try (InputStream in = file.readFromOffset(offset)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while (copied < MAX_LOG_CHUNK
+                    && (n = in.read(buf, 0, (int) Math.min(buf.length, length - offset - copied))) > 0) {
+                if (isOut) {
+                    log.write(buf, 0, n);
+                } else {
+                    err.write(buf, 0, n);
+                }
+                copied += n;
+            }
+        }
+        if (!isOut) {
+            byte[] bytes = err.toByteArray();
+            if (!ended && copied < MAX_LOG_CHUNK) {
+                copied = lastIndexOf(bytes, (byte) '\n') + 1;
+            }
+            if (copied > 0) {
+                for (String line : LINES.split(new String(bytes, 0, (int) copied, StandardCharsets.UTF_8))) {
+                    listener.error(line);
+                }
+            }
+        }
+        log.flush();
+        if (isOut) {
+            outOffset = offset + copied;
+        } else {
+            errOffset = offset + copied;
+        }
+        return copied > 0;
+    }
+
+    private static int lastIndexOf(byte[] b, byte value) {
+        for (int i = b.length - 1; i >= 0; i--) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static OutputCapture read(FilePath file, long limit) throws IOException, InterruptedException {
+        OutputCapture capture = new OutputCapture(null, limit);
+        if (file.exists()) {
+            try (InputStream in = file.read()) {
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buf)) != -1 && !capture.isTruncated()) {
+                    capture.write(buf, 0, n);
+                }
+            }
+        }
+        capture.close();
+        return capture;
+    }
+
+    private FilePath controlPath() {
+        if (controlDir == null || nodeName == null) {
+            return null;
+        }
+        Node node = nodeName.isEmpty() ? Jenkins.get() : Jenkins.get().getNode(nodeName);
+        if (node == null) {
+            return null;
+        }
+        Computer computer = node.toComputer();
+        if (computer == null || computer.isOffline()) {
+            return null;
+        }
+        return node.createPath(controlDir);
+    }
+
+    private void backOff() {
+        pollDelay = Math.min(MAX_POLL_MILLIS, (long) (pollDelay * 1.5));
+        schedulePoll();
+    }
+
+    private synchronized void finish(Throwable failure, Object result) {
+        if (done) {
+            return;
+        }
+        done = true;
+        if (failure != null) {
+            getContext().onFailure(failure);
+        } else {
+            getContext().onSuccess(result);
+        }
+    }
+
+    @Override
+    public void stop(Throwable cause) throws Exception {
+        try {
+            Launcher launcher = getContext().get(Launcher.class);
+            if (launcher != null) {
+                Map<String, String> cookieVars = Collections.singletonMap(COOKIE_VAR, cookie);
+                launcher.kill(cookieVars);
+            }
+            FilePath control = controlPath();
+            if (control != null) {
+                control.deleteRecursive();
+            }
+        } finally {
+            finish(cause, null);
+        }
+    }
+
+    @Override
+    public void onResume() {
+        pollDelay = MIN_POLL_MILLIS;
+        if (done) {
+            return;
+        }
+        if (controlDir == null) {
+            // RESTARTED BEFORE THE CONTROL DIR WAS MADE, NOTHING IS RUNNING YET
+            LAUNCHES.submit(this::launch);
+        } else {
+            // IF THE RESTART CAME BETWEEN MAKING THE CONTROL DIR AND LAUNCHING, NOTHING EVER BEATS AND POLLING FAILS
+            // THE STEP ONCE THE DIR IS heartbeatStaleMillis OLD. RUNNING IT AGAIN COULD RUN IT TWICE
+            schedulePoll();
+        }
+    }
+
+    @Override
+    public String getStatus() {
+        if (done) {
+            return "completed";
+        }
+        return controlDir == null ? "launching dfcli" : "waiting for dfcli in " + nodeName + ":" + controlDir;
+    }
+}
@@ -0,0 +1,287 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.NamingThreadFactory;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// RUNS MANY dfcli COMMANDS IN ONE STEP, SHARING ONE INSTALL/LOGIN AND A BOUNDED WORKER POOL
+public class DfBatchStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_MAX_OUTPUT_BYTES = 1024 * 1024;
+
+    // EACH ENTRY IS A COMMAND STRING OR A MAP WITH command/version/properties/cacheKey. A command (OR THE WHOLE
+    // ENTRY) CAN ALSO BE A LIST OF ARGS, WHICH IS USED AS-IS INSTEAD OF BEING SPLIT ON WHITESPACE
+    private final List<Object> commands;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private boolean failFast = true;
+    private int maxOutputBytes = DEFAULT_MAX_OUTPUT_BYTES;
+    private String verbosity;
+    private String rawLog;
+
+    @DataBoundConstructor
+    public DfBatchStep(List<Object> commands) {
+        this.commands = commands;
+    }
+
+    public List<Object> getCommands() {
+        return commands;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public int getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    public String getVerbosity() {
+        return verbosity;
+    }
+
+    public String getRawLog() {
+        return rawLog;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    @DataBoundSetter
+    public void setMaxOutputBytes(int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    // AS FOR df: full, summary OR quiet, AND WHERE THE COMPLETE OUTPUT OF ALL COMMANDS GOES
+    @DataBoundSetter
+    public void setVerbosity(String verbosity) {
+        this.verbosity = verbosity;
+    }
+
+    @DataBoundSetter
+    public void setRawLog(String rawLog) {
+        this.rawLog = rawLog;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    static class BatchCommand {
+        final String command;
+        final List<String> args;
+        final String version;
+        final Map<String, String> properties;
+        final String cacheKey;
+
+        BatchCommand(Object command, String version, Map<String, String> properties, String cacheKey) {
+            if (command instanceof List) {
+                List<String> list = new ArrayList<>();
+                for (Object arg : (List<?>) command) {
+                    list.add(String.valueOf(arg));
+                }
+                this.args = list;
+                this.command = String.join(" ", list);
+            } else {
+                this.command = command.toString();
+                this.args = DfCommandRunner.tokenize(this.command);
+            }
+            this.version = version;
+            this.properties = properties;
+            this.cacheKey = cacheKey;
+        }
+
+        static BatchCommand parse(Object entry) throws AbortException {
+            if (entry instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) entry;
+                Object command = map.get("command");
+                if (command == null) {
+                    throw new AbortException("dfBatch entry is missing 'command': " + map);
+                }
+                Map<String, String> properties = null;
+                Object props = map.get("properties");
+                if (props instanceof Map) {
+                    properties = new LinkedHashMap<>();
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>) props).entrySet()) {
+                        properties.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+                    }
+                }
+                return new BatchCommand(
+                        command, stringOrNull(map.get("version")), properties, stringOrNull(map.get("cacheKey")));
+            }
+            if (entry == null) {
+                throw new AbortException("dfBatch entries must not be null");
+            }
+            return new BatchCommand(entry, null, null, null);
+        }
+
+        private static String stringOrNull(Object o) {
+            return o != null ? o.toString() : null;
+        }
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<List<Map<String, Object>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Object> commands;
+        private final transient int parallelism;
+        private final transient boolean failFast;
+        private final transient int maxOutputBytes;
+        private final transient String verbosity;
+        private final transient String rawLog;
+
+        protected Execution(DfBatchStep step, StepContext ctx) {
+            super(ctx);
+            this.commands = step.getCommands();
+            this.parallelism = step.getParallelism();
+            this.failFast = step.isFailFast();
+            this.maxOutputBytes = step.getMaxOutputBytes();
+            this.verbosity = step.getVerbosity();
+            this.rawLog = step.getRawLog();
+        }
+
+        @Override
+        protected List<Map<String, Object>> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            List<BatchCommand> batch = new ArrayList<>();
+            if (commands != null) {
+                for (Object entry : commands) {
+                    batch.add(BatchCommand.parse(entry));
+                }
+            }
+            if (batch.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            // INSTALL + LOGIN ONCE FOR THE WHOLE BATCH
+            DfCommandRunner runner = DfCommandRunner.prepare(getContext());
+
+            int workers = Math.max(1, Math.min(parallelism, batch.size()));
+            listener.getLogger().println("[dfcli] Running " + batch.size() + " commands with " + workers
+                    + " workers (" + (failFast ? "fail-fast" : "collect-all") + ")");
+
+            AtomicBoolean failed = new AtomicBoolean();
+            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            DfConsole console = runner.openConsole(verbosity, rawLog);
+            ExecutorService pool = Executors.newFixedThreadPool(
+                    workers, new NamingThreadFactory(Executors.defaultThreadFactory(), "dfBatch"));
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    BatchCommand entry = batch.get(i);
+                    String prefix = "[" + (i + 1) + "/" + batch.size() + "] ";
+                    futures.add(pool.submit(() -> runOne(runner, entry, prefix, failed)));
+                }
+
+                List<Map<String, Object>> results = new ArrayList<>();
+                for (Future<Map<String, Object>> future : futures) {
+                    try {
+                        results.add(future.get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Exception) {
+                            throw (Exception) cause;
+                        }
+                        throw e;
+                    }
+                }
+
+                long failures = results.stream()
+                        .filter(r -> !"SUCCESS".equals(r.get("status")))
+                        .count();
+                listener.getLogger().println("[dfcli] Batch finished: " + (results.size() - failures)
+                        + " succeeded, " + failures + " failed or skipped");
+                if (failFast && failed.get()) {
+                    for (Map<String, Object> r : results) {
+                        if ("FAILED".equals(r.get("status"))) {
+                            throw new AbortException(
+                                    "dfBatch command failed with exit code " + r.get("exitCode") + ": " + r.get("command"));
+                        }
+                    }
+                }
+                return results;
+            } finally {
+                pool.shutdownNow();
+                console.close();
+            }
+        }
+
+        private Map<String, Object> runOne(DfCommandRunner runner, BatchCommand entry, String prefix, AtomicBoolean failed)
+                throws Exception {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("command", entry.command);
+
+            // FAIL-FAST: DON'T START ANYTHING NEW ONCE SOMETHING FAILED
+            if (failFast && failed.get()) {
+                result.put("status", "SKIPPED");
+                result.put("exitCode", null);
+                result.put("stdout", null);
+                return result;
+            }
+
+            ArgumentListBuilder cmd = runner.buildCommand(entry.args, entry.version, entry.properties, entry.cacheKey);
+            DfCommandRunner.Result run = runner.run(cmd, maxOutputBytes, prefix);
+            if (run.getExitCode() != 0) {
+                failed.set(true);
+            }
+            result.put("status", run.getExitCode() == 0 ? "SUCCESS" : "FAILED");
+            result.put("exitCode", run.getExitCode());
+            result.put("stdout", run.getStdout());
+            return result;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfBatch";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Run many dfcli Commands (Shared Login, Parallel Workers)";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, Launcher.class, EnvVars.class, FilePath.class, Node.class);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// RESTORES A CACHED WORKSPACE ARCHIVE BY KEY: FROM THE AGENT'S LOCAL CACHE IF IT HAS IT (OR AN ENTRY MATCHING ONE
+// OF restoreKeys), OTHERWISE FROM THE SERVER, KEEPING A COPY ON THE AGENT FOR NEXT TIME
+public class DfCacheRestoreStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // ARTIFACT NAME THE ARCHIVE IS STORED UNDER ON THE SERVER
+    public static final String DEFAULT_NAME = "cache.tar.gz";
+
+    private final String repo;
+    private String name = DEFAULT_NAME;
+    private String version;
+    private Map<String, String> properties;
+    private String cacheKey;
+    private List<String> restoreKeys;
+
+    @DataBoundConstructor
+    public DfCacheRestoreStep(String repo) {
+        this.repo = repo;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public List<String> getRestoreKeys() {
+        return restoreKeys;
+    }
+
+    @DataBoundSetter
+    public void setName(String name) {
+        this.name = name == null || name.trim().isEmpty() ? DEFAULT_NAME : name.trim();
+    }
+
+    @DataBoundSetter
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    @DataBoundSetter
+    public void setProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    @DataBoundSetter
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    // VERSION PREFIXES TRIED IN ORDER AGAINST THE AGENT CACHE WHEN THE EXACT KEY MISSES
+    @DataBoundSetter
+    public void setRestoreKeys(List<String> restoreKeys) {
+        this.restoreKeys = restoreKeys;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient DfCacheRestoreStep step;
+
+        protected Execution(DfCacheRestoreStep step, StepContext ctx) {
+            super(ctx);
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            FilePath workspace = getContext().get(FilePath.class);
+            Node node = getContext().get(Node.class);
+
+            String key = DfCommandRunner.resolveCacheKey(step.getVersion(), step.getProperties(), step.getCacheKey());
+            if (step.getRepo() == null || step.getRepo().trim().isEmpty() || key == null) {
+                throw new AbortException("dfCacheRestore needs 'repo' and a 'version' or 'cacheKey'");
+            }
+            DfCliConfig config = DfCliConfig.get();
+            if (config == null) {
+                throw new IOException("DFCli global config not found");
+            }
+            long maxBytes = config.getAgentCacheSizeMb() * 1024L * 1024L;
+            FilePath cacheDir = AgentArtifactCache.dirFor(node, maxBytes);
+            String entry = AgentArtifactCache.entryKey(step.getRepo(), step.getName(), key);
+
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            if (tmp == null) {
+                throw new IOException("Cannot determine a temp dir for workspace " + workspace);
+            }
+            FilePath staging = tmp.child("dfcli-cache-" + UUID.randomUUID());
+            FilePath archive = staging.child(step.getName());
+            try {
+                if (cacheDir != null) {
+                    String matched = cacheDir.act(new AgentArtifactCache.Lookup(entry,
+                            AgentArtifactCache.keyPrefixes(step.getRepo(), step.getName(), step.getRestoreKeys()),
+                            archive.getRemote()));
+                    if (matched != null) {
+                        workspace.act(new AgentArtifactCache.Unpack(archive.getRemote(), null, null, 0));
+                        if (config.isPeerCacheSharing()) {
+                            PeerCache.record(matched, node);
+                        }
+                        listener.getLogger().println("[dfcli] Restored " + plain(matched) + " from the agent cache");
+                        logStats(cacheDir, listener);
+                        return result("agent", plain(matched));
+                    }
+                }
+
+                if (cacheDir != null && config.isPeerCacheSharing()) {
+                    return restoreShared(entry, node, cacheDir, staging, archive, maxBytes, listener);
+                }
+                return fromServer(entry, cacheDir, staging, archive, maxBytes, listener)
+                        ? result("server", key)
+                        : result(null, null);
+            } finally {
+                staging.deleteRecursive();
+            }
+        }
+
+        // PEERS FIRST, THEN THE SERVER, WHICH ONLY ONE RESTORE OF THE KEY AT A TIME DOWNLOADS FROM. THE OTHERS WAIT
+        // FOR IT AND COPY FROM ITS AGENT, OR FIND IT IN THEIR OWN CACHE WHEN THEY SHARE THAT AGENT
+        private Map<String, Object> restoreShared(String entry, Node node, FilePath cacheDir, FilePath staging,
+                FilePath archive, long maxBytes, TaskListener listener) throws Exception {
+            if (fromPeer(entry, node, cacheDir, archive, maxBytes, listener)) {
+                return result("peer", plain(entry));
+            }
+            try (PeerCache.Flight flight = PeerCache.join(entry)) {
+                if (flight.isLeader()) {
+                    // A LEADING RESTORE THAT STARTED AFTER THE PREVIOUS ONE FINISHED LOOKS AGAIN BEFORE DOWNLOADING
+                    if (fromAgent(entry, cacheDir, archive, listener)) {
+                        flight.complete(true);
+                        return result("agent", plain(entry));
+                    }
+                    if (fromPeer(entry, node, cacheDir, archive, maxBytes, listener)) {
+                        flight.complete(true);
+                        return result("peer", plain(entry));
+                    }
+                    boolean found = fromServer(entry, cacheDir, staging, archive, maxBytes, listener);
+                    if (found) {
+                        PeerCache.record(entry, node);
+                    }
+                    flight.complete(found);
+                    return found ? result("server", plain(entry)) : result(null, null);
+                }
+
+                listener.getLogger().println(
+                        "[dfcli] Another restore is downloading " + plain(entry) + ", waiting for it");
+                Boolean found = flight.await();
+                if (Boolean.FALSE.equals(found)) {
+                    listener.getLogger().println("[dfcli] Cache miss for " + plain(entry));
+                    return result(null, null);
+                }
+                if (Boolean.TRUE.equals(found)) {
+                    if (fromAgent(entry, cacheDir, archive, listener)) {
+                        return result("agent", plain(entry));
+                    }
+                    if (fromPeer(entry, node, cacheDir, archive, maxBytes, listener)) {
+                        return result("peer", plain(entry));
+                    }
+                }
+            }
+            // THE OTHER RESTORE FAILED OR ITS AGENT WENT AWAY
+            boolean found = fromServer(entry, cacheDir, staging, archive, maxBytes, listener);
+            if (found) {
+                PeerCache.record(entry, node);
+            }
+            return found ? result("server", plain(entry)) : result(null, null);
+        }
+
+        // THE CACHE KEY OF AN ENTRY FOR THIS STEP'S repo AND name
+        private String plain(String entry) {
+            return AgentArtifactCache.cacheKey(step.getRepo(), step.getName(), entry);
+        }
+
+        // EXACTLY entry FROM THIS AGENT'S CACHE, WHERE A RESTORE ON THE SAME AGENT MAY HAVE JUST PUT IT
+        private boolean fromAgent(String entry, FilePath cacheDir, FilePath archive, TaskListener listener)
+                throws Exception {
+            if (cacheDir.act(new AgentArtifactCache.Lookup(entry, null, archive.getRemote())) == null) {
+                return false;
+            }
+            getContext().get(FilePath.class).act(new AgentArtifactCache.Unpack(archive.getRemote(), null, null, 0));
+            listener.getLogger().println("[dfcli] Restored " + plain(entry) + " from the agent cache");
+            logStats(cacheDir, listener);
+            return true;
+        }
+
+        private boolean fromPeer(String entry, Node node, FilePath cacheDir, FilePath archive, long maxBytes,
+                TaskListener listener) throws Exception {
+            String peer = PeerCache.fetch(entry, node, archive, maxBytes, listener);
+            if (peer == null) {
+                return false;
+            }
+            getContext().get(FilePath.class).act(
+                    new AgentArtifactCache.Unpack(archive.getRemote(), cacheDir.getRemote(), entry, maxBytes));
+            PeerCache.record(entry, node);
+            listener.getLogger().println("[dfcli] Restored " + plain(entry) + " from " + peer);
+            logStats(cacheDir, listener);
+            return true;
+        }
+
+        // ASKS THE SERVER FOR THE EXACT KEY, FALSE ON A MISS
+        private boolean fromServer(String entry, FilePath cacheDir, FilePath staging, FilePath archive, long maxBytes,
+                TaskListener listener) throws Exception {
+            DfCommandRunner runner = DfCommandRunner.prepare(getContext());
+            List<String> args = List.of("artifact", "download", step.getRepo(), step.getName(), archive.getRemote());
+            staging.mkdirs();
+            ArgumentListBuilder cmd =
+                    runner.buildCommand(args, step.getVersion(), step.getProperties(), step.getCacheKey());
+            DfCommandRunner.Result download = runner.run(cmd, 0, "");
+            if (download.getExitCode() != 0 || !archive.exists()) {
+                // A CACHE MISS IS NOT A BUILD FAILURE
+                listener.getLogger().println("[dfcli] Cache miss for " + plain(entry));
+                return false;
+            }
+
+            getContext().get(FilePath.class).act(new AgentArtifactCache.Unpack(
+                    archive.getRemote(), cacheDir != null ? cacheDir.getRemote() : null, entry, maxBytes));
+            listener.getLogger().println("[dfcli] Restored " + plain(entry) + " from the server");
+            if (cacheDir != null) {
+                logStats(cacheDir, listener);
+            }
+            return true;
+        }
+
+        private static Map<String, Object> result(String source, String key) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("hit", source != null);
+            out.put("source", source);
+            out.put("key", key);
+            return out;
+        }
+    }
+
+    static void logStats(FilePath cacheDir, TaskListener listener) throws IOException, InterruptedException {
+        listener.getLogger().println("[dfcli] Agent cache: " + AgentArtifactCache.describe(
+                cacheDir.act(new AgentArtifactCache.Stats())));
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfCacheRestore";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Restore a Cached Workspace Archive (Agent Cache, Then Distroface)";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, Launcher.class, EnvVars.class, FilePath.class, Node.class);
+        }
+    }
+}
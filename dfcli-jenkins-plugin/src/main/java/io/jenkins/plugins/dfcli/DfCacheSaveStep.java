@@ -0,0 +1,250 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// ARCHIVES WORKSPACE FILES UNDER A CACHE KEY, UPLOADS THE ARCHIVE AND KEEPS IT IN THE AGENT'S LOCAL CACHE
+public class DfCacheSaveStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String repo;
+    private final String includes;
+    private String excludes;
+    private String name = DfCacheRestoreStep.DEFAULT_NAME;
+    private String version;
+    private Map<String, String> properties;
+    private String cacheKey;
+    private boolean upload = true;
+    private String compression = CacheCompression.GZIP;
+    private int compressionLevel = CacheCompression.DEFAULT_LEVEL;
+
+    @DataBoundConstructor
+    public DfCacheSaveStep(String repo, String includes) {
+        this.repo = repo;
+        this.includes = includes;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public String getIncludes() {
+        return includes;
+    }
+
+    public String getExcludes() {
+        return excludes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public boolean isUpload() {
+        return upload;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    @DataBoundSetter
+    public void setExcludes(String excludes) {
+        this.excludes = excludes;
+    }
+
+    @DataBoundSetter
+    public void setName(String name) {
+        this.name = name == null || name.trim().isEmpty() ? DfCacheRestoreStep.DEFAULT_NAME : name.trim();
+    }
+
+    @DataBoundSetter
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    @DataBoundSetter
+    public void setProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    @DataBoundSetter
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    // FALSE KEEPS THE ARCHIVE ON THIS AGENT ONLY
+    @DataBoundSetter
+    public void setUpload(boolean upload) {
+        this.upload = upload;
+    }
+
+    // gzip (DEFAULT, PARALLEL, STORES BLOCKS THAT DON'T SHRINK) OR none (PLAIN TAR). dfCacheRestore DETECTS IT
+    @DataBoundSetter
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    // 0 (STORE) TO 9 (SMALLEST), 1 IS FASTEST
+    @DataBoundSetter
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient DfCacheSaveStep step;
+
+        protected Execution(DfCacheSaveStep step, StepContext ctx) {
+            super(ctx);
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            FilePath workspace = getContext().get(FilePath.class);
+            Node node = getContext().get(Node.class);
+
+            String key = DfCommandRunner.resolveCacheKey(step.getVersion(), step.getProperties(), step.getCacheKey());
+            if (step.getRepo() == null || step.getRepo().trim().isEmpty() || key == null) {
+                throw new AbortException("dfCacheSave needs 'repo' and a 'version' or 'cacheKey'");
+            }
+            if (step.getIncludes() == null || step.getIncludes().trim().isEmpty()) {
+                throw new AbortException("dfCacheSave needs 'includes'");
+            }
+            String codec = CacheCompression.codec(step.getCompression());
+            if (codec == null) {
+                throw new AbortException(
+                        "dfCacheSave compression must be 'gzip' or 'none', got: " + step.getCompression());
+            }
+            if (step.getCompressionLevel() < 0 || step.getCompressionLevel() > 9) {
+                throw new AbortException(
+                        "dfCacheSave compressionLevel must be 0-9, got: " + step.getCompressionLevel());
+            }
+            DfCliConfig config = DfCliConfig.get();
+            if (config == null) {
+                throw new IOException("DFCli global config not found");
+            }
+            long maxBytes = config.getAgentCacheSizeMb() * 1024L * 1024L;
+            FilePath cacheDir = AgentArtifactCache.dirFor(node, maxBytes);
+            String entry = AgentArtifactCache.entryKey(step.getRepo(), step.getName(), key);
+
+            // KEYS ARE IMMUTABLE, SO A LOCAL-ONLY SAVE OF A KEY THIS AGENT ALREADY HOLDS HAS NOTHING TO DO. AN
+            // UPLOADING SAVE STILL RUNS: THE ENTRY MAY COME FROM AN EARLIER upload: false SAVE
+            if (!step.isUpload() && cacheDir != null && cacheDir.act(new AgentArtifactCache.Contains(entry))) {
+                listener.getLogger().println("[dfcli] " + key + " is already cached, skipping save");
+                return result(key, 0, false);
+            }
+
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            if (tmp == null) {
+                throw new IOException("Cannot determine a temp dir for workspace " + workspace);
+            }
+            FilePath staging = tmp.child("dfcli-cache-" + UUID.randomUUID());
+            FilePath archive = staging.child(step.getName());
+            try {
+                int level = step.getCompressionLevel();
+                AgentArtifactCache.Packed packed = workspace.act(new AgentArtifactCache.Pack(
+                        step.getIncludes(), step.getExcludes(), archive.getRemote(), codec, level));
+                long bytes = packed.getBytes();
+                String how = CacheCompression.NONE.equals(codec)
+                        ? codec
+                        : codec + " level " + level + ", " + packed.getStoredBlocks() + " incompressible blocks stored";
+                listener.getLogger().println("[dfcli] Packed " + step.getIncludes() + " into " + bytes + " bytes ("
+                        + packed.getTarBytes() + " uncompressed, " + how + ")");
+
+                if (step.isUpload()) {
+                    DfCommandRunner runner = DfCommandRunner.prepare(getContext());
+                    List<String> args = List.of("artifact", "upload", step.getRepo(), archive.getRemote());
+                    ArgumentListBuilder cmd =
+                            runner.buildCommand(args, step.getVersion(), step.getProperties(), step.getCacheKey());
+                    DfCommandRunner.Result result = runner.run(cmd, 0, "");
+                    if (result.getExitCode() != 0) {
+                        throw runner.failure(result.getExitCode());
+                    }
+                }
+
+                if (cacheDir != null) {
+                    archive.act(new AgentArtifactCache.Store(cacheDir.getRemote(), entry, maxBytes));
+                    if (config.isPeerCacheSharing()) {
+                        PeerCache.record(entry, node);
+                    }
+                    DfCacheRestoreStep.logStats(cacheDir, listener);
+                }
+                return result(key, bytes, step.isUpload());
+            } finally {
+                staging.deleteRecursive();
+            }
+        }
+
+        private static Map<String, Object> result(String key, long bytes, boolean uploaded) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("key", key);
+            out.put("bytes", bytes);
+            out.put("uploaded", uploaded);
+            return out;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfCacheSave";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Save Workspace Files as a Cached Archive (Distroface + Agent Cache)";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, Launcher.class, EnvVars.class, FilePath.class, Node.class);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.Extension;
+import hudson.model.Run;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import jenkins.model.RunAction2;
+
+// PER BUILD SUMMARY OF dfcli TIME, SHOWN ON THE BUILD PAGE AND SAVED WITH THE BUILD
+public class DfCliBuildAction implements RunAction2 {
+    private transient Run<?, ?> run;
+    private int invocations;
+    private int failures;
+    private long stdoutBytes;
+    private long totalMillis;
+    // PHASE NAME -> TOTAL ms
+    private final TreeMap<String, Long> phaseMillis = new TreeMap<>();
+    // SUBCOMMAND -> COUNT
+    private final TreeMap<String, Integer> commands = new TreeMap<>();
+
+    synchronized void record(DfCliInvocation invocation) {
+        invocations++;
+        if (invocation.getExitCode() != 0) {
+            failures++;
+        }
+        stdoutBytes += invocation.getStdoutBytes();
+        totalMillis += invocation.getTotalNanos() / 1_000_000;
+        for (DfCliInvocation.Phase phase : DfCliInvocation.Phase.values()) {
+            phaseMillis.merge(phase.name().toLowerCase(Locale.ROOT), invocation.getMillis(phase), Long::sum);
+        }
+        commands.merge(DfCliInvocation.boundedKey(commands, invocation.getCommand()), 1, Integer::sum);
+    }
+
+    public synchronized int getInvocations() {
+        return invocations;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    public synchronized long getStdoutBytes() {
+        return stdoutBytes;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized Map<String, Long> getPhaseMillis() {
+        return new TreeMap<>(phaseMillis);
+    }
+
+    public synchronized Map<String, Integer> getCommands() {
+        return new TreeMap<>(commands);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DFCli Summary";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    // ATTACHES/UPDATES THE ACTION OF THE BUILD AN INVOCATION RAN IN; THE BUILD SAVES IT WHEN IT COMPLETES
+    @Extension
+    public static class Recorder extends DfCliInvocationListener {
+        @Override
+        public void onCompleted(DfCliInvocation invocation) {
+            Run<?, ?> run = invocation.getRun();
+            if (run == null) {
+                return;
+            }
+            DfCliBuildAction action;
+            synchronized (run) {
+                action = run.getAction(DfCliBuildAction.class);
+                if (action == null) {
+                    action = new DfCliBuildAction();
+                    run.addAction(action);
+                }
+            }
+            action.record(invocation);
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package io.jenkins.plugins.dfcli;
 
 import hudson.Extension;
+import hudson.Util;
+import hudson.util.ListBoxModel;
 import hudson.util.Secret;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import jenkins.model.GlobalConfiguration;
+import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.verb.POST;
 
 @Extension
 public class DfCliConfig extends GlobalConfiguration {
@@ -12,11 +21,55 @@ public class DfCliConfig extends GlobalConfiguration {
     private String username;
     private Secret password;
     private Secret token;
+    private String credentialsId;
+    private Integer loginSessionTtlMinutes;
+    private boolean loginSecretsOnStdin;
+
+    // MORE SERVERS (E.G. REGIONAL MIRRORS) AND HOW A NODE PICKS ONE, SEE DfServerSelector
+    private List<DfServer> servers;
+    private String serverSelection;
+
+    // AUTO INSTALL SETTINGS
+    private String cliVersion;
+    private String releaseSource;
+    private String mirrorDirectory;
+    private boolean requireReleaseChecksums;
+    private boolean preProvision;
+    private boolean preProvisionLogin;
+
+    // AGENT SIDE ARTIFACT CACHE (dfCacheSave/dfCacheRestore), OPTIONALLY SHARED BETWEEN AGENTS (SEE PeerCache)
+    private Integer agentCacheSizeMb;
+    private boolean peerCacheSharing;
+
+    // OPT-IN AGENT SIDE dfcli WORKER (SEE DfCliWorker)
+    private boolean persistentWorker;
+    private Integer workerIdleTimeoutSeconds;
+
+    // HOW MUCH dfcli OUTPUT GOES TO BUILD LOGS, SEE DfConsole
+    private String verbosity;
+
+    public static final int DEFAULT_LOGIN_SESSION_TTL_MINUTES = 30;
+    public static final String SELECT_FIRST = "first";
+    public static final String SELECT_LATENCY = "latency";
+    public static final String SELECT_ROUND_ROBIN = "roundRobin";
+    public static final int DEFAULT_AGENT_CACHE_SIZE_MB = 2048;
+    public static final int DEFAULT_WORKER_IDLE_TIMEOUT_SECONDS = 300;
 
     public DfCliConfig() {
         load();
     }
 
+    @Override
+    public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+        // AN EMPTY REPEATABLE LIST IS LEFT OUT OF THE FORM, SO CLEAR IT FIRST OR REMOVING THE LAST SERVER WON'T STICK
+        servers = null;
+        // SETTERS DON'T SAVE, SO THE WHOLE FORM IS ONE WRITE. JCasC SAVES ONCE TOO, WHEN ITS BulkChange AROUND THE
+        // SETTERS COMMITS
+        req.bindJSON(this, json);
+        save();
+        return true;
+    }
+
     public String getServerUrl() {
         return serverUrl;
     }
@@ -24,7 +77,6 @@ public class DfCliConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setServerUrl(String url) {
         this.serverUrl = url;
-        save();
     }
 
     public String getUsername() {
@@ -34,7 +86,6 @@ public class DfCliConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setUsername(String username) {
         this.username = username;
-        save();
     }
 
     public Secret getPassword() {
@@ -44,7 +95,6 @@ public class DfCliConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setPassword(Secret password) {
         this.password = password;
-        save();
     }
 
     public Secret getToken() {
@@ -54,7 +104,224 @@ public class DfCliConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setToken(Secret token) {
         this.token = token;
-        save();
+    }
+
+    // USERNAME/PASSWORD OR SECRET TEXT CREDENTIALS FOR THE DEFAULT SERVER, TAKING PRECEDENCE OVER THE FIELDS ABOVE
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    @DataBoundSetter
+    public void setCredentialsId(String credentialsId) {
+        this.credentialsId = Util.fixEmptyAndTrim(credentialsId);
+    }
+
+    // MINUTES A NODE'S dfcli LOGIN IS REUSED BEFORE LOGGING IN AGAIN, 0 LOGS IN ON EVERY STEP
+    public int getLoginSessionTtlMinutes() {
+        return loginSessionTtlMinutes != null ? loginSessionTtlMinutes : DEFAULT_LOGIN_SESSION_TTL_MINUTES;
+    }
+
+    @DataBoundSetter
+    public void setLoginSessionTtlMinutes(int loginSessionTtlMinutes) {
+        this.loginSessionTtlMinutes = Math.max(0, loginSessionTtlMinutes);
+    }
+
+    // PASS THE PASSWORD/TOKEN TO `dfcli login` ON STDIN (--password-stdin / --token-stdin) INSTEAD OF ARGV, WHERE
+    // OTHER USERS ON THE AGENT CAN SEE IT IN THE PROCESS LIST. NEEDS A dfcli THAT HAS THOSE FLAGS
+    public boolean isLoginSecretsOnStdin() {
+        return loginSecretsOnStdin;
+    }
+
+    @DataBoundSetter
+    public void setLoginSecretsOnStdin(boolean loginSecretsOnStdin) {
+        this.loginSecretsOnStdin = loginSecretsOnStdin;
+    }
+
+    public List<DfServer> getServers() {
+        return servers != null ? servers : Collections.emptyList();
+    }
+
+    @DataBoundSetter
+    public void setServers(List<DfServer> servers) {
+        this.servers = servers != null ? new ArrayList<>(servers) : null;
+    }
+
+    // first (DEFAULT), latency OR roundRobin
+    public String getServerSelection() {
+        return serverSelection == null || serverSelection.trim().isEmpty() ? SELECT_FIRST : serverSelection.trim();
+    }
+
+    @DataBoundSetter
+    public void setServerSelection(String serverSelection) {
+        this.serverSelection = serverSelection;
+    }
+
+    // THE SINGLE SERVER CONFIGURED ABOVE THE LIST, AS A DfServer. ITS URL IS NULL IF NONE IS SET
+    public DfServer getDefaultServer() {
+        DfServer server = new DfServer(DfServer.DEFAULT_NAME, serverUrl);
+        server.setUsername(username);
+        server.setPassword(password);
+        server.setToken(token);
+        server.setCredentialsId(credentialsId);
+        return server;
+    }
+
+    // EVERY USABLE SERVER, THE DEFAULT ONE FIRST
+    public List<DfServer> getAllServers() {
+        List<DfServer> all = new ArrayList<>();
+        DfServer main = getDefaultServer();
+        if (main.isUsable()) {
+            all.add(main);
+        }
+        for (DfServer server : getServers()) {
+            if (server.isUsable()) {
+                all.add(server);
+            }
+        }
+        return all;
+    }
+
+    public DfServer getServer(String name) {
+        for (DfServer server : getAllServers()) {
+            if (server.getName() != null && server.getName().equals(name)) {
+                return server;
+            }
+        }
+        return null;
+    }
+
+    // RELEASE TAG TO AUTO INSTALL, BLANK MEANS "latest"
+    public String getCliVersion() {
+        return cliVersion == null || cliVersion.trim().isEmpty() ? "latest" : cliVersion.trim();
+    }
+
+    @DataBoundSetter
+    public void setCliVersion(String cliVersion) {
+        this.cliVersion = cliVersion;
+    }
+
+    // GITHUB-STYLE RELEASE BASE URL OR A CONTROLLER DIRECTORY, BLANK MEANS GITHUB
+    public String getReleaseSource() {
+        return releaseSource;
+    }
+
+    @DataBoundSetter
+    public void setReleaseSource(String releaseSource) {
+        this.releaseSource = releaseSource;
+    }
+
+    // DIRECTORY ON AGENTS (E.G. A SHARED MOUNT) HOLDING ARCHIVES BY SHA-256, CHECKED BEFORE THE CONTROLLER
+    public String getMirrorDirectory() {
+        return mirrorDirectory;
+    }
+
+    @DataBoundSetter
+    public void setMirrorDirectory(String mirrorDirectory) {
+        this.mirrorDirectory = mirrorDirectory;
+    }
+
+    // REFUSE RELEASES THAT PUBLISH NO checksums.txt INSTEAD OF TRUSTING THEIR FIRST DOWNLOAD
+    public boolean isRequireReleaseChecksums() {
+        return requireReleaseChecksums;
+    }
+
+    @DataBoundSetter
+    public void setRequireReleaseChecksums(boolean requireReleaseChecksums) {
+        this.requireReleaseChecksums = requireReleaseChecksums;
+    }
+
+    // INSTALL dfcli ON AGENTS WHEN THEY COME ONLINE INSTEAD OF IN THE FIRST STEP THAT NEEDS IT
+    public boolean isPreProvision() {
+        return preProvision;
+    }
+
+    @DataBoundSetter
+    public void setPreProvision(boolean preProvision) {
+        this.preProvision = preProvision;
+    }
+
+    // ALSO LOG IN DURING PRE-PROVISIONING
+    public boolean isPreProvisionLogin() {
+        return preProvisionLogin;
+    }
+
+    @DataBoundSetter
+    public void setPreProvisionLogin(boolean preProvisionLogin) {
+        this.preProvisionLogin = preProvisionLogin;
+    }
+
+    // SIZE BOUND OF EACH AGENT'S LOCAL ARCHIVE CACHE, 0 DISABLES IT
+    public int getAgentCacheSizeMb() {
+        return agentCacheSizeMb != null ? agentCacheSizeMb : DEFAULT_AGENT_CACHE_SIZE_MB;
+    }
+
+    @DataBoundSetter
+    public void setAgentCacheSizeMb(int agentCacheSizeMb) {
+        this.agentCacheSizeMb = Math.max(0, agentCacheSizeMb);
+    }
+
+    // dfCacheRestore COPIES A KEY FROM ANOTHER AGENT'S CACHE BEFORE GOING TO THE SERVER, AND CONCURRENT RESTORES OF
+    // ONE KEY DOWNLOAD IT ONCE
+    public boolean isPeerCacheSharing() {
+        return peerCacheSharing;
+    }
+
+    @DataBoundSetter
+    public void setPeerCacheSharing(boolean peerCacheSharing) {
+        this.peerCacheSharing = peerCacheSharing;
+    }
+
+    // RUN df COMMANDS THROUGH A WARM WORKER IN EACH AGENT'S JVM INSTEAD OF A REMOTE LAUNCH PER COMMAND. EACH
+    // COMMAND IS STILL ITS OWN dfcli PROCESS
+    public boolean isPersistentWorker() {
+        return persistentWorker;
+    }
+
+    @DataBoundSetter
+    public void setPersistentWorker(boolean persistentWorker) {
+        this.persistentWorker = persistentWorker;
+    }
+
+    // SECONDS A WORKER STAYS UP WITHOUT COMMANDS
+    public int getWorkerIdleTimeoutSeconds() {
+        return workerIdleTimeoutSeconds != null ? workerIdleTimeoutSeconds : DEFAULT_WORKER_IDLE_TIMEOUT_SECONDS;
+    }
+
+    @DataBoundSetter
+    public void setWorkerIdleTimeoutSeconds(int workerIdleTimeoutSeconds) {
+        this.workerIdleTimeoutSeconds = Math.max(1, workerIdleTimeoutSeconds);
+    }
+
+    // full (DEFAULT), summary OR quiet. STEPS CAN OVERRIDE IT WITH verbosity: '...'
+    public String getVerbosity() {
+        String v = DfConsole.verbosity(verbosity);
+        return v != null ? v : DfConsole.FULL;
+    }
+
+    @DataBoundSetter
+    public void setVerbosity(String verbosity) {
+        this.verbosity = DfConsole.verbosity(verbosity);
+    }
+
+    public ListBoxModel doFillVerbosityItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add("Full: every line", DfConsole.FULL);
+        items.add("Summary: progress lines at most every 10 seconds", DfConsole.SUMMARY);
+        items.add("Quiet: only the last lines of failed commands", DfConsole.QUIET);
+        return items;
+    }
+
+    public ListBoxModel doFillServerSelectionItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add("First matching server", SELECT_FIRST);
+        items.add("Lowest latency from the agent", SELECT_LATENCY);
+        items.add("Round-robin across healthy servers", SELECT_ROUND_ROBIN);
+        return items;
+    }
+
+    @POST
+    public ListBoxModel doFillCredentialsIdItems(@QueryParameter String credentialsId) {
+        return DfCredentials.fillItems(credentialsId);
     }
 
     // GET SINGLETON INSTANCE
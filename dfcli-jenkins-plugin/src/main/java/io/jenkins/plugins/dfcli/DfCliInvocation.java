@@ -0,0 +1,127 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.model.Run;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// TIMINGS AND OUTCOME OF ONE dfcli INVOCATION, HANDED TO EVERY DfCliInvocationListener WHEN IT FINISHES.
+// SPAWN IS LAUNCH -> PROCESS STARTED, EXEC IS STARTED -> EXITED, OUTPUT IS TIME SPENT INSIDE THE STDOUT SINK
+// (CAPTURE/PARSE), WHICH OVERLAPS EXEC BECAUSE THE PUMP RUNS WHILE THE PROCESS DOES
+public class DfCliInvocation {
+    public enum Phase {
+        INSTALL_CHECK,
+        LOGIN,
+        SPAWN,
+        EXEC,
+        OUTPUT
+    }
+
+    // dfcli COMMANDS WHOSE NEXT WORD IS A SUBCOMMAND. ANY OTHER SECOND WORD IS A POSITIONAL ARGUMENT (E.G. A REPO)
+    static final Set<String> COMMAND_GROUPS = Set.of("artifact");
+    // LABELS ARE KEYS OF PERSISTED AND CONTROLLER WIDE MAPS, SO A FREE FORM df command CAN'T GROW THEM FOREVER
+    static final int MAX_COMMAND_LABELS = 64;
+    static final String OTHER_COMMAND = "other";
+    private static final Pattern COMMAND_WORD = Pattern.compile("[a-z][a-z0-9-]*");
+
+    private final Run<?, ?> run;
+    private final String nodeName;
+    private final String serverUrl;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private String command = "";
+    private int exitCode = -1;
+    private long stdoutBytes;
+
+    public DfCliInvocation(Run<?, ?> run, String nodeName, String serverUrl) {
+        this.run = run;
+        this.nodeName = nodeName;
+        this.serverUrl = serverUrl;
+    }
+
+    // NULL WHEN NOT RUNNING INSIDE A BUILD
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    // SUBCOMMAND ONLY (E.G. "artifact upload", "login"), NEVER ARGUMENT VALUES. "other" WHEN IT DOESN'T LOOK LIKE ONE
+    public String getCommand() {
+        return command;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public long getStdoutBytes() {
+        return stdoutBytes;
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(getNanos(phase));
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            // OUTPUT HAPPENS DURING EXEC
+            if (phase != Phase.OUTPUT) {
+                total += phaseNanos[phase.ordinal()];
+            }
+        }
+        return total;
+    }
+
+    synchronized void add(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += Math.max(0, nanos);
+    }
+
+    // COPIES INSTALL/LOGIN TIME FROM A SETUP RECORD SO IT IS REPORTED WITH THE FIRST COMMAND THAT NEEDED IT
+    synchronized void addSetup(DfCliInvocation setup) {
+        if (setup != null) {
+            add(Phase.INSTALL_CHECK, setup.getNanos(Phase.INSTALL_CHECK));
+            add(Phase.LOGIN, setup.getNanos(Phase.LOGIN));
+        }
+    }
+
+    void setCommand(List<String> args) {
+        this.command = label(args);
+    }
+
+    static String label(List<String> args) {
+        if (args.isEmpty() || !COMMAND_WORD.matcher(args.get(0)).matches()) {
+            return OTHER_COMMAND;
+        }
+        String command = args.get(0);
+        if (COMMAND_GROUPS.contains(command) && args.size() > 1 && COMMAND_WORD.matcher(args.get(1)).matches()) {
+            return command + " " + args.get(1);
+        }
+        return command;
+    }
+
+    // THE KEY TO COUNT command UNDER IN counts, OTHER_COMMAND ONCE MAX_COMMAND_LABELS DISTINCT ONES ARE IN IT
+    static String boundedKey(Map<String, ?> counts, String command) {
+        return counts.containsKey(command) || counts.size() < MAX_COMMAND_LABELS ? command : OTHER_COMMAND;
+    }
+
+    void setExitCode(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    void addStdoutBytes(long bytes) {
+        this.stdoutBytes += bytes;
+    }
+}
@@ -0,0 +1,28 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// IMPLEMENT AND MARK @Extension TO RECEIVE EVERY FINISHED dfcli INVOCATION (E.G. TO EXPORT TO A METRICS SYSTEM)
+public abstract class DfCliInvocationListener implements ExtensionPoint {
+    private static final Logger LOGGER = Logger.getLogger(DfCliInvocationListener.class.getName());
+
+    public abstract void onCompleted(DfCliInvocation invocation);
+
+    public static ExtensionList<DfCliInvocationListener> all() {
+        return ExtensionList.lookup(DfCliInvocationListener.class);
+    }
+
+    // A BROKEN LISTENER MUST NOT FAIL THE STEP
+    static void fireCompleted(DfCliInvocation invocation) {
+        for (DfCliInvocationListener listener : all()) {
+            try {
+                listener.onCompleted(invocation);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "DfCliInvocationListener " + listener.getClass() + " failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.RootAction;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerResponse2;
+
+// CONTROLLER WIDE HISTOGRAMS OF dfcli INVOCATIONS SINCE STARTUP, PER PHASE, SERVED AS JSON AT /dfcli-metrics/
+@Extension
+public class DfCliMetrics extends DfCliInvocationListener implements RootAction {
+    private final Map<DfCliInvocation.Phase, LatencyHistogram> phases = new EnumMap<>(DfCliInvocation.Phase.class);
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder stdoutBytes = new LongAdder();
+    private final Map<String, LongAdder> byCommand = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byServer = new ConcurrentHashMap<>();
+
+    public DfCliMetrics() {
+        for (DfCliInvocation.Phase phase : DfCliInvocation.Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public static DfCliMetrics get() {
+        return ExtensionList.lookupSingleton(DfCliMetrics.class);
+    }
+
+    @Override
+    public void onCompleted(DfCliInvocation invocation) {
+        for (DfCliInvocation.Phase phase : DfCliInvocation.Phase.values()) {
+            long nanos = invocation.getNanos(phase);
+            // INSTALL/LOGIN ONLY HAPPEN ON SOME INVOCATIONS, DON'T DRAG THEIR HISTOGRAMS TO ZERO
+            if (nanos > 0 || phase == DfCliInvocation.Phase.EXEC) {
+                phases.get(phase).record(nanos);
+            }
+        }
+        total.record(invocation.getTotalNanos());
+        if (invocation.getExitCode() != 0) {
+            failures.increment();
+        }
+        stdoutBytes.add(invocation.getStdoutBytes());
+        // CONCURRENT COMPLETIONS CAN PUSH IT A FEW KEYS PAST THE LIMIT, NEVER WITHOUT BOUND
+        byCommand.computeIfAbsent(DfCliInvocation.boundedKey(byCommand, invocation.getCommand()), k -> new LongAdder())
+                .increment();
+        String server = invocation.getServerUrl() != null ? invocation.getServerUrl() : "";
+        byServer.computeIfAbsent(server, k -> new LongAdder()).increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("invocations", total.getCount());
+        out.put("failures", failures.sum());
+        out.put("stdoutBytes", stdoutBytes.sum());
+        out.put("total", total.toMap());
+        Map<String, Object> phaseMaps = new LinkedHashMap<>();
+        phases.forEach((phase, histogram) -> phaseMaps.put(phase.name().toLowerCase(Locale.ROOT), histogram.toMap()));
+        out.put("phases", phaseMaps);
+        out.put("commands", counts(byCommand));
+        out.put("servers", counts(byServer));
+        return out;
+    }
+
+    private static Map<String, Long> counts(Map<String, LongAdder> adders) {
+        Map<String, Long> out = new TreeMap<>();
+        adders.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    public void doIndex(StaplerResponse2 rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+        rsp.setContentType("application/json;charset=UTF-8");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(rsp.getWriter(), snapshot());
+    }
+
+    // NO SIDEBAR LINK, ONLY THE URL
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DFCli Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "dfcli-metrics";
+    }
+}
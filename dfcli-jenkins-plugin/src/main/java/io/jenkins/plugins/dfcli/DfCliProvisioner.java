@@ -0,0 +1,101 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import hudson.util.LogTaskListener;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// OPTIONAL: INSTALLS (AND VERIFIES) THE CONFIGURED dfcli VERSION ON AN AGENT AS SOON AS IT COMES ONLINE, SO THE
+// FIRST BUILD ON A FRESH CLOUD AGENT DOESN'T STALL ON THE DOWNLOAD. STEPS THAT ARRIVE MID-INSTALL WAIT ON IT
+@Extension
+public class DfCliProvisioner extends ComputerListener {
+    private static final Logger LOGGER = Logger.getLogger(DfCliProvisioner.class.getName());
+
+    // installKey(node, version) -> THE RUNNING BACKGROUND INSTALL, REMOVED WHEN IT FINISHES
+    private static final Map<String, CompletableFuture<Void>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    @Override
+    public void onOnline(Computer c, TaskListener listener) {
+        DfCliConfig config = DfCliConfig.get();
+        if (config == null || !config.isPreProvision()) {
+            return;
+        }
+        Node node = c.getNode();
+        // NOTHING RUNS ON A NODE WITHOUT EXECUTORS (TYPICALLY THE BUILT-IN NODE)
+        if (node == null || node.getNumExecutors() == 0) {
+            return;
+        }
+        DfCliInstallation installation = DfCliInstallation.configured();
+        if (installation == null) {
+            return;
+        }
+
+        String version = config.getCliVersion();
+        boolean login = config.isPreProvisionLogin();
+        listener.getLogger().println("[dfcli] Installing dfcli " + version + " in the background");
+        // THE AGENT LAUNCH LOG MAY BE CLOSED BEFORE THE INSTALL ENDS, SO ITS OUTPUT GOES TO THE SYSTEM LOG
+        TaskListener log = new LogTaskListener(LOGGER, Level.INFO);
+        submit(DfCliInstallation.installKey(node, version), Computer.threadPoolForRemoting, () -> {
+            installation.provision(node, log, login);
+            LOGGER.info("[dfcli] Pre-provisioned dfcli " + version + " on " + node.getDisplayName());
+        });
+    }
+
+    // STARTS task UNLESS ONE IS ALREADY RUNNING FOR key, IN WHICH CASE THAT ONE'S FUTURE COMES BACK
+    static CompletableFuture<Void> submit(String key, Executor executor, Task task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> running = IN_FLIGHT.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                // FORGET THE TASK BEFORE COMPLETING IT, SO ANYONE WHO SEES IT DONE ALSO SEES IT GONE
+                try {
+                    task.run();
+                    IN_FLIGHT.remove(key, future);
+                    future.complete(null);
+                } catch (Exception e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    LOGGER.log(Level.WARNING, "[dfcli] Background install " + key + " failed", e);
+                    IN_FLIGHT.remove(key, future);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            IN_FLIGHT.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // BLOCKS WHILE A BACKGROUND INSTALL FOR key IS RUNNING. TRUE IF THERE WAS ONE; ITS FAILURE IS NOT RETHROWN,
+    // THE CALLER JUST INSTALLS ITSELF
+    static boolean awaitInFlight(String key) throws InterruptedException {
+        CompletableFuture<Void> running = IN_FLIGHT.get(key);
+        if (running == null) {
+            return false;
+        }
+        try {
+            running.get();
+        } catch (ExecutionException e) {
+            // ALREADY LOGGED BY THE BACKGROUND TASK
+        }
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.remoting.RemoteOutputStream;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import jenkins.security.MasterToSlaveCallable;
+
+// AGENT SIDE dfcli PROXY, ONE PER AGENT JVM. COMMANDS ARRIVE AS A SINGLE CHANNEL CALL AND ARE FORKED LOCALLY
+// BY A WARM POOL, INSTEAD OF A REMOTE LAUNCHER ROUND TRIP (EXPORTED PROC, JOIN, KILL) PER COMMAND. EVERY COMMAND
+// IS STILL ITS OWN dfcli PROCESS: THIS SAVES THE REMOTING ROUND TRIPS, NOT THE PROCESS STARTUP. CONCURRENT
+// CALLS FROM PARALLEL STEPS SHARE THE POOL. AFTER THE IDLE TIMEOUT WITHOUT WORK THE WORKER IS DROPPED AND THE
+// NEXT CALL STARTS A NEW ONE
+final class DfCliWorker {
+    // CALLS BEYOND THIS (OR AFTER A SHUTDOWN) RUN ON THE REMOTING REQUEST THREAD THAT BROUGHT THEM
+    static final int MAX_CONCURRENT = 32;
+
+    private static DfCliWorker current;
+
+    private final ThreadPoolExecutor pool;
+    private final long idleMillis;
+    private long lastUsed = System.currentTimeMillis();
+    private int active;
+
+    private DfCliWorker(long idleMillis) {
+        this.idleMillis = idleMillis;
+        this.pool = new ThreadPoolExecutor(
+                0,
+                MAX_CONCURRENT,
+                idleMillis,
+                TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                new NamingThreadFactory(r -> {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    return t;
+                }, "dfcli-worker"),
+                (task, executor) -> task.run());
+    }
+
+    // THE LIVE WORKER, OR A NEW ONE IF THERE IS NONE OR THE LAST ONE WENT IDLE OR DIED. started[0] TELLS THE
+    // CALLER WHICH
+    static synchronized DfCliWorker acquire(long idleMillis, boolean[] started) {
+        DfCliWorker worker = current;
+        if (worker != null && worker.expired()) {
+            worker.pool.shutdown();
+            worker = null;
+        }
+        started[0] = worker == null;
+        if (worker == null) {
+            worker = new DfCliWorker(idleMillis);
+            current = worker;
+        }
+        worker.active++;
+        return worker;
+    }
+
+    static synchronized boolean isRunning() {
+        return current != null && !current.expired();
+    }
+
+    // ONLY TESTS CALL THIS. ON AN AGENT THE POOL'S DAEMON THREADS TIME OUT AFTER idleMillis WITHOUT WORK, AND
+    // WHATEVER IS LEFT GOES WITH THE AGENT JVM
+    static synchronized void shutdown() {
+        if (current != null) {
+            current.pool.shutdownNow();
+            current = null;
+        }
+    }
+
+    private boolean expired() {
+        return pool.isShutdown() || (active == 0 && System.currentTimeMillis() - lastUsed > idleMillis);
+    }
+
+    private void release() {
+        synchronized (DfCliWorker.class) {
+            active--;
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    Result exec(List<String> cmd, Map<String, String> env, String pwd, OutputStream stdout, OutputStream stderr)
+            throws IOException, InterruptedException {
+        try {
+            Future<Result> future = pool.submit(() -> fork(cmd, env, pwd, stdout, stderr));
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                // CHANNEL CALL WAS CANCELLED (STEP ABORTED), fork() DESTROYS THE PROCESS
+                future.cancel(true);
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("dfcli worker failed", cause);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    // ONLY A FAILING pb.start() THROWS NotStartedException, THE ONE FAILURE THE CALLER MAY RETRY WITHOUT THE WORKER
+    private static Result fork(List<String> cmd, Map<String, String> env, String pwd, OutputStream stdout,
+            OutputStream stderr) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ProcessBuilder pb = new ProcessBuilder(cmd).directory(pwd != null ? new File(pwd) : null);
+        if (env != null) {
+            pb.environment().putAll(env);
+        }
+        Process proc;
+        try {
+            proc = pb.start();
+        } catch (IOException e) {
+            throw new NotStartedException(e);
+        }
+        long spawnNanos = System.nanoTime() - start;
+        proc.getOutputStream().close();
+
+        // BOTH PIPES ON THEIR OWN THREADS SO THIS ONE STAYS INTERRUPTIBLE IN waitFor()
+        Thread out = pumpThread(proc.getInputStream(), stdout, "stdout");
+        Thread err = pumpThread(proc.getErrorStream(), stderr, "stderr");
+        try {
+            int exitCode = proc.waitFor();
+            out.join();
+            err.join();
+            return new Result(exitCode, spawnNanos);
+        } finally {
+            if (proc.isAlive()) {
+                proc.destroyForcibly();
+            }
+            flushQuietly(stdout);
+            flushQuietly(stderr);
+        }
+    }
+
+    private static Thread pumpThread(InputStream in, OutputStream out, String name) {
+        Thread t = new Thread(() -> pump(in, out), "dfcli-worker " + name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static void flushQuietly(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // CONTROLLER SIDE SINK WENT AWAY
+        }
+    }
+
+    private static void pump(InputStream in, OutputStream out) {
+        byte[] buf = new byte[8192];
+        try (InputStream src = in) {
+            int n;
+            while ((n = src.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        } catch (IOException e) {
+            // PROCESS GONE OR SINK CLOSED, THE EXIT CODE TELLS THE REST
+        }
+    }
+
+    // ONE COMMAND, RUN BY THE WORKER ON THE AGENT THIS IS SENT TO
+    static class Exec extends MasterToSlaveCallable<Result, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> cmd;
+        private final HashMap<String, String> env;
+        private final String pwd;
+        private final long idleMillis;
+        private final OutputStream stdout;
+        private final OutputStream stderr;
+
+        Exec(List<String> cmd, Map<String, String> env, String pwd, long idleMillis, OutputStream stdout,
+                OutputStream stderr) {
+            this.cmd = new ArrayList<>(cmd);
+            this.env = env != null ? new HashMap<>(env) : null;
+            this.pwd = pwd;
+            this.idleMillis = idleMillis;
+            this.stdout = new RemoteOutputStream(stdout);
+            this.stderr = new RemoteOutputStream(stderr);
+        }
+
+        @Override
+        public Result call() throws IOException {
+            boolean[] started = new boolean[1];
+            DfCliWorker worker = acquire(idleMillis, started);
+            try {
+                return worker.exec(cmd, env, pwd, stdout, stderr).started(started[0]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("dfcli command interrupted", e);
+            }
+        }
+    }
+
+    // THE COMMAND NEVER STARTED
+    static class NotStartedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        NotStartedException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int exitCode;
+        private final long spawnNanos;
+        private boolean workerStarted;
+
+        Result(int exitCode, long spawnNanos) {
+            this.exitCode = exitCode;
+            this.spawnNanos = spawnNanos;
+        }
+
+        private Result started(boolean workerStarted) {
+            this.workerStarted = workerStarted;
+            return this;
+        }
+
+        int getExitCode() {
+            return exitCode;
+        }
+
+        long getSpawnNanos() {
+            return spawnNanos;
+        }
+
+        // TRUE IF THIS COMMAND HAD TO START THE AGENT'S WORKER
+        boolean isWorkerStarted() {
+            return workerStarted;
+        }
+    }
+}
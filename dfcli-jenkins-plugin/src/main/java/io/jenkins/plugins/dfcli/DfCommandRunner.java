@@ -0,0 +1,527 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+
+// RESOLVES INSTALLATION + LOGIN ONCE FOR A STEP'S NODE, THEN RUNS ANY NUMBER OF dfcli COMMANDS THERE
+public class DfCommandRunner {
+    // STDERR IS ONLY KEPT TO DETECT AUTH FAILURES
+    private static final int STDERR_CAPTURE_BYTES = 64 * 1024;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // TOKENIZED COMMANDS BY TEXT, DROPPED WHOLESALE WHEN FULL
+    static final int MAX_TEMPLATES = 512;
+    private static final Map<String, List<String>> TEMPLATES = new ConcurrentHashMap<>();
+    // NUMBERS DEFAULT RAW LOG FILES
+    private static final AtomicLong RAW_LOGS = new AtomicLong();
+
+    private final TaskListener listener;
+    private final Launcher launcher;
+    private final EnvVars env;
+    private final FilePath workspace;
+    private final Node node;
+    private final DfCliInstallation installation;
+    private final DfCliConfig config;
+    private final DfServer server;
+    private final boolean docker;
+    // THE PERSISTENT WORKER FORKS dfcli ITSELF, SO IT IS ONLY USED WHEN THE STEP'S LAUNCHER IS A PLAIN ONE. A
+    // DECORATED LAUNCHER (container(), withDockerContainer, LauncherDecorators) WOULD BE BYPASSED
+    private final boolean plainLauncher;
+    private boolean workerSkipLogged;
+    private final String sessionScope;
+    private final String exePath;
+    private final Run<?, ?> run;
+    // INSTALL/LOGIN TIME FROM prepare(), REPORTED WITH THE FIRST INVOCATION
+    private DfCliInvocation setupTiming;
+    // BUMPED ON EVERY RE-LOGIN SO CONCURRENT FAILURES DON'T ALL LOG IN AGAIN
+    private int loginGeneration;
+    // WHERE dfcli'S OUTPUT GOES, THE GLOBAL VERBOSITY UNTIL A STEP OPENS ITS OWN
+    private DfConsole console;
+
+    private DfCommandRunner(
+            TaskListener listener,
+            Launcher launcher,
+            EnvVars env,
+            FilePath workspace,
+            Node node,
+            DfCliInstallation installation,
+            DfCliConfig config,
+            DfServer server,
+            String exePath,
+            Run<?, ?> run,
+            DfCliInvocation setupTiming) {
+        this.listener = listener;
+        this.launcher = launcher;
+        this.env = env;
+        this.workspace = workspace;
+        this.node = node;
+        this.installation = installation;
+        this.config = config;
+        this.server = server;
+        this.docker = isDockerAgent(launcher);
+        this.plainLauncher = isPlainLauncher(launcher);
+        this.sessionScope = docker ? LoginSessionCache.dockerScope(node, workspace) : LoginSessionCache.nodeScope(node);
+        this.exePath = exePath;
+        this.run = run;
+        this.setupTiming = setupTiming;
+    }
+
+    // INSTALL IF NEEDED AND LOGIN (OR REUSE THE NODE'S SESSION)
+    public static DfCommandRunner prepare(StepContext context) throws IOException, InterruptedException {
+        return prepare(context, null);
+    }
+
+    // SAME, AGAINST THE NAMED SERVER; NULL LEAVES THE CHOICE TO THE SELECTION POLICY
+    public static DfCommandRunner prepare(StepContext context, String serverName)
+            throws IOException, InterruptedException {
+        TaskListener listener = context.get(TaskListener.class);
+        Launcher launcher = context.get(Launcher.class);
+        EnvVars env = context.get(EnvVars.class);
+        FilePath workspace = context.get(FilePath.class);
+        Node node = context.get(Node.class);
+        Run<?, ?> run = context.get(Run.class);
+        DfCliInvocation setupTiming = new DfCliInvocation(run, node.getNodeName(), null);
+
+        DfCliInstallation installation = DfCliInstallation.configured();
+        if (installation == null) {
+            throw new IOException("No DfCliInstallation configured in Jenkins global tools.");
+        }
+
+        DfCliConfig config = DfCliConfig.get();
+        if (config == null) {
+            throw new IOException("DFCli global config not found");
+        }
+
+        DfServer server = DfCredentials.resolve(DfServerSelector.select(config, node, serverName, listener), run);
+        DfCliInstallation resolved =
+                installation.forNode(node, listener, setupTiming, server).forEnvironment(env);
+
+        // FOR DOCKER, JUST USE THE BINARY NAME, OTHERWISE THE RESOLVED INSTALLATION
+        String exePath = launcher.isUnix() ? "dfcli" : "dfcli.exe";
+        String home = resolved.getHome();
+        if (!isDockerAgent(launcher) && home != null && !home.trim().isEmpty()) {
+            exePath = launcher.isUnix() ? home + "/dfcli" : home + "\\dfcli.exe";
+        }
+
+        DfCommandRunner runner = new DfCommandRunner(
+                listener, launcher, env, workspace, node, installation, config, server, exePath, run, setupTiming);
+        runner.console = new DfConsole(listener, DfConsole.resolve(null, config), null);
+        if (runner.docker) {
+            // LOGIN AGAIN INSIDE THE CONTAINER (UNLESS CONTAINER IS LOGGED IN)
+            long loginStart = System.nanoTime();
+            runner.dockerLoginIfNeeded();
+            setupTiming.add(DfCliInvocation.Phase.LOGIN, System.nanoTime() - loginStart);
+        }
+        return runner;
+    }
+
+    public TaskListener getListener() {
+        return listener;
+    }
+
+    public DfCliConfig getConfig() {
+        return config;
+    }
+
+    // THE SERVER THIS RUNNER'S NODE IS LOGGED IN TO
+    public DfServer getServer() {
+        return server;
+    }
+
+    public ArgumentListBuilder buildCommand(
+            String command, String version, Map<String, String> properties, String cacheKey) {
+        return buildCommand(tokenize(command), version, properties, cacheKey);
+    }
+
+    // df COMMANDS ARE SPLIT ON WHITESPACE, NO QUOTING. PIPELINES RUN THE SAME FEW COMMANDS OVER AND OVER (OFTEN
+    // IN LOOPS), SO THE SPLIT IS CACHED BY COMMAND TEXT. THE RETURNED LIST IS IMMUTABLE
+    static List<String> tokenize(String command) {
+        List<String> args = TEMPLATES.get(command);
+        if (args == null) {
+            args = List.of(WHITESPACE.split(command.trim()));
+            if (TEMPLATES.size() >= MAX_TEMPLATES) {
+                TEMPLATES.clear();
+            }
+            TEMPLATES.put(command, args);
+        }
+        return args;
+    }
+
+    // PRE-SPLIT ARGS, FOR CALLERS PASSING PATHS THAT MAY CONTAIN SPACES
+    public ArgumentListBuilder buildCommand(
+            List<String> args, String version, Map<String, String> properties, String cacheKey) {
+        return buildCommand(exePath, args, version, properties, cacheKey);
+    }
+
+    // NO RUNNER STATE BEYOND THE EXECUTABLE, SO BENCHMARKS CAN DRIVE IT DIRECTLY
+    static ArgumentListBuilder buildCommand(
+            String exePath, List<String> args, String version, Map<String, String> properties, String cacheKey) {
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+        cmd.add(exePath);
+        cmd.add(args);
+        cmd.add(cacheKeyArgs(version, properties, cacheKey));
+        return cmd;
+    }
+
+    // resolveCacheKey AS SEPARATE ARGS, BUILT DIRECTLY INSTEAD OF JOINED INTO A STRING AND SPLIT AGAIN
+    static List<String> cacheKeyArgs(String version, Map<String, String> properties, String cacheKey) {
+        List<String> args = new ArrayList<>();
+        if (cacheKey != null && !cacheKey.isEmpty()) {
+            args.addAll(tokenize(cacheKey));
+        } else if (version != null && !version.trim().isEmpty()) {
+            args.add("--version");
+            args.add(version.trim());
+        } else {
+            return args;
+        }
+        if (properties != null && !properties.isEmpty()) {
+            args.add("--property");
+            args.add(joinProperties(properties));
+        }
+        return args;
+    }
+
+    // KEY1=VAL1,KEY2=VAL2
+    private static String joinProperties(Map<String, String> properties) {
+        StringJoiner joined = new StringJoiner(",");
+        properties.forEach((k, v) -> joined.add(k + "=" + v));
+        return joined.toString();
+    }
+
+    // SENDS THE OUTPUT OF EVERY FOLLOWING COMMAND THROUGH A CONSOLE WITH THE GIVEN VERBOSITY (BLANK FOR THE GLOBAL
+    // ONE). rawLog IS RELATIVE TO THE WORKSPACE; BLANK PICKS A FILE UNDER .dfcli/logs UNLESS THE VERBOSITY IS full,
+    // WHICH ALREADY LOGS EVERYTHING. THE CALLER CLOSES IT ONCE ITS COMMANDS ARE DONE
+    DfConsole openConsole(String verbosity, String rawLog) throws IOException, InterruptedException {
+        String resolved = DfConsole.resolve(verbosity, config);
+        FilePath file = null;
+        if (rawLog != null && !rawLog.trim().isEmpty()) {
+            file = workspace.child(rawLog.trim());
+        } else if (!DfConsole.FULL.equals(resolved)) {
+            FilePath dir = workspace.child(DfConsole.RAW_LOG_DIR);
+            String build = DfConsole.RAW_LOG_PREFIX + env.get("BUILD_NUMBER", "0") + "-";
+            pruneRawLogs(dir, build);
+            file = dir.child(build + RAW_LOGS.incrementAndGet() + ".log.gz");
+        }
+        console = new DfConsole(listener, resolved, file);
+        return console;
+    }
+
+    // DEFAULT RAW LOGS OF EARLIER BUILDS WOULD PILE UP IN THE WORKSPACE, A BUILD THAT WANTS THEM ARCHIVES ITS OWN
+    private void pruneRawLogs(FilePath dir, String keep) throws IOException, InterruptedException {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        int pruned = 0;
+        for (FilePath old : dir.list(DfConsole.RAW_LOG_PREFIX + "*.log.gz")) {
+            if (!old.getName().startsWith(keep)) {
+                old.delete();
+                pruned++;
+            }
+        }
+        if (pruned > 0) {
+            listener.getLogger().println("[dfcli] Removed " + pruned + " raw logs of earlier builds from " + dir);
+        }
+    }
+
+    // RUN ONE COMMAND, STREAMING OUTPUT TO THE LOG; LOGS IN AGAIN AND RETRIES ONCE IF THE SESSION WAS REJECTED
+    public Result run(ArgumentListBuilder cmd, long maxOutputBytes, String logPrefix)
+            throws IOException, InterruptedException {
+        OutputCapture[] stdout = new OutputCapture[1];
+        int exitCode = run(cmd, out -> stdout[0] = OutputCapture.through(out, maxOutputBytes), logPrefix);
+
+        if (stdout[0].isTruncated()) {
+            listener.getLogger().println(logPrefix + "[dfcli] Output was " + stdout[0].getBytesSeen()
+                    + " bytes, returned value truncated to " + maxOutputBytes + " bytes (see maxOutputBytes)");
+        }
+        return new Result(exitCode, stdout[0].getText().trim());
+    }
+
+    // SAME, BUT STDOUT GOES TO A CALLER SUPPLIED SINK (A FRESH ONE PER ATTEMPT), RETURNS THE EXIT CODE
+    public int run(ArgumentListBuilder cmd, Supplier<? extends OutputStream> stdoutSink, String logPrefix)
+            throws IOException, InterruptedException {
+        return run(cmd, out -> stdoutSink.get(), logPrefix);
+    }
+
+    private int run(
+            ArgumentListBuilder cmd, Function<DfConsole.Command, ? extends OutputStream> stdoutSink, String logPrefix)
+            throws IOException, InterruptedException {
+        listener.getLogger().println(logPrefix + "DFCli running: " + cmd.toString());
+        DfConsole.Command out = console.command(logPrefix);
+        OutputCapture stderr = OutputCapture.errorsThrough(out, STDERR_CAPTURE_BYTES);
+        DfCliInvocation invocation = newInvocation(cmd);
+        int generation = currentLoginGeneration();
+        int exitCode = launch(cmd, stdoutSink.apply(out), stderr, invocation);
+
+        // SESSION WAS REJECTED (EXPIRED OR REVOKED SERVER SIDE), LOGIN AGAIN AND RETRY ONCE
+        if (exitCode != 0 && LoginSessionCache.isAuthFailure(stderr.getText())) {
+            listener.getLogger().println(logPrefix + "[dfcli] Login session rejected by server, logging in again");
+            long loginStart = System.nanoTime();
+            relogin(generation);
+            invocation.add(DfCliInvocation.Phase.LOGIN, System.nanoTime() - loginStart);
+            stderr = OutputCapture.errorsThrough(out, STDERR_CAPTURE_BYTES);
+            exitCode = launch(cmd, stdoutSink.apply(out), stderr, invocation);
+        }
+        out.finish(exitCode);
+        invocation.setExitCode(exitCode);
+        DfCliInvocationListener.fireCompleted(invocation);
+        return exitCode;
+    }
+
+    public IOException failure(int exitCode) {
+        return failure(server, exitCode);
+    }
+
+    public static IOException failure(DfServer server, int exitCode) {
+        return new IOException("DFCli cmd failed with server/user/exit-code " + server.getServerUrl() + " | "
+                + server.getUsername() + " | " + exitCode);
+    }
+
+    // FOR CALLERS THAT LAUNCH THE PROCESS THEMSELVES AND SAW AN AUTH FAILURE
+    public void reloginAfterAuthFailure() throws IOException, InterruptedException {
+        relogin(currentLoginGeneration());
+    }
+
+    public Launcher getLauncher() {
+        return launcher;
+    }
+
+    public EnvVars getEnv() {
+        return env;
+    }
+
+    public FilePath getWorkspace() {
+        return workspace;
+    }
+
+    // A RECORD FOR ONE COMMAND, CARRYING prepare()'S INSTALL/LOGIN TIME IF NO EARLIER COMMAND TOOK IT
+    DfCliInvocation newInvocation(ArgumentListBuilder cmd) {
+        DfCliInvocation invocation = new DfCliInvocation(run, node.getNodeName(), server.getServerUrl());
+        invocation.addSetup(takeSetupTiming());
+        List<String> args = cmd.toList();
+        invocation.setCommand(args.subList(1, args.size()));
+        return invocation;
+    }
+
+    synchronized DfCliInvocation takeSetupTiming() {
+        DfCliInvocation setup = setupTiming;
+        setupTiming = null;
+        return setup;
+    }
+
+    // STREAMS BOTH PIPES THROUGH THE CAPTURES WHILE THE PROCESS RUNS
+    private int launch(ArgumentListBuilder cmd, OutputStream stdout, OutputCapture stderr, DfCliInvocation invocation)
+            throws IOException, InterruptedException {
+        TimedOutputStream timed = new TimedOutputStream(stdout);
+        try {
+            if (config.isPersistentWorker() && !docker && plainLauncher) {
+                Integer exitCode = launchOnWorker(cmd, timed, stderr, invocation);
+                if (exitCode != null) {
+                    return exitCode;
+                }
+            } else if (config.isPersistentWorker() && !docker && !workerSkipLogged) {
+                workerSkipLogged = true;
+                listener.getLogger().println("[dfcli] Not using the persistent worker, the launcher is wrapped ("
+                        + launcher.getClass().getName() + ")");
+            }
+            long start = System.nanoTime();
+            Proc proc = launcher.launch()
+                    .cmds(cmd)
+                    .envs(env)
+                    .pwd(workspace)
+                    .stdout(timed)
+                    .stderr(stderr)
+                    .start();
+            long started = System.nanoTime();
+            invocation.add(DfCliInvocation.Phase.SPAWN, started - start);
+            int exitCode = proc.join();
+            invocation.add(DfCliInvocation.Phase.EXEC, System.nanoTime() - started);
+            return exitCode;
+        } finally {
+            timed.close();
+            stderr.close();
+            invocation.add(DfCliInvocation.Phase.OUTPUT, timed.nanos);
+            invocation.addStdoutBytes(timed.bytes);
+        }
+    }
+
+    // ONE CHANNEL CALL TO THE AGENT'S DfCliWorker, WHICH FORKS dfcli THERE AND STREAMS BOTH PIPES BACK. NULL IF
+    // THE WORKER COULDN'T START THE COMMAND, SO THE CALLER FALLS BACK TO A NORMAL LAUNCH. ANY OTHER FAILURE (E.G.
+    // THE CHANNEL DROPPING MID CALL) IS THROWN: THE COMMAND MAY HAVE RUN AND MUST NOT RUN TWICE
+    private Integer launchOnWorker(
+            ArgumentListBuilder cmd, OutputStream stdout, OutputStream stderr, DfCliInvocation invocation)
+            throws IOException, InterruptedException {
+        VirtualChannel channel = workspace.getChannel();
+        long start = System.nanoTime();
+        DfCliWorker.Result result;
+        try {
+            result = channel.call(new DfCliWorker.Exec(
+                    cmd.toList(),
+                    env,
+                    workspace.getRemote(),
+                    TimeUnit.SECONDS.toMillis(config.getWorkerIdleTimeoutSeconds()),
+                    stdout,
+                    stderr));
+        } catch (DfCliWorker.NotStartedException e) {
+            listener.getLogger().println("[dfcli] Persistent worker on " + node.getDisplayName()
+                    + " unavailable (" + e.getMessage() + "), launching directly");
+            return null;
+        }
+        // PIPE CHUNKS MAY STILL BE IN FLIGHT WHEN THE CALL RETURNS
+        if (channel instanceof Channel) {
+            ((Channel) channel).syncIO();
+        }
+        if (result.isWorkerStarted()) {
+            listener.getLogger().println("[dfcli] Started persistent dfcli worker on " + node.getDisplayName());
+        }
+        invocation.add(DfCliInvocation.Phase.SPAWN, result.getSpawnNanos());
+        invocation.add(DfCliInvocation.Phase.EXEC, System.nanoTime() - start - result.getSpawnNanos());
+        return result.getExitCode();
+    }
+
+    // TIME SPENT IN (AND BYTES PASSED TO) THE STDOUT SINK, I.E. THE PLUGIN'S OWN OUTPUT HANDLING COST
+    private static class TimedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long nanos;
+        private long bytes;
+
+        TimedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                out.write(b, off, len);
+            } finally {
+                nanos += System.nanoTime() - start;
+                bytes += len;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            long start = System.nanoTime();
+            try {
+                out.close();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    private synchronized int currentLoginGeneration() {
+        return loginGeneration;
+    }
+
+    // SYNCHRONIZED SO PARALLEL COMMANDS THAT ALL HIT AN EXPIRED SESSION ONLY LOG IN ONCE
+    private synchronized void relogin(int failedGeneration) throws IOException, InterruptedException {
+        if (failedGeneration != loginGeneration) {
+            return;
+        }
+        loginGeneration++;
+        LoginSessionCache.invalidate(sessionScope, server);
+        if (docker) {
+            dockerLoginIfNeeded();
+        } else {
+            installation.forNode(node, listener, null, server);
+        }
+    }
+
+    private void dockerLoginIfNeeded() throws IOException, InterruptedException {
+        int ttl = config.getLoginSessionTtlMinutes();
+        if (LoginSessionCache.isValid(sessionScope, server, ttl)) {
+            return;
+        }
+
+        int code = DfCliInstallation.launchLogin(
+                launcher, "dfcli", server, workspace, false, config.isLoginSecretsOnStdin());
+
+        if (code != 0) {
+            throw new IOException("DFCli login failed with exit code " + code);
+        }
+        LoginSessionCache.markLoggedIn(sessionScope, server, ttl);
+    }
+
+    // NOT A SUBCLASS CHECK: DECORATED LAUNCHERS EXTEND THESE TOO
+    static boolean isPlainLauncher(Launcher launcher) {
+        return launcher.getClass() == Launcher.LocalLauncher.class
+                || launcher.getClass() == Launcher.RemoteLauncher.class;
+    }
+
+    private static boolean isDockerAgent(Launcher launcher) {
+        return launcher.toString().toLowerCase().contains("docker");
+    }
+
+    // THE KEY ARGS A COMMAND GETS: AN EXPLICIT cacheKey (PLUS ANY properties), ELSE ONE GENERATED FROM version
+    public static String resolveCacheKey(String version, Map<String, String> properties, String cacheKey) {
+        if (cacheKey != null && !cacheKey.isEmpty()) {
+            if (properties != null && !properties.isEmpty()) {
+                return cacheKey + " --property " + joinProperties(properties);
+            }
+            return cacheKey;
+        }
+        return generateCacheKey(version, properties);
+    }
+
+    public static String generateCacheKey(String version, Map<String, String> properties) {
+        if (version == null || version.trim().isEmpty()) {
+            return null;
+        }
+
+        // EX: "--version 1.0.0 --property KEY1=VAL1,KEY2=VAL2"
+        String key = "--version " + version;
+        if (properties != null && !properties.isEmpty()) {
+            key += " --property " + joinProperties(properties);
+        }
+        return key;
+    }
+
+    public static class Result {
+        private final int exitCode;
+        private final String stdout;
+
+        Result(int exitCode, String stdout) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getStdout() {
+            return stdout;
+        }
+    }
+}
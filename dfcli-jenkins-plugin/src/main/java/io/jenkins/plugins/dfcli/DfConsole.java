@@ -0,0 +1,225 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+// DECIDES HOW MUCH OF dfcli'S OWN OUTPUT REACHES THE BUILD LOG, WHICH LIVES ON THE CONTROLLER. PROGRESS REDRAWN
+// WITH \r IS COLLAPSED TO WHAT A TERMINAL WOULD SHOW AT THE END OF THE LINE. WITH A RAW LOG, EVERY BYTE ALSO GOES
+// GZIPPED TO A FILE IN THE WORKSPACE, WHERE archiveArtifacts CAN PICK IT UP
+final class DfConsole implements Closeable {
+    // EVERY LINE
+    static final String FULL = "full";
+    // EVERY LINE EXCEPT PROGRESS, WHICH IS SHOWN AT MOST ONCE PER PROGRESS_INTERVAL PLUS ITS FINAL STATE
+    static final String SUMMARY = "summary";
+    // NO dfcli OUTPUT, ONLY ITS LAST LINES WHEN A COMMAND FAILS
+    static final String QUIET = "quiet";
+
+    static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final int FAILURE_TAIL_LINES = 20;
+    // DEFAULT RAW LOG LOCATION, RELATIVE TO THE WORKSPACE. ONLY THE CURRENT BUILD'S FILES ARE KEPT THERE
+    static final String RAW_LOG_DIR = ".dfcli/logs";
+    static final String RAW_LOG_PREFIX = "df-";
+
+    // LINES CARRYING A PERCENTAGE, E.G. "uploading 42%", COUNT AS PROGRESS EVEN WITHOUT \r
+    private static final Pattern PROGRESS = Pattern.compile("\\d+(\\.\\d+)?%");
+
+    private final TaskListener listener;
+    private final PrintStream log;
+    private final String verbosity;
+    private final String rawLogPath;
+    private final OutputStream raw;
+
+    DfConsole(TaskListener listener, String verbosity, FilePath rawLog) throws IOException, InterruptedException {
+        this.listener = listener;
+        this.log = listener.getLogger();
+        this.verbosity = verbosity;
+        if (rawLog != null) {
+            rawLog.getParent().mkdirs();
+            this.rawLogPath = rawLog.getRemote();
+            this.raw = new GZIPOutputStream(new BufferedOutputStream(rawLog.write(), 64 * 1024), 64 * 1024);
+        } else {
+            this.rawLogPath = null;
+            this.raw = null;
+        }
+    }
+
+    // NORMALIZED VERBOSITY, NULL IF UNKNOWN
+    static String verbosity(String name) {
+        String v = name == null || name.trim().isEmpty() ? FULL : name.trim().toLowerCase(Locale.ROOT);
+        return FULL.equals(v) || SUMMARY.equals(v) || QUIET.equals(v) ? v : null;
+    }
+
+    // step'S VERBOSITY, ELSE THE GLOBAL ONE
+    static String resolve(String step, DfCliConfig config) throws AbortException {
+        String v = verbosity(step == null || step.trim().isEmpty() ? config.getVerbosity() : step);
+        if (v == null) {
+            throw new AbortException("verbosity must be 'full', 'summary' or 'quiet', got: " + step);
+        }
+        return v;
+    }
+
+    String getVerbosity() {
+        return verbosity;
+    }
+
+    // OUTPUT OF ONE COMMAND, PREFIXED WITH prefix (TO TELL PARALLEL COMMANDS APART)
+    Command command(String prefix) {
+        return new Command(prefix);
+    }
+
+    // ONE WRITE PER LINE SO LINES FROM CONCURRENT COMMANDS DON'T INTERLEAVE
+    private synchronized void print(String prefix, String line) {
+        log.println(prefix + line);
+    }
+
+    private synchronized void print(byte[] b, int off, int len) {
+        log.write(b, off, len);
+    }
+
+    // STDERR LINES, ON THE LISTENER'S ERROR CHANNEL LIKE BEFORE OUTPUT WAS STREAMED
+    private synchronized void error(String prefix, String line) {
+        listener.error(prefix + line);
+    }
+
+    private void print(String prefix, String line, boolean error) {
+        if (error) {
+            error(prefix, line);
+        } else {
+            print(prefix, line);
+        }
+    }
+
+    private synchronized void raw(byte[] prefix, byte[] b, int len) throws IOException {
+        if (raw != null) {
+            raw.write(prefix);
+            raw.write(b, 0, len);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (raw != null) {
+            synchronized (this) {
+                raw.close();
+            }
+            log.println("[dfcli] Full dfcli output in " + rawLogPath);
+        }
+    }
+
+    final class Command {
+        private final String prefix;
+        private final byte[] prefixBytes;
+        // TEXT OF THE LAST LINES, STDERR ONES MARKED BY A LEADING NUL
+        private final Deque<String> tail = new ArrayDeque<>();
+        private long lines;
+        private long hidden;
+        private long lastProgress = System.nanoTime() - PROGRESS_INTERVAL_NANOS;
+        // LATEST PROGRESS LINE HELD BACK BY THE INTERVAL, SHOWN BEFORE THE NEXT OTHER LINE OR WHEN THE COMMAND ENDS
+        private String pendingProgress;
+
+        private Command(String prefix) {
+            this.prefix = prefix == null ? "" : prefix;
+            this.prefixBytes = this.prefix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        // ONE STDOUT LINE AS READ, TERMINATOR INCLUDED
+        void line(byte[] b, int len) throws IOException {
+            line(b, len, false);
+        }
+
+        // error IS TRUE FOR LINES dfcli WROTE TO STDERR
+        synchronized void line(byte[] b, int len, boolean error) throws IOException {
+            raw(prefixBytes, b, len);
+            lines++;
+            int end = len;
+            while (end > 0 && (b[end - 1] == '\n' || b[end - 1] == '\r')) {
+                end--;
+            }
+            int cr = lastIndexOf(b, end, (byte) '\r');
+            if (FULL.equals(verbosity) && cr < 0 && !error) {
+                // THE COMMON CASE TAKES NO DECODING
+                if (prefixBytes.length == 0) {
+                    print(b, 0, len);
+                } else {
+                    byte[] line = new byte[prefixBytes.length + len];
+                    System.arraycopy(prefixBytes, 0, line, 0, prefixBytes.length);
+                    System.arraycopy(b, 0, line, prefixBytes.length, len);
+                    print(line, 0, line.length);
+                }
+                return;
+            }
+
+            String text = new String(b, cr + 1, end - cr - 1, StandardCharsets.UTF_8);
+            if (FULL.equals(verbosity)) {
+                print(prefix, text, error);
+            } else if (QUIET.equals(verbosity)) {
+                hidden++;
+                tail.addLast(error ? "\0" + text : text);
+                if (tail.size() > FAILURE_TAIL_LINES) {
+                    tail.removeFirst();
+                }
+            } else if (cr < 0 && !PROGRESS.matcher(text).find()) {
+                // PROGRESS HELD BACK BEFORE THIS LINE WAS ITS FINAL STATE
+                if (pendingProgress != null) {
+                    print(prefix, pendingProgress);
+                    pendingProgress = null;
+                }
+                print(prefix, text, error);
+            } else if (System.nanoTime() - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+                lastProgress = System.nanoTime();
+                pendingProgress = null;
+                print(prefix, text);
+            } else {
+                if (pendingProgress != null) {
+                    hidden++;
+                }
+                pendingProgress = text;
+            }
+        }
+
+        // CALLED ONCE THE COMMAND EXITED
+        synchronized void finish(int exitCode) {
+            if (pendingProgress != null) {
+                print(prefix, pendingProgress);
+                pendingProgress = null;
+            }
+            if (exitCode != 0 && !tail.isEmpty()) {
+                print(prefix, "[dfcli] Last " + tail.size() + " lines of dfcli output:");
+                for (String line : tail) {
+                    boolean error = line.startsWith("\0");
+                    print(prefix, error ? line.substring(1) : line, error);
+                }
+                hidden -= tail.size();
+            }
+            tail.clear();
+            if (hidden > 0) {
+                print(prefix, "[dfcli] " + hidden + " of " + lines + " lines of dfcli output not shown (verbosity "
+                        + verbosity + (rawLogPath != null ? ", see " + rawLogPath : "") + ")");
+            }
+            lines = 0;
+            hidden = 0;
+        }
+    }
+
+    private static int lastIndexOf(byte[] b, int end, byte value) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
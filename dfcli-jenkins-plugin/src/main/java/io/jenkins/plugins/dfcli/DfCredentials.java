@@ -0,0 +1,115 @@
+package io.jenkins.plugins.dfcli;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import hudson.util.ListBoxModel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+// RESOLVES A SERVER'S credentialsId THROUGH THE CREDENTIALS API. WITH A RUN, A FOLDER CREDENTIAL WITH THE SAME ID
+// OVERRIDES THE GLOBAL ONE. RESULTS ARE CACHED IN MEMORY ONLY, DROPPED WHEN A CREDENTIALS STORE, FOLDER OR THE
+// PLUGIN CONFIG IS SAVED, AND AFTER A TTL FOR PROVIDERS THAT NEVER SAVE (E.G. EXTERNAL SECRET STORES). EVERY USE BY
+// A RUN IS TRACKED, CACHED OR NOT
+public final class DfCredentials {
+    static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // credentialsId|JOB FULL NAME ("" FOR GLOBAL) -> RESOLVED CREDENTIALS
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private DfCredentials() {}
+
+    // server WITH ITS SECRETS FILLED IN FROM ITS CREDENTIALS, OR server ITSELF IF IT HAS NO credentialsId
+    public static DfServer resolve(DfServer server, Run<?, ?> run) throws AbortException {
+        String id = server.getCredentialsId();
+        if (id == null) {
+            return server;
+        }
+        String scope = run != null ? run.getParent().getFullName() : "";
+        String key = id + "|" + scope;
+        Entry entry = CACHE.get(key);
+        if (entry == null || entry.isExpired()) {
+            StandardCredentials credentials = run != null
+                    ? CredentialsProvider.findCredentialById(id, StandardCredentials.class, run)
+                    : CredentialsMatchers.firstOrNull(
+                            CredentialsProvider.lookupCredentialsInItemGroup(
+                                    StandardCredentials.class, Jenkins.get(), ACL.SYSTEM2, Collections.emptyList()),
+                            CredentialsMatchers.withId(id));
+            if (credentials == null) {
+                throw new AbortException("dfcli credentials '" + id + "' for server " + server.getName()
+                        + " not found" + (run != null ? " from " + scope : ""));
+            }
+            if (!(credentials instanceof StandardUsernamePasswordCredentials)
+                    && !(credentials instanceof StringCredentials)) {
+                throw new AbortException("dfcli credentials '" + id + "' must be username/password or secret text");
+            }
+            entry = new Entry(credentials);
+            CACHE.put(key, entry);
+        } else if (run != null) {
+            // findCredentialById TRACKS THE USE, A CACHE HIT HAS TO DO IT ITSELF
+            CredentialsProvider.track(run, entry.credentials);
+        }
+        return server.withCredentials(entry.credentials);
+    }
+
+    public static void invalidate() {
+        CACHE.clear();
+    }
+
+    // USERNAME/PASSWORD OR SECRET TEXT (TOKEN) CREDENTIALS VISIBLE TO THE CONTROLLER
+    static ListBoxModel fillItems(String credentialsId) {
+        StandardListBoxModel items = new StandardListBoxModel();
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return items.includeCurrentValue(credentialsId);
+        }
+        return items.includeEmptyValue()
+                .includeMatchingAs(
+                        ACL.SYSTEM2,
+                        Jenkins.get(),
+                        StandardCredentials.class,
+                        Collections.emptyList(),
+                        CredentialsMatchers.anyOf(
+                                CredentialsMatchers.instanceOf(StandardUsernamePasswordCredentials.class),
+                                CredentialsMatchers.instanceOf(StringCredentials.class)))
+                .includeCurrentValue(credentialsId);
+    }
+
+    private static class Entry {
+        private final StandardCredentials credentials;
+        private final long resolvedAt = System.currentTimeMillis();
+
+        Entry(StandardCredentials credentials) {
+            this.credentials = credentials;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - resolvedAt > TTL_MILLIS;
+        }
+    }
+
+    // GLOBAL CREDENTIALS, FOLDERS (WHICH HOLD FOLDER CREDENTIALS) AND OUR OWN CONFIG
+    @Extension
+    public static class Invalidator extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup || o instanceof DfCliConfig) {
+                invalidate();
+            }
+        }
+    }
+}
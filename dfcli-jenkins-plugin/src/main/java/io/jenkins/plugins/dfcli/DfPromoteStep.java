@@ -0,0 +1,81 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+// dfTag THAT ALSO PROMOTES THE SELECTED ARTIFACTS INTO ANOTHER REPO, E.G. STAGING TO RELEASES, WITH THE SAME
+// SELECTORS, BATCHING, RETRIES AND TOTALS. set/remove ARE OPTIONAL AND APPLY TO THE PROMOTED COPIES:
+//   dfPromote repo: 'staging', to: 'releases', version: '1.4.0', set: [channel: 'stable']
+public class DfPromoteStep extends DfTagStep {
+    private static final long serialVersionUID = 1L;
+
+    // LIKE dfTag'S PROPERTIES_PATH (SEE "Server API" IN THE README): POST {"artifacts": [...], "target": "repo",
+    // "set": {...}, "remove": [...]} -> 200 {"failed": [...]}. A PROMOTE IS NOT ASSUMED TO BE IDEMPOTENT
+    static final String PROMOTE_PATH = "/api/v1/repositories/%s/artifacts/promote";
+
+    private final String to;
+
+    @DataBoundConstructor
+    public DfPromoteStep(String repo, String to) {
+        super(repo);
+        this.to = to;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    @Override
+    String functionName() {
+        return "dfPromote";
+    }
+
+    @Override
+    String batchPath() {
+        return String.format(PROMOTE_PATH, encode(getRepo()));
+    }
+
+    // A BATCH THE SERVER MAY HAVE COPIED ALREADY ISN'T SENT AGAIN, ONLY ONE IT NEVER RECEIVED OR REFUSED WITH 503
+    @Override
+    boolean idempotent() {
+        return false;
+    }
+
+    @Override
+    ObjectNode batchFields(ObjectMapper mapper) {
+        return super.batchFields(mapper).put("target", to);
+    }
+
+    @Override
+    void validate() throws AbortException {
+        if (to == null || to.trim().isEmpty()) {
+            throw new AbortException("dfPromote needs a target repo in 'to'");
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfPromote";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Promote Many Distroface Artifacts to Another Repo in Batches";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, FilePath.class, Node.class);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import jenkins.security.MasterToSlaveCallable;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// ONE PAGE OF AN ARTIFACT SEARCH PER CALL, QUERIED FROM THE AGENT. THE RESULT CARRIES THE NEXT PAGE NUMBER (NULL
+// AT THE END), SO A PIPELINE LOOPS OVER A LARGE REPO HOLDING ONE PAGE AT A TIME:
+//   def page = dfSearch(repo: 'r', properties: [os: 'linux'])
+//   while (true) {
+//       page.artifacts.each { ... }
+//       if (!page.next) break
+//       page = dfSearch(repo: 'r', properties: [os: 'linux'], page: page.next)
+//   }
+public class DfSearchStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // `dfcli artifact search` HAS NO PAGING THE PLUGIN CAN RELY ON, SO THIS CALLS THE SERVER DIRECTLY. THE CONTRACT
+    // ASSUMED (SEE "Server API" IN THE README): GET ?page=N&size=M[&version=V][&property.KEY=VALUE...], page 1-BASED,
+    // property.* FILTERS ANDED, ANSWERS 200 {"artifacts": [...], "hasMore": true|false}. A BARE ARRAY OR A MISSING
+    // hasMore IS ACCEPTED, A FULL PAGE IS THEN TAKEN TO HAVE A SUCCESSOR
+    static final String SEARCH_PATH = "/api/v1/repositories/%s/artifacts/search";
+    static final String PROPERTY_PARAM_PREFIX = "property.";
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    public static final int MAX_PAGE_SIZE = 5000;
+
+    private final String repo;
+    private Map<String, String> properties;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int page = 1;
+    private int limit;
+    private String server;
+
+    @DataBoundConstructor
+    public DfSearchStep(String repo) {
+        this.repo = repo;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    // ONLY ARTIFACTS WITH ALL OF THESE PROPERTIES, FILTERED BY THE SERVER
+    @DataBoundSetter
+    public void setProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    @DataBoundSetter
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    // 1-BASED, PASS THE PREVIOUS RESULT'S next
+    @DataBoundSetter
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    // TOTAL ARTIFACTS ACROSS ALL PAGES, 0 FOR NO LIMIT. KEEP IT THE SAME ON EVERY CALL OF ONE LOOP
+    @DataBoundSetter
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    // NAME OF A CONFIGURED SERVER, BLANK LETS THE SELECTION POLICY CHOOSE FOR THE NODE
+    @DataBoundSetter
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient DfSearchStep step;
+
+        protected Execution(DfSearchStep step, StepContext ctx) {
+            super(ctx);
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            FilePath workspace = getContext().get(FilePath.class);
+            if (step.getRepo() == null || step.getRepo().trim().isEmpty()) {
+                throw new AbortException("dfSearch needs 'repo'");
+            }
+            if (step.getPage() < 1) {
+                throw new AbortException("dfSearch page must be 1 or more, got: " + step.getPage());
+            }
+            int size = Math.max(1, Math.min(step.getPageSize(), MAX_PAGE_SIZE));
+
+            // PAGES ENTIRELY PAST THE LIMIT ARE NEVER REQUESTED, THE LAST ONE IS TRIMMED
+            int want = want(step.getPage(), size, step.getLimit());
+            if (want == 0) {
+                return result(new ArrayList<>(), null);
+            }
+
+            DfCliConfig config = DfCliConfig.get();
+            if (config == null) {
+                throw new IOException("DFCli global config not found");
+            }
+            Node node = getContext().get(Node.class);
+            DfServer server = DfCredentials.resolve(
+                    DfServerSelector.select(config, node, step.getServer(), listener), getContext().get(Run.class));
+            DistrofaceClient client = DistrofaceClient.fromServer(server);
+
+            SearchPage query = new SearchPage(client, path(step.getRepo(), step.getProperties(), step.getPage(), size));
+            VirtualChannel channel = workspace.getChannel();
+            if (channel == null) {
+                throw new AbortException("dfSearch: agent for " + workspace.getRemote() + " is offline");
+            }
+            Page found = channel.call(query);
+
+            Map<String, Object> result = result(found, step.getPage(), size, want);
+            List<?> artifacts = (List<?>) result.get("artifacts");
+            listener.getLogger().println("[dfcli] Search " + step.getRepo() + " page " + step.getPage() + ": "
+                    + artifacts.size() + " artifacts" + (result.get("next") != null ? ", more available" : ""));
+            return result;
+        }
+    }
+
+    // HOW MANY ARTIFACTS OF THIS PAGE FIT UNDER THE LIMIT (0 FOR NO LIMIT)
+    static int want(int page, int size, int limit) {
+        if (limit <= 0) {
+            return size;
+        }
+        long offset = (long) (page - 1) * size;
+        return (int) Math.min(size, Math.max(0, limit - offset));
+    }
+
+    // TRIMS THE PAGE TO want AND WORKS OUT next. A PAGE THE LIMIT CUTS SHORT IS ALWAYS THE LAST ONE
+    static Map<String, Object> result(Page found, int page, int size, int want) {
+        List<Object> artifacts = found.getArtifacts();
+        // WITHOUT hasMore FROM THE SERVER, A FULL PAGE IS ASSUMED TO HAVE A SUCCESSOR
+        boolean more = found.getHasMore() != null ? found.getHasMore() : artifacts.size() >= size;
+        if (artifacts.size() > want) {
+            artifacts = new ArrayList<>(artifacts.subList(0, want));
+            more = false;
+        } else if (want < size) {
+            more = false;
+        }
+        return result(artifacts, more ? page + 1 : null);
+    }
+
+    private static Map<String, Object> result(List<Object> artifacts, Integer next) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("artifacts", artifacts);
+        out.put("next", next);
+        return out;
+    }
+
+    static String path(String repo, Map<String, String> properties, int page, int size) {
+        return path(repo, null, properties, page, size);
+    }
+
+    // version, IF GIVEN, NARROWS THE SEARCH TO ARTIFACTS UPLOADED WITH THAT --version
+    static String path(String repo, String version, Map<String, String> properties, int page, int size) {
+        StringBuilder path = new StringBuilder(String.format(SEARCH_PATH, encode(repo)));
+        path.append("?page=").append(page).append("&size=").append(size);
+        if (version != null && !version.trim().isEmpty()) {
+            path.append("&version=").append(encode(version.trim()));
+        }
+        if (properties != null) {
+            for (Map.Entry<String, String> p : new TreeMap<>(properties).entrySet()) {
+                path.append('&').append(encode(PROPERTY_PARAM_PREFIX + p.getKey()))
+                        .append('=').append(encode(p.getValue()));
+            }
+        }
+        return path.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+
+    // RUNS ON THE AGENT, ONLY THE PARSED PAGE CROSSES THE CHANNEL
+    static class SearchPage extends MasterToSlaveCallable<Page, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final DistrofaceClient client;
+        private final String path;
+
+        SearchPage(DistrofaceClient client, String path) {
+            this.client = client;
+            this.path = path;
+        }
+
+        @Override
+        public Page call() throws IOException {
+            try {
+                return client.withRetry(() -> {
+                    HttpURLConnection conn = client.get("GET", path, Map.of("Accept", "application/json"));
+                    DistrofaceClient.checkStatus(conn);
+                    try (InputStream in = conn.getInputStream()) {
+                        return Page.of(JsonResultParser.parse(in));
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("dfSearch interrupted", e);
+            }
+        }
+    }
+
+    static class Page implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<Object> artifacts;
+        private final Boolean hasMore;
+
+        Page(ArrayList<Object> artifacts, Boolean hasMore) {
+            this.artifacts = artifacts;
+            this.hasMore = hasMore;
+        }
+
+        // A BARE ARRAY IS ACCEPTED TOO
+        @SuppressWarnings("unchecked")
+        static Page of(Object json) throws IOException {
+            Object list = json instanceof Map ? ((Map<String, Object>) json).get("artifacts") : json;
+            if (list == null) {
+                return new Page(new ArrayList<>(), false);
+            }
+            if (!(list instanceof List)) {
+                throw new IOException("Unexpected search response, no 'artifacts' array");
+            }
+            ArrayList<Object> artifacts = new ArrayList<>((List<Object>) list);
+            Object more = json instanceof Map ? ((Map<String, Object>) json).get("hasMore") : null;
+            return new Page(artifacts, more instanceof Boolean ? (Boolean) more : null);
+        }
+
+        List<Object> getArtifacts() {
+            return artifacts;
+        }
+
+        // NULL IF THE SERVER DIDN'T SAY
+        Boolean getHasMore() {
+            return hasMore;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfSearch";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Search Distroface Artifacts One Page at a Time";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, FilePath.class, Node.class);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.jenkins.plugins.dfcli;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.util.ListBoxModel;
+import hudson.util.Secret;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
+
+// ONE NAMED DISTROFACE SERVER AND ITS CREDENTIALS. THE LEGACY SINGLE SERVER IN DfCliConfig IS EXPOSED AS ONE OF
+// THESE NAMED "default"
+public class DfServer extends AbstractDescribableImpl<DfServer> {
+    public static final String DEFAULT_NAME = "default";
+
+    private final String name;
+    private final String serverUrl;
+    private String username;
+    private Secret password;
+    private Secret token;
+    private String label;
+    private String credentialsId;
+
+    @DataBoundConstructor
+    public DfServer(String name, String serverUrl) {
+        this.name = Util.fixEmptyAndTrim(name);
+        this.serverUrl = Util.fixEmptyAndTrim(serverUrl);
+    }
+
+    // UNNAMED SERVERS GO BY THEIR URL
+    public String getName() {
+        return name != null ? name : serverUrl;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @DataBoundSetter
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Secret getPassword() {
+        return password;
+    }
+
+    @DataBoundSetter
+    public void setPassword(Secret password) {
+        this.password = password;
+    }
+
+    public Secret getToken() {
+        return token;
+    }
+
+    @DataBoundSetter
+    public void setToken(Secret token) {
+        this.token = token;
+    }
+
+    // LABEL EXPRESSION LIMITING WHICH NODES MAY USE THIS SERVER, BLANK MEANS ANY
+    public String getLabel() {
+        return label;
+    }
+
+    @DataBoundSetter
+    public void setLabel(String label) {
+        this.label = Util.fixEmptyAndTrim(label);
+    }
+
+    // USERNAME/PASSWORD OR SECRET TEXT CREDENTIALS, TAKING PRECEDENCE OVER THE FIELDS ABOVE
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    @DataBoundSetter
+    public void setCredentialsId(String credentialsId) {
+        this.credentialsId = Util.fixEmptyAndTrim(credentialsId);
+    }
+
+    // A COPY CARRYING THE SECRETS OF credentials, FOR ONE STEP'S USE. NEVER SAVED
+    DfServer withCredentials(StandardCredentials credentials) {
+        DfServer resolved = new DfServer(name, serverUrl);
+        resolved.label = label;
+        resolved.credentialsId = credentialsId;
+        if (credentials instanceof StandardUsernamePasswordCredentials) {
+            StandardUsernamePasswordCredentials up = (StandardUsernamePasswordCredentials) credentials;
+            resolved.username = up.getUsername();
+            resolved.password = up.getPassword();
+        } else if (credentials instanceof StringCredentials) {
+            resolved.token = ((StringCredentials) credentials).getSecret();
+        }
+        return resolved;
+    }
+
+    public boolean isUsable() {
+        return serverUrl != null;
+    }
+
+    public boolean hasCredentials() {
+        return (username != null && !username.isEmpty() && password != null) || token != null;
+    }
+
+    public boolean appliesTo(Node node) {
+        if (label == null) {
+            return true;
+        }
+        try {
+            return Label.parseExpression(label).matches(node);
+        } catch (IllegalArgumentException e) {
+            // A BROKEN EXPRESSION MATCHES NOTHING RATHER THAN EVERYTHING
+            return false;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<DfServer> {
+        @Override
+        public String getDisplayName() {
+            return "Distroface Server";
+        }
+
+        @POST
+        public ListBoxModel doFillCredentialsIdItems(@QueryParameter String credentialsId) {
+            return DfCredentials.fillItems(credentialsId);
+        }
+    }
+}
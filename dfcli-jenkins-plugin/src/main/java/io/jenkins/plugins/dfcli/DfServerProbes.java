@@ -0,0 +1,159 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+
+// MEASURES, FROM EACH ONLINE AGENT, THE ROUND TRIP TO EVERY CONFIGURED SERVER AND CACHES IT FOR DfServerSelector.
+// ONLY RUNS WHEN THERE IS MORE THAN ONE SERVER AND THE POLICY ISN'T "first"
+@Extension
+public class DfServerProbes extends AsyncPeriodicWork {
+    static final long DOWN = -1;
+    static final int PROBE_TIMEOUT_MILLIS = 5000;
+    private static final long RECURRENCE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // NODE NAME -> SERVER URL -> MILLIS (OR DOWN)
+    private static final Map<String, Map<String, Long>> LATENCIES = new ConcurrentHashMap<>();
+
+    public DfServerProbes() {
+        super("dfcli server probes");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws InterruptedException {
+        DfCliConfig config = DfCliConfig.get();
+        if (config == null || DfCliConfig.SELECT_FIRST.equals(config.getServerSelection())) {
+            LATENCIES.clear();
+            return;
+        }
+        List<DfServer> servers = config.getAllServers();
+        if (servers.size() < 2) {
+            LATENCIES.clear();
+            return;
+        }
+
+        // AGENTS IN PARALLEL, EACH ONE BOUNDED BY THE PROBE TIMEOUT PER SERVER
+        Set<String> online = new HashSet<>();
+        Map<Node, Future<?>> running = new HashMap<>();
+        for (Computer c : Jenkins.get().getComputers()) {
+            Node node = c.getNode();
+            VirtualChannel channel = c.getChannel();
+            if (node == null || channel == null || c.isOffline()) {
+                continue;
+            }
+            online.add(node.getNodeName());
+            running.put(node, Computer.threadPoolForRemoting.submit(() -> {
+                probe(node, channel, servers);
+                return null;
+            }));
+        }
+        for (Map.Entry<Node, Future<?>> probe : running.entrySet()) {
+            try {
+                probe.getValue().get();
+            } catch (ExecutionException e) {
+                listener.getLogger().println("[dfcli] Probing servers from " + probe.getKey().getDisplayName() + " failed: "
+                        + e.getCause());
+            }
+        }
+        LATENCIES.keySet().retainAll(online);
+    }
+
+    // CACHED RESULTS FOR A NODE, NULL IF IT WASN'T PROBED YET
+    static Map<String, Long> latencies(String nodeName) {
+        return LATENCIES.get(nodeName);
+    }
+
+    static Map<String, Long> probe(Node node, VirtualChannel channel, List<DfServer> servers)
+            throws IOException, InterruptedException {
+        ArrayList<String> urls = new ArrayList<>();
+        for (DfServer server : servers) {
+            urls.add(server.getServerUrl());
+        }
+        long[] millis = channel.call(new Probe(urls, PROBE_TIMEOUT_MILLIS));
+        Map<String, Long> result = new HashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            result.put(urls.get(i), millis[i]);
+        }
+        LATENCIES.put(node.getNodeName(), result);
+        return result;
+    }
+
+    static void clear() {
+        LATENCIES.clear();
+    }
+
+    // RUNS ON THE AGENT: BEST OF TWO GETs PER URL, SO THE SECOND (KEEP-ALIVE) REQUEST MOSTLY MEASURES THE ROUND
+    // TRIP RATHER THAN THE TLS HANDSHAKE. ANY ANSWER BELOW 500 COUNTS AS UP, EVEN 401/404
+    static class Probe extends MasterToSlaveCallable<long[], IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> urls;
+        private final int timeoutMillis;
+
+        Probe(ArrayList<String> urls, int timeoutMillis) {
+            this.urls = urls;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public long[] call() {
+            long[] millis = new long[urls.size()];
+            for (int i = 0; i < millis.length; i++) {
+                long best = DOWN;
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    long took = once(urls.get(i));
+                    if (took == DOWN) {
+                        break;
+                    }
+                    best = best == DOWN ? took : Math.min(best, took);
+                }
+                millis[i] = best;
+            }
+            return millis;
+        }
+
+        private long once(String url) {
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+                conn.setConnectTimeout(timeoutMillis);
+                conn.setReadTimeout(timeoutMillis);
+                int code = conn.getResponseCode();
+                // DRAIN SO THE CONNECTION GOES BACK TO THE KEEP-ALIVE POOL
+                try (InputStream in = code < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                    if (in != null) {
+                        in.transferTo(OutputStream.nullOutputStream());
+                    }
+                }
+                return code >= 500 ? DOWN : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            } catch (IOException e) {
+                return DOWN;
+            }
+        }
+    }
+}
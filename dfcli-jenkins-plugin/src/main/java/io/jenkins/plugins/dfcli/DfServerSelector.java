@@ -0,0 +1,125 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// PICKS THE SERVER A NODE TALKS TO. dfcli HOLDS ONE LOGIN PER NODE, SO EVERY POLICY IS STICKY PER NODE: IT ONLY
+// MOVES A NODE WHEN ITS SERVER GOES DOWN OR (latency) A CLOSER ONE SHOWS UP IN THE PROBES
+final class DfServerSelector {
+    // NODE NAME -> SERVER NAME, FOR roundRobin STICKINESS AND FOR LOGGING ONLY ON A CHANGE
+    private static final Map<String, String> ASSIGNED = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT = new AtomicInteger();
+    // A NODE STAYS ON ITS latency CHOICE UNLESS ANOTHER SERVER IS MORE THAN 20% PLUS THIS MUCH FASTER
+    static final long LATENCY_SLACK_MILLIS = 5;
+
+    private DfServerSelector() {}
+
+    // requested (A STEP'S server PARAMETER) WINS; OTHERWISE THE POLICY CHOOSES AMONG SERVERS WHOSE LABEL MATCHES
+    static DfServer select(DfCliConfig config, Node node, String requested, TaskListener listener)
+            throws IOException, InterruptedException {
+        if (requested != null && !requested.trim().isEmpty()) {
+            DfServer server = config.getServer(requested.trim());
+            if (server == null) {
+                throw new AbortException("No dfcli server named '" + requested.trim() + "' is configured");
+            }
+            return server;
+        }
+
+        // NO NODE (E.G. A STEP OUTSIDE node {}) HAS NOTHING TO PROBE FROM
+        if (node == null) {
+            return config.getDefaultServer();
+        }
+
+        List<DfServer> candidates = new ArrayList<>();
+        for (DfServer server : config.getAllServers()) {
+            if (server.appliesTo(node)) {
+                candidates.add(server);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // NOTHING CONFIGURED (OR NOTHING FOR THIS NODE): SAME AS BEFORE MULTI-SERVER SUPPORT
+            return config.getDefaultServer();
+        }
+        String policy = config.getServerSelection();
+        if (candidates.size() == 1 || DfCliConfig.SELECT_FIRST.equals(policy)) {
+            return candidates.get(0);
+        }
+
+        Map<String, Long> latencies = DfServerProbes.latencies(node.getNodeName());
+        if (latencies == null) {
+            // NOT PROBED YET (NEW AGENT), PROBE ONCE NOW
+            Computer computer = node.toComputer();
+            VirtualChannel channel = computer != null ? computer.getChannel() : null;
+            if (channel != null) {
+                latencies = DfServerProbes.probe(node, channel, candidates);
+            }
+        }
+
+        String nodeName = node.getNodeName();
+        DfServer chosen = pick(policy, candidates, latencies, ASSIGNED.get(nodeName));
+        String previous = ASSIGNED.put(nodeName, chosen.getName());
+        if (!chosen.getName().equals(previous)) {
+            Long millis = latencies != null ? latencies.get(chosen.getServerUrl()) : null;
+            listener.getLogger().println("[dfcli] Using server " + chosen.getName() + " (" + chosen.getServerUrl()
+                    + (millis != null && millis != DfServerProbes.DOWN ? ", " + millis + " ms" : "") + ")");
+        }
+        return chosen;
+    }
+
+    // latency: FASTEST SERVER THAT ANSWERED, WITH SOME HYSTERESIS. roundRobin: KEEP current WHILE IT'S UP, ELSE THE NEXT UP SERVER IN
+    // TURN. SERVERS NOT PROBED YET COUNT AS UP; IF ALL ARE DOWN, THE FIRST CANDIDATE
+    static DfServer pick(String policy, List<DfServer> candidates, Map<String, Long> latencies, String current) {
+        List<DfServer> up = new ArrayList<>();
+        for (DfServer server : candidates) {
+            Long millis = latencies != null ? latencies.get(server.getServerUrl()) : null;
+            if (millis == null || millis != DfServerProbes.DOWN) {
+                up.add(server);
+            }
+        }
+        if (up.isEmpty()) {
+            return candidates.get(0);
+        }
+
+        if (DfCliConfig.SELECT_ROUND_ROBIN.equals(policy)) {
+            for (DfServer server : up) {
+                if (server.getName().equals(current)) {
+                    return server;
+                }
+            }
+            return up.get(Math.floorMod(NEXT.getAndIncrement(), up.size()));
+        }
+
+        DfServer fastest = up.get(0);
+        long best = Long.MAX_VALUE;
+        DfServer kept = null;
+        long keptMillis = Long.MAX_VALUE;
+        for (DfServer server : up) {
+            Long millis = latencies != null ? latencies.get(server.getServerUrl()) : null;
+            if (millis == null) {
+                continue;
+            }
+            if (millis < best) {
+                best = millis;
+                fastest = server;
+            }
+            if (server.getName().equals(current)) {
+                kept = server;
+                keptMillis = millis;
+            }
+        }
+        // PROBE JITTER SHOULDN'T FLIP A NODE (AND FORCE A NEW LOGIN) BETWEEN TWO SIMILAR SERVERS
+        if (kept != null && keptMillis <= best + best / 5 + LATENCY_SLACK_MILLIS) {
+            return kept;
+        }
+        return fastest;
+    }
+}
@@ -1,19 +1,25 @@
 package io.jenkins.plugins.dfcli;
 
+import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.Node;
 import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
 import hudson.util.ArgumentListBuilder;
-import hudson.util.Secret;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import jenkins.model.Jenkins;
+import java.util.TreeMap;
+import java.util.UUID;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
@@ -26,10 +32,32 @@ public class DfStep extends Step implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private final String command;
+    private List<String> args;
     private String version;
     private Map<String, String> properties;
     private String cacheKey;
     private boolean createCacheKey;
+    private boolean returnStdout = true;
+    private int maxOutputBytes = DEFAULT_MAX_OUTPUT_BYTES;
+    private boolean async;
+    private String format = FORMAT_TEXT;
+    private String cacheIncludes;
+    private String cacheExcludes;
+    private List<String> cacheEnv;
+    private String server;
+    private String verbosity;
+    private String rawLog;
+
+    public static final String FORMAT_TEXT = "text";
+    public static final String FORMAT_JSON = "json";
+    // ASKS dfcli FOR MACHINE READABLE OUTPUT IN format: 'json'
+    static final List<String> JSON_OUTPUT_ARGS = List.of("--output", "json");
+
+    // HEX CHARS OF THE INPUT DIGEST APPENDED TO THE CACHE KEY VERSION
+    static final int CACHE_KEY_DIGEST_LENGTH = 16;
+
+    // UPPER BOUND ON STDOUT KEPT IN MEMORY FOR THE RETURN VALUE, THE LOG ALWAYS GETS EVERYTHING
+    public static final int DEFAULT_MAX_OUTPUT_BYTES = 4 * 1024 * 1024;
 
     @DataBoundConstructor
     public DfStep(String command) {
@@ -40,6 +68,10 @@ public class DfStep extends Step implements Serializable {
         return command;
     }
 
+    public List<String> getArgs() {
+        return args;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -56,6 +88,71 @@ public class DfStep extends Step implements Serializable {
         return createCacheKey;
     }
 
+    public boolean isReturnStdout() {
+        return returnStdout;
+    }
+
+    public int getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getCacheIncludes() {
+        return cacheIncludes;
+    }
+
+    public String getCacheExcludes() {
+        return cacheExcludes;
+    }
+
+    public List<String> getCacheEnv() {
+        return cacheEnv;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getVerbosity() {
+        return verbosity;
+    }
+
+    public String getRawLog() {
+        return rawLog;
+    }
+
+    boolean isJson() {
+        return FORMAT_JSON.equalsIgnoreCase(format);
+    }
+
+    boolean hasCommand() {
+        return (args != null && !args.isEmpty()) || (command != null && !command.trim().isEmpty());
+    }
+
+    // args AS GIVEN, ELSE THE COMMAND SPLIT ON WHITESPACE, PLUS THE JSON OUTPUT FLAG UNLESS THE USER ALREADY ASKED
+    // FOR AN OUTPUT FORMAT
+    List<String> commandArgs() {
+        List<String> out = new ArrayList<>(args != null && !args.isEmpty() ? args : DfCommandRunner.tokenize(command));
+        if (isJson() && !out.contains(JSON_OUTPUT_ARGS.get(0))) {
+            out.addAll(JSON_OUTPUT_ARGS);
+        }
+        return out;
+    }
+
+    // THE COMMAND AS A LIST, ONE ELEMENT PER ARG, NOTHING IS SPLIT. USED INSTEAD OF command WHEN GIVEN, FOR
+    // VALUES WITH SPACES: df args: ['artifact', 'upload', 'repo', 'my file.zip']
+    @DataBoundSetter
+    public void setArgs(List<String> args) {
+        this.args = args;
+    }
+
     @DataBoundSetter
     public void setVersion(String version) {
         this.version = version;
@@ -76,181 +173,203 @@ public class DfStep extends Step implements Serializable {
         this.createCacheKey = createCacheKey;
     }
 
+    @DataBoundSetter
+    public void setReturnStdout(boolean returnStdout) {
+        this.returnStdout = returnStdout;
+    }
+
+    @DataBoundSetter
+    public void setMaxOutputBytes(int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    // RUN THE COMMAND DETACHED ON THE AGENT AND POLL FOR IT, INSTEAD OF BLOCKING A CONTROLLER THREAD
+    @DataBoundSetter
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    // text (DEFAULT) RETURNS TRIMMED STDOUT, json RETURNS THE PARSED MAPS/LISTS
+    @DataBoundSetter
+    public void setFormat(String format) {
+        this.format = format == null || format.trim().isEmpty() ? FORMAT_TEXT : format.trim();
+    }
+
+    // WITH createCacheKey: FILES (ANT GLOBS) AND ENV VAR NAMES WHOSE CONTENT/VALUES ARE HASHED INTO THE KEY
+    @DataBoundSetter
+    public void setCacheIncludes(String cacheIncludes) {
+        this.cacheIncludes = cacheIncludes;
+    }
+
+    @DataBoundSetter
+    public void setCacheExcludes(String cacheExcludes) {
+        this.cacheExcludes = cacheExcludes;
+    }
+
+    @DataBoundSetter
+    public void setCacheEnv(List<String> cacheEnv) {
+        this.cacheEnv = cacheEnv;
+    }
+
+    // NAME OF A CONFIGURED SERVER, BLANK LETS THE SELECTION POLICY CHOOSE FOR THE NODE
+    @DataBoundSetter
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    // full, summary OR quiet, BLANK FOR THE GLOBAL SETTING. SEE DfConsole
+    @DataBoundSetter
+    public void setVerbosity(String verbosity) {
+        this.verbosity = verbosity;
+    }
+
+    // WORKSPACE PATH FOR THE GZIPPED COMPLETE OUTPUT, E.G. 'logs/publish.log.gz'
+    @DataBoundSetter
+    public void setRawLog(String rawLog) {
+        this.rawLog = rawLog;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
+        if (!FORMAT_TEXT.equalsIgnoreCase(format) && !isJson()) {
+            throw new AbortException("df format must be 'text' or 'json', got: " + format);
+        }
+        if (async && !createCacheKey && hasCommand()) {
+            return new DfAsyncExecution(this, context);
+        }
         return new Execution(this, context);
     }
 
-    private static class Execution extends SynchronousNonBlockingStepExecution<String> {
+    private static class Execution extends SynchronousNonBlockingStepExecution<Object> {
         private static final long serialVersionUID = 1L;
 
-        private final transient String command;
         private final transient String version;
         private final transient Map<String, String> properties;
         private final transient String cacheKey;
         private final transient boolean createCacheKey;
+        private final transient boolean returnStdout;
+        private final transient int maxOutputBytes;
+        private final transient DfStep step;
 
         protected Execution(DfStep step, StepContext ctx) {
             super(ctx);
-            this.command = step.getCommand();
             this.version = step.getVersion();
             this.properties = step.getProperties();
             this.cacheKey = step.getCacheKey();
             this.createCacheKey = step.isCreateCacheKey();
+            this.returnStdout = step.isReturnStdout();
+            this.maxOutputBytes = step.getMaxOutputBytes();
+            this.step = step;
         }
 
         @Override
-        protected String run() throws Exception {
+        protected Object run() throws Exception {
             TaskListener listener = getContext().get(TaskListener.class);
-            Launcher launcher = getContext().get(Launcher.class);
-            EnvVars env = getContext().get(EnvVars.class);
-            FilePath workspace = getContext().get(FilePath.class);
-            Node node = getContext().get(Node.class);
 
             // IF CREATE CACHE KEY, MAKE AND RETURN ONLY
             if (createCacheKey) {
-                String key = generateCacheKey();
+                String keyVersion = version;
+                String digest = inputDigest(listener);
+                if (digest != null) {
+                    keyVersion = version == null || version.trim().isEmpty() ? digest : version.trim() + "-" + digest;
+                }
+                String key = DfCommandRunner.generateCacheKey(keyVersion, properties);
                 if (key != null) {
                     listener.getLogger().println("Generated cache key: " + key);
                 }
                 return key;
             }
 
-            if (command == null || command.trim().isEmpty()) {
+            if (!step.hasCommand()) {
                 return "";
             }
-            DfCliInstallation[] installations = Jenkins.get()
-                    .getDescriptorByType(DfCliInstallation.DescriptorImpl.class)
-                    .getInstallations();
-            if (installations == null || installations.length == 0) {
-                throw new IOException("No DfCliInstallation configured in Jenkins global tools.");
-            }
-
-            installations[0]
-              .forNode(node, listener)
-              .forEnvironment(env);
-
-            DfCliConfig config = DfCliConfig.get();
-            if (config == null) {
-                throw new IOException("DFCli global config not found");
-            }
 
-            // BUILD CMD
-            ArgumentListBuilder cmd = new ArgumentListBuilder();
-
-            // HANDLE DOCKER VS REGULAR AGENTS
-            boolean isDockerAgent = isDockerAgent(launcher);
-            if (isDockerAgent) {
-                // FOR DOCKER, JUST USE THE BINARY NAME + LOGIN AGAIN BEFORE CMD
-                cmd.add("dfcli");
-
-                ArgumentListBuilder loginCmd = new ArgumentListBuilder();
-                loginCmd.add("dfcli");
-                loginCmd.add("login");
-                loginCmd.add("--server", config.getServerUrl());
-
-                String username = config.getUsername();
-                Secret password = config.getPassword();
-                Secret token = config.getToken();
-
-                if (username != null && !username.isEmpty() && password != null) {
-                    loginCmd.add("--username", username);
-                    loginCmd.add("--password", Secret.toString(password));
-                } else if (token != null) {
-                    loginCmd.add("--token", Secret.toString(token));
+            DfCommandRunner runner = DfCommandRunner.prepare(getContext(), step.getServer());
+            try (DfConsole console = runner.openConsole(step.getVerbosity(), step.getRawLog())) {
+                if (step.isJson()) {
+                    return runJson(runner, listener);
                 }
+                ArgumentListBuilder cmd = runner.buildCommand(step.commandArgs(), version, properties, cacheKey);
+                DfCommandRunner.Result result = runner.run(cmd, returnStdout ? maxOutputBytes : 0, "");
 
-                int code = launcher.launch()
-                        .cmds(loginCmd)
-                        .pwd(workspace)
-                        .quiet(false)
-                        .join();
-
-                if (code != 0) {
-                    throw new IOException("DFCli login failed with exit code " + code);
+                if (result.getExitCode() != 0) {
+                    throw runner.failure(result.getExitCode());
                 }
-            } else {
-                String exePath = launcher.isUnix() ? "dfcli" : "dfcli.exe";
-                cmd.add(exePath);
-            }
 
-            for (String arg : command.split("\\s+")) {
-                cmd.add(arg);
+                return returnStdout ? result.getStdout() : null;
             }
+        }
 
-            if (cacheKey != null && !cacheKey.isEmpty()) {
-                StringBuilder keyBuf = new StringBuilder(cacheKey);
-                if (properties != null && !properties.isEmpty()) {
-                    keyBuf.append(" --property ");
-                    StringBuilder propsBuf = new StringBuilder();
-                    properties.forEach(
-                            (k, v) -> propsBuf.append(k).append("=").append(v).append(","));
-
-                    propsBuf.setLength(propsBuf.length() - 1);
-                    keyBuf.append(propsBuf);
-                }
-                cmd.addTokenized(keyBuf.toString());
-            } else {
-                String genKey = generateCacheKey();
-                if (genKey != null && !genKey.isEmpty()) {
-                    cmd.addTokenized(genKey);
-                }
+        // DIGEST OF THE MATCHED FILES AND THE NAMED ENV VARS, HASHED ON THE AGENT. NULL IF NO INPUTS WERE GIVEN
+        private String inputDigest(TaskListener listener) throws Exception {
+            String includes = step.getCacheIncludes();
+            boolean hasFiles = includes != null && !includes.trim().isEmpty();
+            List<String> envNames = step.getCacheEnv();
+            if (!hasFiles && (envNames == null || envNames.isEmpty())) {
+                return null;
             }
 
-            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-
-            listener.getLogger().println("DFCli running: " + cmd.toString());
-            int exitCode = launcher.launch()
-                    .cmds(cmd)
-                    .envs(env)
-                    .pwd(workspace)
-                    .stdout(stdout)
-                    .stderr(stderr)
-                    .join();
-
-            String outStr = stdout.toString("UTF-8").trim();
-            String errStr = stderr.toString("UTF-8").trim();
-
-            if (!outStr.isEmpty()) {
-                for (String line : outStr.split("\n")) {
-                    listener.getLogger().println(line);
+            // ONLY NAMES AND VALUES GO INTO THE DIGEST, THE VALUES THEMSELVES ARE NEVER LOGGED
+            TreeMap<String, String> envInputs = new TreeMap<>();
+            if (envNames != null) {
+                EnvVars env = getContext().get(EnvVars.class);
+                for (String name : envNames) {
+                    envInputs.put(name, env.get(name, ""));
                 }
             }
-
-            if (!errStr.isEmpty()) {
-                listener.error(errStr);
+            if (!hasFiles) {
+                return WorkspaceHashes.digest(new TreeMap<>(), envInputs).substring(0, CACHE_KEY_DIGEST_LENGTH);
             }
 
-            if (exitCode != 0) {
-                throw new IOException("DFCli cmd failed with server/user/exit-code " + config.getServerUrl() + " | " + config.getUsername()
-                        + " | " + exitCode);
+            FilePath workspace = getContext().get(FilePath.class);
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            String cacheFile = tmp != null ? tmp.child(WorkspaceHashCache.DEFAULT_FILE_NAME).getRemote() : null;
+            WorkspaceHashes.DigestInputs.Result result = workspace.act(new WorkspaceHashes.DigestInputs(
+                    new WorkspaceHashes(includes, step.getCacheExcludes(), cacheFile), envInputs));
+            if (result.getFiles() == 0) {
+                listener.getLogger().println("[dfcli] No files match " + includes + " for the cache key");
+            } else {
+                listener.getLogger().println("[dfcli] Hashed " + result.getFiles() + " files and "
+                        + envInputs.size() + " env vars for the cache key");
             }
-
-            return outStr;
+            return result.getDigest().substring(0, CACHE_KEY_DIGEST_LENGTH);
         }
 
-        private boolean isDockerAgent(Launcher launcher) {
-            return launcher.toString().toLowerCase().contains("docker");
-        }
-
-        private String generateCacheKey() {
-            if (version == null || version.trim().isEmpty()) {
-                return null;
+        // STDOUT GOES TO A FILE ON THE AGENT AND IS PARSED THERE, AS FOR ASYNC STEPS, SO THE CONTROLLER NEVER
+        // BUILDS THE TREE AND ONLY THE RESULTING MAPS/LISTS COME BACK OVER THE CHANNEL
+        private Object runJson(DfCommandRunner runner, TaskListener listener) throws Exception {
+            ArgumentListBuilder cmd = runner.buildCommand(step.commandArgs(), version, properties, cacheKey);
+            FilePath workspace = getContext().get(FilePath.class);
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            FilePath dir = tmp != null ? tmp : workspace;
+            dir.mkdirs();
+            FilePath out = dir.child("dfcli-" + UUID.randomUUID() + ".json");
+            try {
+                // out.write() TRUNCATES, SO A RETRY AFTER A RELOGIN STARTS FROM AN EMPTY FILE
+                int exitCode = runner.run(cmd, () -> sink(out), "");
+                if (exitCode != 0) {
+                    throw runner.failure(exitCode);
+                }
+                if (!returnStdout) {
+                    return null;
+                }
+                Object result = out.act(new JsonResultParser.ParseFile(maxOutputBytes));
+                listener.getLogger().println("[dfcli] Parsed " + out.length() + " bytes of JSON output");
+                return result;
+            } finally {
+                out.delete();
             }
+        }
 
-            // EX: "--version 1.0.0 --property KEY1=VAL1,KEY2=VAL2"
-            StringBuilder key = new StringBuilder("--version ").append(version);
-
-            if (properties != null && !properties.isEmpty()) {
-                key.append(" --property ");
-                StringBuilder props = new StringBuilder();
-                properties.forEach(
-                        (k, v) -> props.append(k).append("=").append(v).append(","));
-                props.setLength(props.length() - 1);
-                key.append(props);
+        private static OutputStream sink(FilePath file) {
+            try {
+                return file.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted opening " + file));
             }
-            return key.toString();
         }
     }
 
@@ -0,0 +1,468 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jenkins.security.MasterToSlaveCallable;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// SETS/REMOVES PROPERTIES ON MANY ARTIFACTS WITH ONE REQUEST PER BATCH INSTEAD OF ONE dfcli PROCESS PER ARTIFACT.
+// ARTIFACTS ARE AN EXPLICIT LIST OR EVERYTHING A SEARCH (version AND/OR match PROPERTIES) FINDS. RUNS ON THE AGENT:
+//   def r = dfTag repo: 'releases', version: '1.4.0', set: [channel: 'stable'], remove: ['candidate']
+//   echo "${r.updated} of ${r.matched} tagged"
+public class DfTagStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // dfcli SETS PROPERTIES ONE ARTIFACT PER PROCESS, SO BATCHES GO TO THE SERVER DIRECTLY. THE CONTRACT ASSUMED (SEE
+    // "Server API" IN THE README): POST {"artifacts": [...], "set": {...}, "remove": [...]} -> 200 {"failed": [...]},
+    // failed HOLDING NAMES OR {"name": ...} OBJECTS, EVERY OTHER ARTIFACT UPDATED. SENDING A BATCH TWICE IS HARMLESS
+    static final String PROPERTIES_PATH = "/api/v1/repositories/%s/artifacts/properties";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int MAX_BATCH_SIZE = 5000;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int MAX_CONCURRENCY = 32;
+    // FAILED NAMES RETURNED TO THE PIPELINE, THE COUNT IS ALWAYS COMPLETE
+    static final int MAX_FAILED_NAMES = 100;
+    static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    private final String repo;
+    private List<String> artifacts;
+    private String version;
+    private Map<String, String> match;
+    private Map<String, String> set;
+    private List<String> remove;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int retries = DistrofaceClient.DEFAULT_RETRIES;
+    private boolean failOnError = true;
+    private String server;
+
+    @DataBoundConstructor
+    public DfTagStep(String repo) {
+        this.repo = repo;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public List<String> getArtifacts() {
+        return artifacts;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Map<String, String> getMatch() {
+        return match;
+    }
+
+    public Map<String, String> getSet() {
+        return set;
+    }
+
+    public List<String> getRemove() {
+        return remove;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public boolean isFailOnError() {
+        return failOnError;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    // ARTIFACT NAMES, USED INSTEAD OF A SEARCH
+    @DataBoundSetter
+    public void setArtifacts(List<String> artifacts) {
+        this.artifacts = artifacts;
+    }
+
+    @DataBoundSetter
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    // ONLY ARTIFACTS THAT ALREADY HAVE ALL OF THESE PROPERTIES
+    @DataBoundSetter
+    public void setMatch(Map<String, String> match) {
+        this.match = match;
+    }
+
+    @DataBoundSetter
+    public void setSet(Map<String, String> set) {
+        this.set = set;
+    }
+
+    // PROPERTY KEYS TO DROP
+    @DataBoundSetter
+    public void setRemove(List<String> remove) {
+        this.remove = remove;
+    }
+
+    @DataBoundSetter
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    // BATCHES IN FLIGHT AT ONCE
+    @DataBoundSetter
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    // PER BATCH, WITH BACKOFF. A BATCH STILL FAILING AFTER THAT COUNTS ALL ITS ARTIFACTS AS FAILED
+    @DataBoundSetter
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    // FALSE RETURNS THE TOTALS EVEN IF SOME ARTIFACTS FAILED, INSTEAD OF FAILING THE STEP
+    @DataBoundSetter
+    public void setFailOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+    }
+
+    // NAME OF A CONFIGURED SERVER, BLANK LETS THE SELECTION POLICY CHOOSE FOR THE NODE
+    @DataBoundSetter
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    String functionName() {
+        return "dfTag";
+    }
+
+    String batchPath() {
+        return String.format(PROPERTIES_PATH, encode(repo));
+    }
+
+    // WHETHER A BATCH MAY BE SENT AGAIN AFTER A FAILURE THE SERVER MIGHT ALREADY HAVE ACTED ON
+    boolean idempotent() {
+        return true;
+    }
+
+    // EVERYTHING IN A BATCH REQUEST BUT THE ARTIFACT NAMES
+    ObjectNode batchFields(ObjectMapper mapper) {
+        ObjectNode body = mapper.createObjectNode();
+        ObjectNode setNode = body.putObject("set");
+        if (set != null) {
+            set.forEach(setNode::put);
+        }
+        ArrayNode removeNode = body.putArray("remove");
+        if (remove != null) {
+            remove.forEach(removeNode::add);
+        }
+        return body;
+    }
+
+    void validate() throws AbortException {
+        if ((set == null || set.isEmpty()) && (remove == null || remove.isEmpty())) {
+            throw new AbortException(functionName() + " needs properties to 'set' or 'remove'");
+        }
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        if (repo == null || repo.trim().isEmpty()) {
+            throw new AbortException(functionName() + " needs 'repo'");
+        }
+        // A MISSING SELECTOR WOULD OTHERWISE TOUCH THE WHOLE REPO
+        boolean selected = (artifacts != null && !artifacts.isEmpty())
+                || (version != null && !version.trim().isEmpty())
+                || (match != null && !match.isEmpty());
+        if (!selected) {
+            throw new AbortException(functionName() + " needs 'artifacts', 'version' or 'match'");
+        }
+        validate();
+        return new Execution(this, context);
+    }
+
+    static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient DfTagStep step;
+
+        protected Execution(DfTagStep step, StepContext ctx) {
+            super(ctx);
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            FilePath workspace = getContext().get(FilePath.class);
+            DfCliConfig config = DfCliConfig.get();
+            if (config == null) {
+                throw new IOException("DFCli global config not found");
+            }
+            Node node = getContext().get(Node.class);
+            DfServer server = DfCredentials.resolve(
+                    DfServerSelector.select(config, node, step.getServer(), listener), getContext().get(Run.class));
+            DistrofaceClient client = DistrofaceClient.fromServer(server).withRetries(step.getRetries());
+
+            VirtualChannel channel = workspace.getChannel();
+            if (channel == null) {
+                throw new AbortException(step.functionName() + ": agent for " + workspace.getRemote() + " is offline");
+            }
+            Totals totals = channel.call(new Batches(step, client, listener));
+
+            listener.getLogger().println("[dfcli] " + step.functionName() + " " + step.getRepo() + ": "
+                    + totals.updated + " of " + totals.matched + " artifacts updated in " + totals.batches
+                    + " batches, " + totals.failed + " failed (" + totals.millis + " ms)");
+            if (totals.failed > 0 && step.isFailOnError()) {
+                throw new AbortException(step.functionName() + ": " + totals.failed + " artifacts failed, e.g. "
+                        + totals.failedNames.subList(0, Math.min(5, totals.failedNames.size())));
+            }
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("matched", totals.matched);
+            out.put("updated", totals.updated);
+            out.put("failed", totals.failed);
+            out.put("failedArtifacts", new ArrayList<>(totals.failedNames));
+            out.put("batches", totals.batches);
+            return out;
+        }
+    }
+
+    // RUNS ON THE AGENT: RESOLVES THE SELECTION, THEN SENDS THE BATCHES `concurrency` AT A TIME
+    static class Batches extends MasterToSlaveCallable<Totals, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String repo;
+        private final List<String> artifacts;
+        private final String version;
+        private final Map<String, String> match;
+        private final String batchPath;
+        private final String fields;
+        private final int batchSize;
+        private final int concurrency;
+        private final boolean idempotent;
+        private final DistrofaceClient client;
+        private final TaskListener listener;
+
+        Batches(DfTagStep step, DistrofaceClient client, TaskListener listener) throws IOException {
+            this.name = step.functionName();
+            this.repo = step.getRepo();
+            this.artifacts = step.getArtifacts() != null ? new ArrayList<>(step.getArtifacts()) : null;
+            this.version = step.getVersion();
+            this.match = step.getMatch() != null ? new LinkedHashMap<>(step.getMatch()) : null;
+            this.batchPath = step.batchPath();
+            ObjectMapper mapper = new ObjectMapper();
+            this.fields = mapper.writeValueAsString(step.batchFields(mapper));
+            this.batchSize = Math.max(1, Math.min(step.getBatchSize(), MAX_BATCH_SIZE));
+            this.concurrency = Math.max(1, Math.min(step.getConcurrency(), MAX_CONCURRENCY));
+            this.idempotent = step.idempotent();
+            this.client = client;
+            this.listener = listener;
+        }
+
+        @Override
+        public Totals call() throws IOException {
+            long start = System.currentTimeMillis();
+            List<String> names = artifacts != null && !artifacts.isEmpty()
+                    ? new ArrayList<>(new LinkedHashSet<>(artifacts))
+                    : select();
+            int count = (names.size() + batchSize - 1) / batchSize;
+            Totals totals = new Totals(names.size(), count);
+            if (names.isEmpty()) {
+                listener.getLogger().println("[dfcli] " + name + ": no artifacts match");
+                return totals;
+            }
+            listener.getLogger().println("[dfcli] " + name + ": " + names.size() + " artifacts in " + count
+                    + " batches of up to " + batchSize + ", " + Math.min(concurrency, count) + " at a time");
+
+            ObjectMapper mapper = new ObjectMapper();
+            ObjectNode template = (ObjectNode) mapper.readTree(fields);
+            ExecutorService pool = Executors.newFixedThreadPool(
+                    Math.min(concurrency, count), new NamingThreadFactory(Executors.defaultThreadFactory(), name));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    List<String> batch = names.subList(i * batchSize, Math.min(names.size(), (i + 1) * batchSize));
+                    int index = i + 1;
+                    futures.add(pool.submit(() -> {
+                        send(mapper, template, batch, index, count, totals);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(name + " interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException(name + " batch failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            totals.millis = System.currentTimeMillis() - start;
+            return totals;
+        }
+
+        // EVERY NAME FIRST, THEN THE UPDATES: TAGGING WHILE PAGING WOULD SHIFT THE PAGES WHEN set OR remove
+        // CHANGES A PROPERTY THE SEARCH MATCHES ON
+        private List<String> select() throws IOException {
+            Set<String> names = new LinkedHashSet<>();
+            for (int page = 1; ; page++) {
+                String path = DfSearchStep.path(repo, version, match, page, DfSearchStep.MAX_PAGE_SIZE);
+                DfSearchStep.Page found = new DfSearchStep.SearchPage(client, path).call();
+                for (Object artifact : found.getArtifacts()) {
+                    Object n = artifact instanceof Map ? ((Map<?, ?>) artifact).get("name") : artifact;
+                    if (n != null) {
+                        names.add(n.toString());
+                    }
+                }
+                boolean more = found.getHasMore() != null
+                        ? found.getHasMore()
+                        : found.getArtifacts().size() >= DfSearchStep.MAX_PAGE_SIZE;
+                if (!more || found.getArtifacts().isEmpty()) {
+                    return new ArrayList<>(names);
+                }
+            }
+        }
+
+        private void send(ObjectMapper mapper, ObjectNode template, List<String> batch, int index, int count,
+                Totals totals) throws InterruptedException {
+            ObjectNode body = template.deepCopy();
+            ArrayNode names = body.putArray("artifacts");
+            batch.forEach(names::add);
+            try {
+                JsonNode response = client.withRetry(() -> {
+                    HttpURLConnection conn = client.open("POST", batchPath);
+                    conn.setDoOutput(true);
+                    conn.setRequestProperty("Content-Type", "application/json");
+                    conn.setRequestProperty("Accept", "application/json");
+                    try (OutputStream out = conn.getOutputStream()) {
+                        mapper.writeValue(out, body);
+                    }
+                    DistrofaceClient.checkStatus(conn);
+                    try (InputStream in = conn.getInputStream()) {
+                        return mapper.readTree(in);
+                    }
+                }, idempotent ? e -> true : DistrofaceClient::notApplied);
+                Set<String> failed = new HashSet<>();
+                for (JsonNode f : response.path("failed")) {
+                    failed.add(f.isObject() ? f.path("name").asText() : f.asText());
+                }
+                totals.add(batch.size() - failed.size(), failed);
+            } catch (IOException e) {
+                listener.getLogger().println("[dfcli] " + name + ": batch " + index + "/" + count + " failed: "
+                        + e.getMessage());
+                totals.add(0, batch);
+            }
+            totals.progress(listener, name);
+        }
+    }
+
+    static class Totals implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int matched;
+        final int batches;
+        int updated;
+        int failed;
+        final ArrayList<String> failedNames = new ArrayList<>();
+        long millis;
+        private int done;
+        private transient long lastProgress;
+
+        Totals(int matched, int batches) {
+            this.matched = matched;
+            this.batches = batches;
+            this.lastProgress = System.currentTimeMillis();
+        }
+
+        synchronized void add(int updated, Iterable<String> failed) {
+            this.updated += updated;
+            for (String f : failed) {
+                this.failed++;
+                if (failedNames.size() < MAX_FAILED_NAMES) {
+                    failedNames.add(f);
+                }
+            }
+            done++;
+        }
+
+        // AT MOST ONE LINE PER PROGRESS_INTERVAL, NOT ONE PER BATCH
+        synchronized void progress(TaskListener listener, String name) {
+            long now = System.currentTimeMillis();
+            if (done < batches && now - lastProgress < PROGRESS_INTERVAL_MILLIS) {
+                return;
+            }
+            lastProgress = now;
+            listener.getLogger().println("[dfcli] " + name + ": " + done + "/" + batches + " batches, "
+                    + (updated + failed) + "/" + matched + " artifacts processed");
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfTag";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Set or Remove Properties on Many Distroface Artifacts in Batches";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, FilePath.class, Node.class);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// PARALLEL, CHUNKED, RESUMABLE UPLOAD/DOWNLOAD OF ONE LARGE FILE, DONE DIRECTLY FROM THE AGENT
+public class DfTransferStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+    public static final int DEFAULT_STREAMS = 4;
+
+    private final String direction;
+    private final String file;
+    private final String url;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+    private int streams = DEFAULT_STREAMS;
+    private boolean resume = true;
+    private int retries = DistrofaceClient.DEFAULT_RETRIES;
+    private String server;
+
+    @DataBoundConstructor
+    public DfTransferStep(String direction, String file, String url) {
+        this.direction = direction;
+        this.file = file;
+        this.url = url;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getStreams() {
+        return streams;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    @DataBoundSetter
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @DataBoundSetter
+    public void setStreams(int streams) {
+        this.streams = streams;
+    }
+
+    @DataBoundSetter
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    @DataBoundSetter
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    // NAME OF A CONFIGURED SERVER, BLANK LETS THE SELECTION POLICY CHOOSE FOR THE NODE
+    @DataBoundSetter
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient DfTransferStep step;
+
+        protected Execution(DfTransferStep step, StepContext ctx) {
+            super(ctx);
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            FilePath workspace = getContext().get(FilePath.class);
+
+            if (step.getDirection() == null || step.getFile() == null || step.getUrl() == null) {
+                throw new AbortException("dfTransfer needs 'direction', 'file' and 'url'");
+            }
+            ChunkedTransfer.Direction dir;
+            try {
+                dir = ChunkedTransfer.Direction.valueOf(step.getDirection().trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new AbortException("dfTransfer direction must be 'upload' or 'download', got: " + step.getDirection());
+            }
+
+            DfCliConfig config = DfCliConfig.get();
+            if (config == null) {
+                throw new IOException("DFCli global config not found");
+            }
+            // URLS ARE PATHS ON THE SELECTED SERVER, ITS CREDENTIALS GO NOWHERE ELSE
+            Node node = getContext().get(Node.class);
+            DfServer server = DfCredentials.resolve(
+                    DfServerSelector.select(config, node, step.getServer(), listener), getContext().get(Run.class));
+            DistrofaceClient client = DistrofaceClient.fromServer(server).withRetries(step.getRetries());
+            String url;
+            try {
+                url = client.resolve(step.getUrl());
+            } catch (IOException e) {
+                throw new AbortException("dfTransfer: " + e.getMessage());
+            }
+
+            FilePath target = workspace.child(step.getFile());
+            if (dir == ChunkedTransfer.Direction.DOWNLOAD) {
+                FilePath parent = target.getParent();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+            }
+
+            listener.getLogger().println("[dfcli] " + dir.name().toLowerCase(Locale.ROOT) + " " + target.getRemote()
+                    + (dir == ChunkedTransfer.Direction.UPLOAD ? " -> " : " <- ") + url
+                    + " (" + step.getStreams() + " streams, " + step.getChunkSize() + " byte chunks)");
+
+            ChunkedTransfer.Result result = target.act(new ChunkedTransfer(
+                    client, step.getUrl(), dir, step.getChunkSize(), step.getStreams(), step.isResume()));
+
+            if (result.getResumedChunks() > 0) {
+                listener.getLogger().println("[dfcli] Resumed transfer, " + result.getResumedChunks() + " of "
+                        + result.getChunks() + " chunks were already done");
+            }
+            double seconds = Math.max(result.getMillis(), 1) / 1000.0;
+            listener.getLogger().printf(
+                    "[dfcli] Transferred %d bytes in %.1fs (%.1f MiB/s)%n",
+                    result.getBytes(), seconds, result.getBytes() / seconds / (1024 * 1024));
+
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("bytes", result.getBytes());
+            out.put("chunks", result.getChunks());
+            out.put("resumedChunks", result.getResumedChunks());
+            out.put("millis", result.getMillis());
+            return out;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfTransfer";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Parallel, Resumable Chunked Transfer to/from Distroface";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, FilePath.class, Node.class);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+// UPLOADS WORKSPACE FILES MATCHING A GLOB, SKIPPING ANY WHOSE SHA-256 THE SERVER ALREADY HAS
+public class DfUploadStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // BATCHED EXISTENCE CHECK. dfcli HAS NO COMMAND FOR THIS, SO IT IS A REST CALL THE SERVER HAS TO PROVIDE (SEE
+    // "Server API" IN THE README): POST {"sha256": [...]} -> 200 {"existing": [...]}, THE SUBSET OF THE GIVEN HASHES
+    // ALREADY STORED IN THE REPO. ANY OTHER ANSWER (E.G. 404 FROM A SERVER WITHOUT IT) UPLOADS EVERYTHING
+    static final String EXISTS_PATH = "/api/v1/repositories/%s/blobs/exists";
+    // PROPERTY ATTACHED TO EVERY UPLOAD SO LATER BUILDS CAN FIND IT BY HASH
+    static final String SHA256_PROPERTY = "sha256";
+
+    private final String repo;
+    private final String includes;
+    private String excludes;
+    private String version;
+    private Map<String, String> properties;
+    private boolean skipExisting = true;
+    private String verbosity;
+    private String rawLog;
+
+    @DataBoundConstructor
+    public DfUploadStep(String repo, String includes) {
+        this.repo = repo;
+        this.includes = includes;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public String getIncludes() {
+        return includes;
+    }
+
+    public String getExcludes() {
+        return excludes;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public boolean isSkipExisting() {
+        return skipExisting;
+    }
+
+    public String getVerbosity() {
+        return verbosity;
+    }
+
+    public String getRawLog() {
+        return rawLog;
+    }
+
+    @DataBoundSetter
+    public void setExcludes(String excludes) {
+        this.excludes = excludes;
+    }
+
+    @DataBoundSetter
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    @DataBoundSetter
+    public void setProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    @DataBoundSetter
+    public void setSkipExisting(boolean skipExisting) {
+        this.skipExisting = skipExisting;
+    }
+
+    // AS FOR df: full, summary OR quiet, AND WHERE THE COMPLETE OUTPUT GOES
+    @DataBoundSetter
+    public void setVerbosity(String verbosity) {
+        this.verbosity = verbosity;
+    }
+
+    @DataBoundSetter
+    public void setRawLog(String rawLog) {
+        this.rawLog = rawLog;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static class Execution extends SynchronousNonBlockingStepExecution<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient String repo;
+        private final transient String includes;
+        private final transient String excludes;
+        private final transient String version;
+        private final transient Map<String, String> properties;
+        private final transient boolean skipExisting;
+        private final transient String verbosity;
+        private final transient String rawLog;
+
+        protected Execution(DfUploadStep step, StepContext ctx) {
+            super(ctx);
+            this.repo = step.getRepo();
+            this.includes = step.getIncludes();
+            this.excludes = step.getExcludes();
+            this.version = step.getVersion();
+            this.properties = step.getProperties();
+            this.skipExisting = step.isSkipExisting();
+            this.verbosity = step.getVerbosity();
+            this.rawLog = step.getRawLog();
+        }
+
+        @Override
+        protected Map<String, Object> run() throws Exception {
+            TaskListener listener = getContext().get(TaskListener.class);
+            FilePath workspace = getContext().get(FilePath.class);
+            if (repo == null || repo.trim().isEmpty() || includes == null || includes.trim().isEmpty()) {
+                throw new AbortException("dfUpload needs 'repo' and 'includes'");
+            }
+
+            // HASH ON THE AGENT, REUSING HASHES OF FILES WHOSE SIZE AND MTIME DIDN'T CHANGE
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            String cacheFile = tmp != null ? tmp.child(WorkspaceHashCache.DEFAULT_FILE_NAME).getRemote() : null;
+            TreeMap<String, String> hashes = workspace.act(new WorkspaceHashes(includes, excludes, cacheFile));
+            if (hashes.isEmpty()) {
+                listener.getLogger().println("[dfcli] No files match " + includes);
+                return summary(new ArrayList<>(), new ArrayList<>());
+            }
+
+            DfCommandRunner runner = DfCommandRunner.prepare(getContext());
+            Set<String> existing = skipExisting
+                    ? existingHashes(DistrofaceClient.fromServer(runner.getServer()), hashes.values(), listener)
+                    : new HashSet<>();
+
+            List<String> uploaded = new ArrayList<>();
+            List<String> skipped = new ArrayList<>();
+            try (DfConsole console = runner.openConsole(verbosity, rawLog)) {
+                for (Map.Entry<String, String> file : hashes.entrySet()) {
+                    if (existing.contains(file.getValue())) {
+                        skipped.add(file.getKey());
+                        continue;
+                    }
+
+                    Map<String, String> props = new LinkedHashMap<>();
+                    if (properties != null) {
+                        props.putAll(properties);
+                    }
+                    props.put(SHA256_PROPERTY, file.getValue());
+
+                    List<String> args = List.of("artifact", "upload", repo, file.getKey());
+                    ArgumentListBuilder cmd = runner.buildCommand(args, version, props, null);
+                    DfCommandRunner.Result result = runner.run(cmd, 0, "");
+                    if (result.getExitCode() != 0) {
+                        throw runner.failure(result.getExitCode());
+                    }
+                    uploaded.add(file.getKey());
+                }
+            }
+
+            listener.getLogger().println("[dfcli] Uploaded " + uploaded.size() + " files, skipped " + skipped.size()
+                    + " already on the server");
+            return summary(uploaded, skipped);
+        }
+
+        private static Map<String, Object> summary(List<String> uploaded, List<String> skipped) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("uploaded", uploaded);
+            out.put("skipped", skipped);
+            return out;
+        }
+
+        // ONE REQUEST FOR ALL HASHES; IF THE SERVER CAN'T ANSWER, UPLOAD EVERYTHING
+        private Set<String> existingHashes(DistrofaceClient client, Iterable<String> hashes, TaskListener listener)
+                throws InterruptedException {
+            ObjectMapper mapper = new ObjectMapper();
+            ObjectNode body = mapper.createObjectNode();
+            ArrayNode list = body.putArray("sha256");
+            Set<String> unique = new HashSet<>();
+            for (String hash : hashes) {
+                if (unique.add(hash)) {
+                    list.add(hash);
+                }
+            }
+
+            String path = String.format(EXISTS_PATH, URLEncoder.encode(repo, StandardCharsets.UTF_8));
+            try {
+                return client.withRetry(() -> {
+                    HttpURLConnection conn = client.open("POST", path);
+                    conn.setDoOutput(true);
+                    conn.setRequestProperty("Content-Type", "application/json");
+                    try (OutputStream out = conn.getOutputStream()) {
+                        mapper.writeValue(out, body);
+                    }
+                    DistrofaceClient.checkStatus(conn);
+
+                    Set<String> found = new HashSet<>();
+                    try (InputStream in = conn.getInputStream()) {
+                        JsonNode existing = mapper.readTree(in).path("existing");
+                        for (JsonNode node : existing) {
+                            found.add(node.asText());
+                        }
+                    }
+                    return found;
+                });
+            } catch (IOException e) {
+                listener.getLogger().println("[dfcli] Could not check existing artifacts (" + e.getMessage()
+                        + "), uploading all " + unique.size() + " files");
+                return new HashSet<>();
+            }
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "dfUpload";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Upload Workspace Files to Distroface, Skipping Content Already There";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class, Launcher.class, EnvVars.class, FilePath.class, Node.class);
+        }
+    }
+}
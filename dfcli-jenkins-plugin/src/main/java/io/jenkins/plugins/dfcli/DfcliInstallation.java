@@ -13,8 +13,15 @@ import hudson.tools.ToolInstallation;
 import hudson.tools.ToolProperty;
 import hudson.util.ArgumentListBuilder;
 import hudson.util.Secret;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import jenkins.model.Jenkins;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -22,7 +29,9 @@ public class DfCliInstallation extends ToolInstallation
         implements NodeSpecific<DfCliInstallation>, EnvironmentSpecific<DfCliInstallation> {
 
     private static final long serialVersionUID = 1L;
-    private static final Object installLock = new Object();
+    // KEYED node|version AND node SCOPE; ENTRIES ARE TINY AND BOUNDED BY NODES x VERSIONS
+    private static final Map<String, ReentrantLock> INSTALL_LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, ReentrantLock> LOGIN_LOCKS = new ConcurrentHashMap<>();
 
     @DataBoundConstructor
     public DfCliInstallation(String name, String home, List<? extends ToolProperty<?>> properties) {
@@ -37,6 +46,13 @@ public class DfCliInstallation extends ToolInstallation
 
     @Override
     public DfCliInstallation forNode(Node node, TaskListener log) throws IOException, InterruptedException {
+        return forNode(node, log, null, null);
+    }
+
+    // SAME, LOGGING IN TO server (NULL: WHATEVER THE SELECTION POLICY PICKS FOR node) AND ADDING INSTALL-CHECK AND
+    // LOGIN TIME TO timing WHEN GIVEN
+    DfCliInstallation forNode(Node node, TaskListener log, DfCliInvocation timing, DfServer server)
+            throws IOException, InterruptedException {
         FilePath rootPath = node.getRootPath();
         if (rootPath == null) {
             throw new IOException("Node root path is null");
@@ -48,45 +64,126 @@ public class DfCliInstallation extends ToolInstallation
             throw new IOException("DFCli global config not found");
         }
 
+        if (server == null) {
+            server = DfCredentials.resolve(DfServerSelector.select(config, node, null, log), null);
+        }
+
         if (getHome() != null && !getHome().trim().isEmpty()) {
-            doLoginIfNeeded(node, log, getHome(), config);
+            doLoginIfNeeded(node, log, getHome(), config, server, timing);
             return this;
         }
 
-        // AUTO INSTALL TO DEFAULT LOCATION
+        String version = config.getCliVersion();
+        // A PRE-PROVISION STARTED WHEN THE AGENT CAME ONLINE IS STILL RUNNING, WAIT FOR IT RATHER THAN QUEUE
+        // BEHIND ITS LOCK WITHOUT A WORD. IF IT FAILED, THE INSTALL BELOW TRIES AGAIN
+        long installStart = System.nanoTime();
+        if (DfCliProvisioner.awaitInFlight(installKey(node, version))) {
+            log.getLogger().println("[dfcli] Waited for the background install on " + node.getDisplayName());
+        }
+        String home = installIfNeeded(node, log, version);
+        if (timing != null) {
+            timing.add(DfCliInvocation.Phase.INSTALL_CHECK, System.nanoTime() - installStart);
+        }
+
+        doLoginIfNeeded(node, log, home, config, server, timing);
+        return new DfCliInstallation(getName(), home, getProperties().toList());
+    }
+
+    // BACKGROUND INSTALL (AND OPTIONALLY LOGIN) FOR DfCliProvisioner. THROWS IF THE BINARY ISN'T THERE AFTERWARDS
+    void provision(Node node, TaskListener log, boolean login) throws IOException, InterruptedException {
+        DfCliConfig config = DfCliConfig.get();
+        if (config == null) {
+            throw new IOException("DFCli global config not found");
+        }
+        String home = getHome();
+        if (home == null || home.trim().isEmpty()) {
+            home = installIfNeeded(node, log, config.getCliVersion());
+        }
+        if (login) {
+            DfServer server = DfCredentials.resolve(DfServerSelector.select(config, node, null, log), null);
+            doLoginIfNeeded(node, log, home, config, server, null);
+        }
+    }
+
+    // AUTO INSTALL TO DEFAULT LOCATION. ONE INSTALL PER NODE + VERSION AT A TIME, DIFFERENT NODES IN PARALLEL;
+    // BUILDS ON THE SAME AGENT FROM OTHER CONTROLLER THREADS ARE GUARDED BY THE INSTALLER'S AGENT FILE LOCK
+    private static String installIfNeeded(Node node, TaskListener log, String version)
+            throws IOException, InterruptedException {
+        FilePath rootPath = node.getRootPath();
+        if (rootPath == null) {
+            throw new IOException("Node root path is null");
+        }
         FilePath installDir = rootPath.child("tools");
-        synchronized (installLock) {
+        String tag = GithubInstaller.resolveVersion(version, log);
+        ReentrantLock lock = INSTALL_LOCKS.computeIfAbsent(installKey(node, tag), k -> new ReentrantLock());
+        lock.lockInterruptibly();
+        try {
             if (!installDir.exists()) {
                 installDir.mkdirs();
             }
 
-            FilePath binary = installDir.child(isWindows() ? "dfcli.exe" : "dfcli");
-            if (!binary.exists()) {
-                GithubInstaller.installLatest(installDir, log);
+            boolean unix = node.createLauncher(log).isUnix();
+            FilePath binary = installDir.child(unix ? "dfcli" : "dfcli.exe");
+            // AN UNRESOLVED "latest" ALWAYS GOES THROUGH install(), WHICH ONLY DOWNLOADS WHEN THE DIGEST OF THE
+            // CURRENT "latest" ARCHIVE DIFFERS FROM THE INSTALLED ONE
+            if ("latest".equals(tag) || !GithubInstaller.isInstalled(installDir, binary, tag)) {
+                GithubInstaller.install(installDir, tag, log);
+                if (!GithubInstaller.isInstalled(installDir, binary, tag)) {
+                    throw new IOException("dfcli " + tag + " is not installed at " + installDir.getRemote()
+                            + " after installing it");
+                }
             }
+        } finally {
+            lock.unlock();
+        }
+        return installDir.getRemote();
+    }
 
-            doLoginIfNeeded(node, log, installDir.getRemote(), config);
+    // THE INSTALLATION STEPS USE: THE FIRST ONE IN GLOBAL TOOLS, OR NULL
+    static DfCliInstallation configured() {
+        DfCliInstallation[] installations = Jenkins.get()
+                .getDescriptorByType(DescriptorImpl.class)
+                .getInstallations();
+        return installations != null && installations.length > 0 ? installations[0] : null;
+    }
 
-            return new DfCliInstallation(
-                    getName(), installDir.getRemote(), getProperties().toList());
-        }
+    static String installKey(Node node, String version) {
+        return node.getNodeName() + "|" + version;
     }
 
-    // LOGIN USING GLOBAL CONFIG
-    private void doLoginIfNeeded(Node node, TaskListener log, String homePath, DfCliConfig config)
+    // LOGIN TO server, UNLESS THIS NODE STILL HAS A VALID SESSION WITH IT
+    private void doLoginIfNeeded(
+            Node node, TaskListener log, String homePath, DfCliConfig config, DfServer server, DfCliInvocation timing)
             throws IOException, InterruptedException {
-        String serverUrl = config.getServerUrl();
-        String username = config.getUsername();
-        Secret password = config.getPassword();
-        Secret token = config.getToken();
-
-        if (serverUrl == null || serverUrl.isEmpty()) {
+        if (!hasLoginConfig(server)) {
             return;
         }
-        if ((username == null || username.isEmpty() || password == null) && (token == null)) {
+
+        String scope = LoginSessionCache.nodeScope(node);
+        int ttl = config.getLoginSessionTtlMinutes();
+        if (LoginSessionCache.isValid(scope, server, ttl)) {
             return;
         }
 
+        // PER NODE, SO PARALLEL STEPS ON ONE NODE LOG IN ONCE WHILE OTHER NODES LOG IN CONCURRENTLY
+        long loginStart = System.nanoTime();
+        ReentrantLock lock = LOGIN_LOCKS.computeIfAbsent(scope, k -> new ReentrantLock());
+        lock.lockInterruptibly();
+        try {
+            if (!LoginSessionCache.isValid(scope, server, ttl)) {
+                login(node, log, homePath, server, scope, ttl, config.isLoginSecretsOnStdin());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (timing != null) {
+            timing.add(DfCliInvocation.Phase.LOGIN, System.nanoTime() - loginStart);
+        }
+    }
+
+    private static void login(
+            Node node, TaskListener log, String homePath, DfServer server, String scope, int ttl, boolean stdin)
+            throws IOException, InterruptedException {
         FilePath nodeRoot = node.getRootPath();
         if (nodeRoot == null) {
             throw new IOException("Node root path is null, cannot do dfcli login");
@@ -95,31 +192,70 @@ public class DfCliInstallation extends ToolInstallation
         FilePath dfcliDir = nodeRoot.child("tools");
         Launcher launcher = node.createLauncher(log);
 
-        ArgumentListBuilder loginCmd = new ArgumentListBuilder();
-        if (launcher.isUnix()) {
-            loginCmd.add(homePath + "/dfcli");
-        } else {
-            loginCmd.add(homePath + "\\dfcli.exe");
+        String exePath = launcher.isUnix() ? homePath + "/dfcli" : homePath + "\\dfcli.exe";
+        int code = launchLogin(launcher, exePath, server, dfcliDir, true, stdin);
+
+        if (code != 0) {
+            throw new IOException("DFCli login failed with exit code " + code);
+        }
+        LoginSessionCache.markLoggedIn(scope, server, ttl);
+    }
+
+    static boolean hasLoginConfig(DfServer server) {
+        return server.isUsable() && server.hasCredentials();
+    }
+
+    // RUNS `dfcli login`, RETURNS ITS EXIT CODE
+    static int launchLogin(
+            Launcher launcher, String exePath, DfServer server, FilePath pwd, boolean quiet, boolean stdin)
+            throws IOException, InterruptedException {
+        Launcher.ProcStarter starter =
+                launcher.launch().cmds(buildLoginCommand(exePath, server, stdin)).pwd(pwd).quiet(quiet);
+        InputStream secret = stdin ? loginStdin(server) : null;
+        if (secret != null) {
+            starter.stdin(secret);
         }
+        return starter.join();
+    }
+
+    // THE SECRET IS MASKED WHEREVER THE COMMAND IS PRINTED, OR LEFT OUT OF ARGV ENTIRELY WITH stdin (SEE loginStdin)
+    static ArgumentListBuilder buildLoginCommand(String exePath, DfServer server, boolean stdin) {
+        String username = server.getUsername();
+        Secret password = server.getPassword();
+        Secret token = server.getToken();
+
+        ArgumentListBuilder loginCmd = new ArgumentListBuilder();
+        loginCmd.add(exePath);
         loginCmd.add("login");
-        loginCmd.add("--server", serverUrl);
+        loginCmd.add("--server", server.getServerUrl());
 
         if (username != null && !username.isEmpty() && password != null) {
             loginCmd.add("--username", username);
-            loginCmd.add("--password", Secret.toString(password));
+            if (stdin) {
+                loginCmd.add("--password-stdin");
+            } else {
+                loginCmd.add("--password").addMasked(password);
+            }
         } else if (token != null) {
-            loginCmd.add("--token", Secret.toString(token));
-        }
-
-        int code = launcher.launch().cmds(loginCmd).pwd(dfcliDir).quiet(true).join();
-
-        if (code != 0) {
-            throw new IOException("DFCli login failed with exit code " + code);
+            if (stdin) {
+                loginCmd.add("--token-stdin");
+            } else {
+                loginCmd.add("--token").addMasked(token);
+            }
         }
+        return loginCmd;
     }
 
-    private boolean isWindows() {
-        return System.getProperty("os.name").toLowerCase().contains("windows");
+    // WHAT buildLoginCommand(..., true) EXPECTS ON STDIN, NULL IF THE SERVER HAS NO SECRET
+    static InputStream loginStdin(DfServer server) {
+        String username = server.getUsername();
+        Secret secret = username != null && !username.isEmpty() && server.getPassword() != null
+                ? server.getPassword()
+                : server.getToken();
+        if (secret == null) {
+            return null;
+        }
+        return new ByteArrayInputStream((Secret.toString(secret) + "\n").getBytes(StandardCharsets.UTF_8));
     }
 
     @Symbol("dfcli")
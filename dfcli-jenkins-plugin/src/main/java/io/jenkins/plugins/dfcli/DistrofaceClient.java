@@ -0,0 +1,223 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.util.Secret;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// MINIMAL HTTP CLIENT FOR THE DISTROFACE SERVER, SERIALIZABLE SO IT CAN BE SHIPPED TO AGENTS INSIDE CALLABLES.
+// CREDENTIALS ARE RESOLVED ON THE CONTROLLER, AGENTS CAN'T DECRYPT Secret. THEY ONLY EVER GO TO THE SERVER'S OWN
+// ORIGIN: ABSOLUTE URLS ELSEWHERE ARE REJECTED AND REDIRECTS OFF THE ORIGIN AREN'T FOLLOWED
+public class DistrofaceClient implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15_000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 60_000;
+    public static final int DEFAULT_RETRIES = 3;
+    static final int MAX_REDIRECTS = 5;
+
+    private final String serverUrl;
+    private final String authHeader;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    private int retries = DEFAULT_RETRIES;
+
+    public DistrofaceClient(String serverUrl, String authHeader) {
+        this.serverUrl = serverUrl == null ? "" : serverUrl.replaceAll("/+$", "");
+        this.authHeader = authHeader;
+    }
+
+    // BEARER FOR TOKENS, BASIC FOR USERNAME/PASSWORD, SAME PRECEDENCE AS `dfcli login`
+    public static DistrofaceClient fromConfig(DfCliConfig config) {
+        return fromServer(config.getDefaultServer());
+    }
+
+    public static DistrofaceClient fromServer(DfServer server) {
+        String username = server.getUsername();
+        Secret password = server.getPassword();
+        Secret token = server.getToken();
+
+        String auth = null;
+        if (username != null && !username.isEmpty() && password != null) {
+            String pair = username + ":" + Secret.toString(password);
+            auth = "Basic " + Base64.getEncoder().encodeToString(pair.getBytes(StandardCharsets.UTF_8));
+        } else if (token != null) {
+            auth = "Bearer " + Secret.toString(token);
+        }
+        return new DistrofaceClient(server.getServerUrl(), auth);
+    }
+
+    public DistrofaceClient withRetries(int retries) {
+        this.retries = Math.max(0, retries);
+        return this;
+    }
+
+    public DistrofaceClient withTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        return this;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    // PATHS ARE RELATIVE TO THE SERVER URL. AN ABSOLUTE URL IS ONLY ACCEPTED ON THE SERVER'S OWN SCHEME, HOST AND PORT
+    public String resolve(String pathOrUrl) throws IOException {
+        if (pathOrUrl.startsWith("http://") || pathOrUrl.startsWith("https://")) {
+            if (!sameOrigin(new URL(pathOrUrl), new URL(serverUrl))) {
+                throw new IOException(pathOrUrl + " is not on the Distroface server " + serverUrl
+                        + ", use a path relative to it");
+            }
+            return pathOrUrl;
+        }
+        return serverUrl + (pathOrUrl.startsWith("/") ? "" : "/") + pathOrUrl;
+    }
+
+    // NOT CONNECTED YET, REDIRECTS AREN'T FOLLOWED. FOR A GET OR HEAD THAT MAY BE REDIRECTED, USE get()
+    public HttpURLConnection open(String method, String pathOrUrl) throws IOException {
+        return connection(method, new URL(resolve(pathOrUrl)));
+    }
+
+    // SENDS A GET OR HEAD WITH headers, FOLLOWING REDIRECTS THAT STAY ON THE SERVER'S ORIGIN. ONE LEADING ANYWHERE
+    // ELSE IS RETURNED AS IS, SO checkStatus FAILS ON IT RATHER THAN THE CREDENTIALS LEAVING THE SERVER
+    public HttpURLConnection get(String method, String pathOrUrl, Map<String, String> headers) throws IOException {
+        URL origin = new URL(serverUrl);
+        URL url = new URL(resolve(pathOrUrl));
+        for (int redirects = 0; ; redirects++) {
+            HttpURLConnection conn = connection(method, url);
+            headers.forEach(conn::setRequestProperty);
+            int code = conn.getResponseCode();
+            String location = conn.getHeaderField("Location");
+            if (code < 300 || code >= 400 || location == null || redirects >= MAX_REDIRECTS) {
+                return conn;
+            }
+            URL next = new URL(url, location);
+            if (!sameOrigin(next, origin)) {
+                return conn;
+            }
+            conn.disconnect();
+            url = next;
+        }
+    }
+
+    private HttpURLConnection connection(String method, URL url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(connectTimeoutMillis);
+        conn.setReadTimeout(readTimeoutMillis);
+        conn.setInstanceFollowRedirects(false);
+        if (authHeader != null) {
+            conn.setRequestProperty("Authorization", authHeader);
+        }
+        return conn;
+    }
+
+    static boolean sameOrigin(URL a, URL b) {
+        return a.getProtocol().equalsIgnoreCase(b.getProtocol())
+                && a.getHost().toLowerCase(Locale.ROOT).equals(b.getHost().toLowerCase(Locale.ROOT))
+                && port(a) == port(b);
+    }
+
+    private static int port(URL url) {
+        return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    }
+
+    // THROWS WITH THE RESPONSE BODY (TRUNCATED) WHEN THE STATUS ISN'T 2xx
+    public static void checkStatus(HttpURLConnection conn) throws IOException {
+        int code = conn.getResponseCode();
+        if (code >= 200 && code < 300) {
+            return;
+        }
+        String body = "";
+        try (InputStream err = conn.getErrorStream()) {
+            if (err != null) {
+                byte[] buf = err.readNBytes(512);
+                body = ": " + new String(buf, StandardCharsets.UTF_8).trim();
+            }
+        }
+        throw new HttpStatusException(code, conn.getRequestMethod() + " " + conn.getURL() + " returned " + code + body);
+    }
+
+    // RUN `call` UP TO retries+1 TIMES WITH EXPONENTIAL BACKOFF, CLIENT ERRORS (4xx) ARE NOT RETRIED
+    public <T> T withRetry(IOCall<T> call) throws IOException, InterruptedException {
+        return retry(retries, call, e -> true);
+    }
+
+    // SAME, BUT ONLY FAILURES retryable ACCEPTS ARE RETRIED. FOR REQUESTS THAT MUST NOT RUN TWICE, PASS notApplied
+    public <T> T withRetry(IOCall<T> call, Predicate<IOException> retryable) throws IOException, InterruptedException {
+        return retry(retries, call, retryable);
+    }
+
+    // SAME, FOR DOWNLOADS THAT DON'T GO THROUGH A CLIENT (RELEASE ARCHIVES). MISSING FILES AREN'T RETRIED EITHER
+    public static <T> T retry(int retries, IOCall<T> call) throws IOException, InterruptedException {
+        return retry(retries, call, e -> true);
+    }
+
+    // TRUE ONLY FOR FAILURES WHERE THE SERVER CERTAINLY DIDN'T ACT ON THE REQUEST: IT WAS NEVER CONNECTED TO, OR
+    // ANSWERED 503. A READ TIMEOUT OR A 500 MAY COME AFTER THE SERVER APPLIED IT
+    public static boolean notApplied(IOException e) {
+        return e instanceof ConnectException
+                || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException
+                || (e instanceof HttpStatusException && ((HttpStatusException) e).getStatus() == 503);
+    }
+
+    private static <T> T retry(int retries, IOCall<T> call, Predicate<IOException> retryable)
+            throws IOException, InterruptedException {
+        long backoff = 500;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return call.call();
+            } catch (IOException e) {
+                boolean clientError = e instanceof HttpStatusException && ((HttpStatusException) e).isClientError();
+                boolean missing = e instanceof FileNotFoundException || e instanceof NoSuchFileException;
+                if (clientError || missing || attempt >= retries || !retryable.test(e)) {
+                    throw e;
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, 30_000);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface IOCall<T> {
+        T call() throws IOException;
+    }
+
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        public HttpStatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        // 408/429 ARE WORTH RETRYING EVEN THOUGH THEY ARE 4xx
+        public boolean isClientError() {
+            return status >= 400 && status < 500 && status != 408 && status != 429;
+        }
+    }
+}
@@ -2,122 +2,375 @@ package io.jenkins.plugins.dfcli;
 
 import hudson.FilePath;
 import hudson.model.TaskListener;
+import hudson.remoting.RemoteInputStream;
 import hudson.remoting.VirtualChannel;
 import java.io.*;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.zip.ZipInputStream;
 import jenkins.MasterToSlaveFileCallable;
+import jenkins.security.MasterToSlaveCallable;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
 public class GithubInstaller {
-    private static final String RELEASE_URL = "https://github.com/nickheyer/distroface/releases/latest/download/";
+    // RECORDS "<version>\n<sha256>" OF THE INSTALLED ARCHIVE NEXT TO THE BINARY
+    static final String MARKER_FILE = ".dfcli-install";
+    static final String LOCK_FILE = ".dfcli-install.lock";
 
-    public static synchronized void installLatest(FilePath toolDir, TaskListener log)
+    public static void installLatest(FilePath toolDir, TaskListener log) throws IOException, InterruptedException {
+        install(toolDir, "latest", log);
+    }
+
+    // INSTALL `version` INTO toolDir FROM THE CONTROLLER'S BINARY CACHE (OR THE AGENT'S MIRROR DIRECTORY)
+    // NOT SYNCHRONIZED: CALLERS SERIALIZE PER NODE + VERSION, AND THE AGENT SIDE SWAP HOLDS A FILE LOCK
+    public static void install(FilePath toolDir, String version, TaskListener log)
             throws IOException, InterruptedException {
-        FilePath bin = toolDir.child(isWindows() ? "dfcli.exe" : "dfcli");
-        if (bin.exists()) {
+        String platform = toolDir.act(new PlatformProbe());
+        boolean windows = platform.startsWith("windows-");
+        FilePath bin = toolDir.child(windows ? "dfcli.exe" : "dfcli");
+        String archiveName = "dfcli-" + platform + (windows ? ".zip" : ".tar.gz");
+
+        DfCliConfig config = DfCliConfig.get();
+        ReleaseSource source = ReleaseSource.fromSpec(config != null ? config.getReleaseSource() : null);
+        BinaryCache cache = BinaryCache.get();
+        boolean requireChecksum = config != null && config.isRequireReleaseChecksums();
+        String sha256 = cache.resolve(source, version, archiveName, requireChecksum, log);
+
+        if (bin.exists() && sha256.equals(installedSha256(toolDir))) {
             log.getLogger().println("[dfcli] Already installed, skipping download.");
+            toolDir.act(new WriteMarker(version, sha256));
             return;
         }
 
-        String os = System.getProperty("os.name").toLowerCase();
-        String arch = System.getProperty("os.arch").toLowerCase();
-        if ("x86_64".equals(arch)) arch = "amd64";
-        if ("aarch64".equals(arch)) arch = "arm64";
-
-        String platform = (os.contains("windows") ? "windows" : os.contains("mac") ? "darwin" : "linux") + "-" + arch;
-        String ext = os.contains("windows") ? ".zip" : ".tar.gz";
-        String archiveName = "dfcli-" + platform + ext;
-        String url = RELEASE_URL + archiveName;
+        // ONE PASS OVER THE ARCHIVE: DIGEST, EXTRACT THE BINARY AND (FOR A CONTROLLER FETCH) FILL THE MIRROR AS
+        // THE BYTES ARRIVE. NOTHING BUT THE BINARY IS WRITTEN ON THE AGENT
+        FilePath mirrored = mirrorFile(toolDir, config, sha256);
+        Boolean replaced = null;
+        if (mirrored != null && mirrored.exists()) {
+            try {
+                replaced = mirrored.act(new InstallArchive(toolDir.getRemote(), windows, version, sha256));
+                log.getLogger().println("[dfcli] Used mirror copy " + mirrored.getRemote());
+            } catch (ChecksumMismatchException e) {
+                log.getLogger().println("[dfcli] Mirror copy is corrupt (" + e.getMessage()
+                        + "), fetching from controller cache");
+            }
+        }
+        if (replaced == null) {
+            log.getLogger().println("[dfcli] Streaming " + archiveName + " (" + version + ", sha256 " + sha256
+                    + ") from controller cache");
+            try (InputStream in = Files.newInputStream(cache.blob(sha256).toPath())) {
+                replaced = toolDir.act(new InstallStream(
+                        new RemoteInputStream(in, RemoteInputStream.Flag.GREEDY),
+                        windows,
+                        version,
+                        sha256,
+                        mirrored != null ? mirrored.getRemote() : null));
+            }
+        }
 
-        log.getLogger().println("[dfcli] Downloading from: " + url);
+        // DOWNLOADS CAN OVERLAP, ONLY THE SWAP INTO toolDir IS SERIALIZED (ON THE AGENT)
+        if (!replaced) {
+            log.getLogger().println("[dfcli] Installed concurrently by another build, skipping.");
+            return;
+        }
+        log.getLogger().println("[dfcli] Installed successfully at " + bin.getRemote());
+    }
 
-        FilePath tempDir = toolDir.createTempDir("dfcli-download-", null);
-        FilePath archiveFile = tempDir.child(archiveName);
+    // "latest" AS THE TAG IT POINTS AT NOW, SO A NEW RELEASE REPLACES AN OLDER "latest" INSTALL. STAYS "latest" IF
+    // THE RELEASE SOURCE CAN'T NAME THE TAG
+    public static String resolveVersion(String version, TaskListener log) throws IOException, InterruptedException {
+        DfCliConfig config = DfCliConfig.get();
+        ReleaseSource source = ReleaseSource.fromSpec(config != null ? config.getReleaseSource() : null);
+        String tag = BinaryCache.get().resolveTag(source, version, log);
+        return tag != null ? tag : version;
+    }
 
-        // Download
-        try (InputStream in = new URL(url).openStream()) {
-            archiveFile.copyFrom(in);
+    // TRUE IF toolDir HOLDS A BINARY INSTALLED FOR `version` BY THIS INSTALLER
+    public static boolean isInstalled(FilePath toolDir, FilePath bin, String version)
+            throws IOException, InterruptedException {
+        FilePath marker = toolDir.child(MARKER_FILE);
+        if (!marker.exists() || !bin.exists()) {
+            return false;
         }
+        String[] lines = marker.readToString().split("\n");
+        return lines.length > 0 && lines[0].trim().equals(version);
+    }
 
-        // Extract
-        if (os.contains("windows")) {
-            extractZip(archiveFile, toolDir);
-        } else {
-            extractTarGz(archiveFile, toolDir);
+    private static String installedSha256(FilePath toolDir) throws IOException, InterruptedException {
+        FilePath marker = toolDir.child(MARKER_FILE);
+        if (!marker.exists()) {
+            return null;
         }
-        tempDir.deleteRecursive();
+        String[] lines = marker.readToString().split("\n");
+        return lines.length > 1 ? lines[1].trim() : null;
+    }
 
-        if (!bin.exists()) {
-            throw new IOException("DFCli binary not found after extraction!");
-        }
-        if (!os.contains("windows")) {
-            bin.chmod(0755);
+    private static FilePath mirrorFile(FilePath toolDir, DfCliConfig config, String sha256) {
+        String mirrorDir = config != null ? config.getMirrorDirectory() : null;
+        if (mirrorDir == null || mirrorDir.trim().isEmpty()) {
+            return null;
         }
-        log.getLogger().println("[dfcli] Installed successfully at " + bin.getRemote());
+        return new FilePath(toolDir.getChannel(), mirrorDir.trim()).child(sha256);
     }
 
-    private static boolean isWindows() {
-        return System.getProperty("os.name").toLowerCase().contains("windows");
-    }
+    // AGENT SIDE PLATFORM, E.G. linux-amd64 OR windows-amd64
+    static class PlatformProbe extends MasterToSlaveCallable<String, IOException> {
+        private static final long serialVersionUID = 1L;
 
-    private static void extractZip(FilePath zip, FilePath dest) throws IOException, InterruptedException {
-        zip.act(new ExtractZipArchive(dest));
+        @Override
+        public String call() {
+            String os = System.getProperty("os.name").toLowerCase();
+            String arch = System.getProperty("os.arch").toLowerCase();
+            if ("x86_64".equals(arch)) arch = "amd64";
+            if ("aarch64".equals(arch)) arch = "arm64";
+            return (os.contains("windows") ? "windows" : os.contains("mac") ? "darwin" : "linux") + "-" + arch;
+        }
     }
 
-    private static void extractTarGz(FilePath tgz, FilePath dest) throws IOException, InterruptedException {
-        tgz.act(new ExtractTarGzArchive(dest));
+    // INSTALLS FROM AN ARCHIVE FILE ON THE AGENT (THE MIRROR COPY). THE DIGEST IS CHECKED WHILE EXTRACTING
+    static class InstallArchive extends MasterToSlaveFileCallable<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final String toolDir;
+        private final boolean windows;
+        private final String version;
+        private final String sha256;
+
+        InstallArchive(String toolDir, boolean windows, String version, String sha256) {
+            this.toolDir = toolDir;
+            this.windows = windows;
+            this.version = version;
+            this.sha256 = sha256;
+        }
+
+        @Override
+        public Boolean invoke(File archive, VirtualChannel channel) throws IOException {
+            try (InputStream in = Files.newInputStream(archive.toPath())) {
+                return installFrom(in, Paths.get(toolDir), windows, version, sha256, null);
+            }
+        }
     }
 
-    private static class ExtractTarGzArchive extends MasterToSlaveFileCallable<Void> {
-        private final FilePath destDir;
+    // INSTALLS FROM A STREAM OF THE CONTROLLER'S CACHED ARCHIVE, INVOKED ON toolDir. WITH A MIRROR PATH THE SAME
+    // BYTES ARE TEED INTO THE MIRROR, WHICH ONLY APPEARS ONCE THE DIGEST MATCHED
+    static class InstallStream extends MasterToSlaveFileCallable<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final InputStream archive;
+        private final boolean windows;
+        private final String version;
+        private final String sha256;
+        private final String mirror;
 
-        ExtractTarGzArchive(FilePath destDir) {
-            this.destDir = destDir;
+        InstallStream(InputStream archive, boolean windows, String version, String sha256, String mirror) {
+            this.archive = archive;
+            this.windows = windows;
+            this.version = version;
+            this.sha256 = sha256;
+            this.mirror = mirror;
         }
 
         @Override
-        public Void invoke(File f, VirtualChannel channel) throws IOException {
-            try (InputStream fi = Files.newInputStream(f.toPath());
-                    GzipCompressorInputStream gzi = new GzipCompressorInputStream(fi);
-                    TarArchiveInputStream tis = new TarArchiveInputStream(gzi)) {
-                var entry = tis.getNextEntry();
-                while (entry != null) {
-                    if (!entry.isDirectory() && entry.getName().endsWith("dfcli")) {
-                        Path target = Paths.get(destDir.getRemote()).resolve("dfcli");
-                        Files.copy(tis, target, StandardCopyOption.REPLACE_EXISTING);
-                        break;
-                    }
-                    entry = tis.getNextEntry();
+        public Boolean invoke(File toolDir, VirtualChannel channel) throws IOException {
+            try (InputStream in = archive) {
+                Path mirrorPath = mirror != null ? Paths.get(mirror) : null;
+                return installFrom(in, toolDir.toPath(), windows, version, sha256, mirrorPath);
+            }
+        }
+    }
+
+    static class ChecksumMismatchException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    // EXTRACT THE BINARY INTO A STAGING DIR NEXT TO dir WHILE DIGESTING THE WHOLE ARCHIVE, THEN, UNDER dir's LOCK
+    // FILE, RENAME IT OVER THE OLD ONE AND REWRITE THE MARKER, SO A CONCURRENT BUILD SEES EITHER THE OLD OR THE NEW
+    // BINARY, NEVER A PARTIAL ONE. RETURNS FALSE IF THE SAME ARCHIVE WAS ALREADY INSTALLED (E.G. WHILE EXTRACTING)
+    static boolean installFrom(InputStream in, Path dir, boolean windows, String version, String sha256, Path mirror)
+            throws IOException {
+        String binName = windows ? "dfcli.exe" : "dfcli";
+        Path bin = dir.resolve(binName);
+        Files.createDirectories(dir);
+        Path staging = Files.createTempDirectory(dir, ".dfcli-staging-");
+        Path staged = staging.resolve(binName);
+        Path mirrorTmp = null;
+        try {
+            OutputStream mirrorOut = null;
+            if (mirror != null) {
+                mirrorTmp = openMirrorTmp(mirror);
+                mirrorOut = mirrorTmp != null ? Files.newOutputStream(mirrorTmp) : null;
+            }
+            MessageDigest md = Digests.sha256();
+            try (InputStream digesting = new DigestInputStream(tee(in, mirrorOut), md)) {
+                if (windows) {
+                    extractZip(digesting, staged);
+                } else {
+                    extractTarGz(digesting, staged);
+                }
+                // TRAILING ENTRIES (AND ANY READ-AHEAD THE DECODERS LEFT) STILL COUNT TOWARD THE DIGEST
+                digesting.transferTo(OutputStream.nullOutputStream());
+            } finally {
+                if (mirrorOut != null) {
+                    mirrorOut.close();
                 }
             }
+
+            String actual = Digests.toHex(md.digest());
+            if (!sha256.equals(actual)) {
+                throw new ChecksumMismatchException("expected sha256 " + sha256 + " but got " + actual);
+            }
+            if (!Files.isRegularFile(staged)) {
+                throw new IOException("DFCli binary not found after extraction!");
+            }
+            if (!windows && !staged.toFile().setExecutable(true, false)) {
+                throw new IOException("Could not make " + staged + " executable");
+            }
+            if (mirrorTmp != null) {
+                publishMirror(mirrorTmp, mirror);
+            }
+
+            return AgentFileLock.withLock(dir.resolve(LOCK_FILE), () -> {
+                if (Files.isRegularFile(bin) && sha256.equals(readMarker(dir, 1))) {
+                    writeMarker(dir, version, sha256);
+                    return false;
+                }
+                // RUNNING PROCESSES KEEP THE OLD INODE ON UNIX; ON WINDOWS A dfcli.exe IN USE MAKES THIS FAIL
+                Files.move(staged, bin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                writeMarker(dir, version, sha256);
+                return true;
+            });
+        } finally {
+            Files.deleteIfExists(staged);
+            Files.deleteIfExists(staging);
+            if (mirrorTmp != null) {
+                Files.deleteIfExists(mirrorTmp);
+            }
+        }
+    }
+
+    // BEST EFFORT, A READ-ONLY OR MISSING MIRROR JUST MEANS THE NEXT AGENT ASKS THE CONTROLLER AGAIN
+    private static Path openMirrorTmp(Path mirror) {
+        try {
+            Files.createDirectories(mirror.getParent());
+            return Files.createTempFile(mirror.getParent(), mirror.getFileName() + ".tmp-", null);
+        } catch (IOException e) {
             return null;
         }
     }
 
-    private static class ExtractZipArchive extends MasterToSlaveFileCallable<Void> {
-        private final FilePath destDir;
+    private static void publishMirror(Path tmp, Path mirror) {
+        try {
+            Files.move(tmp, mirror, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // SAME AS ABOVE
+        }
+    }
 
-        ExtractZipArchive(FilePath destDir) {
-            this.destDir = destDir;
+    // COPIES EVERYTHING READ FROM in TO out (IF ANY); A FAILING out IS DROPPED RATHER THAN FAILING THE INSTALL
+    private static InputStream tee(InputStream in, OutputStream out) {
+        if (out == null) {
+            return in;
         }
+        return new FilterInputStream(in) {
+            private OutputStream branch = out;
 
-        @Override
-        public Void invoke(File f, VirtualChannel channel) throws IOException {
-            try (ZipInputStream zis = new ZipInputStream(new FileInputStream(f))) {
-                var entry = zis.getNextEntry();
-                while (entry != null) {
-                    if (!entry.isDirectory() && entry.getName().endsWith("dfcli.exe")) {
-                        Path target = Paths.get(destDir.getRemote()).resolve("dfcli.exe");
-                        Files.copy(zis, target, StandardCopyOption.REPLACE_EXISTING);
-                        break;
-                    }
-                    entry = zis.getNextEntry();
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    copy(new byte[] {(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    copy(b, off, n);
+                }
+                return n;
+            }
+
+            private void copy(byte[] b, int off, int len) {
+                if (branch == null) {
+                    return;
+                }
+                try {
+                    branch.write(b, off, len);
+                } catch (IOException e) {
+                    branch = null;
                 }
             }
+        };
+    }
+
+    static class WriteMarker extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final String version;
+        private final String sha256;
+
+        WriteMarker(String version, String sha256) {
+            this.version = version;
+            this.sha256 = sha256;
+        }
+
+        @Override
+        public Void invoke(File toolDir, VirtualChannel channel) throws IOException {
+            Path dir = toolDir.toPath();
+            AgentFileLock.withLock(dir.resolve(LOCK_FILE), () -> {
+                writeMarker(dir, version, sha256);
+                return null;
+            });
+            return null;
+        }
+    }
+
+    private static String readMarker(Path dir, int line) throws IOException {
+        Path marker = dir.resolve(MARKER_FILE);
+        if (!Files.isRegularFile(marker)) {
             return null;
         }
+        String[] lines = new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).split("\n");
+        return lines.length > line ? lines[line].trim() : null;
+    }
+
+    private static void writeMarker(Path dir, String version, String sha256) throws IOException {
+        Path tmp = dir.resolve(MARKER_FILE + ".tmp");
+        Files.write(tmp, (version + "\n" + sha256 + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, dir.resolve(MARKER_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // STOPS AFTER THE dfcli ENTRY; THE CALLER DRAINS THE REST. THE DECODERS ARE NOT CLOSED, THAT WOULD CLOSE in
+    private static void extractTarGz(InputStream in, Path target) throws IOException {
+        TarArchiveInputStream tis = new TarArchiveInputStream(new GzipCompressorInputStream(in));
+        var entry = tis.getNextEntry();
+        while (entry != null) {
+            if (!entry.isDirectory() && entry.getName().endsWith("dfcli")) {
+                Files.copy(tis, target, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            entry = tis.getNextEntry();
+        }
+    }
+
+    private static void extractZip(InputStream in, Path target) throws IOException {
+        ZipInputStream zis = new ZipInputStream(in);
+        var entry = zis.getNextEntry();
+        while (entry != null) {
+            if (!entry.isDirectory() && entry.getName().endsWith("dfcli.exe")) {
+                Files.copy(zis, target, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            entry = zis.getNextEntry();
+        }
     }
 }
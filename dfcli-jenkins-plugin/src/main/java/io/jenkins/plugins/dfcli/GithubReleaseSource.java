@@ -0,0 +1,66 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// RELEASES LAID OUT LIKE GITHUB: <base>/releases/latest/download/<file> OR <base>/releases/download/<tag>/<file>
+public class GithubReleaseSource implements ReleaseSource {
+    public static final String DEFAULT_BASE_URL = "https://github.com/nickheyer/distroface";
+    // WHERE <base>/releases/latest REDIRECTS TO
+    private static final Pattern TAG_LOCATION = Pattern.compile("/releases/tag/([^/?#]+)");
+
+    private final String baseUrl;
+
+    public GithubReleaseSource(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    // BOUNDED CONNECT AND READ, SO A STALLED RELEASE HOST FAILS THE INSTALL (AND ITS RETRIES) INSTEAD OF HANGING IT
+    @Override
+    public InputStream open(String version, String fileName) throws IOException {
+        String url = describe(version, fileName);
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(DistrofaceClient.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(DistrofaceClient.DEFAULT_READ_TIMEOUT_MILLIS);
+        conn.setInstanceFollowRedirects(true);
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            conn.disconnect();
+            throw new FileNotFoundException(url);
+        }
+        DistrofaceClient.checkStatus(conn);
+        return conn.getInputStream();
+    }
+
+    // <base>/releases/latest ANSWERS WITH A REDIRECT TO <base>/releases/tag/<tag>; A MIRROR THAT DOESN'T IS NULL
+    @Override
+    public String latestTag() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + "/releases/latest").openConnection();
+        conn.setConnectTimeout(DistrofaceClient.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(DistrofaceClient.DEFAULT_READ_TIMEOUT_MILLIS);
+        conn.setInstanceFollowRedirects(false);
+        try {
+            int code = conn.getResponseCode();
+            String location = conn.getHeaderField("Location");
+            if (code / 100 != 3 || location == null) {
+                return null;
+            }
+            Matcher tag = TAG_LOCATION.matcher(location);
+            return tag.find() ? tag.group(1) : null;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    @Override
+    public String describe(String version, String fileName) {
+        if (version == null || version.isEmpty() || "latest".equals(version)) {
+            return baseUrl + "/releases/latest/download/" + fileName;
+        }
+        return baseUrl + "/releases/download/" + version + "/" + fileName;
+    }
+}
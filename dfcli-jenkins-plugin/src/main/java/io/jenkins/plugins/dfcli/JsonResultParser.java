@@ -0,0 +1,199 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.MasterToSlaveFileCallable;
+
+// STREAMING JSON -> PLAIN JAVA STRUCTURE (LinkedHashMap / ArrayList / String / Number / Boolean / null) FOR
+// format: 'json'. BYTES ARE PARSED AS THEY ARRIVE, THE RAW TEXT IS NEVER HELD. SEVERAL TOP LEVEL VALUES
+// (JSON LINES) COME BACK AS A LIST
+public class JsonResultParser extends OutputStream {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final TreeBuilder builder = new TreeBuilder();
+    private final long limit;
+    private long bytesSeen;
+    private boolean closed;
+    // WRITES COME FROM THE LAUNCHER'S PUMP THREAD, WHICH WOULD SWALLOW EXCEPTIONS, SO KEEP THE FIRST ONE FOR getResult()
+    private IOException failure;
+
+    // limit <= 0 MEANS UNBOUNDED
+    public JsonResultParser(long limit) throws IOException {
+        this.parser = FACTORY.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        bytesSeen += len;
+        if (failure != null) {
+            return;
+        }
+        if (limit > 0 && bytesSeen > limit) {
+            failure = new IOException("JSON output exceeded " + limit + " bytes (see maxOutputBytes)");
+            return;
+        }
+        try {
+            feeder.feedInput(b, off, off + len);
+            drain();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null) {
+                feeder.endOfInput();
+                drain();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            builder.token(token, parser);
+        }
+    }
+
+    public long getBytesSeen() {
+        return bytesSeen;
+    }
+
+    // CALL AFTER close()
+    public Object getResult() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        return builder.result();
+    }
+
+    // BLOCKING VARIANT FOR DATA ALREADY IN A FILE OR STREAM
+    public static Object parse(InputStream in) throws IOException {
+        TreeBuilder builder = new TreeBuilder();
+        try (JsonParser p = FACTORY.createParser(in)) {
+            JsonToken token;
+            while ((token = p.nextToken()) != null) {
+                builder.token(token, p);
+            }
+        }
+        return builder.result();
+    }
+
+    // PARSES A FILE WHERE IT LIVES, SO ONLY THE COMPACT RESULT CROSSES THE CHANNEL
+    public static class ParseFile extends MasterToSlaveFileCallable<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final long limit;
+
+        public ParseFile(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public Object invoke(File f, VirtualChannel channel) throws IOException {
+            if (!f.isFile()) {
+                return null;
+            }
+            if (limit > 0 && f.length() > limit) {
+                throw new IOException("JSON output exceeded " + limit + " bytes (see maxOutputBytes)");
+            }
+            try (InputStream in = Files.newInputStream(f.toPath())) {
+                return parse(in);
+            }
+        }
+    }
+
+    private static class TreeBuilder {
+        private final Deque<Object> containers = new ArrayDeque<>();
+        private final Deque<String> names = new ArrayDeque<>();
+        private final List<Object> roots = new ArrayList<>();
+
+        void token(JsonToken token, JsonParser p) throws IOException {
+            switch (token) {
+                case START_OBJECT:
+                    containers.push(new LinkedHashMap<String, Object>());
+                    break;
+                case START_ARRAY:
+                    containers.push(new ArrayList<Object>());
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    add(containers.pop());
+                    break;
+                case FIELD_NAME:
+                    names.push(p.currentName());
+                    break;
+                case VALUE_STRING:
+                    add(p.getText());
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    add(p.getNumberValue());
+                    break;
+                case VALUE_TRUE:
+                    add(Boolean.TRUE);
+                    break;
+                case VALUE_FALSE:
+                    add(Boolean.FALSE);
+                    break;
+                case VALUE_NULL:
+                    add(null);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            Object parent = containers.peek();
+            if (parent == null) {
+                roots.add(value);
+            } else if (parent instanceof Map) {
+                ((Map<String, Object>) parent).put(names.pop(), value);
+            } else {
+                ((List<Object>) parent).add(value);
+            }
+        }
+
+        Object result() {
+            if (roots.isEmpty()) {
+                return null;
+            }
+            return roots.size() == 1 ? roots.get(0) : new ArrayList<>(roots);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.jenkins.plugins.dfcli;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// LOCK FREE FIXED BUCKET HISTOGRAM OF DURATIONS IN MILLISECONDS. PERCENTILES ARE REPORTED AS THE UPPER BOUND OF
+// THE BUCKET THEY FALL IN, WHICH IS PLENTY TO SEE WHERE BUILD TIME GOES
+public class LatencyHistogram {
+    static final long[] BOUNDS_MILLIS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000, 300000, 900000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMillis = new LongAdder();
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+        int i = 0;
+        while (i < BOUNDS_MILLIS.length && millis > BOUNDS_MILLIS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.increment();
+        sumMillis.add(millis);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // UPPER BOUND IN ms OF THE BUCKET HOLDING THE q-TH QUANTILE, -1 IF EMPTY, Long.MAX_VALUE IF PAST THE LAST BOUND
+    public long quantileMillis(double q) {
+        long total = 0;
+        long[] snapshot = new long[buckets.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return i < BOUNDS_MILLIS.length ? BOUNDS_MILLIS[i] : Long.MAX_VALUE;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // count, sumMillis, p50/p95/p99 AND CUMULATIVE "le" BUCKETS (PROMETHEUS STYLE)
+    public Map<String, Object> toMap() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", getCount());
+        out.put("sumMillis", sumMillis.sum());
+        out.put("p50Millis", quantileMillis(0.50));
+        out.put("p95Millis", quantileMillis(0.95));
+        out.put("p99Millis", quantileMillis(0.99));
+        Map<String, Long> le = new LinkedHashMap<>();
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            cumulative += buckets.get(i);
+            le.put(i < BOUNDS_MILLIS.length ? Long.toString(BOUNDS_MILLIS[i]) : "+Inf", cumulative);
+        }
+        out.put("buckets", le);
+        return out;
+    }
+}
@@ -0,0 +1,40 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+// RELEASES FROM A DIRECTORY ON THE CONTROLLER: <dir>/<version>/<file>, FALLING BACK TO <dir>/<file>
+public class LocalReleaseSource implements ReleaseSource {
+    private final Path dir;
+
+    public LocalReleaseSource(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public InputStream open(String version, String fileName) throws IOException {
+        Path file = resolve(version, fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new NoSuchFileException(file.toString());
+        }
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public String describe(String version, String fileName) {
+        return resolve(version, fileName).toString();
+    }
+
+    private Path resolve(String version, String fileName) {
+        if (version != null && !version.isEmpty()) {
+            Path versioned = dir.resolve(version).resolve(fileName);
+            if (Files.isRegularFile(versioned)) {
+                return versioned;
+            }
+        }
+        return dir.resolve(fileName);
+    }
+}
@@ -0,0 +1,96 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.util.Secret;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// REMEMBERS SUCCESSFUL dfcli LOGINS PER NODE SO STEPS DON'T FORK `dfcli login` EVERY TIME
+public final class LoginSessionCache {
+    // STDERR PATTERNS THAT MEAN THE SESSION ON THE NODE IS NO LONGER ACCEPTED. A BARE 401 IS NOT ENOUGH, FILE
+    // NAMES AND SIZES CONTAIN IT TOO, AND A FALSE MATCH RE-RUNS A COMMAND THAT MAY NOT BE SAFE TO REPEAT. dfcli
+    // REPORTS REJECTED SESSIONS AS AN HTTP STATUS ("status 401", "401 Unauthorized") OR ONE OF THE PHRASES BELOW
+    private static final Pattern AUTH_FAILURE = Pattern.compile("(status|http|code)( code)?[ :=]*401\\b"
+            + "|\\b401 unauthori[sz]ed\\b|^(error: )?unauthori[sz]ed\\b|not logged in|authentication (failed|required)"
+            + "|token (is )?(expired|invalid)", Pattern.MULTILINE);
+
+    // KEY -> EXPIRY (EPOCH MILLIS)
+    private static final Map<String, Long> sessions = new ConcurrentHashMap<>();
+
+    private LoginSessionCache() {}
+
+    public static String nodeScope(Node node) {
+        return "node:" + node.getNodeName();
+    }
+
+    // DOCKER CONTAINERS KEEP THEIR OWN dfcli CONFIG, SO SCOPE THEM BY THE WORKSPACE THEY MOUNT
+    public static String dockerScope(Node node, FilePath workspace) {
+        return "docker:" + node.getNodeName() + ":" + (workspace != null ? workspace.getRemote() : "");
+    }
+
+    public static boolean isValid(String scope, DfServer server, int ttlMinutes) {
+        if (ttlMinutes <= 0) {
+            return false;
+        }
+        String key = key(scope, server);
+        Long expiry = sessions.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            sessions.remove(key, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    // dfcli KEEPS ONE LOGIN PER NODE USER, SO LOGGING IN TO A SERVER ENDS THE SCOPE'S SESSION WITH ANY OTHER
+    public static void markLoggedIn(String scope, DfServer server, int ttlMinutes) {
+        String prefix = scope + "|";
+        sessions.keySet().removeIf(k -> k.startsWith(prefix));
+        if (ttlMinutes <= 0) {
+            return;
+        }
+        sessions.put(key(scope, server), System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes));
+    }
+
+    // DROP EVERY SESSION FOR THIS SCOPE AND SERVER, WHATEVER CREDENTIALS IT WAS CREATED WITH
+    public static void invalidate(String scope, DfServer server) {
+        String prefix = scope + "|" + server.getServerUrl() + "|";
+        sessions.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    public static void clear() {
+        sessions.clear();
+    }
+
+    public static boolean isAuthFailure(String stderr) {
+        return stderr != null && AUTH_FAILURE.matcher(stderr.toLowerCase(Locale.ROOT)).find();
+    }
+
+    private static String key(String scope, DfServer server) {
+        return scope + "|" + server.getServerUrl() + "|" + fingerprint(server);
+    }
+
+    // HASH OF THE CONFIGURED CREDENTIALS, SO ANY CHANGE IN THE SERVER'S CONFIG FORCES A NEW LOGIN
+    static String fingerprint(DfServer server) {
+        MessageDigest md = Digests.sha256();
+        update(md, server.getUsername());
+        update(md, Secret.toString(server.getPassword()));
+        update(md, Secret.toString(server.getToken()));
+        return Digests.toHex(md.digest()).substring(0, 32);
+    }
+
+    private static void update(MessageDigest md, String value) {
+        if (value != null) {
+            md.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        md.update((byte) 0);
+    }
+}
@@ -0,0 +1,102 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.console.LineTransformationOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+// TEES PROCESS OUTPUT LINE BY LINE TO THE BUILD LOG AS IT ARRIVES,
+// KEEPING AT MOST `limit` BYTES FOR THE STEP'S RETURN VALUE, CUT ON A UTF-8 CHARACTER BOUNDARY
+public class OutputCapture extends LineTransformationOutputStream {
+    private final PrintStream log;
+    private final DfConsole.Command console;
+    // STDERR: LINES GO TO THE CONSOLE'S ERROR CHANNEL
+    private final boolean error;
+    private final byte[] prefix;
+    private final long limit;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private long bytesSeen;
+    private boolean truncated;
+
+    // limit <= 0 KEEPS NOTHING, OUTPUT IS ONLY STREAMED TO THE LOG
+    public OutputCapture(PrintStream log, long limit) {
+        this(log, limit, "");
+    }
+
+    // prefix IS PREPENDED TO EVERY LOGGED LINE, E.G. TO TELL PARALLEL COMMANDS APART
+    public OutputCapture(PrintStream log, long limit, String prefix) {
+        this(log, null, false, limit, prefix);
+    }
+
+    private OutputCapture(PrintStream log, DfConsole.Command console, boolean error, long limit, String prefix) {
+        this.log = log;
+        this.console = console;
+        this.error = error;
+        this.limit = Math.max(0, limit);
+        this.prefix = prefix == null ? new byte[0] : prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // LINES GO THROUGH console (VERBOSITY, PROGRESS COLLAPSING, RAW LOG), WHICH ADDS ITS OWN PREFIX
+    static OutputCapture through(DfConsole.Command console, long limit) {
+        return new OutputCapture(null, console, false, limit, "");
+    }
+
+    // SAME FOR A PROCESS'S STDERR
+    static OutputCapture errorsThrough(DfConsole.Command console, long limit) {
+        return new OutputCapture(null, console, true, limit, "");
+    }
+
+    @Override
+    protected void eol(byte[] b, int len) throws IOException {
+        bytesSeen += len;
+        if (console != null) {
+            console.line(b, len, error);
+        } else if (log != null) {
+            if (prefix.length == 0) {
+                log.write(b, 0, len);
+            } else {
+                // ONE WRITE PER LINE SO LINES FROM CONCURRENT PROCESSES DON'T INTERLEAVE
+                byte[] line = new byte[prefix.length + len];
+                System.arraycopy(prefix, 0, line, 0, prefix.length);
+                System.arraycopy(b, 0, line, prefix.length, len);
+                log.write(line, 0, line.length);
+            }
+        }
+
+        if (truncated) {
+            return;
+        }
+        long room = limit - captured.size();
+        if (room >= len) {
+            captured.write(b, 0, len);
+        } else {
+            // BACK UP TO THE START OF A CHARACTER SPLIT BY THE LIMIT, SO THE VALUE DOESN'T END IN U+FFFD
+            int cut = (int) Math.max(0, room);
+            while (cut > 0 && (b[cut] & 0xC0) == 0x80) {
+                cut--;
+            }
+            captured.write(b, 0, cut);
+            truncated = limit > 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    public String getText() {
+        return new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public long getBytesSeen() {
+        return bytesSeen;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
@@ -0,0 +1,176 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.util.NamingThreadFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+
+// GZIP ON ALL CORES: THE STREAM IS CUT INTO BLOCKS, EACH COMPRESSED ON A POOL THREAD INTO ITS OWN GZIP MEMBER AND
+// WRITTEN IN ORDER. CONCATENATED MEMBERS ARE ONE VALID .gz (RFC 1952), READ BY GZIPInputStream AND gunzip ALIKE.
+// A BLOCK THAT DOESN'T SHRINK (ALREADY COMPRESSED JARS, IMAGES, ARCHIVES) IS WRITTEN STORED INSTEAD
+public class ParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    // A BLOCK IS STORED UNLESS COMPRESSION SAVES AT LEAST THIS FRACTION OF IT
+    static final double MIN_SAVING = 0.03;
+
+    private final OutputStream out;
+    private final int level;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] block;
+    private int filled;
+    private boolean wroteAny;
+    private boolean closed;
+    private long bytesIn;
+    private long bytesOut;
+    private int storedBlocks;
+
+    public ParallelGzipOutputStream(OutputStream out, int level, int threads) {
+        this(out, level, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    ParallelGzipOutputStream(OutputStream out, int level, int threads, int blockSize) {
+        this.out = out;
+        this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+        int n = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(n, new NamingThreadFactory(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }, "dfcli-gzip"));
+        // BOUNDS MEMORY TO ABOUT 2 x threads BLOCKS IN AND OUT
+        this.maxInFlight = 2 * n;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            int n = Math.min(len, block.length - filled);
+            System.arraycopy(b, off, block, filled, n);
+            filled += n;
+            off += n;
+            len -= n;
+            if (filled == block.length) {
+                submit();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        byte[] data = block;
+        int length = filled;
+        block = new byte[block.length];
+        filled = 0;
+        bytesIn += length;
+        wroteAny = true;
+        inFlight.add(pool.submit(() -> member(data, length)));
+        while (inFlight.size() > maxInFlight) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        byte[] member;
+        try {
+            member = inFlight.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        out.write(member);
+        bytesOut += member.length;
+    }
+
+    // ONE GZIP MEMBER FOR data[0, length), STORED IF COMPRESSING DIDN'T PAY
+    private byte[] member(byte[] data, int length) throws IOException {
+        byte[] compressed = gzip(data, length, level);
+        if (level != Deflater.NO_COMPRESSION && compressed.length > length * (1 - MIN_SAVING)) {
+            synchronized (this) {
+                storedBlocks++;
+            }
+            return gzip(data, length, Deflater.NO_COMPRESSION);
+        }
+        return compressed;
+    }
+
+    private static byte[] gzip(byte[] data, int length, int level) throws IOException {
+        GzipParameters params = new GzipParameters();
+        params.setCompressionLevel(level);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(level == Deflater.NO_COMPRESSION ? length + 64 : 4096);
+        try (GzipCompressorOutputStream gz = new GzipCompressorOutputStream(buf, params)) {
+            gz.write(data, 0, length);
+        }
+        return buf.toByteArray();
+    }
+
+    // WRITES OUT EVERY FULL BLOCK ALREADY HANDED TO THE POOL. A PARTIAL BLOCK WAITS FOR MORE DATA OR close()
+    @Override
+    public void flush() throws IOException {
+        while (!inFlight.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // AN EMPTY STREAM STILL GETS ONE (EMPTY) MEMBER
+            if (filled > 0 || !wroteAny) {
+                byte[] last = Arrays.copyOf(block, filled);
+                bytesIn += filled;
+                inFlight.add(pool.submit(() -> member(last, last.length)));
+            }
+            block = null;
+            while (!inFlight.isEmpty()) {
+                writeNext();
+            }
+            out.close();
+        } finally {
+            for (Future<byte[]> pending : inFlight) {
+                pending.cancel(true);
+            }
+            pool.shutdownNow();
+        }
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public synchronized int getStoredBlocks() {
+        return storedBlocks;
+    }
+}
@@ -0,0 +1,189 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import jenkins.model.Jenkins;
+
+// CONTROLLER SIDE INDEX OF WHICH AGENTS HOLD WHICH CACHE KEYS IN THEIR AgentArtifactCache, SO A RESTORE THAT
+// MISSES LOCALLY COPIES THE ARCHIVE FROM A PEER OVER REMOTING INSTEAD OF DOWNLOADING IT FROM THE SERVER AGAIN.
+// AGENTS HAVE NO CHANNELS TO EACH OTHER, SO THE BYTES PASS THROUGH THE CONTROLLER. THE INDEX IS IN MEMORY ONLY:
+// AFTER A RESTART IT REFILLS AS AGENTS SAVE AND RESTORE
+final class PeerCache {
+    // KEYS TRACKED, LEAST RECENTLY RECORDED DROPPED FIRST
+    static final int MAX_KEYS = 10_000;
+    // HOW LONG A RESTORE WAITS FOR ANOTHER ONE ALREADY DOWNLOADING THE SAME KEY
+    static final long FLIGHT_WAIT_MINUTES = 30;
+
+    // KEY -> NODE NAMES, MOST RECENT LAST. "" IS THE BUILT-IN NODE
+    private static final Map<String, LinkedHashSet<String>> HOLDERS = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LinkedHashSet<String>> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+    // SERVER DOWNLOADS IN PROGRESS, ONE PER KEY. COMPLETES WITH WHETHER THE SERVER HAD IT
+    private static final Map<String, CompletableFuture<Boolean>> FLIGHTS = new ConcurrentHashMap<>();
+
+    private PeerCache() {}
+
+    static void record(String key, Node node) {
+        synchronized (HOLDERS) {
+            LinkedHashSet<String> nodes = HOLDERS.computeIfAbsent(key, k -> new LinkedHashSet<>());
+            nodes.remove(node.getNodeName());
+            nodes.add(node.getNodeName());
+        }
+    }
+
+    static void forget(String key, String nodeName) {
+        synchronized (HOLDERS) {
+            Set<String> nodes = HOLDERS.get(key);
+            if (nodes != null && nodes.remove(nodeName) && nodes.isEmpty()) {
+                HOLDERS.remove(key);
+            }
+        }
+    }
+
+    // MOST RECENT FIRST
+    static List<String> holders(String key) {
+        synchronized (HOLDERS) {
+            Set<String> nodes = HOLDERS.get(key);
+            List<String> out = nodes != null ? new ArrayList<>(nodes) : new ArrayList<>();
+            Collections.reverse(out);
+            return out;
+        }
+    }
+
+    static void clear() {
+        synchronized (HOLDERS) {
+            HOLDERS.clear();
+        }
+        FLIGHTS.clear();
+    }
+
+    // COPIES key FROM THE FIRST ONLINE PEER STILL HOLDING IT TO target ON self AND CHECKS THE COPY AGAINST THE
+    // DIGEST THE PEER RECORDED. RETURNS THE PEER'S NAME, OR NULL IF NO PEER HAS IT. PEERS THAT EVICTED IT, CAN'T BE
+    // REACHED OR HANDED OUT A CORRUPT COPY ARE DROPPED FROM THE INDEX. self IS SKIPPED, ITS OWN CACHE IS THE
+    // CALLER'S Lookup
+    static String fetch(String key, Node self, FilePath target, long maxBytes, TaskListener listener)
+            throws InterruptedException {
+        for (String name : holders(key)) {
+            if (name.equals(self.getNodeName())) {
+                continue;
+            }
+            FilePath peerDir = AgentArtifactCache.dirFor(node(name), maxBytes);
+            if (peerDir == null) {
+                forget(key, name);
+                continue;
+            }
+            // LINKED ON THE PEER FIRST, SO ITS EVICTION CAN'T PULL THE FILE AWAY MID-COPY
+            FilePath export = peerDir.child("peer-" + UUID.randomUUID() + ".tmp");
+            try {
+                String expected = peerDir.act(new AgentArtifactCache.Export(key, export.getRemote()));
+                if (expected == null) {
+                    forget(key, name);
+                    continue;
+                }
+                target.getParent().mkdirs();
+                export.copyTo(target);
+                String actual = target.act(new AgentArtifactCache.Sha256());
+                if (!expected.equals(actual)) {
+                    listener.getLogger().println("[dfcli] Copy of " + key + " from " + name + " has sha256 " + actual
+                            + ", expected " + expected + ", not using it");
+                    target.delete();
+                    forget(key, name);
+                    continue;
+                }
+                return name.isEmpty() ? "built-in" : name;
+            } catch (IOException e) {
+                listener.getLogger().println("[dfcli] Could not copy " + key + " from " + name + ": " + e.getMessage());
+                forget(key, name);
+            } finally {
+                deleteQuietly(export);
+            }
+        }
+        return null;
+    }
+
+    private static Node node(String name) {
+        Jenkins jenkins = Jenkins.get();
+        Node node = name.isEmpty() ? jenkins : jenkins.getNode(name);
+        if (node == null) {
+            return null;
+        }
+        Computer computer = node.toComputer();
+        return computer != null && computer.isOnline() ? node : null;
+    }
+
+    private static void deleteQuietly(FilePath file) throws InterruptedException {
+        try {
+            file.delete();
+        } catch (IOException e) {
+            // THE PEER WENT AWAY, ITS TEMP FILE WITH IT OR ON ITS NEXT EVICTION
+        }
+    }
+
+    // SINGLE FLIGHT: THE FIRST RESTORE OF A KEY LEADS AND DOWNLOADS IT, LATER ONES WAIT FOR IT AND THEN COPY FROM
+    // THE LEADER. ALWAYS CLOSED, SO A LEADER THAT FAILS STILL RELEASES ITS FOLLOWERS
+    static Flight join(String key) {
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = FLIGHTS.putIfAbsent(key, mine);
+        return new Flight(key, existing != null ? existing : mine, existing == null);
+    }
+
+    static final class Flight implements AutoCloseable {
+        private final String key;
+        private final CompletableFuture<Boolean> future;
+        private final boolean leader;
+
+        private Flight(String key, CompletableFuture<Boolean> future, boolean leader) {
+            this.key = key;
+            this.future = future;
+            this.leader = leader;
+        }
+
+        boolean isLeader() {
+            return leader;
+        }
+
+        // LEADER ONLY: WHETHER THE SERVER HAD THE KEY
+        void complete(boolean found) {
+            future.complete(found);
+            FLIGHTS.remove(key, future);
+        }
+
+        // FOLLOWERS: TRUE/FALSE AS THE LEADER REPORTED, NULL IF IT FAILED OR TOOK TOO LONG
+        Boolean await() throws InterruptedException {
+            try {
+                return future.get(FLIGHT_WAIT_MINUTES, TimeUnit.MINUTES);
+            } catch (ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (leader && !future.isDone()) {
+                future.completeExceptionally(new IOException("Restore of " + key + " failed"));
+                FLIGHTS.remove(key, future);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+
+// WHERE dfcli RELEASE ARCHIVES COME FROM (GITHUB, A MIRROR URL OR A LOCAL DIRECTORY)
+public interface ReleaseSource {
+    String CHECKSUMS_FILE = "checksums.txt";
+
+    InputStream open(String version, String fileName) throws IOException;
+
+    String describe(String version, String fileName);
+
+    // THE RELEASE TAG "latest" CURRENTLY POINTS AT, OR NULL IF THE SOURCE CAN'T NAME IT
+    default String latestTag() throws IOException {
+        return null;
+    }
+
+    // PUBLISHED SHA-256 FOR AN ARCHIVE, OR NULL IF THE RELEASE HAS NO checksums.txt
+    default String publishedSha256(String version, String archiveName) throws IOException {
+        try (InputStream in = open(version, CHECKSUMS_FILE);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 2 && parts[1].replaceFirst("^\\*", "").equals(archiveName)) {
+                    return parts[0].toLowerCase();
+                }
+            }
+            return null;
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // BLANK = GITHUB, http(s) = GITHUB-STYLE RELEASE BASE URL, ANYTHING ELSE = LOCAL DIRECTORY
+    static ReleaseSource fromSpec(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return new GithubReleaseSource(GithubReleaseSource.DEFAULT_BASE_URL);
+        }
+        String trimmed = spec.trim();
+        if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
+            return new GithubReleaseSource(trimmed);
+        }
+        if (trimmed.startsWith("file:")) {
+            return new LocalReleaseSource(Paths.get(URI.create(trimmed)));
+        }
+        return new LocalReleaseSource(Paths.get(trimmed));
+    }
+}
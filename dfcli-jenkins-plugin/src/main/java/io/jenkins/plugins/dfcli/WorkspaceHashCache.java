@@ -0,0 +1,98 @@
+package io.jenkins.plugins.dfcli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// AGENT SIDE SHA-256 CACHE FOR WORKSPACE FILES, KEYED BY RELATIVE PATH AND VALID WHILE SIZE + MTIME ARE UNCHANGED.
+// PERSISTED AS "<sha256> <size> <mtime> <path>" LINES, USUALLY UNDER THE WORKSPACE'S @tmp DIR
+public class WorkspaceHashCache {
+    // FILE NAME UNDER ws@tmp, SHARED BY dfUpload AND THE CACHE KEY ENGINE
+    public static final String DEFAULT_FILE_NAME = "dfcli-hash-cache";
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private WorkspaceHashCache(Path file) {
+        this.file = file;
+    }
+
+    public static WorkspaceHashCache load(Path file) {
+        WorkspaceHashCache cache = new WorkspaceHashCache(file);
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                for (String line : lines) {
+                    String[] parts = line.split(" ", 4);
+                    if (parts.length == 4) {
+                        cache.entries.put(
+                                parts[3], new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // A BROKEN CACHE ONLY COSTS A REHASH
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    // SHA-256 OF root/relPath, STREAMED, OR THE CACHED VALUE IF THE FILE DIDN'T CHANGE. SAFE TO CALL CONCURRENTLY
+    public String hash(Path root, String relPath) throws IOException {
+        Path path = root.resolve(relPath);
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+
+        Entry cached = entries.get(relPath);
+        if (cached != null && cached.size == size && cached.mtime == mtime) {
+            return cached.sha256;
+        }
+        String sha256 = Digests.sha256(path);
+        entries.put(relPath, new Entry(sha256, size, mtime));
+        dirty = true;
+        return sha256;
+    }
+
+    // WRITE TO A TEMP FILE AND RENAME, SO CONCURRENT BUILDS NEVER READ A HALF WRITTEN CACHE
+    public void save() throws IOException {
+        if (!dirty || file == null) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.write(entry.sha256 + " " + entry.size + " " + entry.mtime + " " + e.getKey());
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static class Entry {
+        final String sha256;
+        final long size;
+        final long mtime;
+
+        Entry(String sha256, long size, long mtime) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.jenkins.plugins.dfcli;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jenkins.MasterToSlaveFileCallable;
+
+// MATCHES includes/excludes UNDER A DIR ON THE AGENT AND HASHES THE FILES IN PARALLEL, REUSING THE PERSISTED
+// WorkspaceHashCache FOR FILES WHOSE SIZE AND MTIME DIDN'T CHANGE. RETURNS relative/path -> sha256, SORTED, WITH
+// FORWARD SLASHES, SO THE SAME TREE GIVES THE SAME MAP ON EVERY OS
+public class WorkspaceHashes extends MasterToSlaveFileCallable<TreeMap<String, String>> {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_THREADS = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+    private final String includes;
+    private final String excludes;
+    private final String cacheFile;
+    private final int threads;
+
+    public WorkspaceHashes(String includes, String excludes, String cacheFile) {
+        this(includes, excludes, cacheFile, DEFAULT_THREADS);
+    }
+
+    public WorkspaceHashes(String includes, String excludes, String cacheFile, int threads) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.cacheFile = cacheFile;
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public TreeMap<String, String> invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+        WorkspaceHashCache cache = WorkspaceHashCache.load(cacheFile != null ? Paths.get(cacheFile) : null);
+        Path root = dir.toPath();
+        String[] files = Util.createFileSet(dir, includes, excludes)
+                .getDirectoryScanner()
+                .getIncludedFiles();
+
+        TreeMap<String, String> hashes = new TreeMap<>();
+        if (files.length == 0) {
+            return hashes;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(threads, files.length),
+                new NamingThreadFactory(Executors.defaultThreadFactory(), "dfcli-hash"));
+        try {
+            List<Future<String>> futures = new ArrayList<>(files.length);
+            for (String file : files) {
+                String rel = file.replace('\\', '/');
+                futures.add(pool.submit(() -> cache.hash(root, rel)));
+            }
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    hashes.put(files[i].replace('\\', '/'), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Hashing " + files[i] + " failed", cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        cache.save();
+        return hashes;
+    }
+
+    // ONE SHA-256 OVER THE SORTED FILE HASHES AND ANY EXTRA NAME=VALUE INPUTS (ENV VARS). PATHS ARE PART OF THE
+    // DIGEST SO A RENAME CHANGES THE KEY
+    public static String digest(SortedMap<String, String> fileHashes, SortedMap<String, String> extra) {
+        MessageDigest md = Digests.sha256();
+        for (Map.Entry<String, String> e : fileHashes.entrySet()) {
+            md.update(("file " + e.getKey() + "\0" + e.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (extra != null) {
+            for (Map.Entry<String, String> e : extra.entrySet()) {
+                String value = e.getValue() != null ? e.getValue() : "";
+                md.update(("env " + e.getKey() + "\0" + value + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return Digests.toHex(md.digest());
+    }
+
+    // SAME MATCH AND HASH, BUT ONLY THE COMBINED DIGEST AND FILE COUNT CROSS THE CHANNEL
+    public static class DigestInputs extends MasterToSlaveFileCallable<DigestInputs.Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final WorkspaceHashes hashes;
+        private final TreeMap<String, String> extra;
+
+        public DigestInputs(WorkspaceHashes hashes, TreeMap<String, String> extra) {
+            this.hashes = hashes;
+            this.extra = extra;
+        }
+
+        @Override
+        public Result invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+            TreeMap<String, String> files = hashes.invoke(dir, channel);
+            return new Result(digest(files, extra), files.size());
+        }
+
+        public static class Result implements Serializable {
+            private static final long serialVersionUID = 1L;
+
+            private final String digest;
+            private final int files;
+
+            Result(String digest, int files) {
+                this.digest = digest;
+                this.files = files;
+            }
+
+            public String getDigest() {
+                return digest;
+            }
+
+            public int getFiles() {
+                return files;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AgentArtifactCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void exactKeyThenNewestPrefixMatch() throws Exception {
+        Path dir = tmp.newFolder("cache").toPath();
+        AgentArtifactCache cache = new AgentArtifactCache(dir);
+        cache.store(entry("--version deps-aaa"), archive("old", 10), 1000);
+        cache.store(entry("--version deps-bbb"), archive("new", 10), 1000);
+        String aaa = AgentArtifactCache.entryName(entry("--version deps-aaa"));
+        Files.setLastModifiedTime(dir.resolve(aaa + AgentArtifactCache.ARCHIVE_SUFFIX), FileTime.fromMillis(1000));
+
+        Path out = tmp.getRoot().toPath().resolve("restore/out.tar.gz");
+        Files.createDirectories(out.getParent());
+        assertEquals(entry("--version deps-aaa"), cache.lookup(entry("--version deps-aaa"), null, out));
+        assertArrayEquals(bytes("old", 10), Files.readAllBytes(out));
+
+        // THE LOOKUP ABOVE TOUCHED deps-aaa, SO IT IS NOW THE NEWEST PREFIX MATCH
+        List<String> prefixes = AgentArtifactCache.keyPrefixes("repo", "cache.tar.gz", List.of("nope-", "deps-"));
+        assertEquals(entry("--version deps-aaa"), cache.lookup(entry("--version deps-ccc"), prefixes, out));
+        assertEquals("--version deps-aaa",
+                AgentArtifactCache.cacheKey("repo", "cache.tar.gz", entry("--version deps-aaa")));
+
+        // THE SAME VERSION OF ANOTHER ARCHIVE NAME IS ANOTHER ENTRY, AND PREFIXES DON'T REACH ACROSS NAMES
+        assertNull(cache.lookup(AgentArtifactCache.entryKey("repo", "other.tar.gz", "--version deps-aaa"), null, out));
+        assertNull(cache.lookup(entry("--version other"),
+                AgentArtifactCache.keyPrefixes("repo", "other.tar.gz", List.of("deps-")), out));
+        Properties stats = cache.stats();
+        assertEquals("2", stats.getProperty("hits"));
+        assertEquals("2", stats.getProperty("misses"));
+        assertEquals("2", stats.getProperty("entries"));
+    }
+
+    @Test
+    public void hitsAndMissesAreWrittenOutWithTheNextStore() throws Exception {
+        Path dir = tmp.newFolder("cache").toPath();
+        AgentArtifactCache cache = new AgentArtifactCache(dir);
+        cache.store("a", archive("a", 10), 1000);
+        Path stats = dir.resolve(AgentArtifactCache.STATS_FILE);
+        Files.setLastModifiedTime(stats, FileTime.fromMillis(1000));
+
+        Path out = tmp.getRoot().toPath().resolve("out.tar.gz");
+        cache.lookup("a", null, out);
+        cache.lookup("b", null, out);
+        assertEquals(FileTime.fromMillis(1000), Files.getLastModifiedTime(stats));
+        assertEquals("1", cache.stats().getProperty("hits"));
+
+        cache.store("b", archive("b", 10), 1000);
+        assertFalse(FileTime.fromMillis(1000).equals(Files.getLastModifiedTime(stats)));
+        Properties onDisk = new Properties();
+        try (InputStream in = Files.newInputStream(stats)) {
+            onDisk.load(in);
+        }
+        assertEquals("1", onDisk.getProperty("hits"));
+        assertEquals("1", onDisk.getProperty("misses"));
+        assertEquals("2", onDisk.getProperty("stores"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedDownToTheBound() throws Exception {
+        Path dir = tmp.newFolder("cache").toPath();
+        AgentArtifactCache cache = new AgentArtifactCache(dir);
+        cache.store("a", archive("a", 40), 100);
+        cache.store("b", archive("b", 40), 100);
+        Files.setLastModifiedTime(
+                dir.resolve(AgentArtifactCache.entryName("a") + AgentArtifactCache.ARCHIVE_SUFFIX),
+                FileTime.fromMillis(1000));
+
+        cache.store("c", archive("c", 40), 100);
+
+        assertFalse(cache.contains("a"));
+        assertFalse(Files.exists(
+                dir.resolve(AgentArtifactCache.entryName("a") + AgentArtifactCache.DIGEST_SUFFIX)));
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals("1", cache.stats().getProperty("evictions"));
+
+        // LARGER THAN THE WHOLE CACHE: NOT KEPT, NOTHING ELSE EVICTED
+        cache.store("huge", archive("huge", 200), 100);
+        assertFalse(cache.contains("huge"));
+        assertTrue(cache.contains("b"));
+    }
+
+    @Test
+    public void exportHandsOutTheDigestRecordedAtStore() throws Exception {
+        Path dir = tmp.newFolder("cache").toPath();
+        AgentArtifactCache cache = new AgentArtifactCache(dir);
+        cache.store("a", archive("a", 10), 1000);
+        String sha256 = Digests.toHex(Digests.sha256().digest(bytes("a", 10)));
+        Path digest = dir.resolve(AgentArtifactCache.entryName("a") + AgentArtifactCache.DIGEST_SUFFIX);
+        assertEquals(sha256, new String(Files.readAllBytes(digest), StandardCharsets.UTF_8));
+
+        Path out = tmp.getRoot().toPath().resolve("export.tar.gz");
+        assertEquals(sha256, cache.export("a", out));
+        assertArrayEquals(bytes("a", 10), Files.readAllBytes(out));
+        assertNull(cache.export("b", out));
+
+        // ENTRIES FROM BEFORE DIGESTS WERE RECORDED GET ONE ON THEIR FIRST EXPORT
+        Files.delete(digest);
+        assertEquals(sha256, cache.export("a", out));
+        assertTrue(Files.exists(digest));
+    }
+
+    private static String entry(String key) {
+        return AgentArtifactCache.entryKey("repo", "cache.tar.gz", key);
+    }
+
+    private Path archive(String name, int size) throws Exception {
+        Path file = tmp.getRoot().toPath().resolve(name + ".tar.gz");
+        Files.write(file, bytes(name, size));
+        return file;
+    }
+
+    private static byte[] bytes(String seed, int size) {
+        byte[] out = new byte[size];
+        for (int i = 0; i < size; i++) {
+            out[i] = (byte) seed.charAt(i % seed.length());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,66 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AgentFileLockTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void threadsTakeTurnsAndNoLockOutlivesItsUsers() throws Exception {
+        Path dir = tmp.newFolder().toPath();
+        AtomicInteger[] inside = new AtomicInteger[50];
+        for (int p = 0; p < inside.length; p++) {
+            inside[p] = new AtomicInteger();
+        }
+        AtomicInteger overlaps = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> done = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                // FOUR TASKS PER LOCK FILE
+                AtomicInteger holders = inside[i % inside.length];
+                Path lockFile = dir.resolve("lock-" + (i % inside.length));
+                done.add(pool.submit(() -> AgentFileLock.withLock(lockFile, () -> {
+                    if (holders.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.yield();
+                    holders.decrementAndGet();
+                    return null;
+                })));
+            }
+            for (Future<Void> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0, overlaps.get());
+        assertEquals(0, AgentFileLock.lockedPaths());
+    }
+
+    @Test
+    public void failedActionsReleaseTheirPath() throws Exception {
+        Path lockFile = tmp.getRoot().toPath().resolve("failing.lock");
+
+        assertEquals(Integer.valueOf(1), AgentFileLock.withLock(lockFile, AgentFileLock::lockedPaths));
+        assertThrows(IOException.class, () -> AgentFileLock.withLock(lockFile, () -> {
+            throw new IOException("boom");
+        }));
+        assertEquals(0, AgentFileLock.lockedPaths());
+    }
+}
@@ -0,0 +1,121 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void storesArchiveByContentHashAndServesOffline() throws Exception {
+        Path releases = tmp.newFolder("releases").toPath();
+        byte[] archive = "fake archive".getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(releases.resolve("v1.2.3"));
+        Files.write(releases.resolve("v1.2.3").resolve("dfcli-linux-amd64.tar.gz"), archive);
+
+        BinaryCache cache = new BinaryCache(tmp.newFolder("cache"));
+        ReleaseSource source = ReleaseSource.fromSpec(releases.toString());
+
+        String sha256 = cache.resolve(source, "v1.2.3", "dfcli-linux-amd64.tar.gz", TaskListener.NULL);
+        assertEquals(Digests.sha256(new ByteArrayInputStream(archive)), sha256);
+        File blob = cache.blob(sha256);
+        assertTrue(blob.isFile());
+        assertArrayEquals(archive, Files.readAllBytes(blob.toPath()));
+
+        // SECOND RESOLVE MUST NOT TOUCH THE SOURCE
+        Files.delete(releases.resolve("v1.2.3").resolve("dfcli-linux-amd64.tar.gz"));
+        assertEquals(sha256, cache.resolve(source, "v1.2.3", "dfcli-linux-amd64.tar.gz", TaskListener.NULL));
+    }
+
+    @Test
+    public void rejectsArchiveNotMatchingPublishedChecksum() throws Exception {
+        Path releases = tmp.newFolder("releases").toPath();
+        Files.write(releases.resolve("dfcli-linux-amd64.tar.gz"), "tampered".getBytes(StandardCharsets.UTF_8));
+        Files.write(
+                releases.resolve(ReleaseSource.CHECKSUMS_FILE),
+                ("0000000000000000000000000000000000000000000000000000000000000000  dfcli-linux-amd64.tar.gz\n")
+                        .getBytes(StandardCharsets.UTF_8));
+
+        File root = tmp.newFolder("cache");
+        BinaryCache cache = new BinaryCache(root);
+        assertThrows(
+                IOException.class,
+                () -> cache.resolve(
+                        ReleaseSource.fromSpec(releases.toString()),
+                        "latest",
+                        "dfcli-linux-amd64.tar.gz",
+                        TaskListener.NULL));
+        String[] blobs = new File(root, "blobs").list();
+        assertFalse(blobs != null && blobs.length > 0);
+    }
+
+    @Test
+    public void missingChecksumsAreAnErrorOrARefusal() throws Exception {
+        Path releases = tmp.newFolder("releases").toPath();
+        Files.write(releases.resolve("dfcli-linux-amd64.tar.gz"), "unsigned".getBytes(StandardCharsets.UTF_8));
+        ReleaseSource source = ReleaseSource.fromSpec(releases.toString());
+
+        BinaryCache strict = new BinaryCache(tmp.newFolder("strict"));
+        assertThrows(
+                IOException.class,
+                () -> strict.resolve(source, "v1.0.0", "dfcli-linux-amd64.tar.gz", true, TaskListener.NULL));
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        BinaryCache lenient = new BinaryCache(tmp.newFolder("lenient"));
+        StreamTaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+        lenient.resolve(source, "v1.0.0", "dfcli-linux-amd64.tar.gz", listener);
+        String out = log.toString(StandardCharsets.UTF_8);
+        assertTrue(out, out.contains("ERROR: [dfcli] No published checksum for dfcli-linux-amd64.tar.gz"));
+    }
+
+    @Test
+    public void latestIsResolvedToATagOncePerRefresh() throws Exception {
+        AtomicInteger asked = new AtomicInteger();
+        ReleaseSource source = new ReleaseSource() {
+            @Override
+            public InputStream open(String version, String fileName) throws IOException {
+                throw new IOException("not used");
+            }
+
+            @Override
+            public String describe(String version, String fileName) {
+                return fileName;
+            }
+
+            @Override
+            public String latestTag() {
+                asked.incrementAndGet();
+                return "v2.1.0";
+            }
+        };
+        BinaryCache cache = new BinaryCache(tmp.newFolder("cache"));
+
+        assertEquals("v2.1.0", cache.resolveTag(source, "latest", TaskListener.NULL));
+        assertEquals("v2.1.0", cache.resolveTag(source, "latest", TaskListener.NULL));
+        assertEquals(1, asked.get());
+        assertEquals("v1.0.0", cache.resolveTag(source, "v1.0.0", TaskListener.NULL));
+        // A SOURCE THAT CAN'T NAME THE TAG LEAVES "latest" UNRESOLVED
+        assertNull(new BinaryCache(tmp.newFolder("local"))
+                .resolveTag(ReleaseSource.fromSpec(tmp.getRoot().toString()), "latest", TaskListener.NULL));
+    }
+}
@@ -0,0 +1,77 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class CacheCompressionTest {
+    @Test
+    public void blocksCompressInParallelIntoOneGzipStream() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append(" of a compressible cache entry\n");
+        }
+        byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gz = new ParallelGzipOutputStream(bytes, 6, 4, 16 * 1024);
+        for (int off = 0; off < data.length; off += 1000) {
+            gz.write(data, off, Math.min(1000, data.length - off));
+        }
+        gz.close();
+
+        assertEquals(data.length, gz.getBytesIn());
+        assertEquals(bytes.size(), gz.getBytesOut());
+        assertEquals(0, gz.getStoredBlocks());
+        assertTrue(bytes.size() < data.length / 4);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void incompressibleBlocksAreStored() throws Exception {
+        byte[] data = new byte[64 * 1024];
+        new Random(42).nextBytes(data);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gz = new ParallelGzipOutputStream(bytes, 9, 2, 16 * 1024);
+        gz.write(data);
+        gz.close();
+
+        assertEquals(4, gz.getStoredBlocks());
+        try (InputStream in = CacheCompression.decompress(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void emptyStreamIsValidGzip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(bytes, 6, 2).close();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(0, in.readAllBytes().length);
+        }
+    }
+
+    @Test
+    public void decompressDetectsTheCodec() throws Exception {
+        byte[] tar = "plain tar bytes".getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = CacheCompression.decompress(new ByteArrayInputStream(tar))) {
+            assertArrayEquals(tar, in.readAllBytes());
+        }
+
+        assertEquals(CacheCompression.GZIP, CacheCompression.codec(null));
+        assertEquals(CacheCompression.NONE, CacheCompression.codec(" None "));
+        assertNull(CacheCompression.codec("zstd"));
+    }
+}
@@ -0,0 +1,231 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChunkedTransferTest {
+    private static final Pattern RANGE = Pattern.compile("bytes[= ](\\d+)-(\\d+)");
+    private static final int CHUNK = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private byte[] served;
+    private byte[] uploaded;
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    // ETag OF `served`, AND ONE THE NEXT HEAD REPORTS INSTEAD (AS IF THE FILE CHANGED RIGHT AFTER IT)
+    private volatile String etag = "\"v1\"";
+    private volatile String headEtag;
+
+    @Before
+    public void startServer() throws IOException {
+        served = new byte[CHUNK * 5 + 123];
+        new Random(42).nextBytes(served);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/blob", this::handle);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    // STAND-IN FOR THE SERVER: RANGE GETS OVER `served`, Content-Range PUTS ASSEMBLED INTO `uploaded`
+    private void handle(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        if ("HEAD".equals(method)) {
+            ex.getResponseHeaders().add("Accept-Ranges", "bytes");
+            ex.getResponseHeaders().add("Content-Length", Integer.toString(served.length));
+            ex.getResponseHeaders().add("ETag", headEtag != null ? headEtag : etag);
+            headEtag = null;
+            ex.sendResponseHeaders(200, -1);
+        } else if ("GET".equals(method)) {
+            Matcher m = RANGE.matcher(String.valueOf(ex.getRequestHeaders().getFirst("Range")));
+            int from = 0;
+            int to = served.length - 1;
+            String ifRange = ex.getRequestHeaders().getFirst("If-Range");
+            boolean ranged = m.find() && (ifRange == null || ifRange.equals(etag));
+            if (ranged) {
+                from = Integer.parseInt(m.group(1));
+                to = Integer.parseInt(m.group(2));
+                ranges.add(from + "-" + to);
+            }
+            ex.sendResponseHeaders(ranged ? 206 : 200, to - from + 1);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(served, from, to - from + 1);
+            }
+        } else if ("PUT".equals(method)) {
+            Matcher m = RANGE.matcher(ex.getRequestHeaders().getFirst("Content-Range"));
+            assertTrue(m.find());
+            int from = Integer.parseInt(m.group(1));
+            ranges.add(from + "-" + m.group(2));
+            try (InputStream in = ex.getRequestBody()) {
+                byte[] body = in.readAllBytes();
+                synchronized (this) {
+                    System.arraycopy(body, 0, uploaded, from, body.length);
+                }
+            }
+            ex.sendResponseHeaders(201, -1);
+        }
+        ex.close();
+    }
+
+    private DistrofaceClient client() {
+        return new DistrofaceClient("http://127.0.0.1:" + server.getAddress().getPort(), "Bearer test");
+    }
+
+    @Test
+    public void downloadsInParallelChunks() throws Exception {
+        File target = new File(tmp.getRoot(), "out.bin");
+        ChunkedTransfer.Result result = new ChunkedTransfer(
+                        client(), "/blob", ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 3, true)
+                .invoke(target, null);
+
+        assertArrayEquals(served, Files.readAllBytes(target.toPath()));
+        assertEquals(6, result.getChunks());
+        assertEquals(6, ranges.size());
+        assertFalse(new File(tmp.getRoot(), "out.bin" + ChunkedTransfer.JOURNAL_SUFFIX).exists());
+    }
+
+    @Test
+    public void resumesInterruptedDownloadFromJournal() throws Exception {
+        File target = new File(tmp.getRoot(), "out.bin");
+        File part = new File(tmp.getRoot(), "out.bin" + ChunkedTransfer.PART_SUFFIX);
+        File journal = new File(tmp.getRoot(), "out.bin" + ChunkedTransfer.JOURNAL_SUFFIX);
+
+        // PRETEND CHUNKS 0 AND 2 LANDED BEFORE THE AGENT WENT AWAY
+        byte[] partial = new byte[served.length];
+        System.arraycopy(served, 0, partial, 0, CHUNK);
+        System.arraycopy(served, 2 * CHUNK, partial, 2 * CHUNK, CHUNK);
+        Files.write(part.toPath(), partial);
+        String identity = "download " + client().resolve("/blob") + " " + served.length + " " + CHUNK + " " + etag;
+        Files.write(journal.toPath(), (identity + "\n0\n2\n").getBytes(StandardCharsets.UTF_8));
+
+        ChunkedTransfer.Result result = new ChunkedTransfer(
+                        client(), "/blob", ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 2, true)
+                .invoke(target, null);
+
+        assertArrayEquals(served, Files.readAllBytes(target.toPath()));
+        assertEquals(2, result.getResumedChunks());
+        List<String> fetched = new ArrayList<>(ranges);
+        Collections.sort(fetched);
+        assertFalse(fetched.contains("0-" + (CHUNK - 1)));
+        assertFalse(fetched.contains((2 * CHUNK) + "-" + (3 * CHUNK - 1)));
+        assertEquals(4, fetched.size());
+    }
+
+    @Test
+    public void restartsADownloadWhoseFileChangedSinceTheJournal() throws Exception {
+        File target = new File(tmp.getRoot(), "out.bin");
+        File journal = new File(tmp.getRoot(), "out.bin" + ChunkedTransfer.JOURNAL_SUFFIX);
+        Files.write(new File(tmp.getRoot(), "out.bin" + ChunkedTransfer.PART_SUFFIX).toPath(),
+                new byte[served.length]);
+        String identity = "download " + client().resolve("/blob") + " " + served.length + " " + CHUNK + " \"v0\"";
+        Files.write(journal.toPath(), (identity + "\n0\n2\n").getBytes(StandardCharsets.UTF_8));
+
+        ChunkedTransfer.Result result = new ChunkedTransfer(
+                        client(), "/blob", ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 2, true)
+                .invoke(target, null);
+
+        assertArrayEquals(served, Files.readAllBytes(target.toPath()));
+        assertEquals(0, result.getResumedChunks());
+        assertEquals(6, ranges.size());
+    }
+
+    @Test
+    public void restartsADownloadWhoseFileChangesMidway() throws Exception {
+        // THE FIRST HEAD SEES v0, EVERY If-Range: "v0" GET THEN GETS THE WHOLE (NEW) FILE BACK
+        headEtag = "\"v0\"";
+        File target = new File(tmp.getRoot(), "out.bin");
+        new ChunkedTransfer(client(), "/blob", ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 1, true)
+                .invoke(target, null);
+
+        assertArrayEquals(served, Files.readAllBytes(target.toPath()));
+        assertEquals(6, ranges.size());
+    }
+
+    @Test
+    public void uploadsChunksWithContentRange() throws Exception {
+        File source = tmp.newFile("in.bin");
+        Files.write(source.toPath(), served);
+        uploaded = new byte[served.length];
+
+        ChunkedTransfer.Result result = new ChunkedTransfer(
+                        client(), "/blob", ChunkedTransfer.Direction.UPLOAD, CHUNK, 4, true)
+                .invoke(source, null);
+
+        assertEquals(served.length, result.getBytes());
+        assertTrue(Arrays.equals(served, uploaded));
+        assertEquals(6, ranges.size());
+    }
+
+    @Test
+    public void credentialsNeverLeaveTheServersOrigin() throws Exception {
+        List<String> elsewhere = new CopyOnWriteArrayList<>();
+        HttpServer other = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        other.createContext("/", ex -> {
+            elsewhere.add(String.valueOf(ex.getRequestHeaders().getFirst("Authorization")));
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+        });
+        other.start();
+        String otherUrl = "http://127.0.0.1:" + other.getAddress().getPort() + "/blob";
+        server.createContext("/away", ex -> redirect(ex, otherUrl));
+        server.createContext("/here", ex -> redirect(ex, "/blob"));
+        try {
+            File target = new File(tmp.getRoot(), "out.bin");
+            assertThrows(IOException.class, () -> new ChunkedTransfer(
+                            client(), otherUrl, ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 1, false)
+                    .invoke(target, null));
+            assertThrows(IOException.class, () -> new ChunkedTransfer(
+                            client().withRetries(0), "/away", ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 1, false)
+                    .invoke(target, null));
+            assertEquals(List.of(), elsewhere);
+
+            // REDIRECTS ON THE SERVER ITSELF ARE STILL FOLLOWED, ABSOLUTE URLS ON IT STILL ACCEPTED
+            new ChunkedTransfer(client(), "/here", ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 2, false)
+                    .invoke(target, null);
+            assertArrayEquals(served, Files.readAllBytes(target.toPath()));
+            new ChunkedTransfer(client(), client().resolve("/blob"), ChunkedTransfer.Direction.DOWNLOAD, CHUNK, 2,
+                            false)
+                    .invoke(target, null);
+            assertArrayEquals(served, Files.readAllBytes(target.toPath()));
+        } finally {
+            other.stop(0);
+        }
+    }
+
+    private static void redirect(HttpExchange ex, String location) throws IOException {
+        ex.getResponseHeaders().add("Location", location);
+        ex.sendResponseHeaders(302, -1);
+        ex.close();
+    }
+}
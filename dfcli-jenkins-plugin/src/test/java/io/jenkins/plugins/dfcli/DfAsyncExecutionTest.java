@@ -0,0 +1,129 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.model.Result;
+import hudson.slaves.WorkspaceList;
+import hudson.util.ProcessTree;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.JenkinsSessionRule;
+
+// df async: true AGAINST THE FAKE dfcli, WHOSE probe COMMAND LEAVES running.<pid> BEHIND UNLESS IT
+// GETS TO FINISH
+public class DfAsyncExecutionTest {
+    @Rule
+    public JenkinsSessionRule sessions = new JenkinsSessionRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private FakeDistroface server;
+    private File probes;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeFalse("the fake dfcli is a shell script", Functions.isWindows());
+        LoginSessionCache.clear();
+        server = new FakeDistroface();
+        probes = tmp.newFolder("probes");
+    }
+
+    @After
+    public void tearDown() {
+        DfAsyncExecution.heartbeatStaleMillis = TimeUnit.MINUTES.toMillis(5);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void survivesAControllerRestart() throws Throwable {
+        sessions.then(r -> {
+            WorkflowRun run = start(r, 8);
+            waitFor(new File(probes, "seen"));
+            assertEquals(1, running().length);
+            assertTrue(run.isBuilding());
+        });
+        sessions.then(r -> {
+            WorkflowRun run = r.jenkins.getItemByFullName("p", WorkflowJob.class).getBuildByNumber(1);
+            r.assertBuildStatusSuccess(r.waitForCompletion(run));
+            r.assertLogContains("got probed", run);
+            assertEquals(0, running().length);
+        });
+    }
+
+    @Test
+    public void stopKillsTheCommand() throws Throwable {
+        sessions.then(r -> {
+            WorkflowRun run = start(r, 3);
+            waitFor(new File(probes, "seen"));
+            run.doStop();
+            r.assertBuildStatus(Result.ABORTED, r.waitForCompletion(run));
+
+            // LEFT TO RUN, THE probe WOULD HAVE REMOVED ITS FILE BY NOW
+            Thread.sleep(5000);
+            assertEquals(1, running().length);
+            r.assertLogNotContains("got probed", run);
+        });
+    }
+
+    @Test
+    public void aKilledWrapperFailsOnceItsHeartbeatIsStale() throws Throwable {
+        sessions.then(r -> {
+            DfAsyncExecution.heartbeatStaleMillis = 10_000;
+            WorkflowRun run = start(r, 120);
+            waitFor(new File(probes, "seen"));
+
+            FilePath temp = WorkspaceList.tempDir(r.jenkins.getWorkspaceFor(run.getParent()));
+            List<FilePath> controls = temp.listDirectories();
+            controls.removeIf(dir -> !dir.getName().startsWith("dfcli-"));
+            assertEquals(controls.toString(), 1, controls.size());
+            String cookie = controls.get(0).getName().substring("dfcli-".length());
+            ProcessTree.get().killAll(Collections.singletonMap(DfAsyncExecution.COOKIE_VAR, cookie));
+
+            r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(run));
+            r.assertLogContains("stopped without an exit code", run);
+        });
+    }
+
+    private WorkflowRun start(JenkinsRule r, int seconds) throws Exception {
+        FakeDistrofaceRule.configure(r, server, 0, 1);
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        job.setDefinition(new CpsFlowDefinition(
+                "node('" + FakeDistrofaceRule.LABEL + "') {\n"
+                        + "  def out = df command: 'probe " + probes.getAbsolutePath() + " " + seconds + "',"
+                        + " async: true\n"
+                        + "  echo \"got ${out}\"\n"
+                        + "}",
+                true));
+        return job.scheduleBuild2(0).waitForStart();
+    }
+
+    private File[] running() {
+        File[] files = probes.listFiles((dir, name) -> name.startsWith("running."));
+        return files != null ? files : new File[0];
+    }
+
+    private static void waitFor(File file) throws InterruptedException {
+        for (int i = 0; i < 600 && !file.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(file + " never appeared", file.exists());
+    }
+}
@@ -0,0 +1,81 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Result;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// dfBatch AGAINST THE FAKE dfcli, AUTO INSTALLED AND NOT ON PATH, SO EVERY COMMAND ALSO CHECKS THAT
+// THE INSTALLATION'S BINARY IS THE ONE RUN
+public class DfBatchStepTest {
+    public final JenkinsRule jenkins = new JenkinsRule();
+    public final FakeDistrofaceRule fake = new FakeDistrofaceRule(jenkins);
+
+    @Rule
+    public final RuleChain rules = RuleChain.outerRule(jenkins).around(fake);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void collectAllRunsEverythingAndReturnsOneResultPerCommand() throws Exception {
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job(
+                "def r = dfBatch commands: ['artifact search -r repo', [command: 'exit 3'], ['exit', '0']],"
+                        + " failFast: false",
+                "echo \"keys=${r[0].keySet()}\"",
+                "echo \"statuses=${r*.status} exitCodes=${r*.exitCode} commands=${r*.command}\"",
+                "echo \"searched=${r[0].stdout.contains('repo/artifact-99.tar.gz')}\""));
+
+        jenkins.assertLogContains("keys=[command, status, exitCode, stdout]", run);
+        jenkins.assertLogContains(
+                "statuses=[SUCCESS, FAILED, SUCCESS] exitCodes=[0, 3, 0]"
+                        + " commands=[artifact search -r repo, exit 3, exit 0]",
+                run);
+        jenkins.assertLogContains("searched=true", run);
+        jenkins.assertLogContains("Batch finished: 2 succeeded, 1 failed or skipped", run);
+        jenkins.assertLogContains("/tools/dfcli artifact search -r repo", run);
+    }
+
+    @Test
+    public void failFastSkipsWhatHasNotStartedAndFailsTheStep() throws Exception {
+        WorkflowJob job = job("dfBatch commands: ['exit 3', 'artifact search -r repo', 'exit 0'], parallelism: 1");
+        WorkflowRun run = jenkins.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+
+        jenkins.assertLogContains("dfBatch command failed with exit code 3: exit 3", run);
+        jenkins.assertLogContains("Batch finished: 0 succeeded, 3 failed or skipped", run);
+        jenkins.assertLogNotContains("/tools/dfcli artifact search", run);
+    }
+
+    @Test
+    public void noMoreThanParallelismCommandsRunAtOnce() throws Exception {
+        File dir = tmp.newFolder("probes");
+        String probe = "'probe " + dir.getAbsolutePath() + " 1'";
+        jenkins.buildAndAssertSuccess(job("dfBatch commands: [" + String.join(", ", List.of(
+                probe, probe, probe, probe, probe, probe)) + "], parallelism: 2"));
+
+        List<String> seen = Files.readAllLines(new File(dir, "seen").toPath(), StandardCharsets.UTF_8);
+        assertEquals(seen.toString(), 6, seen.size());
+        for (String running : seen) {
+            assertTrue(seen.toString(), Integer.parseInt(running.trim()) <= 2);
+        }
+    }
+
+    private WorkflowJob job(String... body) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition(
+                "node('" + DfLoadHarness.LABEL + "') {\n" + String.join("\n", body) + "\n}", true));
+        return job;
+    }
+}
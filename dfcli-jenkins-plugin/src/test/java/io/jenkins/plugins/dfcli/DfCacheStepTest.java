@@ -0,0 +1,81 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// dfCacheSave/dfCacheRestore AGAINST THE FAKE dfcli AND THE BUILT-IN NODE'S AGENT CACHE
+public class DfCacheStepTest {
+    public final JenkinsRule jenkins = new JenkinsRule();
+    public final FakeDistrofaceRule fake = new FakeDistrofaceRule(jenkins);
+
+    @Rule
+    public final RuleChain rules = RuleChain.outerRule(jenkins).around(fake);
+
+    @Test
+    public void cachesWithTheSameVersionButDifferentNamesDontCollide() throws Exception {
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job(
+                "writeFile file: 'a/x.txt', text: 'from a'",
+                "dfCacheSave repo: 'repo', name: 'a.tar.gz', includes: 'a/**', version: 'v1', upload: false",
+                "writeFile file: 'b/x.txt', text: 'from b'",
+                "dfCacheSave repo: 'repo', name: 'b.tar.gz', includes: 'b/**', version: 'v1', upload: false",
+                "dir('a') { deleteDir() }",
+                "dir('b') { deleteDir() }",
+                "def b = dfCacheRestore repo: 'repo', name: 'b.tar.gz', version: 'v1'",
+                "def a = dfCacheRestore repo: 'repo', name: 'a.tar.gz', version: 'v1'",
+                "echo \"sources=${a.source},${b.source} keys=${a.key},${b.key}\"",
+                "echo \"b=${readFile 'b/x.txt'} a=${readFile 'a/x.txt'}\""));
+
+        jenkins.assertLogNotContains("already cached, skipping save", run);
+        jenkins.assertLogContains("sources=agent,agent keys=--version v1,--version v1", run);
+        jenkins.assertLogContains("b=from b a=from a", run);
+    }
+
+    @Test
+    public void anUploadingSaveUploadsAKeyOnlyCachedLocally() throws Exception {
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job(
+                "writeFile file: 'a/x.txt', text: 'from a'",
+                "dfCacheSave repo: 'repo', includes: 'a/**', version: 'v1', upload: false",
+                "dfCacheSave repo: 'repo', includes: 'a/**', version: 'v1', upload: false",
+                "def r = dfCacheSave repo: 'repo', includes: 'a/**', version: 'v1'",
+                "echo \"uploaded=${r.uploaded}\""));
+
+        jenkins.assertLogContains("--version v1 is already cached, skipping save", run);
+        jenkins.assertLogContains("/tools/dfcli artifact upload repo ", run);
+        jenkins.assertLogContains("uploaded=true", run);
+    }
+
+    @Test
+    public void aRestoreWaitingOnAnotherOnTheSameAgentTakesItFromTheAgentCache() throws Exception {
+        DfCliConfig.get().setPeerCacheSharing(true);
+        jenkins.jenkins.setNumExecutors(2);
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class);
+        String restore = "node('" + DfLoadHarness.LABEL + "') {\n"
+                + "  withEnv(['DFCLI_FAKE_DELAY=3', 'DFCLI_FAKE_DOWNLOAD=shared']) {\n"
+                + "    def r = dfCacheRestore repo: 'repo', version: 'v1'\n"
+                + "    echo \"source=${r.source} text=${readFile('restored.txt').trim()}\"\n"
+                + "  }\n"
+                + "}\n";
+        job.setDefinition(new CpsFlowDefinition(
+                "parallel first: {\n" + restore + "}, second: {\n  sleep 1\n" + restore + "}", true));
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job);
+
+        String log = JenkinsRule.getLog(run);
+        assertEquals(log, 1, log.split("/tools/dfcli artifact download", -1).length - 1);
+        jenkins.assertLogContains("source=server text=shared", run);
+        jenkins.assertLogContains("source=agent text=shared", run);
+    }
+
+    private WorkflowJob job(String... body) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition(
+                "node('" + DfLoadHarness.LABEL + "') {\n" + String.join("\n", body) + "\n}", true));
+        return job;
+    }
+}
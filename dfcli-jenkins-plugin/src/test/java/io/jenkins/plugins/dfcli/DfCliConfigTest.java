@@ -0,0 +1,24 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+
+import io.jenkins.plugins.casc.misc.ConfiguredWithCode;
+import io.jenkins.plugins.casc.misc.JenkinsConfiguredWithCodeRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DfCliConfigTest {
+    @Rule
+    public JenkinsConfiguredWithCodeRule jenkins = new JenkinsConfiguredWithCodeRule();
+
+    // THE SETTERS DON'T SAVE, SO THIS ONLY HOLDS IF JCasC SAVES ONCE IT HAS APPLIED THEM
+    @Test
+    @ConfiguredWithCode("casc.yml")
+    public void jcascSettingsReachTheConfigFile() {
+        DfCliConfig onDisk = new DfCliConfig();
+        assertEquals("https://df.example.com", onDisk.getServerUrl());
+        assertEquals("ci", onDisk.getUsername());
+        assertEquals(7, onDisk.getLoginSessionTtlMinutes());
+        assertEquals(DfConsole.SUMMARY, onDisk.getVerbosity());
+    }
+}
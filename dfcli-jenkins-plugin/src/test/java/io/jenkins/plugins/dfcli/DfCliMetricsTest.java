@@ -0,0 +1,100 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DfCliMetricsTest {
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void invocationsFeedGlobalHistogramsAndTheBuildSummary() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        DfCliInvocation first = invocation(build, List.of("artifact", "upload", "repo", "file.txt"), 0, 120);
+        first.add(DfCliInvocation.Phase.INSTALL_CHECK, TimeUnit.MILLISECONDS.toNanos(30));
+        first.add(DfCliInvocation.Phase.LOGIN, TimeUnit.MILLISECONDS.toNanos(400));
+        DfCliInvocationListener.fireCompleted(first);
+        DfCliInvocationListener.fireCompleted(invocation(build, List.of("artifact", "search", "-r", "repo"), 3, 80));
+
+        DfCliBuildAction action = build.getAction(DfCliBuildAction.class);
+        assertNotNull(action);
+        assertEquals(2, action.getInvocations());
+        assertEquals(1, action.getFailures());
+        assertEquals(Long.valueOf(400), action.getPhaseMillis().get("login"));
+        assertEquals(Long.valueOf(200), action.getPhaseMillis().get("exec"));
+        assertEquals(Map.of("artifact search", 1, "artifact upload", 1), action.getCommands());
+
+        Map<String, Object> snapshot = DfCliMetrics.get().snapshot();
+        assertEquals(2L, snapshot.get("invocations"));
+        assertEquals(1L, snapshot.get("failures"));
+        Map<?, ?> login = (Map<?, ?>) ((Map<?, ?>) snapshot.get("phases")).get("login");
+        // ONLY INVOCATIONS THAT ACTUALLY LOGGED IN ARE COUNTED
+        assertEquals(1L, login.get("count"));
+        assertEquals(500L, login.get("p50Millis"));
+    }
+
+    @Test
+    public void commandLabelsNeverIncludeArgumentValues() {
+        assertEquals("artifact upload", DfCliInvocation.label(List.of("artifact", "upload", "repo", "file.txt")));
+        assertEquals("search", DfCliInvocation.label(List.of("search", "myrepo")));
+        assertEquals("login", DfCliInvocation.label(List.of("login", "--username", "me")));
+        assertEquals("artifact", DfCliInvocation.label(List.of("artifact", "--help")));
+        assertEquals("artifact", DfCliInvocation.label(List.of("artifact", "My.Repo")));
+        assertEquals("other", DfCliInvocation.label(List.of("--version")));
+        assertEquals("other", DfCliInvocation.label(List.of("/tmp/x.sh")));
+        assertEquals("other", DfCliInvocation.label(List.of()));
+    }
+
+    @Test
+    public void distinctCommandsAreCappedInTheBuildSummary() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        for (int i = 0; i < DfCliInvocation.MAX_COMMAND_LABELS + 10; i++) {
+            DfCliInvocationListener.fireCompleted(invocation(build, List.of("cmd-" + i), 0, 1));
+        }
+        DfCliInvocationListener.fireCompleted(invocation(build, List.of("cmd-0"), 0, 1));
+
+        Map<String, Integer> commands = build.getAction(DfCliBuildAction.class).getCommands();
+        assertEquals(DfCliInvocation.MAX_COMMAND_LABELS + 1, commands.size());
+        assertEquals(Integer.valueOf(2), commands.get("cmd-0"));
+        assertEquals(Integer.valueOf(10), commands.get("other"));
+        Map<?, ?> global = (Map<?, ?>) DfCliMetrics.get().snapshot().get("commands");
+        assertEquals(DfCliInvocation.MAX_COMMAND_LABELS + 1, global.size());
+        assertEquals(10L, global.get("other"));
+    }
+
+    @Test
+    public void histogramQuantilesUseBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(-1, histogram.quantileMillis(0.5));
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        histogram.record(TimeUnit.SECONDS.toNanos(4));
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+
+        assertEquals(5, histogram.quantileMillis(0.5));
+        assertEquals(5000, histogram.quantileMillis(0.99));
+        assertEquals(Long.MAX_VALUE, histogram.quantileMillis(1.0));
+    }
+
+    private static DfCliInvocation invocation(FreeStyleBuild build, List<String> args, int exitCode, long execMillis) {
+        DfCliInvocation invocation = new DfCliInvocation(build, "built-in", "https://df.example.com");
+        invocation.setCommand(args);
+        invocation.setExitCode(exitCode);
+        invocation.add(DfCliInvocation.Phase.EXEC, TimeUnit.MILLISECONDS.toNanos(execMillis));
+        return invocation;
+    }
+}
@@ -0,0 +1,55 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class DfCliProvisionerTest {
+    @Test
+    public void stepsWaitOnTheRunningInstallInsteadOfStartingAnother() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger runs = new AtomicInteger();
+            DfCliProvisioner.Task install = () -> {
+                runs.incrementAndGet();
+                release.await();
+            };
+
+            CompletableFuture<Void> first = DfCliProvisioner.submit("agent-1|v1", pool, install);
+            assertSame(first, DfCliProvisioner.submit("agent-1|v1", pool, install));
+
+            Future<Boolean> waiter = pool.submit(() -> DfCliProvisioner.awaitInFlight("agent-1|v1"));
+            Thread.sleep(100);
+            assertFalse(waiter.isDone());
+
+            release.countDown();
+            assertTrue(waiter.get(10, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+            // FINISHED INSTALLS ARE FORGOTTEN, LATER STEPS DON'T WAIT
+            assertFalse(DfCliProvisioner.awaitInFlight("agent-1|v1"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedInstallIsNotRethrownToWaiters() throws Exception {
+        CompletableFuture<Void> failed = DfCliProvisioner.submit("agent-2|v1", Runnable::run, () -> {
+            throw new IOException("download failed");
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertFalse(DfCliProvisioner.awaitInFlight("agent-2|v1"));
+    }
+}
@@ -0,0 +1,86 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hudson.Functions;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DfCliWorkerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void unixOnly() {
+        Assume.assumeFalse(Functions.isWindows());
+    }
+
+    @After
+    public void stopWorker() {
+        DfCliWorker.shutdown();
+    }
+
+    @Test
+    public void runsCommandsOnOneWarmWorker() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        DfCliWorker.Result first = exec("echo \"$GREETING\" from $(pwd); echo oops >&2; exit 3", out, err);
+
+        assertEquals(3, first.getExitCode());
+        assertTrue(first.isWorkerStarted());
+        assertEquals("hello from " + tmp.getRoot().getCanonicalPath() + "\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals("oops\n", err.toString(StandardCharsets.UTF_8));
+
+        // SECOND COMMAND REUSES THE RUNNING WORKER
+        DfCliWorker.Result second = exec("true", new ByteArrayOutputStream(), new ByteArrayOutputStream());
+        assertEquals(0, second.getExitCode());
+        assertFalse(second.isWorkerStarted());
+        assertTrue(DfCliWorker.isRunning());
+    }
+
+    @Test
+    public void startsAgainAfterTheWorkerIsGone() throws Exception {
+        exec("true", new ByteArrayOutputStream(), new ByteArrayOutputStream());
+        DfCliWorker.shutdown();
+        assertFalse(DfCliWorker.isRunning());
+
+        DfCliWorker.Result result = exec("exit 0", new ByteArrayOutputStream(), new ByteArrayOutputStream());
+        assertEquals(0, result.getExitCode());
+        assertTrue(result.isWorkerStarted());
+    }
+
+    @Test
+    public void aCommandThatCannotStartSaysSo() throws Exception {
+        try {
+            new DfCliWorker.Exec(List.of(tmp.getRoot() + "/missing-dfcli"), null, null, 60_000,
+                            new ByteArrayOutputStream(), new ByteArrayOutputStream())
+                    .call();
+            fail("started a missing binary");
+        } catch (DfCliWorker.NotStartedException e) {
+            // THE RUNNER FALLS BACK TO A NORMAL LAUNCH ONLY FOR THIS
+        }
+    }
+
+    private DfCliWorker.Result exec(String script, ByteArrayOutputStream out, ByteArrayOutputStream err)
+            throws Exception {
+        return new DfCliWorker.Exec(
+                        List.of("sh", "-c", script),
+                        Map.of("GREETING", "hello"),
+                        tmp.getRoot().getCanonicalPath(),
+                        60_000,
+                        out,
+                        err)
+                .call();
+    }
+}
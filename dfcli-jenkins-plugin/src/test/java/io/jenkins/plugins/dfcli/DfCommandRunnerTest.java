@@ -0,0 +1,73 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.Secret;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DfCommandRunnerTest {
+    // Secret NEEDS A RUNNING JENKINS FOR ITS KEY
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void tokenizedCommandsAreReused() {
+        List<String> first = DfCommandRunner.tokenize("  artifact   search -r repo ");
+        assertEquals(List.of("artifact", "search", "-r", "repo"), first);
+        assertSame(first, DfCommandRunner.tokenize("  artifact   search -r repo "));
+    }
+
+    @Test
+    public void onlyPlainLaunchersUseTheWorker() {
+        Launcher local = new Launcher.LocalLauncher(TaskListener.NULL);
+        assertTrue(DfCommandRunner.isPlainLauncher(local));
+        // WHAT container(), withDockerContainer AND LauncherDecorators HAND OUT
+        assertFalse(DfCommandRunner.isPlainLauncher(new Launcher.DecoratedLauncher(local) {}));
+    }
+
+    @Test
+    public void cacheKeyArgsMatchTheKeyString() {
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("os", "linux");
+        props.put("arch", "amd64");
+        List<String> args = DfCommandRunner.cacheKeyArgs("1.0.0", props, null);
+        assertEquals(List.of("--version", "1.0.0", "--property", "os=linux,arch=amd64"), args);
+        assertEquals(String.join(" ", args), DfCommandRunner.generateCacheKey("1.0.0", props));
+
+        assertEquals(
+                List.of("--version", "2.0", "--property", "os=linux,arch=amd64"),
+                DfCommandRunner.cacheKeyArgs(null, props, "--version 2.0"));
+        assertEquals(List.of(), DfCommandRunner.cacheKeyArgs(" ", props, null));
+    }
+
+    @Test
+    public void loginSecretIsMaskedOrKeptOffArgv() throws Exception {
+        DfServer server = new DfServer("us", "https://us.df.example.com");
+        server.setUsername("ci");
+        server.setPassword(Secret.fromString("s3cret"));
+
+        ArgumentListBuilder masked = DfCliInstallation.buildLoginCommand("dfcli", server, false);
+        assertFalse(masked.toString().contains("s3cret"));
+        assertEquals("s3cret", masked.toList().get(masked.toList().size() - 1));
+
+        ArgumentListBuilder stdin = DfCliInstallation.buildLoginCommand("dfcli", server, true);
+        assertFalse(stdin.toList().contains("s3cret"));
+        assertEquals("--password-stdin", stdin.toList().get(stdin.toList().size() - 1));
+        try (InputStream in = DfCliInstallation.loginStdin(server)) {
+            assertEquals("s3cret\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.FilePath;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DfConsoleTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    @Test
+    public void fullCollapsesCarriageReturnProgress() throws Exception {
+        DfConsole console = new DfConsole(listener(), DfConsole.FULL, null);
+        run(console, "[1] ", 0, "uploading 10%\ruploading 50%\ruploading 100%\n", "done\n");
+        console.close();
+
+        assertEquals("[1] uploading 100%\n[1] done\n", log());
+    }
+
+    @Test
+    public void summaryHoldsBackProgressButKeepsItsFinalState() throws Exception {
+        File raw = new File(tmp.getRoot(), "logs/out.log.gz");
+        DfConsole console = new DfConsole(listener(), DfConsole.SUMMARY, new FilePath(raw));
+        StringBuilder progress = new StringBuilder();
+        for (int i = 0; i <= 100; i++) {
+            progress.append("pushing layer ").append(i).append("%\n");
+        }
+        run(console, "", 0, "starting\n", progress.toString(), "pushed\n", "tagged 100%\n");
+        console.close();
+
+        String out = log();
+        // THE FIRST PROGRESS LINE, THEN NOTHING UNTIL THE INTERVAL PASSES, ANOTHER LINE COMES OR THE COMMAND ENDS
+        assertTrue(out, out.startsWith("starting\npushing layer 0%\npushing layer 100%\npushed\ntagged 100%\n"));
+        assertFalse(out, out.contains("pushing layer 50%"));
+        assertTrue(out, out.contains("[dfcli] 99 of 104 lines of dfcli output not shown (verbosity summary"));
+        assertTrue(out, out.contains("[dfcli] Full dfcli output in " + raw.getPath()));
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(raw.toPath()))) {
+            assertEquals("starting\n" + progress + "pushed\ntagged 100%\n",
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void quietShowsTheTailOnlyWhenACommandFails() throws Exception {
+        DfConsole console = new DfConsole(listener(), DfConsole.QUIET, null);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            lines.append("line ").append(i).append('\n');
+        }
+        run(console, "", 0, lines.toString());
+        assertEquals("[dfcli] 30 of 30 lines of dfcli output not shown (verbosity quiet)\n", log());
+
+        log.reset();
+        run(console, "", 3, lines.toString());
+        String out = log();
+        assertTrue(out, out.startsWith("[dfcli] Last 20 lines of dfcli output:\nline 10\n"));
+        assertTrue(out, out.contains("line 29\n[dfcli] 10 of 30 lines"));
+        assertFalse(out, out.contains("line 9\n"));
+    }
+
+    @Test
+    public void stderrGoesToTheErrorChannel() throws Exception {
+        DfConsole console = new DfConsole(listener(), DfConsole.FULL, null);
+        DfConsole.Command command = console.command("");
+        try (OutputCapture out = OutputCapture.through(command, 0);
+                OutputCapture err = OutputCapture.errorsThrough(command, 1024)) {
+            out.write("uploading\n".getBytes(StandardCharsets.UTF_8));
+            err.write("Error: artifact rejected\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("Error: artifact rejected\n", err.getText());
+        }
+        command.finish(1);
+
+        String out = log();
+        assertTrue(out, out.startsWith("uploading\n"));
+        assertTrue(out, out.contains("ERROR: Error: artifact rejected"));
+    }
+
+    @Test
+    public void verbosityNames() throws Exception {
+        assertEquals(DfConsole.FULL, DfConsole.verbosity(null));
+        assertEquals(DfConsole.QUIET, DfConsole.verbosity(" Quiet "));
+        assertNull(DfConsole.verbosity("loud"));
+    }
+
+    private StreamTaskListener listener() {
+        return new StreamTaskListener(log, StandardCharsets.UTF_8);
+    }
+
+    private String log() {
+        return new String(log.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void run(DfConsole console, String prefix, int exitCode, String... chunks) throws Exception {
+        DfConsole.Command command = console.command(prefix);
+        try (OutputCapture out = OutputCapture.through(command, 0)) {
+            for (String chunk : chunks) {
+                out.write(chunk.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        command.finish(exitCode);
+    }
+}
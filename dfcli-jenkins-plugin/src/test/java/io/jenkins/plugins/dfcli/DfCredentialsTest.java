@@ -0,0 +1,94 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.AbortException;
+import hudson.model.Fingerprint;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.util.Secret;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DfCredentialsTest {
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    private SystemCredentialsProvider store;
+
+    @Before
+    public void setUp() throws Exception {
+        DfCredentials.invalidate();
+        store = SystemCredentialsProvider.getInstance();
+        store.getCredentials().add(credentials("ci", "s3cret"));
+        store.save();
+    }
+
+    @Test
+    public void serverWithoutCredentialsIdIsUnchanged() throws Exception {
+        DfServer server = new DfServer("us", "https://us.df.example.com");
+        assertSame(server, DfCredentials.resolve(server, null));
+    }
+
+    @Test
+    public void credentialsReplaceInlineFields() throws Exception {
+        DfServer server = new DfServer("us", "https://us.df.example.com");
+        server.setUsername("inline");
+        server.setCredentialsId("df-creds");
+
+        DfServer resolved = DfCredentials.resolve(server, null);
+        assertEquals("ci", resolved.getUsername());
+        assertEquals("s3cret", Secret.toString(resolved.getPassword()));
+        assertNull(resolved.getToken());
+        // THE CONFIGURED SERVER NEVER HOLDS THE RESOLVED SECRET
+        assertEquals("inline", server.getUsername());
+    }
+
+    @Test
+    public void savingTheStoreDropsCachedSecrets() throws Exception {
+        DfServer server = new DfServer("us", "https://us.df.example.com");
+        server.setCredentialsId("df-creds");
+        assertEquals("ci", DfCredentials.resolve(server, null).getUsername());
+
+        store.getCredentials().clear();
+        store.getCredentials().add(credentials("rotated", "n3w"));
+        store.save();
+        assertEquals("rotated", DfCredentials.resolve(server, null).getUsername());
+    }
+
+    @Test
+    public void cachedCredentialsAreStillTrackedPerRun() throws Exception {
+        DfServer server = new DfServer("us", "https://us.df.example.com");
+        server.setCredentialsId("df-creds");
+        FreeStyleProject job = jenkins.createFreeStyleProject();
+        FreeStyleBuild first = jenkins.buildAndAssertSuccess(job);
+        FreeStyleBuild second = jenkins.buildAndAssertSuccess(job);
+
+        DfCredentials.resolve(server, first);
+        // A CACHE HIT
+        DfCredentials.resolve(server, second);
+
+        Fingerprint fingerprint = CredentialsProvider.getFingerprintOf(store.getCredentials().get(0));
+        assertTrue(fingerprint.getRangeSet(job).includes(second.getNumber()));
+    }
+
+    @Test(expected = AbortException.class)
+    public void missingCredentialsAbort() throws Exception {
+        DfServer server = new DfServer("us", "https://us.df.example.com");
+        server.setCredentialsId("nope");
+        DfCredentials.resolve(server, null);
+    }
+
+    private static UsernamePasswordCredentialsImpl credentials(String username, String password) throws Exception {
+        return new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "df-creds", null, username, password);
+    }
+}
@@ -0,0 +1,196 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.model.Result;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// RUNS N COPIES OF A PIPELINE AT ONCE AGAINST A FakeDistroface AND REPORTS THROUGHPUT, df* STEP LATENCY AND
+// CONTROLLER HEAP/THREADS. REPORTS ARE WRITTEN AS JSON UNDER dfcli.load.reportDir (DEFAULT target/dfcli-load) SO CI
+// CAN KEEP AND COMPARE THEM. THE FAKE dfcli IS A SHELL SCRIPT, SO THIS IS UNIX ONLY
+class DfLoadHarness {
+    // STEPS WHOSE LATENCY IS REPORTED
+    static final Set<String> STEPS =
+            Set.of("df", "dfBatch", "dfSearch", "dfUpload", "dfTransfer", "dfTag", "dfPromote");
+    private static final long SAMPLE_MILLIS = 50;
+
+    private final JenkinsRule jenkins;
+    private int jobs;
+
+    // THE NODES AND THE FAKE SERVER COME FROM A FakeDistrofaceRule
+    DfLoadHarness(JenkinsRule jenkins) {
+        this.jenkins = jenkins;
+    }
+
+    // body RUNS INSIDE node(FakeDistrofaceRule.LABEL) { ... } IN EVERY PIPELINE
+    Report run(String scenario, int pipelines, String body) throws Exception {
+        List<WorkflowJob> batch = new ArrayList<>();
+        for (int i = 0; i < pipelines; i++) {
+            WorkflowJob job = jenkins.createProject(WorkflowJob.class, scenario + "-" + jobs++);
+            job.setDefinition(new CpsFlowDefinition(
+                    "node('" + FakeDistrofaceRule.LABEL + "') {\n" + body + "\n}", true));
+            batch.add(job);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        threads.resetPeakThreadCount();
+        long[] peakHeap = {heapBefore};
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakHeap[0] = Math.max(peakHeap[0], memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "dfcli-load-sampler");
+        sampler.setDaemon(true);
+
+        long start = System.nanoTime();
+        sampler.start();
+        List<Future<WorkflowRun>> runs = new ArrayList<>();
+        for (WorkflowJob job : batch) {
+            runs.add(job.scheduleBuild2(0));
+        }
+        List<WorkflowRun> done = new ArrayList<>();
+        for (Future<WorkflowRun> run : runs) {
+            done.add(jenkins.assertBuildStatus(Result.SUCCESS, run.get()));
+        }
+        long wallNanos = System.nanoTime() - start;
+        sampler.interrupt();
+        sampler.join();
+
+        List<Long> latencies = new ArrayList<>();
+        for (WorkflowRun run : done) {
+            latencies.addAll(stepMillis(run));
+        }
+        System.gc();
+        Report report = new Report(
+                scenario,
+                pipelines,
+                wallNanos,
+                latencies,
+                peakHeap[0] - heapBefore,
+                memory.getHeapMemoryUsage().getUsed() - heapBefore,
+                threads.getPeakThreadCount());
+        report.write();
+        return report;
+    }
+
+    // A STEP ENDS WHEN THE NODE AFTER IT STARTS
+    static List<Long> stepMillis(WorkflowRun run) throws IOException {
+        List<FlowNode> nodes = new DepthFirstScanner().allNodes(run.getExecution());
+        Map<String, Long> ends = new HashMap<>();
+        for (FlowNode node : nodes) {
+            for (FlowNode parent : node.getParents()) {
+                ends.merge(parent.getId(), TimingAction.getStartTime(node), Math::min);
+            }
+        }
+        List<Long> out = new ArrayList<>();
+        for (FlowNode node : nodes) {
+            if (!(node instanceof StepAtomNode)) {
+                continue;
+            }
+            StepDescriptor descriptor = ((StepAtomNode) node).getDescriptor();
+            Long end = ends.get(node.getId());
+            if (descriptor != null && STEPS.contains(descriptor.getFunctionName()) && end != null) {
+                out.add(end - TimingAction.getStartTime(node));
+            }
+        }
+        return out;
+    }
+
+    static class Report {
+        final String scenario;
+        final int pipelines;
+        final long wallMillis;
+        final int steps;
+        final double stepsPerSecond;
+        final long p50Millis;
+        final long p99Millis;
+        final long maxMillis;
+        final long peakHeapGrowthBytes;
+        final long retainedHeapBytes;
+        final int peakThreads;
+
+        Report(String scenario, int pipelines, long wallNanos, List<Long> latencies, long peakHeapGrowthBytes,
+                long retainedHeapBytes, int peakThreads) {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            this.scenario = scenario;
+            this.pipelines = pipelines;
+            this.wallMillis = wallNanos / 1_000_000;
+            this.steps = sorted.size();
+            this.stepsPerSecond = sorted.size() / Math.max(wallNanos / 1e9, 1e-3);
+            this.p50Millis = quantile(sorted, 0.50);
+            this.p99Millis = quantile(sorted, 0.99);
+            this.maxMillis = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1);
+            this.peakHeapGrowthBytes = peakHeapGrowthBytes;
+            this.retainedHeapBytes = retainedHeapBytes;
+            this.peakThreads = peakThreads;
+        }
+
+        // NEAREST RANK
+        static long quantile(List<Long> sorted, double q) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(q * sorted.size());
+            return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("scenario", scenario);
+            out.put("pipelines", pipelines);
+            out.put("wallMillis", wallMillis);
+            out.put("steps", steps);
+            out.put("stepsPerSecond", Math.round(stepsPerSecond * 10) / 10.0);
+            out.put("p50Millis", p50Millis);
+            out.put("p99Millis", p99Millis);
+            out.put("maxMillis", maxMillis);
+            out.put("peakHeapGrowthBytes", peakHeapGrowthBytes);
+            out.put("retainedHeapBytes", retainedHeapBytes);
+            out.put("peakThreads", peakThreads);
+            out.put("dfcli", DfCliMetrics.get().snapshot());
+            return out;
+        }
+
+        void write() throws IOException {
+            File dir = new File(System.getProperty("dfcli.load.reportDir", "target/dfcli-load"));
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(new File(dir, scenario + ".json"), toMap());
+            System.out.printf(
+                    "[dfcli-load] %s: %d pipelines, %d steps in %d ms (%.1f steps/s), p50 %d ms, p99 %d ms, "
+                            + "peak heap +%d KiB, %d peak threads%n",
+                    scenario, pipelines, steps, wallMillis, stepsPerSecond, p50Millis, p99Millis,
+                    peakHeapGrowthBytes / 1024, peakThreads);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// LOAD SCENARIOS OVER DfLoadHarness. SIZE AND GATES COME FROM SYSTEM PROPERTIES, E.G.
+//   mvn test -Dtest=DfLoadTest -Ddfcli.load.pipelines=32 -Ddfcli.load.agents=2 -Ddfcli.load.maxP99Millis=2000
+// WITHOUT A GATE THE SCENARIOS ONLY CHECK CORRECTNESS UNDER CONCURRENCY AND WRITE THEIR REPORTS
+public class DfLoadTest {
+    private static final int PIPELINES = Integer.getInteger("dfcli.load.pipelines", 4);
+    private static final int AGENTS = Math.max(0, Integer.getInteger("dfcli.load.agents", 0));
+    private static final long MAX_P99_MILLIS = Long.getLong("dfcli.load.maxP99Millis", 0);
+    private static final double MIN_STEPS_PER_SECOND =
+            Double.parseDouble(System.getProperty("dfcli.load.minStepsPerSecond", "0"));
+
+    public final JenkinsRule jenkins = new JenkinsRule();
+    // ENOUGH EXECUTORS FOR EVERY PIPELINE TO RUN AT ONCE
+    public final FakeDistrofaceRule fake = new FakeDistrofaceRule(
+            jenkins, AGENTS, AGENTS == 0 ? PIPELINES : (PIPELINES + AGENTS - 1) / AGENTS);
+
+    @Rule
+    public final RuleChain rules = RuleChain.outerRule(jenkins).around(fake);
+
+    private final DfLoadHarness harness = new DfLoadHarness(jenkins);
+
+    @Test
+    public void loginAndSearch() throws Exception {
+        DfLoadHarness.Report report = harness.run("login-search", PIPELINES, String.join("\n",
+                "def out = df command: 'artifact search -r repo', returnStdout: true",
+                "if (!out.contains('artifact-0')) { error 'no search output' }",
+                "def page = dfSearch repo: 'repo', pageSize: 100, limit: 300",
+                "int seen = 0",
+                "while (true) {",
+                "    seen += page.artifacts.size()",
+                "    if (!page.next) { break }",
+                "    page = dfSearch repo: 'repo', pageSize: 100, limit: 300, page: page.next",
+                "}",
+                "if (seen != 300) { error \"saw ${seen} artifacts\" }"));
+
+        // ONE df AND THREE dfSearch PAGES PER PIPELINE
+        assertEquals(PIPELINES * 4, report.steps);
+        assertEquals(PIPELINES * 3, fake.get().requests("search"));
+        // EVERY NODE INSTALLED ONCE FROM ONE CONTROLLER DOWNLOAD
+        assertEquals(1, fake.get().requests("release"));
+        gate(report);
+    }
+
+    @Test
+    public void upload() throws Exception {
+        DfLoadHarness.Report report = harness.run("upload", PIPELINES, String.join("\n",
+                "writeFile file: 'out/a.txt', text: env.BUILD_TAG",
+                "writeFile file: 'out/b.txt', text: env.BUILD_TAG + '-b'",
+                "def result = dfUpload repo: 'repo', includes: 'out/*.txt'",
+                "if (result.uploaded.size() != 2) { error \"uploaded ${result.uploaded}\" }"));
+
+        assertEquals(PIPELINES, report.steps);
+        assertEquals(PIPELINES, fake.get().requests("exists"));
+        gate(report);
+    }
+
+    private static void gate(DfLoadHarness.Report report) {
+        if (MAX_P99_MILLIS > 0) {
+            assertTrue(report.scenario + " p99 " + report.p99Millis + " ms > " + MAX_P99_MILLIS,
+                    report.p99Millis <= MAX_P99_MILLIS);
+        }
+        if (MIN_STEPS_PER_SECOND > 0) {
+            assertTrue(report.scenario + " " + report.stepsPerSecond + " steps/s < " + MIN_STEPS_PER_SECOND,
+                    report.stepsPerSecond >= MIN_STEPS_PER_SECOND);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DfSearchStepTest {
+    private HttpServer server;
+    private DistrofaceClient client;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/repositories/", this::handle);
+        server.start();
+        client = new DistrofaceClient("http://127.0.0.1:" + server.getAddress().getPort(), null);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    // TWO ARTIFACTS PER PAGE, THREE PAGES
+    private void handle(HttpExchange ex) throws IOException {
+        String query = ex.getRequestURI().getRawQuery();
+        queries.add(query);
+        int page = Integer.parseInt(query.replaceAll(".*page=(\\d+).*", "$1"));
+        String body = "{\"artifacts\":[{\"name\":\"a" + page + "\"},{\"name\":\"b" + page + "\"}],\"hasMore\":"
+                + (page < 3) + "}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void pathCarriesPageAndPropertyFilters() {
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("os", "linux");
+        props.put("arch", "amd 64");
+        assertEquals(
+                "/api/v1/repositories/my%2Frepo/artifacts/search?page=2&size=100"
+                        + "&property.arch=amd+64&property.os=linux",
+                DfSearchStep.path("my/repo", props, 2, 100));
+    }
+
+    @Test
+    public void pagesAreFetchedOneAtATime() throws IOException {
+        DfSearchStep.Page first = new DfSearchStep.SearchPage(client, DfSearchStep.path("r", null, 1, 2)).call();
+        assertEquals(2, first.getArtifacts().size());
+        assertTrue(first.getHasMore());
+        assertEquals(1, queries.size());
+
+        DfSearchStep.Page last = new DfSearchStep.SearchPage(client, DfSearchStep.path("r", null, 3, 2)).call();
+        assertEquals("a3", ((Map<?, ?>) last.getArtifacts().get(0)).get("name"));
+        assertFalse(last.getHasMore());
+    }
+
+    @Test
+    public void limitTrimsTheLastPageAndSkipsTheOnesPastIt() {
+        assertEquals(100, DfSearchStep.want(1, 100, 0));
+        assertEquals(100, DfSearchStep.want(2, 100, 250));
+        assertEquals(50, DfSearchStep.want(3, 100, 250));
+        assertEquals(0, DfSearchStep.want(4, 100, 250));
+        assertEquals(100, DfSearchStep.want(3, 100, 300));
+        assertEquals(0, DfSearchStep.want(4, 100, 300));
+    }
+
+    @Test
+    public void nextFollowsTheServerUntilTheLimitCutsAPageShort() {
+        // SERVER HAS MORE, NO LIMIT
+        Map<String, Object> r = DfSearchStep.result(page(100, true), 2, 100, 100);
+        assertEquals(100, ((List<?>) r.get("artifacts")).size());
+        assertEquals(3, r.get("next"));
+
+        // SERVER HAS MORE, THE LIMIT ENDS INSIDE THIS PAGE
+        r = DfSearchStep.result(page(100, true), 3, 100, 50);
+        assertEquals(50, ((List<?>) r.get("artifacts")).size());
+        assertEquals("a0", ((List<?>) r.get("artifacts")).get(0));
+        assertNull(r.get("next"));
+
+        // A SHORT PAGE UNDER THE LIMIT IS STILL THE LAST
+        r = DfSearchStep.result(page(30, false), 3, 100, 50);
+        assertEquals(30, ((List<?>) r.get("artifacts")).size());
+        assertNull(r.get("next"));
+
+        // THE SERVER SAYS THE END
+        r = DfSearchStep.result(page(100, false), 1, 100, 100);
+        assertNull(r.get("next"));
+    }
+
+    @Test
+    public void withoutHasMoreOnlyAFullPageHasASuccessor() {
+        assertEquals(2, DfSearchStep.result(page(100, null), 1, 100, 100).get("next"));
+        assertNull(DfSearchStep.result(page(99, null), 1, 100, 100).get("next"));
+        assertNull(DfSearchStep.result(page(0, null), 1, 100, 100).get("next"));
+    }
+
+    // A LIMIT THAT IS A MULTIPLE OF THE PAGE SIZE STILL STOPS: THE PAGE AFTER IT HAS want 0 AND IS NEVER FETCHED
+    @Test
+    public void aLoopEndsExactlyAtTheLimit() {
+        int limit = 300;
+        int size = 100;
+        List<Object> all = new ArrayList<>();
+        Integer next = 1;
+        int fetched = 0;
+        while (next != null) {
+            int want = DfSearchStep.want(next, size, limit);
+            if (want == 0) {
+                break;
+            }
+            fetched++;
+            Map<String, Object> r = DfSearchStep.result(page(size, true), next, size, want);
+            all.addAll((List<?>) r.get("artifacts"));
+            next = (Integer) r.get("next");
+        }
+        assertEquals(300, all.size());
+        assertEquals(3, fetched);
+    }
+
+    private static DfSearchStep.Page page(int artifacts, Boolean hasMore) {
+        ArrayList<Object> names = new ArrayList<>();
+        for (int i = 0; i < artifacts; i++) {
+            names.add("a" + i);
+        }
+        return new DfSearchStep.Page(names, hasMore);
+    }
+
+    @Test
+    public void bareArrayHasNoMoreFlag() throws IOException {
+        DfSearchStep.Page page = DfSearchStep.Page.of(List.of("x", "y"));
+        assertEquals(2, page.getArtifacts().size());
+        assertNull(page.getHasMore());
+    }
+}
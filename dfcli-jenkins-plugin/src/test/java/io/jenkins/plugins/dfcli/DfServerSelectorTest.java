@@ -0,0 +1,57 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class DfServerSelectorTest {
+    private final DfServer us = new DfServer("us", "https://us.df.example.com");
+    private final DfServer eu = new DfServer("eu", "https://eu.df.example.com");
+    private final DfServer ap = new DfServer("ap", "https://ap.df.example.com");
+    private final List<DfServer> all = List.of(us, eu, ap);
+
+    @Test
+    public void latencyPicksTheClosestServerThatAnswered() {
+        Map<String, Long> probes = probes(120, DfServerProbes.DOWN, 40);
+        assertEquals("ap", DfServerSelector.pick(DfCliConfig.SELECT_LATENCY, all, probes, null).getName());
+    }
+
+    @Test
+    public void latencyKeepsTheCurrentServerWithinTheSlack() {
+        // 45 ms IS WITHIN 20% + 5 ms OF 40 ms, SO THE NODE DOESN'T SWITCH AND LOG IN AGAIN
+        Map<String, Long> probes = probes(45, 300, 40);
+        assertEquals("us", DfServerSelector.pick(DfCliConfig.SELECT_LATENCY, all, probes, "us").getName());
+        probes.put(us.getServerUrl(), 80L);
+        assertEquals("ap", DfServerSelector.pick(DfCliConfig.SELECT_LATENCY, all, probes, "us").getName());
+    }
+
+    @Test
+    public void roundRobinSticksUntilTheServerGoesDown() {
+        Map<String, Long> probes = probes(10, 10, 10);
+        assertEquals("eu", DfServerSelector.pick(DfCliConfig.SELECT_ROUND_ROBIN, all, probes, "eu").getName());
+
+        probes.put(eu.getServerUrl(), DfServerProbes.DOWN);
+        for (int i = 0; i < 10; i++) {
+            String next = DfServerSelector.pick(DfCliConfig.SELECT_ROUND_ROBIN, all, probes, "eu").getName();
+            assertNotEquals("eu", next);
+        }
+    }
+
+    @Test
+    public void everythingDownFallsBackToTheFirstServer() {
+        Map<String, Long> probes = probes(DfServerProbes.DOWN, DfServerProbes.DOWN, DfServerProbes.DOWN);
+        assertEquals("us", DfServerSelector.pick(DfCliConfig.SELECT_LATENCY, all, probes, "ap").getName());
+    }
+
+    private Map<String, Long> probes(long usMillis, long euMillis, long apMillis) {
+        Map<String, Long> probes = new HashMap<>();
+        probes.put(us.getServerUrl(), usMillis);
+        probes.put(eu.getServerUrl(), euMillis);
+        probes.put(ap.getServerUrl(), apMillis);
+        return probes;
+    }
+}
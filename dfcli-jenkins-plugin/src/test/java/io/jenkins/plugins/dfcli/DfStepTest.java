@@ -0,0 +1,65 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+
+import hudson.FilePath;
+import hudson.slaves.WorkspaceList;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// df AGAINST THE FAKE dfcli
+public class DfStepTest {
+    public final JenkinsRule jenkins = new JenkinsRule();
+    public final FakeDistrofaceRule fake = new FakeDistrofaceRule(jenkins);
+
+    @Rule
+    public final RuleChain rules = RuleChain.outerRule(jenkins).around(fake);
+
+    @Test
+    public void jsonOutputIsReturnedParsed() throws Exception {
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job("format: 'json'"));
+
+        jenkins.assertLogContains("name=a.tar.gz size=3 total=1", run);
+        jenkins.assertLogContains("/tools/dfcli json --output json", run);
+        jenkins.assertLogContains("[dfcli] Parsed ", run);
+        // THE FILE IT WAS PARSED FROM IS GONE
+        FilePath tmp = WorkspaceList.tempDir(jenkins.jenkins.getWorkspaceFor(run.getParent()));
+        assertEquals(0, tmp.exists() ? tmp.list("dfcli-*.json").length : 0);
+    }
+
+    @Test
+    public void asyncJsonOutputIsReturnedParsed() throws Exception {
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job("format: 'json', async: true"));
+
+        jenkins.assertLogContains("name=a.tar.gz size=3 total=1", run);
+    }
+
+    @Test
+    public void defaultRawLogsOfEarlierBuildsArePruned() throws Exception {
+        WorkflowJob job = job("format: 'json', verbosity: 'summary'");
+        jenkins.buildAndAssertSuccess(job);
+        FilePath logs = jenkins.jenkins.getWorkspaceFor(job).child(DfConsole.RAW_LOG_DIR);
+        assertEquals(1, logs.list("df-1-*.log.gz").length);
+
+        WorkflowRun second = jenkins.buildAndAssertSuccess(job);
+        jenkins.assertLogContains("[dfcli] Removed 1 raw logs of earlier builds", second);
+        assertEquals(0, logs.list("df-1-*.log.gz").length);
+        assertEquals(1, logs.list("df-2-*.log.gz").length);
+    }
+
+    private WorkflowJob job(String options) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition(
+                "node('" + DfLoadHarness.LABEL + "') {\n"
+                        + "  def r = df command: 'json', " + options + "\n"
+                        + "  echo \"name=${r.artifacts[0].name} size=${r.artifacts[0].size} total=${r.total}\"\n"
+                        + "}",
+                true));
+        return job;
+    }
+}
@@ -0,0 +1,130 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import hudson.AbortException;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DfTagStepTest {
+    private FakeDistroface server;
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    @Before
+    public void startServer() throws Exception {
+        server = new FakeDistroface();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void searchSelectionIsSentInBatchesAndFailedBatchesRetried() throws Exception {
+        server.setArtifacts(1200);
+        server.failBatches(1);
+        DfTagStep step = new DfTagStep("repo");
+        step.setMatch(Map.of("os", "linux"));
+        step.setSet(Map.of("channel", "stable"));
+        step.setConcurrency(2);
+
+        DfTagStep.Totals totals = batches(step, 2).call();
+
+        assertEquals(1200, totals.matched);
+        assertEquals(3, totals.batches);
+        assertEquals(1200, totals.updated);
+        assertEquals(0, totals.failed);
+        assertEquals(1, server.requests("search"));
+        // THREE BATCHES PLUS THE RETRY OF THE ONE THAT GOT A 503
+        assertEquals(4, server.requests("properties"));
+        assertEquals(1200, server.batchedArtifacts());
+    }
+
+    @Test
+    public void batchesFailingPastTheirRetriesCountTheirArtifacts() throws Exception {
+        server.failBatches(100);
+        DfPromoteStep step = new DfPromoteStep("staging", "releases");
+        step.setArtifacts(List.of("a.tar.gz", "b.tar.gz", "c.tar.gz", "a.tar.gz"));
+        step.setBatchSize(2);
+
+        DfTagStep.Totals totals = batches(step, 0).call();
+
+        assertEquals(3, totals.matched);
+        assertEquals(0, totals.updated);
+        assertEquals(3, totals.failed);
+        // BATCHES FINISH IN ANY ORDER
+        assertEquals(Set.of("a.tar.gz", "b.tar.gz", "c.tar.gz"), new HashSet<>(totals.failedNames));
+        assertEquals(2, server.requests("promote"));
+    }
+
+    @Test
+    public void promoteIsRetriedOnlyWhenTheServerCertainlyDidntApplyIt() throws Exception {
+        DfPromoteStep step = new DfPromoteStep("staging", "releases");
+        step.setArtifacts(List.of("a.tar.gz", "b.tar.gz"));
+
+        server.failBatches(1);
+        DfTagStep.Totals refused = batches(step, 2).call();
+        assertEquals(2, refused.updated);
+        assertEquals(2, server.requests("promote"));
+
+        // A 500 AFTER THE COPY ISN'T SENT AGAIN: THE BATCH COUNTS AS FAILED, BUT WAS PROMOTED ONCE, NOT TWICE
+        server.failBatchesAfterApplying(1);
+        DfTagStep.Totals applied = batches(step, 2).call();
+        assertEquals(2, applied.failed);
+        assertEquals(3, server.requests("promote"));
+        assertEquals(4, server.batchedArtifacts());
+    }
+
+    @Test
+    public void tagBatchesAreRetriedOnAnyServerError() throws Exception {
+        DfTagStep step = new DfTagStep("repo");
+        step.setArtifacts(List.of("a.tar.gz", "b.tar.gz"));
+        step.setSet(Map.of("channel", "stable"));
+        server.failBatchesAfterApplying(1);
+
+        DfTagStep.Totals totals = batches(step, 2).call();
+
+        assertEquals(2, totals.updated);
+        assertEquals(2, server.requests("properties"));
+    }
+
+    @Test
+    public void onlyFailuresBeforeTheServerActedCountAsNotApplied() {
+        assertTrue(DistrofaceClient.notApplied(new ConnectException("refused")));
+        assertTrue(DistrofaceClient.notApplied(new DistrofaceClient.HttpStatusException(503, "busy")));
+        assertFalse(DistrofaceClient.notApplied(new DistrofaceClient.HttpStatusException(500, "oops")));
+        assertFalse(DistrofaceClient.notApplied(new SocketTimeoutException("Read timed out")));
+    }
+
+    @Test
+    public void stepsNeedASelectorAndSomethingToDo() {
+        DfTagStep tag = new DfTagStep("repo");
+        tag.setVersion("1.0");
+        assertThrows(AbortException.class, tag::validate);
+
+        DfTagStep all = new DfTagStep("repo");
+        all.setSet(Map.of("k", "v"));
+        assertThrows(AbortException.class, () -> all.start(null));
+
+        assertThrows(AbortException.class, new DfPromoteStep("repo", " ")::validate);
+    }
+
+    private DfTagStep.Batches batches(DfTagStep step, int retries) throws Exception {
+        DistrofaceClient client = new DistrofaceClient(server.url(), null).withRetries(retries);
+        return new DfTagStep.Batches(step, client, new StreamTaskListener(log, StandardCharsets.UTF_8));
+    }
+}
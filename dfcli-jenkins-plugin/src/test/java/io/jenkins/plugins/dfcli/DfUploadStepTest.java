@@ -0,0 +1,55 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// dfUpload AGAINST THE FAKE SERVER, WHOSE EXISTENCE CHECK KNOWS THE HASHES GIVEN TO addBlob
+public class DfUploadStepTest {
+    public final JenkinsRule jenkins = new JenkinsRule();
+    public final FakeDistrofaceRule fake = new FakeDistrofaceRule(jenkins);
+
+    @Rule
+    public final RuleChain rules = RuleChain.outerRule(jenkins).around(fake);
+
+    @Test
+    public void skipsFilesTheServerAlreadyHas() throws Exception {
+        fake.get().addBlob(Digests.toHex(Digests.sha256().digest("old".getBytes(StandardCharsets.UTF_8))));
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job(""));
+
+        jenkins.assertLogContains("uploaded=[out/new.txt] skipped=[out/old.txt]", run);
+        jenkins.assertLogContains("Uploaded 1 files, skipped 1 already on the server", run);
+        jenkins.assertLogContains("/tools/dfcli artifact upload repo out/new.txt", run);
+        jenkins.assertLogNotContains("artifact upload repo out/old.txt", run);
+        assertEquals(1, fake.get().requests("exists"));
+    }
+
+    @Test
+    public void uploadsEverythingWithoutSkipExisting() throws Exception {
+        fake.get().addBlob(Digests.toHex(Digests.sha256().digest("old".getBytes(StandardCharsets.UTF_8))));
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job(", skipExisting: false"));
+
+        jenkins.assertLogContains("uploaded=[out/new.txt, out/old.txt] skipped=[]", run);
+        assertEquals(0, fake.get().requests("exists"));
+    }
+
+    private WorkflowJob job(String options) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition(
+                "node('" + DfLoadHarness.LABEL + "') {\n"
+                        + "  writeFile file: 'out/old.txt', text: 'old'\n"
+                        + "  writeFile file: 'out/new.txt', text: 'new'\n"
+                        + "  def r = dfUpload repo: 'repo', includes: 'out/*.txt'" + options + "\n"
+                        + "  echo \"uploaded=${r.uploaded} skipped=${r.skipped}\"\n"
+                        + "}",
+                true));
+        return job;
+    }
+}
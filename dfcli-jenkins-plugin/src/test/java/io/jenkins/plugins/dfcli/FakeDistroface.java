@@ -0,0 +1,214 @@
+package io.jenkins.plugins.dfcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+// IN-PROCESS STAND-IN FOR A DISTROFACE SERVER AND ITS GITHUB RELEASE PAGE, SO TESTS RUN WITHOUT NETWORK ACCESS.
+// EVERY dfcli-<platform>.tar.gz RELEASE ASSET IS THE SAME ARCHIVE, HOLDING fake-dfcli.sh AS THE BINARY
+class FakeDistroface implements AutoCloseable {
+    static final String[] PLATFORMS = {"linux-amd64", "linux-arm64", "darwin-amd64", "darwin-arm64"};
+    private static final Pattern RELEASE = Pattern.compile("/releases/(?:latest/download|download/[^/]+)/(.+)");
+    private static final Pattern PAGE = Pattern.compile("(?:^|&)page=(\\d+)");
+    private static final Pattern SIZE = Pattern.compile("(?:^|&)size=(\\d+)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final byte[] archive;
+    private final String sha256;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    // ARTIFACTS EVERY SEARCH REPORTS, AND HOW LONG EACH API CALL TAKES
+    private volatile int artifacts = 1000;
+    private volatile long apiDelayMillis;
+    // SHA-256 HASHES THE BLOB EXISTENCE CHECK REPORTS AS ALREADY STORED
+    private final Set<String> blobs = ConcurrentHashMap.newKeySet();
+    // ARTIFACT NAMES SENT TO THE BATCH PROPERTY/PROMOTE ENDPOINTS, HOW MANY OF THOSE CALLS FAIL WITH 503 FIRST, AND
+    // HOW MANY FAIL WITH 500 AFTER THE BATCH WAS APPLIED
+    private final AtomicInteger batched = new AtomicInteger();
+    private final AtomicInteger batchFailures = new AtomicInteger();
+    private final AtomicInteger appliedFailures = new AtomicInteger();
+
+    FakeDistroface() throws IOException {
+        archive = releaseArchive();
+        sha256 = Digests.toHex(Digests.sha256().digest(archive));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/releases/", this::release);
+        server.createContext("/api/v1/repositories/", this::api);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void setArtifacts(int artifacts) {
+        this.artifacts = artifacts;
+    }
+
+    void setApiDelayMillis(long apiDelayMillis) {
+        this.apiDelayMillis = apiDelayMillis;
+    }
+
+    void addBlob(String sha256) {
+        blobs.add(sha256);
+    }
+
+    void failBatches(int count) {
+        batchFailures.set(count);
+    }
+
+    void failBatchesAfterApplying(int count) {
+        appliedFailures.set(count);
+    }
+
+    int batchedArtifacts() {
+        return batched.get();
+    }
+
+    // REQUESTS SEEN PER KIND: release, checksums, search, exists, properties, promote
+    int requests(String kind) {
+        AtomicInteger count = requests.get(kind);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void count(String kind) {
+        requests.computeIfAbsent(kind, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void release(HttpExchange ex) throws IOException {
+        Matcher m = RELEASE.matcher(ex.getRequestURI().getPath());
+        String file = m.matches() ? m.group(1) : "";
+        if (ReleaseSource.CHECKSUMS_FILE.equals(file)) {
+            count("checksums");
+            StringBuilder sums = new StringBuilder();
+            for (String platform : PLATFORMS) {
+                sums.append(sha256).append("  dfcli-").append(platform).append(".tar.gz\n");
+            }
+            respond(ex, 200, sums.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (file.startsWith("dfcli-") && file.endsWith(".tar.gz")) {
+            count("release");
+            respond(ex, 200, archive);
+        } else {
+            respond(ex, 404, new byte[0]);
+        }
+    }
+
+    private void api(HttpExchange ex) throws IOException {
+        byte[] body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        if (apiDelayMillis > 0) {
+            try {
+                Thread.sleep(apiDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        String path = ex.getRequestURI().getPath();
+        if (path.endsWith("/blobs/exists")) {
+            count("exists");
+            ObjectMapper mapper = new ObjectMapper();
+            ObjectNode answer = mapper.createObjectNode();
+            ArrayNode existing = answer.putArray("existing");
+            for (JsonNode hash : mapper.readTree(body).path("sha256")) {
+                if (blobs.contains(hash.asText())) {
+                    existing.add(hash.asText());
+                }
+            }
+            respond(ex, 200, mapper.writeValueAsBytes(answer));
+        } else if (path.endsWith("/artifacts/properties") || path.endsWith("/artifacts/promote")) {
+            count(path.substring(path.lastIndexOf('/') + 1));
+            if (batchFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                respond(ex, 503, new byte[0]);
+                return;
+            }
+            batched.addAndGet(new ObjectMapper().readTree(body).path("artifacts").size());
+            if (appliedFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                respond(ex, 500, new byte[0]);
+                return;
+            }
+            respond(ex, 200, "{\"failed\":[]}".getBytes(StandardCharsets.UTF_8));
+        } else if (path.endsWith("/artifacts/search")) {
+            count("search");
+            respond(ex, 200, searchPage(String.valueOf(ex.getRequestURI().getRawQuery())));
+        } else {
+            respond(ex, 404, new byte[0]);
+        }
+    }
+
+    private byte[] searchPage(String query) {
+        int page = param(PAGE, query, 1);
+        int size = param(SIZE, query, DfSearchStep.DEFAULT_PAGE_SIZE);
+        int from = (page - 1) * size;
+        int to = Math.min(artifacts, from + size);
+        StringBuilder json = new StringBuilder("{\"artifacts\":[");
+        for (int i = from; i < to; i++) {
+            json.append(i == from ? "" : ",")
+                    .append("{\"name\":\"artifact-").append(i).append(".tar.gz\",\"size\":").append(i * 31).append('}');
+        }
+        json.append("],\"hasMore\":").append(to < artifacts).append('}');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int param(Pattern pattern, String query, int fallback) {
+        Matcher m = pattern.matcher(query);
+        return m.find() ? Integer.parseInt(m.group(1)) : fallback;
+    }
+
+    private static void respond(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] releaseArchive() throws IOException {
+        byte[] script;
+        try (InputStream in = FakeDistroface.class.getResourceAsStream("fake-dfcli.sh")) {
+            if (in == null) {
+                throw new IOException("fake-dfcli.sh is missing from the test resources");
+            }
+            script = in.readAllBytes();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GzipCompressorOutputStream gz = new GzipCompressorOutputStream(bytes);
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(gz)) {
+            TarArchiveEntry entry = new TarArchiveEntry("dfcli/dfcli");
+            entry.setSize(script.length);
+            entry.setMode(0755);
+            tar.putArchiveEntry(entry);
+            tar.write(script);
+            tar.closeArchiveEntry();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,85 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assume.assumeFalse;
+
+import hudson.Functions;
+import hudson.model.Label;
+import hudson.slaves.DumbSlave;
+import hudson.util.Secret;
+import java.util.Collections;
+import org.junit.rules.ExternalResource;
+import org.jvnet.hudson.test.JenkinsRule;
+
+// A FakeDistroface WITH THE PLUGIN POINTED AT IT AND ITS FAKE dfcli AUTO INSTALLED, FOR PIPELINES THAT RUN ON
+// node(LABEL). THE FAKE dfcli IS A SHELL SCRIPT, SO TESTS USING THIS ARE SKIPPED ON WINDOWS. IT NEEDS A RUNNING
+// JENKINS, SO CHAIN IT INSIDE THE JenkinsRule:
+//   public final JenkinsRule jenkins = new JenkinsRule();
+//   public final FakeDistrofaceRule fake = new FakeDistrofaceRule(jenkins);
+//   @Rule public final RuleChain rules = RuleChain.outerRule(jenkins).around(fake);
+class FakeDistrofaceRule extends ExternalResource {
+    static final String LABEL = "dfcli-fake";
+    static final String VERSION = "v0.0.0-fake";
+
+    private final JenkinsRule jenkins;
+    private final int agents;
+    private final int executors;
+    private FakeDistroface server;
+
+    // EVERYTHING ON THE BUILT-IN NODE, ONE EXECUTOR
+    FakeDistrofaceRule(JenkinsRule jenkins) {
+        this(jenkins, 0, 1);
+    }
+
+    // agents 0 RUNS EVERYTHING ON THE BUILT-IN NODE, OTHERWISE ON THAT MANY AGENT JVMS, executors EACH
+    FakeDistrofaceRule(JenkinsRule jenkins, int agents, int executors) {
+        this.jenkins = jenkins;
+        this.agents = agents;
+        this.executors = executors;
+    }
+
+    FakeDistroface get() {
+        return server;
+    }
+
+    @Override
+    protected void before() throws Throwable {
+        assumeFalse("the fake dfcli is a shell script", Functions.isWindows());
+        LoginSessionCache.clear();
+        server = new FakeDistroface();
+        configure(jenkins, server, agents, executors);
+    }
+
+    @Override
+    protected void after() {
+        PeerCache.clear();
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    // FOR RULES OTHER THAN JenkinsRule, E.G. ONCE PER JenkinsSessionRule SESSION
+    static void configure(JenkinsRule jenkins, FakeDistroface server, int agents, int executors) throws Exception {
+        DfCliConfig config = DfCliConfig.get();
+        config.setServerUrl(server.url());
+        config.setUsername("fake");
+        config.setPassword(Secret.fromString("fake-password"));
+        config.setReleaseSource(server.url());
+        config.setCliVersion(VERSION);
+        jenkins.jenkins
+                .getDescriptorByType(DfCliInstallation.DescriptorImpl.class)
+                .setInstallations(new DfCliInstallation("dfcli", "", Collections.emptyList()));
+
+        if (agents == 0) {
+            jenkins.jenkins.setNumExecutors(executors);
+            jenkins.jenkins.setLabelString(LABEL);
+            return;
+        }
+        jenkins.jenkins.setNumExecutors(0);
+        for (int i = 0; i < agents; i++) {
+            DumbSlave agent = jenkins.createSlave(Label.get(LABEL));
+            agent.setNumExecutors(executors);
+            jenkins.jenkins.updateNode(agent);
+            jenkins.waitOnline(agent);
+        }
+    }
+}
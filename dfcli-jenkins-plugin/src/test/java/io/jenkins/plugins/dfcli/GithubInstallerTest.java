@@ -0,0 +1,114 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GithubInstallerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void concurrentInstallsIntoOneDirSwapInExactlyOnce() throws Exception {
+        byte[] binary = "#!/bin/sh\necho dfcli\n".getBytes(StandardCharsets.UTF_8);
+        File archive = tarGz("dfcli-linux-amd64/dfcli", binary);
+        String sha256 = Digests.sha256(archive.toPath());
+        Path toolDir = tmp.newFolder("tools").toPath();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Callable<Boolean> install = () -> new GithubInstaller.InstallArchive(
+                                toolDir.toString(), false, "v1.0.0", sha256)
+                        .invoke(archive, null);
+                results.add(pool.submit(install));
+            }
+            int replaced = 0;
+            for (Future<Boolean> result : results) {
+                replaced += result.get() ? 1 : 0;
+            }
+            assertEquals(1, replaced);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertArrayEquals(binary, Files.readAllBytes(toolDir.resolve("dfcli")));
+        assertEquals(
+                "v1.0.0\n" + sha256 + "\n",
+                new String(Files.readAllBytes(toolDir.resolve(GithubInstaller.MARKER_FILE)), StandardCharsets.UTF_8));
+        try (var leftovers = Files.list(toolDir)) {
+            // BINARY, MARKER AND LOCK FILE ONLY, NO STAGING DIRS
+            assertEquals(3, leftovers.count());
+        }
+    }
+
+    @Test
+    public void streamedInstallVerifiesDigestAndFillsMirror() throws Exception {
+        byte[] binary = "#!/bin/sh\necho dfcli\n".getBytes(StandardCharsets.UTF_8);
+        File archive = tarGz("dfcli-linux-amd64/dfcli", binary);
+        String sha256 = Digests.sha256(archive.toPath());
+        Path toolDir = tmp.getRoot().toPath().resolve("tools");
+        Path mirror = tmp.getRoot().toPath().resolve("mirror").resolve(sha256);
+
+        try (InputStream in = Files.newInputStream(archive.toPath())) {
+            assertTrue(GithubInstaller.installFrom(in, toolDir, false, "v1.0.0", sha256, mirror));
+        }
+        assertArrayEquals(binary, Files.readAllBytes(toolDir.resolve("dfcli")));
+        // THE MIRROR GETS THE WHOLE ARCHIVE, NOT JUST WHAT THE EXTRACTOR NEEDED
+        assertArrayEquals(Files.readAllBytes(archive.toPath()), Files.readAllBytes(mirror));
+    }
+
+    @Test
+    public void streamedInstallRejectsWrongDigestWithoutTouchingTheInstall() throws Exception {
+        File archive = tarGz("dfcli-linux-amd64/dfcli", "tampered".getBytes(StandardCharsets.UTF_8));
+        Path toolDir = tmp.newFolder("tools").toPath();
+        Path mirror = tmp.getRoot().toPath().resolve("mirror").resolve("0".repeat(64));
+
+        try (InputStream in = Files.newInputStream(archive.toPath())) {
+            assertThrows(
+                    GithubInstaller.ChecksumMismatchException.class,
+                    () -> GithubInstaller.installFrom(in, toolDir, false, "v1.0.0", "0".repeat(64), mirror));
+        }
+        assertFalse(Files.exists(toolDir.resolve("dfcli")));
+        assertFalse(Files.exists(mirror));
+        try (var leftovers = Files.list(toolDir)) {
+            assertEquals(0, leftovers.count());
+        }
+    }
+
+    private File tarGz(String name, byte[] content) throws Exception {
+        File file = File.createTempFile("dfcli", ".tar.gz", tmp.getRoot());
+        try (OutputStream out = Files.newOutputStream(file.toPath());
+                GzipCompressorOutputStream gz = new GzipCompressorOutputStream(out);
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(gz)) {
+            TarArchiveEntry entry = new TarArchiveEntry(name);
+            entry.setSize(content.length);
+            tar.putArchiveEntry(entry);
+            tar.write(content);
+            tar.closeArchiveEntry();
+        }
+        return file;
+    }
+}
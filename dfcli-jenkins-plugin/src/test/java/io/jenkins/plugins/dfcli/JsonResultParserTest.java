@@ -0,0 +1,77 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class JsonResultParserTest {
+    @Test
+    public void parsesDocumentSplitAcrossWrites() throws Exception {
+        byte[] json = "{\"name\":\"app\",\"tags\":[\"a\",\"b\"],\"size\":42,\"meta\":{\"ok\":true,\"x\":null}}"
+                .getBytes(StandardCharsets.UTF_8);
+        JsonResultParser parser = new JsonResultParser(0);
+        // FEED IN 3 BYTE PIECES SO TOKENS ARE CUT IN HALF
+        for (int i = 0; i < json.length; i += 3) {
+            parser.write(json, i, Math.min(3, json.length - i));
+        }
+        parser.close();
+
+        Map<?, ?> result = (Map<?, ?>) parser.getResult();
+        assertEquals("app", result.get("name"));
+        assertEquals(List.of("a", "b"), result.get("tags"));
+        assertEquals(42, ((Number) result.get("size")).intValue());
+        Map<?, ?> meta = (Map<?, ?>) result.get("meta");
+        assertEquals(Boolean.TRUE, meta.get("ok"));
+        assertTrue(meta.containsKey("x"));
+        assertNull(meta.get("x"));
+        assertEquals(json.length, parser.getBytesSeen());
+    }
+
+    @Test
+    public void jsonLinesBecomeAList() throws Exception {
+        JsonResultParser parser = new JsonResultParser(0);
+        parser.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+        parser.close();
+
+        List<?> result = (List<?>) parser.getResult();
+        assertEquals(2, result.size());
+        assertEquals(2, ((Number) ((Map<?, ?>) result.get(1)).get("id")).intValue());
+    }
+
+    @Test
+    public void emptyOutputIsNull() throws Exception {
+        JsonResultParser parser = new JsonResultParser(0);
+        parser.close();
+        assertNull(parser.getResult());
+    }
+
+    @Test
+    public void limitAndMalformedInputFailOnGetResult() throws Exception {
+        JsonResultParser limited = new JsonResultParser(4);
+        limited.write("[1,2,3]".getBytes(StandardCharsets.UTF_8));
+        limited.close();
+        try {
+            limited.getResult();
+            fail("expected the limit to be enforced");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("maxOutputBytes"));
+        }
+
+        JsonResultParser broken = new JsonResultParser(0);
+        broken.write("{\"a\": }".getBytes(StandardCharsets.UTF_8));
+        broken.close();
+        try {
+            broken.getResult();
+            fail("expected a parse error");
+        } catch (IOException expected) {
+            // JsonParseException
+        }
+    }
+}
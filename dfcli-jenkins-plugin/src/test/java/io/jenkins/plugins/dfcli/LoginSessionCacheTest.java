@@ -0,0 +1,107 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import hudson.util.Secret;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class LoginSessionCacheTest {
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    private static final int TTL = 60;
+
+    private DfServer us;
+    private DfServer eu;
+
+    @Before
+    public void setUp() {
+        LoginSessionCache.clear();
+        us = server("us", "https://us.df.example.com");
+        eu = server("eu", "https://eu.df.example.com");
+    }
+
+    @Test
+    public void sessionIsReusedUntilInvalidated() {
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+        LoginSessionCache.markLoggedIn("node:a", us, TTL);
+        assertTrue(LoginSessionCache.isValid("node:a", us, TTL));
+        assertFalse(LoginSessionCache.isValid("node:b", us, TTL));
+        assertFalse(LoginSessionCache.isValid("node:a", eu, TTL));
+
+        LoginSessionCache.invalidate("node:a", us);
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+    }
+
+    @Test
+    public void credentialChangeForcesNewLogin() {
+        LoginSessionCache.markLoggedIn("node:a", us, TTL);
+        String before = LoginSessionCache.fingerprint(us);
+        us.setPassword(Secret.fromString("rotated"));
+        assertNotEquals(before, LoginSessionCache.fingerprint(us));
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+
+        // A TOKEN INSTEAD OF THE PASSWORD IS ANOTHER LOGIN TOO
+        LoginSessionCache.markLoggedIn("node:a", us, TTL);
+        us.setToken(Secret.fromString("t0ken"));
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+    }
+
+    @Test
+    public void loggingInToAnotherServerEndsTheScopesSession() {
+        LoginSessionCache.markLoggedIn("node:a", us, TTL);
+        LoginSessionCache.markLoggedIn("node:b", us, TTL);
+        LoginSessionCache.markLoggedIn("node:a", eu, TTL);
+
+        assertTrue(LoginSessionCache.isValid("node:a", eu, TTL));
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+        assertTrue(LoginSessionCache.isValid("node:b", us, TTL));
+    }
+
+    @Test
+    public void invalidateDropsTheServersSessionWhateverItsCredentials() {
+        LoginSessionCache.markLoggedIn("node:a", us, TTL);
+        us.setPassword(Secret.fromString("rotated"));
+        LoginSessionCache.invalidate("node:a", us);
+        us.setPassword(Secret.fromString("s3cret"));
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+
+        LoginSessionCache.markLoggedIn("node:b", eu, TTL);
+        LoginSessionCache.invalidate("node:b", us);
+        assertTrue(LoginSessionCache.isValid("node:b", eu, TTL));
+    }
+
+    @Test
+    public void zeroTtlDisablesCache() {
+        LoginSessionCache.markLoggedIn("node:a", us, 0);
+        assertFalse(LoginSessionCache.isValid("node:a", us, TTL));
+        LoginSessionCache.markLoggedIn("node:a", us, TTL);
+        assertFalse(LoginSessionCache.isValid("node:a", us, 0));
+    }
+
+    @Test
+    public void detectsAuthFailures() {
+        assertTrue(LoginSessionCache.isAuthFailure("Error: 401 Unauthorized"));
+        assertTrue(LoginSessionCache.isAuthFailure("you are not logged in"));
+        assertTrue(LoginSessionCache.isAuthFailure("Error: request failed with status 401"));
+        assertTrue(LoginSessionCache.isAuthFailure("unauthorized: session expired"));
+        // A 401 THAT ISN'T AN HTTP STATUS MUST NOT TRIGGER A RE-LOGIN AND RE-RUN
+        assertFalse(LoginSessionCache.isAuthFailure("Error: upload of build-401.tar.gz failed: disk full"));
+        assertFalse(LoginSessionCache.isAuthFailure("wrote 401 bytes before the connection reset"));
+        assertFalse(LoginSessionCache.isAuthFailure("artifact unauthorized-access-report.txt not found"));
+        assertFalse(LoginSessionCache.isAuthFailure("artifact not found"));
+        assertFalse(LoginSessionCache.isAuthFailure(null));
+    }
+
+    private static DfServer server(String name, String url) {
+        DfServer server = new DfServer(name, url);
+        server.setUsername("ci");
+        server.setPassword(Secret.fromString("s3cret"));
+        return server;
+    }
+}
@@ -0,0 +1,51 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class OutputCaptureTest {
+    @Test
+    public void teesEveryLineButBoundsCapturedBytes() throws Exception {
+        ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+        PrintStream log = new PrintStream(logBytes, true, StandardCharsets.UTF_8);
+
+        OutputCapture capture = new OutputCapture(log, 8);
+        capture.write("line1\nline2\nli".getBytes(StandardCharsets.UTF_8));
+        capture.write("ne3".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals("line1\nline2\nline3", logBytes.toString(StandardCharsets.UTF_8));
+        assertEquals("line1\nli", capture.getText());
+        assertEquals(17, capture.getBytesSeen());
+        assertTrue(capture.isTruncated());
+    }
+
+    @Test
+    public void truncationNeverSplitsACharacter() throws Exception {
+        OutputCapture capture = new OutputCapture(null, 5);
+        // "h\u00e9" IS 3 BYTES, THE LIMIT FALLS INSIDE THE 3-BYTE EURO SIGN
+        capture.write("h\u00e9\u20ac!\nmore\n".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals("h\u00e9", capture.getText());
+        assertTrue(capture.isTruncated());
+    }
+
+    @Test
+    public void zeroLimitOnlyStreams() throws Exception {
+        ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+        OutputCapture capture = new OutputCapture(new PrintStream(logBytes, true, StandardCharsets.UTF_8), 0);
+        capture.write("hello\n".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals("hello\n", logBytes.toString(StandardCharsets.UTF_8));
+        assertEquals("", capture.getText());
+        assertFalse(capture.isTruncated());
+    }
+}
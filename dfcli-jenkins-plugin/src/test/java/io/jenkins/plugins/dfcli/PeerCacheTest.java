@@ -0,0 +1,127 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.slaves.DumbSlave;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class PeerCacheTest {
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @After
+    public void clear() {
+        PeerCache.clear();
+    }
+
+    @Test
+    public void restoreCopiesFromAPeerAndForgetsPeersThatLostTheKey() throws Exception {
+        DumbSlave holder = jenkins.createOnlineSlave();
+        DumbSlave restorer = jenkins.createOnlineSlave();
+        byte[] content = "cached workspace".getBytes(StandardCharsets.UTF_8);
+        Path archive = Files.createTempFile("peer", ".tar.gz");
+        Files.write(archive, content);
+        new AgentArtifactCache(Path.of(AgentArtifactCache.dirFor(holder, MAX_BYTES).getRemote()))
+                .store("--version deps-1", archive, MAX_BYTES);
+
+        // THE BUILT-IN NODE IS RECORDED MORE RECENTLY BUT NEVER HAD THE KEY
+        PeerCache.record("--version deps-1", holder);
+        PeerCache.record("--version deps-1", jenkins.jenkins);
+        assertEquals(List.of("", holder.getNodeName()), PeerCache.holders("--version deps-1"));
+
+        FilePath target = restorer.getRootPath().child("restore/cache.tar.gz");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        String peer = PeerCache.fetch(
+                "--version deps-1", restorer, target, MAX_BYTES, new StreamTaskListener(log, StandardCharsets.UTF_8));
+
+        assertEquals(holder.getNodeName(), peer);
+        assertArrayEquals(content, target.readToString().getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of(holder.getNodeName()), PeerCache.holders("--version deps-1"));
+        // THE PEER'S TEMPORARY LINK IS GONE, ITS ENTRY STAYS
+        List<FilePath> left = AgentArtifactCache.dirFor(holder, MAX_BYTES).list("peer-*");
+        assertTrue(left.toString(), left.isEmpty());
+
+        assertNull(PeerCache.fetch("--version other", restorer, target, MAX_BYTES, StreamTaskListener.fromStdout()));
+    }
+
+    @Test
+    public void aCopyThatDoesntMatchTheRecordedDigestIsRejected() throws Exception {
+        DumbSlave holder = jenkins.createOnlineSlave();
+        DumbSlave restorer = jenkins.createOnlineSlave();
+        Path cacheDir = Path.of(AgentArtifactCache.dirFor(holder, MAX_BYTES).getRemote());
+        Path archive = Files.createTempFile("peer", ".tar.gz");
+        Files.write(archive, "cached workspace".getBytes(StandardCharsets.UTF_8));
+        new AgentArtifactCache(cacheDir).store("--version deps-1", archive, MAX_BYTES);
+        PeerCache.record("--version deps-1", holder);
+
+        // ROTTED ON THE HOLDER'S DISK AFTER IT WAS STORED
+        Files.write(cacheDir.resolve(AgentArtifactCache.entryName("--version deps-1")
+                + AgentArtifactCache.ARCHIVE_SUFFIX), "cached worksp4ce".getBytes(StandardCharsets.UTF_8));
+
+        FilePath target = restorer.getRootPath().child("restore/cache.tar.gz");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertNull(PeerCache.fetch(
+                "--version deps-1", restorer, target, MAX_BYTES, new StreamTaskListener(log, StandardCharsets.UTF_8)));
+
+        assertFalse(target.exists());
+        assertTrue(PeerCache.holders("--version deps-1").isEmpty());
+        assertTrue(log.toString(StandardCharsets.UTF_8), log.toString(StandardCharsets.UTF_8).contains("not using it"));
+    }
+
+    @Test
+    public void onlyTheFirstRestoreOfAKeyLeads() throws Exception {
+        PeerCache.Flight leader = PeerCache.join("k");
+        PeerCache.Flight follower = PeerCache.join("k");
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+
+        CompletableFuture<Boolean> waited = CompletableFuture.supplyAsync(() -> {
+            try {
+                return follower.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        leader.complete(true);
+        leader.close();
+        assertEquals(Boolean.TRUE, waited.get(10, TimeUnit.SECONDS));
+
+        // DONE FLIGHTS ARE GONE, AND A LEADER THAT FAILS RELEASES ITS FOLLOWERS WITH NULL
+        try (PeerCache.Flight next = PeerCache.join("k")) {
+            assertTrue(next.isLeader());
+            PeerCache.Flight waiting = PeerCache.join("k");
+            next.close();
+            assertNull(waiting.await());
+        }
+        assertTrue(PeerCache.join("k").isLeader());
+    }
+
+    @Test
+    public void indexIsBoundedByKeys() {
+        Node node = jenkins.jenkins;
+        for (int i = 0; i <= PeerCache.MAX_KEYS; i++) {
+            PeerCache.record("key-" + i, node);
+        }
+        assertTrue(PeerCache.holders("key-0").isEmpty());
+        assertEquals(List.of(""), PeerCache.holders("key-" + PeerCache.MAX_KEYS));
+    }
+}
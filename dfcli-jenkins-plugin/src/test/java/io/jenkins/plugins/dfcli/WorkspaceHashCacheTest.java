@@ -0,0 +1,39 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceHashCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void reusesPersistedHashWhileSizeAndMtimeAreUnchanged() throws Exception {
+        Path ws = tmp.newFolder("ws").toPath();
+        Path cacheFile = tmp.getRoot().toPath().resolve("ws@tmp").resolve("hash-cache");
+        Path file = ws.resolve("a.txt");
+        Files.write(file, "aaaa".getBytes(StandardCharsets.UTF_8));
+        FileTime mtime = Files.getLastModifiedTime(file);
+
+        WorkspaceHashCache cache = WorkspaceHashCache.load(cacheFile);
+        String first = cache.hash(ws, "a.txt");
+        cache.save();
+
+        // SAME SIZE AND MTIME: A RELOADED CACHE TRUSTS THE STORED HASH WITHOUT READING THE FILE
+        Files.write(file, "bbbb".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, mtime);
+        assertEquals(first, WorkspaceHashCache.load(cacheFile).hash(ws, "a.txt"));
+
+        // ANY STAT CHANGE FORCES A REHASH
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime.toMillis() + 5000));
+        assertNotEquals(first, WorkspaceHashCache.load(cacheFile).hash(ws, "a.txt"));
+    }
+}
@@ -0,0 +1,64 @@
+package io.jenkins.plugins.dfcli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceHashesTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void sameTreeGivesSameDigestRegardlessOfCreationOrder() throws Exception {
+        File a = tree("a", List.of("src/b.txt", "src/nested/a.txt", "pom.xml"));
+        File b = tree("b", List.of("pom.xml", "src/nested/a.txt", "src/b.txt"));
+
+        TreeMap<String, String> hashesA = new WorkspaceHashes("**/*", "", null, 4).invoke(a, null);
+        TreeMap<String, String> hashesB = new WorkspaceHashes("**/*", "", null, 1).invoke(b, null);
+
+        assertEquals(List.of("pom.xml", "src/b.txt", "src/nested/a.txt"), List.copyOf(hashesA.keySet()));
+        assertEquals(hashesA, hashesB);
+        assertEquals(WorkspaceHashes.digest(hashesA, null), WorkspaceHashes.digest(hashesB, null));
+    }
+
+    @Test
+    public void contentRenamesAndEnvChangeTheDigest() throws Exception {
+        File ws = tree("ws", List.of("src/a.txt", "README"));
+        WorkspaceHashes hashes = new WorkspaceHashes("src/**", "", null);
+        TreeMap<String, String> env = new TreeMap<>();
+        env.put("JDK", "17");
+
+        String base = new WorkspaceHashes.DigestInputs(hashes, env).invoke(ws, null).getDigest();
+
+        // EXCLUDED BY THE GLOB, SO NOT AN INPUT
+        Files.write(ws.toPath().resolve("README"), "changed".getBytes(StandardCharsets.UTF_8));
+        assertEquals(base, new WorkspaceHashes.DigestInputs(hashes, env).invoke(ws, null).getDigest());
+
+        env.put("JDK", "21");
+        assertNotEquals(base, new WorkspaceHashes.DigestInputs(hashes, env).invoke(ws, null).getDigest());
+        env.put("JDK", "17");
+
+        Path src = ws.toPath().resolve("src");
+        Files.move(src.resolve("a.txt"), src.resolve("renamed.txt"));
+        assertNotEquals(base, new WorkspaceHashes.DigestInputs(hashes, env).invoke(ws, null).getDigest());
+    }
+
+    private File tree(String name, List<String> files) throws Exception {
+        Path root = tmp.newFolder(name).toPath();
+        for (String file : files) {
+            Path path = root.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.write(path, ("content of " + file).getBytes(StandardCharsets.UTF_8));
+        }
+        return root.toFile();
+    }
+}
@@ -0,0 +1,64 @@
+#!/bin/sh
+# STAND-IN FOR dfcli IN THE LOAD HARNESS, SERVED INSIDE FakeDistroface'S RELEASE ARCHIVE. PIPELINES SCRIPT IT
+# THROUGH withEnv:
+#   DFCLI_FAKE_DELAY  SECONDS TO SLEEP BEFORE ANSWERING (DEFAULT 0)
+#   DFCLI_FAKE_LINES  LINES PRINTED BY `artifact search` (DEFAULT 100)
+#   DFCLI_FAKE_EXIT   EXIT CODE OF EVERYTHING BUT login (DEFAULT 0)
+#   DFCLI_FAKE_DOWNLOAD  IF SET, `artifact download` WRITES AN ARCHIVE OF restored.txt HOLDING THIS TEXT
+# AND THROUGH THREE TEST-ONLY COMMANDS:
+#   exit <code>                  EXITS WITH <code>
+#   json                         PRINTS A FIXED JSON DOCUMENT
+#   probe <dir> [<seconds>]      SLEEPS, APPENDING TO <dir>/seen HOW MANY probes WERE RUNNING WHEN IT STARTED
+[ "${DFCLI_FAKE_DELAY:-0}" = "0" ] || sleep "$DFCLI_FAKE_DELAY"
+case "$1" in
+  login)
+    # DRAIN A SECRET PASSED ON STDIN
+    for arg in "$@"; do
+      case "$arg" in --*-stdin) read -r _secret ;; esac
+    done
+    echo "Logged in to $3"
+    exit 0
+    ;;
+  artifact)
+    case "$2" in
+      search)
+        awk -v n="${DFCLI_FAKE_LINES:-100}" 'BEGIN {
+          for (i = 0; i < n; i++) printf "repo/artifact-%d.tar.gz v1.0.0 BRANCH_NAME=main size=%d\n", i, i * 31
+        }'
+        ;;
+      upload)
+        echo "Uploaded $4 to $3"
+        ;;
+      download)
+        if [ -n "$DFCLI_FAKE_DOWNLOAD" ]; then
+          dir=$(mktemp -d)
+          echo "$DFCLI_FAKE_DOWNLOAD" > "$dir/restored.txt"
+          tar czf "$5" -C "$dir" restored.txt
+          rm -rf "$dir"
+        fi
+        echo "ok"
+        ;;
+      *)
+        echo "ok"
+        ;;
+    esac
+    ;;
+  exit)
+    echo "exiting with $2"
+    exit "$2"
+    ;;
+  json)
+    echo '{"artifacts": [{"name": "a.tar.gz", "size": 3}], "total": 1}'
+    ;;
+  probe)
+    touch "$2/running.$$"
+    ls "$2" | grep -c '^running\.' >> "$2/seen"
+    sleep "${3:-1}"
+    rm -f "$2/running.$$"
+    echo "probed"
+    ;;
+  *)
+    echo "ok"
+    ;;
+esac
+exit "${DFCLI_FAKE_EXIT:-0}"